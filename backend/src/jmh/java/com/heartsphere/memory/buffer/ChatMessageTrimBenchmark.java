@@ -0,0 +1,156 @@
+package com.heartsphere.memory.buffer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话消息裁剪基准：计数后逐条删除 vs 按序号范围删除
+ * 8个线程并发写入少量热点会话，每条消息一个事务。默认连接嵌入式H2（MySQL模式），只用于冒烟；
+ * H2的锁实现与InnoDB不同，对比结论以MySQL上的结果为准：
+ * -Djmh.includes=ChatMessageTrimBenchmark -Djmh.args="-p jdbcUrl=jdbc:mysql://localhost:3306/bench -p username=root -p password=..."
+ * 基准只读写自建的 bench_ 前缀表，结束时删除。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(8)
+@Fork(1)
+public class ChatMessageTrimBenchmark {
+
+    private static final int MAX_MESSAGES = 100;
+    private static final int SESSIONS = 16;
+
+    @Param({"count-then-delete", "seq-range"})
+    private String strategy;
+
+    @Param({"jdbc:h2:mem:trim-bench;MODE=MySQL;DB_CLOSE_DELAY=-1"})
+    private String jdbcUrl;
+
+    @Param({"sa"})
+    private String username;
+
+    @Param({""})
+    private String password;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicLong clock = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(8);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        dropTables();
+        jdbcTemplate.execute("CREATE TABLE bench_chat_messages (id VARCHAR(64) PRIMARY KEY, session_id VARCHAR(64) NOT NULL, "
+            + "content VARCHAR(255), timestamp BIGINT NOT NULL, seq BIGINT)");
+        jdbcTemplate.execute("CREATE INDEX idx_bench_session_timestamp ON bench_chat_messages (session_id, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_bench_session_seq ON bench_chat_messages (session_id, seq)");
+        jdbcTemplate.execute("CREATE TABLE bench_memory_sessions (session_id VARCHAR(64) PRIMARY KEY, head_seq BIGINT NOT NULL)");
+        for (int i = 0; i < SESSIONS; i++) {
+            jdbcTemplate.update("INSERT INTO bench_memory_sessions (session_id, head_seq) VALUES (?, 0)", "s" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            // 两种实现都必须把每个会话限制在容量以内，否则结果无效
+            List<Long> counts = jdbcTemplate.queryForList(
+                "SELECT COUNT(*) FROM bench_chat_messages GROUP BY session_id", Long.class);
+            counts.stream().filter(count -> count > MAX_MESSAGES).findFirst().ifPresent(count -> {
+                throw new IllegalStateException(strategy + " 会话消息超出容量: " + count);
+            });
+        } finally {
+            dropTables();
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    public void writeMessage() {
+        String sessionId = "s" + ThreadLocalRandom.current().nextInt(SESSIONS);
+        long timestamp = clock.incrementAndGet();
+        if ("seq-range".equals(strategy)) {
+            writeSeqRange(sessionId, timestamp);
+        } else {
+            writeCountThenDelete(sessionId, timestamp);
+        }
+    }
+
+    /**
+     * 原实现：插入后统计数量，超出时取出多余的最旧消息逐条删除
+     */
+    private void writeCountThenDelete(String sessionId, long timestamp) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO bench_chat_messages (id, session_id, content, timestamp) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID().toString(), sessionId, "消息", timestamp);
+            Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bench_chat_messages WHERE session_id = ?", Long.class, sessionId);
+            if (count != null && count > MAX_MESSAGES) {
+                List<String> oldest = jdbcTemplate.queryForList(
+                    "SELECT id FROM bench_chat_messages WHERE session_id = ? ORDER BY timestamp ASC LIMIT ?",
+                    String.class, sessionId, count - MAX_MESSAGES);
+                for (String id : oldest) {
+                    jdbcTemplate.update("DELETE FROM bench_chat_messages WHERE id = ?", id);
+                }
+            }
+        });
+    }
+
+    /**
+     * 新实现：锁定会话取序号，插入后按序号范围删除
+     */
+    private void writeSeqRange(String sessionId, long timestamp) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Long head = jdbcTemplate.queryForObject(
+                "SELECT head_seq FROM bench_memory_sessions WHERE session_id = ? FOR UPDATE", Long.class, sessionId);
+            long seq = (head != null ? head : 0L) + 1;
+            jdbcTemplate.update("INSERT INTO bench_chat_messages (id, session_id, content, timestamp, seq) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID().toString(), sessionId, "消息", timestamp, seq);
+            if (seq > MAX_MESSAGES) {
+                jdbcTemplate.update("DELETE FROM bench_chat_messages WHERE session_id = ? AND seq <= ?",
+                    sessionId, seq - MAX_MESSAGES);
+            }
+            jdbcTemplate.update("UPDATE bench_memory_sessions SET head_seq = ? WHERE session_id = ?", seq, sessionId);
+        });
+    }
+
+    private void dropTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_chat_messages");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_memory_sessions");
+    }
+}
@@ -0,0 +1,109 @@
+package com.heartsphere.memory.service;
+
+import com.heartsphere.HeartSphereApplication;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 短期记忆保存与读取基准（嵌入式H2）
+ * 以test配置启动完整的Spring上下文，经 ShortMemoryService 走真实的写缓冲、会话消息缓存和JPA读取路径。
+ * historyCache=false 时每次读取都查库并解码实体，用于对比会话消息缓存的收益。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ShortMemoryBenchmark {
+
+    private static final int SESSIONS = 64;
+    private static final int PRELOADED_MESSAGES = 40;
+    private static final int READ_LIMIT = 20;
+
+    @Param({"true", "false"})
+    private boolean historyCache;
+
+    private ConfigurableApplicationContext context;
+    private ShortMemoryService shortMemoryService;
+    private final AtomicLong sequence = new AtomicLong();
+    private long baseTimestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(HeartSphereApplication.class)
+            .profiles("test")
+            .web(WebApplicationType.NONE)
+            .run();
+        context.getBean(MemoryProperties.class).getShortMemory().setHistoryCacheEnabled(historyCache);
+        shortMemoryService = context.getBean(ShortMemoryService.class);
+
+        baseTimestamp = System.currentTimeMillis();
+        for (int i = 0; i < SESSIONS * PRELOADED_MESSAGES; i++) {
+            shortMemoryService.saveMessage(sessionId(i), message(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ChatMessage saveMessage() {
+        long n = sequence.getAndIncrement();
+        ChatMessage message = message(n);
+        shortMemoryService.saveMessage(sessionId(n), message);
+        return message;
+    }
+
+    @Benchmark
+    public List<ChatMessage> getRecentMessages() {
+        return shortMemoryService.getMessages(sessionId(sequence.getAndIncrement()), READ_LIMIT);
+    }
+
+    @Benchmark
+    public List<ChatMessage> getMessagesInRange() {
+        long n = sequence.getAndIncrement();
+        Instant end = Instant.ofEpochMilli(baseTimestamp + SESSIONS * PRELOADED_MESSAGES);
+        return shortMemoryService.getMessages(sessionId(n), end.minusMillis(SESSIONS * 10L), end);
+    }
+
+    private static String sessionId(long n) {
+        return "bench-session-" + (n % SESSIONS);
+    }
+
+    private ChatMessage message(long n) {
+        return ChatMessage.builder()
+            .userId("bench-user")
+            .role(n % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT)
+            .content("第" + n + "条消息：今天下班之后去公园跑了五公里，感觉状态比上周好多了。")
+            .timestamp(baseTimestamp + n)
+            .build();
+    }
+}
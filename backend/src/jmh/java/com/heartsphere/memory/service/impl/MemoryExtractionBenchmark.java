@@ -0,0 +1,158 @@
+package com.heartsphere.memory.service.impl;
+
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记忆提取基准
+ * 规则提取器在中文对话记录上提取事实/偏好/记忆；以及LLM响应中的JSON截取。
+ * transcriptTurns 为对话轮数（仅规则提取），对话由典型的闲聊、自我介绍和习惯/偏好表述循环拼成。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryExtractionBenchmark {
+
+    private static final String[] USER_TURNS = {
+        "你好呀，今天终于下班了，好累",
+        "我叫王小明，今年28岁，在一家互联网公司做后端开发",
+        "我住在杭州市，每天通勤要一个小时",
+        "我喜欢周末去西湖边骑车，不喜欢人多的地方",
+        "最近总是熬夜改需求，感觉身体有点吃不消",
+        "我经常晚上十点以后跑步，跑完会舒服很多",
+        "下周五是我和女朋友的纪念日，我想给她一个惊喜！",
+        "你觉得送什么礼物比较好？她平时很喜欢看书和画画",
+        "对了，我的生日是1997年8月15日，到时候你要记得提醒我",
+        "我讨厌加班，但是这个月项目上线，没办法",
+        "今天午饭吃了一碗牛肉面，味道一般般",
+        "我偏好安静一点的咖啡馆，可以一个人看书"
+    };
+
+    private static final String[] ASSISTANT_TURNS = {
+        "辛苦啦！先好好休息一下，要不要聊聊今天发生了什么？",
+        "很高兴认识你，小明！后端开发一定很有挑战吧。",
+        "通勤一个小时确实挺辛苦的，路上可以听听播客。",
+        "西湖边骑车听起来很惬意，避开人多的时段会更舒服。",
+        "熬夜对身体影响很大，记得适当休息，别太勉强自己。",
+        "夜跑是很好的放松方式，注意安全和补水哦。",
+        "纪念日惊喜一定会让她很感动！可以提前准备一下。",
+        "既然她喜欢看书和画画，可以考虑一套精装画册或者一次手作体验。",
+        "好的，我记住了，8月15日会提醒你的。",
+        "项目上线期间确实很忙，忙完记得给自己放个假。",
+        "牛肉面一般的话，下次可以换一家试试。",
+        "安静的咖啡馆很适合放松，最近有发现喜欢的店吗？"
+    };
+
+    private static final String FENCED_RESPONSE = "```json\n"
+        + "[{\"fact\":\"用户姓名是王小明\",\"category\":\"PERSONAL\",\"importance\":0.9,\"confidence\":0.95},"
+        + "{\"fact\":\"用户住在杭州市\",\"category\":\"PERSONAL\",\"importance\":0.7,\"confidence\":0.9},"
+        + "{\"fact\":\"用户是后端开发工程师\",\"category\":\"WORK\",\"importance\":0.8,\"confidence\":0.9}]\n"
+        + "```";
+
+    private static final String PROSE_RESPONSE = "根据对话内容，我提取到以下用户偏好信息：\n"
+        + "[{\"key\":\"outdoor_activity\",\"value\":\"骑车\",\"type\":\"STRING\",\"confidence\":0.85},"
+        + "{\"key\":\"place\",\"value\":{\"kind\":\"咖啡馆\",\"noise\":\"安静\"},\"type\":\"OBJECT\",\"confidence\":0.8}]\n"
+        + "以上偏好均来自用户的直接表述，置信度较高。";
+
+    private RuleBasedMemoryExtractor extractor;
+
+    @Setup
+    public void setUp() {
+        extractor = new RuleBasedMemoryExtractor();
+        ReflectionTestUtils.setField(extractor, "enableRuleExtraction", true);
+        ReflectionTestUtils.setField(extractor, "confidenceThreshold", 0.6);
+    }
+
+    /**
+     * 对话记录，只用于规则提取基准
+     */
+    @State(Scope.Benchmark)
+    public static class Transcript {
+
+        @Param({"12", "60"})
+        private int transcriptTurns;
+
+        private List<ChatMessage> messages;
+
+        @Setup
+        public void setUp() {
+            messages = new ArrayList<>(transcriptTurns * 2);
+            long timestamp = System.currentTimeMillis();
+            for (int i = 0; i < transcriptTurns; i++) {
+                int index = i % USER_TURNS.length;
+                messages.add(message(MessageRole.USER, USER_TURNS[index], timestamp++));
+                messages.add(message(MessageRole.ASSISTANT, ASSISTANT_TURNS[index], timestamp++));
+            }
+        }
+    }
+
+    private static ChatMessage message(MessageRole role, String content, long timestamp) {
+        return ChatMessage.builder()
+            .id("msg-" + timestamp)
+            .sessionId("session-1")
+            .userId("user-1")
+            .role(role)
+            .content(content)
+            .timestamp(timestamp)
+            .build();
+    }
+
+    // ========== 规则提取 ==========
+
+    @Benchmark
+    public Object ruleExtractFacts(Transcript transcript) {
+        return extractor.extractFacts("user-1", transcript.messages);
+    }
+
+    @Benchmark
+    public Object ruleExtractPreferences(Transcript transcript) {
+        return extractor.extractPreferences("user-1", transcript.messages);
+    }
+
+    @Benchmark
+    public Object ruleExtractMemories(Transcript transcript) {
+        return extractor.extractMemories("user-1", transcript.messages);
+    }
+
+    @Benchmark
+    public void ruleExtractAll(Transcript transcript, Blackhole blackhole) {
+        blackhole.consume(extractor.extractFacts("user-1", transcript.messages));
+        blackhole.consume(extractor.extractPreferences("user-1", transcript.messages));
+        blackhole.consume(extractor.extractMemories("user-1", transcript.messages));
+    }
+
+    // ========== LLM响应JSON截取 ==========
+
+    @Benchmark
+    public String extractJsonFenced() {
+        return LLMMemoryExtractor.extractJsonFromResponse(FENCED_RESPONSE);
+    }
+
+    @Benchmark
+    public String extractJsonFromProse() {
+        return LLMMemoryExtractor.extractJsonFromResponse(PROSE_RESPONSE);
+    }
+}
@@ -0,0 +1,167 @@
+package com.heartsphere.memory.util;
+
+import com.heartsphere.memory.entity.ChatMessageEntity;
+import com.heartsphere.memory.entity.UserFactEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.model.UserMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryEntityConverter 模型与实体互转基准
+ * 写路径为 model -> entity（序列化JSON列、估算token），读路径为 entity -> model（元数据延迟解析），
+ * decoded 系列额外读取元数据，计入实际解析JSON的开销。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryEntityConverterBenchmark {
+
+    private ChatMessage message;
+    private ChatMessageEntity messageEntity;
+    private UserMemory memory;
+    private UserMemoryEntity memoryEntity;
+    private UserFact fact;
+    private UserFactEntity factEntity;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> messageMetadata = new LinkedHashMap<>();
+        messageMetadata.put("characterId", "char-1024");
+        messageMetadata.put("sceneId", "scene-7");
+        messageMetadata.put("emotion", "开心");
+        messageMetadata.put("model", "qwen-max");
+        message = ChatMessage.builder()
+            .id("msg-1")
+            .sessionId("session-1")
+            .userId("user-1")
+            .role(MessageRole.USER)
+            .content("今天下班之后去公园跑了五公里，感觉状态比上周好多了，下周末想和朋友一起去爬香山。")
+            .metadata(messageMetadata)
+            .timestamp(System.currentTimeMillis())
+            .importance(0.6)
+            .build();
+        messageEntity = MemoryEntityConverter.toEntity(message);
+
+        Map<String, Object> structuredData = new LinkedHashMap<>();
+        structuredData.put("activity", "跑步");
+        structuredData.put("distanceKm", 5);
+        structuredData.put("frequency", "每周三次");
+        memory = UserMemory.builder()
+            .id("memory-1")
+            .userId("user-1")
+            .type(MemoryType.HABIT)
+            .importance(MemoryImportance.IMPORTANT)
+            .content("用户有下班后跑步的习惯，通常在公园跑五公里")
+            .structuredData(structuredData)
+            .source(MemorySource.CONVERSATION)
+            .sourceId("session-1")
+            .createdAt(Instant.now())
+            .accessCount(3)
+            .confidence(0.85)
+            .tags(List.of("运动", "习惯", "跑步"))
+            .metadata(Map.of("extractor", "rule"))
+            .build();
+        memoryEntity = MemoryEntityConverter.toEntity(memory);
+
+        fact = UserFact.builder()
+            .id("fact-1")
+            .userId("user-1")
+            .fact("用户住在北京市海淀区")
+            .category(FactCategory.PERSONAL)
+            .importance(0.8)
+            .confidence(0.9)
+            .sourceSessionId("session-1")
+            .createdAt(Instant.now())
+            .accessCount(1)
+            .tags(List.of("位置"))
+            .metadata(Map.of("extractor", "llm"))
+            .build();
+        factEntity = MemoryEntityConverter.toEntity(fact);
+    }
+
+    // ========== ChatMessage ==========
+
+    @Benchmark
+    public ChatMessageEntity messageToEntity() {
+        return MemoryEntityConverter.toEntity(message);
+    }
+
+    @Benchmark
+    public ChatMessage messageToModel() {
+        return MemoryEntityConverter.toModel(messageEntity);
+    }
+
+    @Benchmark
+    public void messageToModelDecoded(Blackhole blackhole) {
+        ChatMessage model = MemoryEntityConverter.toModel(messageEntity);
+        blackhole.consume(model.getMetadata().get("emotion"));
+    }
+
+    @Benchmark
+    public ChatMessage messageRoundTrip() {
+        return MemoryEntityConverter.toModel(MemoryEntityConverter.toEntity(message));
+    }
+
+    // ========== UserMemory ==========
+
+    @Benchmark
+    public UserMemoryEntity memoryToEntity() {
+        return MemoryEntityConverter.toEntity(memory);
+    }
+
+    @Benchmark
+    public void memoryToModelDecoded(Blackhole blackhole) {
+        UserMemory model = MemoryEntityConverter.toModel(memoryEntity);
+        blackhole.consume(model.getStructuredData().size());
+        blackhole.consume(model.getTags().size());
+        blackhole.consume(model.getMetadata().size());
+    }
+
+    @Benchmark
+    public UserMemory memoryRoundTrip() {
+        return MemoryEntityConverter.toModel(MemoryEntityConverter.toEntity(memory));
+    }
+
+    // ========== UserFact ==========
+
+    @Benchmark
+    public UserFact factRoundTrip() {
+        return MemoryEntityConverter.toModel(MemoryEntityConverter.toEntity(fact));
+    }
+
+    @Benchmark
+    public void factToModelDecoded(Blackhole blackhole) {
+        UserFact model = MemoryEntityConverter.toModel(factEntity);
+        blackhole.consume(model.getTags().size());
+        blackhole.consume(model.getMetadata().size());
+    }
+}
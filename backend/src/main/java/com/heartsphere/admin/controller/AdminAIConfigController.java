@@ -4,6 +4,12 @@ import com.heartsphere.admin.dto.AIModelConfigDTO;
 import com.heartsphere.admin.dto.AIRoutingStrategyDTO;
 import com.heartsphere.admin.service.AIModelConfigService;
 import com.heartsphere.admin.service.AIRoutingStrategyService;
+import com.heartsphere.aiagent.cache.AIResponseCache;
+import com.heartsphere.aiagent.cache.ResponseCacheStats;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.resilience.ProviderGuardStats;
+import com.heartsphere.aiagent.routing.ModelLatencyStats;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +31,15 @@ public class AdminAIConfigController extends BaseAdminController {
     @Autowired
     private AIRoutingStrategyService routingStrategyService;
     
+    @Autowired
+    private ProviderGuardRegistry guardRegistry;
+    
+    @Autowired
+    private AIResponseCache responseCache;
+    
+    @Autowired
+    private ModelLatencyTracker latencyTracker;
+    
     // ========== 模型配置管理 ==========
     
     /**
@@ -175,5 +190,36 @@ public class AdminAIConfigController extends BaseAdminController {
         routingStrategyService.deleteStrategy(id);
         return ResponseEntity.noContent().build();
     }
+    
+    // ========== 运行统计 ==========
+    
+    /**
+     * 获取提供商隔离统计：按提供商和能力返回熔断状态、自适应并发限制、在途请求数以及拒绝次数
+     */
+    @GetMapping("/resilience/stats")
+    public ResponseEntity<List<ProviderGuardStats>> getResilienceStats(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        validateAdmin(authHeader);
+        return ResponseEntity.ok(guardRegistry.stats());
+    }
+    
+    /**
+     * 获取文本生成响应缓存统计：按模型返回命中率，以及命中省下的Token、耗时和费用
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<ResponseCacheStats>> getCacheStats(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        validateAdmin(authHeader);
+        return ResponseEntity.ok(responseCache.stats());
+    }
+    
+    /**
+     * 获取模型实时耗时统计：按模型返回首字耗时（移动平均、p95）和输出速度，即 latency 路由策略的选择依据
+     */
+    @GetMapping("/routing/latency-stats")
+    public ResponseEntity<List<ModelLatencyStats>> getLatencyStats(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        validateAdmin(authHeader);
+        return ResponseEntity.ok(latencyTracker.stats());
+    }
 }
-
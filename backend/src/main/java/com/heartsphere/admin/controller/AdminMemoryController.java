@@ -1,6 +1,8 @@
 package com.heartsphere.admin.controller;
 
 import com.heartsphere.admin.dto.MemorySystemDashboardDTO;
+import com.heartsphere.memory.extraction.ExtractionJobQueue;
+import com.heartsphere.memory.extraction.ExtractionQueueStats;
 import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
 import com.heartsphere.memory.repository.jpa.SessionRepository;
 import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
@@ -29,6 +31,7 @@ public class AdminMemoryController extends BaseAdminController {
     private final UserMemoryRepository userMemoryRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final SessionRepository sessionRepository;
+    private final ExtractionJobQueue extractionJobQueue;
     
     /**
      * 获取记忆系统仪表板数据
@@ -47,6 +50,22 @@ public class AdminMemoryController extends BaseAdminController {
         }
     }
     
+    /**
+     * 获取记忆提取队列的深度与延迟（全局统计）
+     */
+    @GetMapping("/extraction/queue")
+    public ResponseEntity<ExtractionQueueStats> getExtractionQueueStats(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        validateAdmin(authHeader);
+        
+        try {
+            return ResponseEntity.ok(extractionJobQueue.stats());
+        } catch (Exception e) {
+            log.error("获取提取队列状态失败", e);
+            throw new RuntimeException("获取提取队列状态失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 构建仪表板数据
      */
@@ -17,7 +17,7 @@ import java.util.Map;
 public class AIRoutingStrategyDTO {
     private Long id;
     private String capability; // 能力类型：text, image, audio, video
-    private String strategyType; // 策略类型：single, fallback, economy
+    private String strategyType; // 策略类型：single, fallback, economy, latency
     private Map<String, Object> config; // 策略配置
     private Boolean isActive; // 是否启用
     private String description; // 描述
@@ -29,6 +29,7 @@ public class AIRoutingStrategyDTO {
     private String defaultModel; // 单一模式：默认模型
     private List<FallbackConfig> fallbackChain; // 容错模式：降级链
     private EconomyConfig economyConfig; // 经济模式：配置
+    private LatencyConfig latencyConfig; // 最快响应模式：配置
     
     @Data
     @NoArgsConstructor
@@ -47,6 +48,17 @@ public class AIRoutingStrategyDTO {
         private String preferredProvider; // 优先使用的提供商
         private Double maxCostPerToken; // 最大成本限制
     }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LatencyConfig {
+        private Double maxCostPerToken; // 成本上限，超出的模型不参与路由
+        private Double explorationRate; // 分给其他模型的探索流量比例，默认0.05
+        private Integer expectedOutputTokens; // 估算响应耗时时假定的输出Token数，默认200
+        private Long maxP95TtftMs; // 首字耗时p95超过该值的模型视为不健康
+        private Integer minSamples; // 样本数不足该值的模型只通过探索获得流量，默认5
+    }
 }
 
 
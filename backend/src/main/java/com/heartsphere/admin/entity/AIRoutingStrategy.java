@@ -27,7 +27,7 @@ public class AIRoutingStrategy {
     private String capability; // 能力类型：text, image, audio, video
     
     @Column(name = "strategy_type", nullable = false, length = 50)
-    private String strategyType; // 策略类型：single, fallback, economy
+    private String strategyType; // 策略类型：single, fallback, economy, latency
     
     @Column(name = "config_json", columnDefinition = "TEXT")
     private String configJson; // 策略配置（JSON格式）
@@ -87,6 +87,9 @@ public class AIRoutingStrategyService {
             if (dto.getEconomyConfig() != null) {
                 config.put("economyConfig", dto.getEconomyConfig());
             }
+            if (dto.getLatencyConfig() != null) {
+                config.put("latencyConfig", dto.getLatencyConfig());
+            }
             strategy.setConfigJson(objectMapper.writeValueAsString(config));
         } catch (Exception e) {
             log.error("转换路由策略配置失败", e);
@@ -160,6 +163,10 @@ public class AIRoutingStrategyService {
                                     ((Number) economyMap.get("maxCostPerToken")).doubleValue() : null
                     ));
                 }
+                if (config.containsKey("latencyConfig")) {
+                    dto.setLatencyConfig(objectMapper.convertValue(
+                            config.get("latencyConfig"), AIRoutingStrategyDTO.LatencyConfig.class));
+                }
             }
         } catch (Exception e) {
             log.error("解析路由策略配置失败", e);
@@ -6,11 +6,10 @@ import com.heartsphere.aiagent.dto.request.*;
 import com.heartsphere.aiagent.dto.response.*;
 import com.heartsphere.aiagent.exception.AIServiceException;
 import com.heartsphere.aiagent.util.StreamResponseHandler;
+import com.heartsphere.aiagent.util.TextStreams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
@@ -18,7 +17,6 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -152,21 +150,18 @@ public class BigModelAdapter implements ModelAdapter {
     }
     
     @Override
-    public void generateTextStream(TextGenerationRequest request, 
-                                   StreamResponseHandler<TextGenerationResponse> handler) {
-        try {
-            log.info("[BigModelAdapter] 开始流式文本生成 - provider={}, model={}, hasPrompt={}, hasMessages={}, messagesCount={}", 
+    public Flux<TextGenerationResponse> streamText(TextGenerationRequest request) {
+        return Flux.defer(() -> {
+            log.info("[BigModelAdapter] 开始流式文本生成 - provider={}, model={}, hasPrompt={}, hasMessages={}", 
                 getProviderType(), 
                 request.getModel(),
                 request.getPrompt() != null && !request.getPrompt().isEmpty(),
-                request.getMessages() != null,
-                request.getMessages() != null ? request.getMessages().size() : 0);
+                request.getMessages() != null);
             
             // 获取 API key
             String apiKey = getApiKey(request);
             if (apiKey == null || apiKey.isEmpty()) {
-                handler.handle(null, true);
-                throw new AIServiceException("智谱AI API key 未配置");
+                return Flux.error(new AIServiceException("智谱AI API key 未配置"));
             }
             
             // 优先使用请求中的 baseUrl（从配置表获取），如果没有则使用配置文件中的默认值
@@ -175,173 +170,16 @@ public class BigModelAdapter implements ModelAdapter {
                 : baseUrl;
             log.debug("[BigModelAdapter] 流式请求使用baseUrl: {}", effectiveBaseUrl);
             
-            String url = effectiveBaseUrl + "/chat/completions";
-            
-            // 构建请求体（设置 stream=true）
-            Map<String, Object> requestBody = buildBigModelRequest(request);
-            requestBody.put("stream", true);
-            
-            // 使用 WebClient 处理流式响应
-            // 使用 DataBuffer 并按行分割 SSE 数据
-            // 添加重试机制处理连接错误
-            Flux<String> responseFlux = webClient.post()
-                .uri(url)
-                .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToFlux(DataBuffer.class)
-                .retryWhen(reactor.util.retry.Retry.backoff(3, java.time.Duration.ofSeconds(1))
-                    .filter(throwable -> {
-                        // 仅对连接相关的错误进行重试
-                        String message = throwable.getMessage() != null 
-                            ? throwable.getMessage().toLowerCase() 
-                            : "";
-                        boolean shouldRetry = message.contains("connection refused") ||
-                            message.contains("connection reset") ||
-                            message.contains("connection timeout") ||
-                            message.contains("connection closed") ||
-                            message.contains("connection reset by peer") ||
-                            throwable instanceof java.net.ConnectException ||
-                            throwable instanceof java.net.SocketTimeoutException;
-                        
-                        if (shouldRetry) {
-                            log.warn("[BigModelAdapter] 检测到连接错误，将重试: {}", throwable.getMessage());
-                        }
-                        return shouldRetry;
-                    })
-                    .doBeforeRetry(retrySignal -> {
-                        log.warn("[BigModelAdapter] 准备重试流式请求 - 重试次数: {}/3", retrySignal.totalRetries() + 1);
-                    })
-                    .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> {
-                        log.error("[BigModelAdapter] 流式请求重试耗尽，最终失败 - 总重试次数: {}", retrySignal.totalRetries());
-                        return retrySignal.failure();
-                    }))
-                .map(buffer -> {
-                    byte[] bytes = new byte[buffer.readableByteCount()];
-                    buffer.read(bytes);
-                    DataBufferUtils.release(buffer);
-                    return new String(bytes, StandardCharsets.UTF_8);
-                })
-                .flatMap(data -> {
-                    // 按行分割数据，处理可能包含多行的chunk
-                    String[] lines = data.split("\n", -1);
-                    return Flux.fromArray(lines);
-                });
-            
-            // 处理 SSE 流式响应
-            final int[] chunkCount = {0};
-            
-            responseFlux.subscribe(
-                line -> {
-                    try {
-                        String trimmed = line.trim();
-                        
-                        // 跳过空行
-                        if (trimmed.isEmpty()) {
-                            return;
-                        }
-                        
-                        // 处理 SSE 格式：data: {...}
-                        if (trimmed.startsWith("data: ")) {
-                            String jsonStr = trimmed.substring(6).trim(); // 跳过 "data: "
-                            
-                            if ("[DONE]".equals(jsonStr)) {
-                                log.info("[BigModelAdapter] 收到完成信号");
-                                TextGenerationResponse finalResponse = new TextGenerationResponse();
-                                finalResponse.setProvider(getProviderType());
-                                finalResponse.setModel(request.getModel() != null ? request.getModel() : "glm-4.7");
-                                handler.handle(finalResponse, true);
-                                return;
-                            }
-                            
-                            try {
-                                JsonNode json = objectMapper.readTree(jsonStr);
-                                
-                                // 提取内容
-                                JsonNode choices = json.get("choices");
-                                if (choices != null && choices.isArray() && choices.size() > 0) {
-                                    JsonNode choice = choices.get(0);
-                                    JsonNode delta = choice.get("delta");
-                                    if (delta != null && delta.has("content")) {
-                                        String content = delta.get("content").asText();
-                                        TextGenerationResponse chunk = new TextGenerationResponse();
-                                        chunk.setProvider(getProviderType());
-                                        chunk.setModel(request.getModel() != null ? request.getModel() : "glm-4.7");
-                                        chunk.setContent(content);
-                                        chunkCount[0]++;
-                                        if (chunkCount[0] <= 5 || chunkCount[0] % 10 == 0) {
-                                            log.info("[BigModelAdapter] 调用handler.handle - chunkCount={}, contentLength={}, content={}", 
-                                                chunkCount[0], content.length(), 
-                                                content.length() > 50 ? content.substring(0, 50) + "..." : content);
-                                        }
-                                        handler.handle(chunk, false);
-                                    } else {
-                                        if (chunkCount[0] <= 5) {
-                                            log.debug("[BigModelAdapter] delta没有content字段 - chunkCount={}", chunkCount[0]);
-                                        }
-                                    }
-                                    
-                                    // 检查是否完成
-                                    if (choice.has("finish_reason") && choice.get("finish_reason") != null) {
-                                        String finishReason = choice.get("finish_reason").asText();
-                                        if (finishReason != null && !finishReason.isEmpty() && !"null".equals(finishReason)) {
-                                            log.info("[BigModelAdapter] 流式响应完成 - finishReason={}", finishReason);
-                                            
-                                            // 提取 Token 使用量
-                                            TextGenerationResponse finalResponse = new TextGenerationResponse();
-                                            finalResponse.setProvider(getProviderType());
-                                            finalResponse.setModel(request.getModel() != null ? request.getModel() : "glm-4.7");
-                                            finalResponse.setFinishReason(finishReason);
-                                            
-                                            JsonNode usage = json.get("usage");
-                                            if (usage != null) {
-                                                TextGenerationResponse.TokenUsage tokenUsage = new TextGenerationResponse.TokenUsage();
-                                                if (usage.has("prompt_tokens")) {
-                                                    tokenUsage.setInputTokens(usage.get("prompt_tokens").asInt());
-                                                }
-                                                if (usage.has("completion_tokens")) {
-                                                    tokenUsage.setOutputTokens(usage.get("completion_tokens").asInt());
-                                                }
-                                                if (usage.has("total_tokens")) {
-                                                    tokenUsage.setTotalTokens(usage.get("total_tokens").asInt());
-                                                }
-                                                finalResponse.setUsage(tokenUsage);
-                                            }
-                                            
-                                            handler.handle(finalResponse, true);
-                                        }
-                                    }
-                                }
-                            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
-                                log.warn("[BigModelAdapter] 解析JSON失败: {} - jsonStr: {}", e.getMessage(), jsonStr.substring(0, Math.min(200, jsonStr.length())));
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("[BigModelAdapter] 解析SSE数据失败: {} - line: {}", e.getMessage(), line.substring(0, Math.min(100, line.length())));
-                    }
-                },
-                error -> {
-                    log.error("[BigModelAdapter] 流式响应错误", error);
-                    handler.handle(null, true);
-                },
-                () -> {
-                    log.info("[BigModelAdapter] 流式响应完成 - 总chunks={}", chunkCount[0]);
-                    // 如果流完成但没有收到done信号，发送一个完成信号
-                    if (chunkCount[0] > 0) {
-                        TextGenerationResponse finalResponse = new TextGenerationResponse();
-                        finalResponse.setProvider(getProviderType());
-                        finalResponse.setModel(request.getModel() != null ? request.getModel() : "glm-4.7");
-                        handler.handle(finalResponse, true);
-                    }
-                }
-            );
-            
-        } catch (Exception e) {
-            log.error("[BigModelAdapter] 流式文本生成异常", e);
-            handler.handle(null, true);
-            throw new AIServiceException("智谱AI流式文本生成失败: " + e.getMessage(), e);
-        }
+            return OpenAICompatibleStream.stream(webClient, objectMapper, effectiveBaseUrl + "/chat/completions",
+                apiKey, buildBigModelRequest(request), getProviderType(),
+                request.getModel() != null ? request.getModel() : "glm-4.7");
+        });
+    }
+    
+    @Override
+    public void generateTextStream(TextGenerationRequest request, 
+                                   StreamResponseHandler<TextGenerationResponse> handler) {
+        TextStreams.toHandler(streamText(request), handler);
     }
     
     @Override
@@ -0,0 +1,167 @@
+package com.heartsphere.aiagent.adapter;
+
+import com.heartsphere.aiagent.dto.request.*;
+import com.heartsphere.aiagent.dto.response.*;
+import com.heartsphere.aiagent.resilience.AbandonableCall;
+import com.heartsphere.aiagent.resilience.ProviderGuard;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
+import com.heartsphere.aiagent.service.ModelFailover;
+import com.heartsphere.aiagent.util.StreamResponseHandler;
+import com.heartsphere.aiagent.util.TextStreams;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 为适配器的每次模型调用套上提供商隔离舱并统计耗时
+ * 调用前按“提供商:能力”申请许可（熔断或并发已满时直接抛出 ProviderUnavailableException，不发往上游），
+ * 调用结束后按成败与耗时反馈给隔离舱；流式调用以首个片段的耗时计，下游取消订阅只归还许可。
+ * 只有 {@link ModelFailover#isRetryable} 认定的错误计为失败，4xx等请求本身的错误不影响熔断。
+ * 成功的调用同时按模型记入 {@link ModelLatencyTracker}（流式与非流式分开统计），供 latency 路由策略使用。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class GuardedModelAdapter implements ModelAdapter {
+
+    private final ModelAdapter delegate;
+    private final ProviderGuardRegistry guards;
+    private final ModelLatencyTracker latencyTracker;
+
+    GuardedModelAdapter(ModelAdapter delegate, ProviderGuardRegistry guards, ModelLatencyTracker latencyTracker) {
+        this.delegate = delegate;
+        this.guards = guards;
+        this.latencyTracker = latencyTracker;
+    }
+
+    @Override
+    public String getProviderType() {
+        return delegate.getProviderType();
+    }
+
+    @Override
+    public boolean supportsTextGeneration() {
+        return delegate.supportsTextGeneration();
+    }
+
+    @Override
+    public boolean supportsImageGeneration() {
+        return delegate.supportsImageGeneration();
+    }
+
+    @Override
+    public boolean supportsTextToSpeech() {
+        return delegate.supportsTextToSpeech();
+    }
+
+    @Override
+    public boolean supportsSpeechToText() {
+        return delegate.supportsSpeechToText();
+    }
+
+    @Override
+    public boolean supportsVideoGeneration() {
+        return delegate.supportsVideoGeneration();
+    }
+
+    @Override
+    public TextGenerationResponse generateText(TextGenerationRequest request) {
+        return call("text", request.getModel(), () -> delegate.generateText(request));
+    }
+
+    @Override
+    public void generateTextStream(TextGenerationRequest request,
+                                   StreamResponseHandler<TextGenerationResponse> handler) {
+        TextStreams.toHandler(streamText(request), handler);
+    }
+
+    @Override
+    public Flux<TextGenerationResponse> streamText(TextGenerationRequest request) {
+        return Flux.defer(() -> {
+            ProviderGuard.Permit permit = guards.guard(getProviderType(), "text").tryAcquire();
+            AtomicLong firstChunkMs = new AtomicLong(-1);
+            AtomicLong outputChars = new AtomicLong();
+            AtomicInteger outputTokens = new AtomicInteger();
+            return delegate.streamText(request)
+                .doOnNext(chunk -> {
+                    firstChunkMs.compareAndSet(-1, permit.elapsedMs());
+                    if (chunk.getContent() != null) {
+                        outputChars.addAndGet(chunk.getContent().length());
+                    } else if (chunk.getUsage() != null && chunk.getUsage().getOutputTokens() != null) {
+                        outputTokens.set(chunk.getUsage().getOutputTokens());
+                    }
+                })
+                .doOnComplete(() -> {
+                    long totalMs = permit.elapsedMs();
+                    long ttftMs = firstChunkMs.get() >= 0 ? firstChunkMs.get() : totalMs;
+                    permit.success(ttftMs);
+                    // 上游未返回用量时按约3字符/Token估算
+                    int tokens = outputTokens.get() > 0 ? outputTokens.get() : (int) (outputChars.get() / 3);
+                    latencyTracker.record(getProviderType(), request.getModel(), ttftMs, totalMs, tokens);
+                })
+                .doOnError(error -> fail(permit, error))
+                .doFinally(signal -> permit.release());
+        });
+    }
+
+    @Override
+    public ImageGenerationResponse generateImage(ImageGenerationRequest request) {
+        return call("image", request.getModel(), () -> delegate.generateImage(request));
+    }
+
+    @Override
+    public AudioResponse textToSpeech(AudioRequest request) {
+        return call("audio", request.getModel(), () -> delegate.textToSpeech(request));
+    }
+
+    @Override
+    public AudioResponse speechToText(AudioRequest request) {
+        return call("audio", request.getModel(), () -> delegate.speechToText(request));
+    }
+
+    @Override
+    public VideoGenerationResponse generateVideo(VideoGenerationRequest request) {
+        return call("video", request.getModel(), () -> delegate.generateVideo(request));
+    }
+
+    @Override
+    public List<String> getSupportedModels(String capability) {
+        return delegate.getSupportedModels(capability);
+    }
+
+    /**
+     * 在隔离舱许可内执行一次非流式调用，成功时记录整次耗时（非流式调用拿不到首字耗时，不计入首字统计）。
+     * 许可登记到上层的 {@link AbandonableCall}，上层超时放弃后本次调用的结果不再重复计入隔离舱
+     */
+    private <T> T call(String capability, String model, Supplier<T> call) {
+        ProviderGuard.Permit permit = guards.guard(getProviderType(), capability).tryAcquire();
+        AbandonableCall.bind(permit);
+        try {
+            T result = call.get();
+            long latencyMs = permit.elapsedMs();
+            permit.success(latencyMs);
+            latencyTracker.recordCall(getProviderType(), model, latencyMs);
+            return result;
+        } catch (RuntimeException e) {
+            fail(permit, e);
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 只有超时、连接失败、上游5xx或429计为提供商失败；4xx等请求本身的错误只归还许可
+     */
+    private static void fail(ProviderGuard.Permit permit, Throwable error) {
+        if (ModelFailover.isRetryable(error)) {
+            permit.failure();
+        } else {
+            permit.release();
+        }
+    }
+}
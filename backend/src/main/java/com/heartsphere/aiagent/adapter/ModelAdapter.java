@@ -3,6 +3,9 @@ package com.heartsphere.aiagent.adapter;
 import com.heartsphere.aiagent.dto.request.*;
 import com.heartsphere.aiagent.dto.response.*;
 import com.heartsphere.aiagent.util.StreamResponseHandler;
+import com.heartsphere.aiagent.util.TextStreams;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 
@@ -61,6 +64,19 @@ public interface ModelAdapter {
     void generateTextStream(TextGenerationRequest request, 
                            StreamResponseHandler<TextGenerationResponse> handler);
     
+    /**
+     * 流式生成文本（响应式）
+     * 订阅时才发起调用，取消订阅即取消上游请求；片段约定见 {@link TextStreams}。
+     * 默认实现包装 {@link #generateTextStream}，在 boundedElastic 线程上发起调用以免阻塞订阅线程；
+     * 基于 WebClient 的适配器应覆盖为非阻塞实现。
+     * @param request 文本生成请求
+     * @return 文本片段流
+     */
+    default Flux<TextGenerationResponse> streamText(TextGenerationRequest request) {
+        return TextStreams.fromHandler(handler -> generateTextStream(request, handler))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
     /**
      * 生成图片
      * @param request 图片生成请求
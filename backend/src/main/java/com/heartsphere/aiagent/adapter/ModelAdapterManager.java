@@ -1,5 +1,7 @@
 package com.heartsphere.aiagent.adapter;
 
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -10,7 +12,7 @@ import java.util.stream.Collectors;
 
 /**
  * 模型适配器管理器
- * 管理所有模型适配器实例
+ * 管理所有模型适配器实例，每个适配器都套上提供商隔离舱（见 {@link GuardedModelAdapter}）
  * 
  * @author HeartSphere
  * @version 1.0
@@ -30,15 +32,27 @@ public class ModelAdapterManager {
     /**
      * 构造函数，自动注入所有适配器
      */
-    public ModelAdapterManager(List<ModelAdapter> adapterList) {
+    public ModelAdapterManager(List<ModelAdapter> adapterList, ProviderGuardRegistry guardRegistry,
+                               ModelLatencyTracker latencyTracker) {
         for (ModelAdapter adapter : adapterList) {
             String providerType = adapter.getProviderType();
-            adapters.put(providerType, adapter);
+            adapters.put(providerType, new GuardedModelAdapter(adapter, guardRegistry, latencyTracker));
             log.info("注册模型适配器: provider={}", providerType);
         }
         log.info("共注册 {} 个模型适配器", adapters.size());
     }
     
+    /**
+     * 提供商的规范名称（小写并解析别名），与适配器注册名一致
+     */
+    public static String canonicalProvider(String provider) {
+        if (provider == null) {
+            return null;
+        }
+        String normalizedProvider = provider.toLowerCase();
+        return PROVIDER_ALIASES.getOrDefault(normalizedProvider, normalizedProvider);
+    }
+    
     /**
      * 获取适配器
      * @param provider 提供商名称（支持别名，不区分大小写）
@@ -0,0 +1,153 @@
+package com.heartsphere.aiagent.adapter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAI兼容 /chat/completions 接口的流式调用（DashScope、豆包、智谱共用）
+ * 按SSE事件解码响应，跨网络包的事件也能完整拼接；输出内容片段和携带 finishReason、用量的结束片段，
+ * 收到 [DONE] 即完成。订阅时才发起请求，下游取消订阅时连接随之关闭。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+final class OpenAICompatibleStream {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+        new ParameterizedTypeReference<>() {
+        };
+
+    private OpenAICompatibleStream() {
+    }
+
+    /**
+     * 发起流式请求
+     *
+     * @param provider 提供商（用于片段和日志）
+     * @param model 模型（用于片段）
+     * @param requestBody 请求体，会设置 stream=true
+     */
+    static Flux<TextGenerationResponse> stream(WebClient webClient, ObjectMapper objectMapper, String url,
+                                               String apiKey, Map<String, Object> requestBody,
+                                               String provider, String model) {
+        requestBody.put("stream", true);
+        return webClient.post()
+            .uri(url)
+            .header("Authorization", "Bearer " + apiKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .bodyValue(requestBody)
+            .retrieve()
+            .bodyToFlux(SSE_TYPE)
+            .retryWhen(connectionRetry(provider))
+            .mapNotNull(ServerSentEvent::data)
+            .map(String::trim)
+            .takeWhile(data -> !"[DONE]".equals(data))
+            .concatMapIterable(data -> parse(objectMapper, data, provider, model));
+    }
+
+    /**
+     * 仅对连接相关的错误重试（此时上游尚未输出片段）
+     */
+    private static Retry connectionRetry(String provider) {
+        return Retry.backoff(3, Duration.ofSeconds(1))
+            .filter(throwable -> {
+                String message = throwable.getMessage() != null
+                    ? throwable.getMessage().toLowerCase()
+                    : "";
+                boolean shouldRetry = message.contains("connection refused") ||
+                    message.contains("connection reset") ||
+                    message.contains("connection timeout") ||
+                    message.contains("connection closed") ||
+                    throwable instanceof java.net.ConnectException ||
+                    throwable instanceof java.net.SocketTimeoutException;
+                if (shouldRetry) {
+                    log.warn("[{}] 检测到连接错误，将重试: {}", provider, throwable.getMessage());
+                }
+                return shouldRetry;
+            })
+            .doBeforeRetry(retrySignal ->
+                log.warn("[{}] 准备重试流式请求 - 重试次数: {}/3", provider, retrySignal.totalRetries() + 1))
+            .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> {
+                log.error("[{}] 流式请求重试耗尽，最终失败 - 总重试次数: {}", provider, retrySignal.totalRetries());
+                return retrySignal.failure();
+            });
+    }
+
+    /**
+     * 解析一个SSE事件的data：choices[0].delta.content 为内容片段；
+     * finish_reason 或 usage（部分提供商在 choices 为空的事件中单独下发）为结束片段
+     */
+    static List<TextGenerationResponse> parse(ObjectMapper objectMapper, String data,
+                                              String provider, String model) {
+        List<TextGenerationResponse> chunks = new ArrayList<>(2);
+        if (data.isEmpty()) {
+            return chunks;
+        }
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(data);
+        } catch (JsonProcessingException e) {
+            log.warn("[{}] 解析JSON失败: {} - data: {}", provider, e.getMessage(),
+                data.substring(0, Math.min(200, data.length())));
+            return chunks;
+        }
+
+        String finishReason = null;
+        JsonNode choices = json.get("choices");
+        if (choices != null && choices.isArray() && !choices.isEmpty()) {
+            JsonNode choice = choices.get(0);
+            JsonNode content = choice.path("delta").path("content");
+            if (content.isTextual() && !content.asText().isEmpty()) {
+                TextGenerationResponse chunk = new TextGenerationResponse();
+                chunk.setProvider(provider);
+                chunk.setModel(model);
+                chunk.setContent(content.asText());
+                chunks.add(chunk);
+            }
+            JsonNode finish = choice.get("finish_reason");
+            if (finish != null && finish.isTextual() && !finish.asText().isEmpty()) {
+                finishReason = finish.asText();
+            }
+        }
+
+        JsonNode usage = json.get("usage");
+        boolean hasUsage = usage != null && usage.isObject();
+        if (finishReason != null || hasUsage) {
+            TextGenerationResponse end = new TextGenerationResponse();
+            end.setProvider(provider);
+            end.setModel(model);
+            end.setFinishReason(finishReason);
+            if (hasUsage) {
+                TextGenerationResponse.TokenUsage tokenUsage = new TextGenerationResponse.TokenUsage();
+                if (usage.has("prompt_tokens")) {
+                    tokenUsage.setInputTokens(usage.get("prompt_tokens").asInt());
+                }
+                if (usage.has("completion_tokens")) {
+                    tokenUsage.setOutputTokens(usage.get("completion_tokens").asInt());
+                }
+                if (usage.has("total_tokens")) {
+                    tokenUsage.setTotalTokens(usage.get("total_tokens").asInt());
+                }
+                end.setUsage(tokenUsage);
+            }
+            chunks.add(end);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,350 @@
+package com.heartsphere.aiagent.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 文本生成响应缓存
+ * 以（provider, model, 系统指令, 提示词, 对话消息, 温度, 最大Token数）的规范化SHA-256为键缓存模型输出，
+ * 命中时不再调用模型。内存层按估算字节数限制容量、写入后固定时间过期；
+ * 可选的磁盘层每条响应一个JSON文件，内存未命中时读取并回填内存，定期清理过期和超容量的文件。
+ * 按模型统计命中率以及命中省下的Token、耗时和费用。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class AIResponseCache {
+
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final String DISK_SUFFIX = ".json";
+
+    private final AIProperties.ResponseCache config;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedResponse> cache;
+    private final Map<String, ModelCounters> counters = new ConcurrentHashMap<>();
+
+    public AIResponseCache(AIProperties aiProperties, ObjectMapper objectMapper) {
+        this.config = aiProperties.getResponseCache();
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(config.getMaxBytes())
+            .weigher((String key, CachedResponse response) -> response.weight())
+            .expireAfterWrite(Duration.ofSeconds(config.getTtlSeconds()))
+            .build();
+    }
+
+    /**
+     * 请求是否使用缓存：显式指定cacheable时以其为准，否则温度为0时缓存
+     */
+    public boolean isCacheable(TextGenerationRequest request) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        if (request.getCacheable() != null) {
+            return request.getCacheable();
+        }
+        return config.isCacheZeroTemperature()
+            && request.getTemperature() != null && request.getTemperature() == 0.0;
+    }
+
+    /**
+     * 计算请求的缓存键；apiKey、baseUrl等不影响输出的字段不参与
+     */
+    public static String keyOf(TextGenerationRequest request) {
+        return RequestFingerprint.of(request);
+    }
+
+    /**
+     * 查询缓存，命中时返回标记为cached的新响应对象
+     *
+     * @param key 缓存键
+     * @param model 请求的模型，用于统计
+     * @return 命中的响应，未命中返回null
+     */
+    public TextGenerationResponse get(String key, String model) {
+        ModelCounters modelCounters = counters(model);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null && config.getDisk().isEnabled()) {
+            cached = readDisk(key);
+            if (cached != null) {
+                cache.put(key, cached);
+                modelCounters.diskHits.increment();
+            }
+        }
+        if (cached == null) {
+            modelCounters.misses.increment();
+            return null;
+        }
+        modelCounters.hits.increment();
+        modelCounters.savedInputTokens.add(cached.inputTokens() != null ? cached.inputTokens() : 0);
+        modelCounters.savedOutputTokens.add(cached.outputTokens() != null ? cached.outputTokens() : 0);
+        modelCounters.savedLatencyMs.add(cached.latencyMs());
+        return cached.toResponse();
+    }
+
+    /**
+     * 缓存一次模型生成的结果；空内容和超过单条上限的响应不缓存
+     *
+     * @param latencyMs 本次模型调用耗时，命中时计入省下的耗时
+     */
+    public void put(String key, TextGenerationResponse response, long latencyMs) {
+        if (response == null || response.getContent() == null || response.getContent().isEmpty()) {
+            return;
+        }
+        TextGenerationResponse.TokenUsage usage = response.getUsage();
+        long now = System.currentTimeMillis();
+        CachedResponse cached = new CachedResponse(
+            response.getContent(), response.getProvider(), response.getModel(), response.getFinishReason(),
+            usage != null ? usage.getInputTokens() : null,
+            usage != null ? usage.getOutputTokens() : null,
+            usage != null ? usage.getTotalTokens() : null,
+            latencyMs, now + config.getTtlSeconds() * 1000);
+        if (cached.weight() > config.getMaxEntryBytes()) {
+            return;
+        }
+        cache.put(key, cached);
+        if (config.getDisk().isEnabled()) {
+            writeDisk(key, cached);
+        }
+    }
+
+    /**
+     * 记录一次命中省下的费用（由计费切面按定价估算后回报）
+     */
+    public void recordSavedCost(String model, BigDecimal cost) {
+        if (cost != null && cost.signum() > 0) {
+            counters(model).savedCost.accumulateAndGet(cost, BigDecimal::add);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // ========== 统计 ==========
+
+    /**
+     * 各模型的统计快照
+     */
+    public List<ResponseCacheStats> stats() {
+        List<ResponseCacheStats> snapshot = new ArrayList<>(counters.size());
+        counters.forEach((model, modelCounters) -> snapshot.add(modelCounters.snapshot(model)));
+        snapshot.sort(Comparator.comparing(ResponseCacheStats::getModel));
+        return snapshot;
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 定期按模型输出命中率与节省量
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.response-cache.stats-interval-ms:300000}")
+    public void logStats() {
+        for (ResponseCacheStats stats : stats()) {
+            if (stats.getHits() + stats.getMisses() == 0) {
+                continue;
+            }
+            log.info("AI响应缓存: model={}, hits={}, misses={}, hitRate={}, diskHits={}, savedTokens={}/{}, savedLatencyMs={}, savedCost={}",
+                stats.getModel(), stats.getHits(), stats.getMisses(), String.format("%.3f", stats.getHitRate()),
+                stats.getDiskHits(), stats.getSavedInputTokens(), stats.getSavedOutputTokens(),
+                stats.getSavedLatencyMs(), stats.getSavedCost());
+        }
+    }
+
+    // ========== 磁盘缓存 ==========
+
+    /**
+     * 删除过期文件，总大小超出上限时再按写入时间从旧到新删除
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.response-cache.disk.cleanup-interval-ms:600000}")
+    public void cleanUpDisk() {
+        if (!config.getDisk().isEnabled()) {
+            return;
+        }
+        Path root = diskRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - config.getTtlSeconds() * 1000;
+        List<DiskFile> remaining = new ArrayList<>();
+        long totalBytes = 0;
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(path -> path.toString().endsWith(DISK_SUFFIX))::iterator) {
+                try {
+                    long modified = Files.getLastModifiedTime(file).toMillis();
+                    if (modified < expireBefore) {
+                        Files.deleteIfExists(file);
+                        deleted++;
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    remaining.add(new DiskFile(file, modified, size));
+                    totalBytes += size;
+                } catch (IOException e) {
+                    log.debug("读取AI响应缓存文件失败: {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理AI响应磁盘缓存失败: {}", root, e);
+            return;
+        }
+        if (totalBytes > config.getDisk().getMaxBytes()) {
+            remaining.sort(Comparator.comparingLong(DiskFile::modified));
+            for (DiskFile file : remaining) {
+                if (totalBytes <= config.getDisk().getMaxBytes()) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(file.path());
+                    totalBytes -= file.size();
+                    deleted++;
+                } catch (IOException e) {
+                    log.debug("删除AI响应缓存文件失败: {}", file.path(), e);
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("清理AI响应磁盘缓存: deleted={}, remainingBytes={}", deleted, totalBytes);
+        }
+    }
+
+    private CachedResponse readDisk(String key) {
+        Path file = diskPath(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            CachedResponse cached = objectMapper.readValue(file.toFile(), CachedResponse.class);
+            if (cached.content() == null || cached.expiresAt() <= System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return cached;
+        } catch (IOException e) {
+            log.warn("读取AI响应磁盘缓存失败: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换，并发读取不会看到半个文件
+     */
+    private void writeDisk(String key, CachedResponse cached) {
+        Path file = diskPath(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                objectMapper.writeValue(temp.toFile(), cached);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("写入AI响应磁盘缓存失败: {}", file, e);
+        }
+    }
+
+    private Path diskRoot() {
+        return Paths.get(config.getDisk().getDirectory());
+    }
+
+    /**
+     * 按键的前两位分子目录，避免单个目录下文件过多
+     */
+    private Path diskPath(String key) {
+        return diskRoot().resolve(key.substring(0, 2)).resolve(key + DISK_SUFFIX);
+    }
+
+    private ModelCounters counters(String model) {
+        return counters.computeIfAbsent(model != null ? model : "unknown", key -> new ModelCounters());
+    }
+
+    /**
+     * 缓存的模型输出
+     */
+    record CachedResponse(String content, String provider, String model, String finishReason,
+                          Integer inputTokens, Integer outputTokens, Integer totalTokens,
+                          long latencyMs, long expiresAt) {
+
+        /**
+         * 估算占用字节数（字符串按UTF-16计）
+         */
+        int weight() {
+            long bytes = ENTRY_OVERHEAD + (content != null ? 2L * content.length() : 0);
+            bytes += finishReason != null ? 2L * finishReason.length() : 0;
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+
+        TextGenerationResponse toResponse() {
+            TextGenerationResponse response = new TextGenerationResponse();
+            response.setContent(content);
+            response.setProvider(provider);
+            response.setModel(model);
+            response.setFinishReason(finishReason);
+            if (inputTokens != null || outputTokens != null || totalTokens != null) {
+                TextGenerationResponse.TokenUsage usage = new TextGenerationResponse.TokenUsage();
+                usage.setInputTokens(inputTokens);
+                usage.setOutputTokens(outputTokens);
+                usage.setTotalTokens(totalTokens);
+                response.setUsage(usage);
+            }
+            response.setCached(true);
+            return response;
+        }
+    }
+
+    private record DiskFile(Path path, long modified, long size) {
+    }
+
+    private static class ModelCounters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder savedInputTokens = new LongAdder();
+        private final LongAdder savedOutputTokens = new LongAdder();
+        private final LongAdder savedLatencyMs = new LongAdder();
+        private final AtomicReference<BigDecimal> savedCost = new AtomicReference<>(BigDecimal.ZERO);
+
+        private ResponseCacheStats snapshot(String model) {
+            ResponseCacheStats stats = new ResponseCacheStats();
+            stats.setModel(model);
+            stats.setHits(hits.sum());
+            stats.setMisses(misses.sum());
+            stats.setDiskHits(diskHits.sum());
+            stats.setSavedInputTokens(savedInputTokens.sum());
+            stats.setSavedOutputTokens(savedOutputTokens.sum());
+            stats.setSavedLatencyMs(savedLatencyMs.sum());
+            stats.setSavedCost(savedCost.get());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.heartsphere.aiagent.cache;
+
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.response.ImageGenerationResponse;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 进行中的相同AI请求合并（single-flight）
+ * 以 {@link RequestFingerprint} 为键，同一时刻相同的请求只有首个请求（领头方）调用模型，
+ * 其余请求（跟随方）等待并收到结果副本；流式请求的跟随方先重放已输出的片段，再实时接收后续片段。
+ * 合并只发生在模型调用这一层，每个调用方仍各自经过计费切面，按收到的用量分别计费。
+ * 领头方失败时跟随方收到同一异常；跟随方等待超时则自行调用模型。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class InFlightRequestCoalescer {
+
+    private final AIProperties.Coalescing config;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SharedStream> streams = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder streamLeaders = new LongAdder();
+    private final LongAdder streamFollowers = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public InFlightRequestCoalescer(AIProperties aiProperties) {
+        this.config = aiProperties.getCoalescing();
+    }
+
+    // ========== 同步请求 ==========
+
+    public TextGenerationResponse generateText(String key, Supplier<TextGenerationResponse> call) {
+        return execute("text:" + key, call, InFlightRequestCoalescer::copy);
+    }
+
+    public ImageGenerationResponse generateImage(String key, Supplier<ImageGenerationResponse> call) {
+        return execute("image:" + key, call, InFlightRequestCoalescer::copy);
+    }
+
+    /**
+     * 执行或加入进行中的相同调用
+     *
+     * @param key 请求键
+     * @param call 实际的模型调用
+     * @param copier 为跟随方复制结果，调用方修改返回值互不影响
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Supplier<T> call, UnaryOperator<T> copier) {
+        if (!config.isEnabled()) {
+            return call.get();
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, flight);
+        if (existing == null) {
+            leaders.increment();
+            try {
+                T result = call.get();
+                calls.remove(key, flight);
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                calls.remove(key, flight);
+                flight.completeExceptionally(e);
+                throw e;
+            }
+        }
+        followers.increment();
+        try {
+            T result = (T) existing.get(config.getWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+            return result != null ? copier.apply(result) : null;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("等待相同AI请求结果超时，自行调用模型: key={}", key);
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待相同AI请求结果被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // ========== 流式请求 ==========
+
+    /**
+     * 发起或加入进行中的相同流式请求
+     * 上游调用在首个订阅时发起，以replay共享给所有订阅方，后加入方先重放已输出的片段；
+     * 所有订阅方都取消后上游随之取消。
+     *
+     * @param key 请求键
+     * @param call 创建实际的流式调用
+     */
+    public Flux<TextGenerationResponse> streamText(String key, Supplier<Flux<TextGenerationResponse>> call) {
+        if (!config.isEnabled()) {
+            return Flux.defer(call);
+        }
+        return Flux.defer(() -> {
+            while (true) {
+                SharedStream shared = new SharedStream(key, call);
+                SharedStream existing = streams.putIfAbsent(key, shared);
+                if (existing == null) {
+                    streamLeaders.increment();
+                    return shared.flux.map(InFlightRequestCoalescer::copy);
+                }
+                if (existing.isJoinable()) {
+                    streamFollowers.increment();
+                    return existing.flux.map(InFlightRequestCoalescer::copy);
+                }
+                // 已结束或重放片段过多：移除后重试，由当前请求发起新的调用
+                streams.remove(key, existing);
+            }
+        });
+    }
+
+    // ========== 统计 ==========
+
+    public long inFlight() {
+        return calls.size() + streams.size();
+    }
+
+    /**
+     * 定期输出合并次数
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.coalescing.stats-interval-ms:300000}")
+    public void logStats() {
+        long coalesced = followers.sum() + streamFollowers.sum();
+        if (coalesced == 0) {
+            return;
+        }
+        log.info("AI请求合并: leaders={}, followers={}, streamLeaders={}, streamFollowers={}, timeouts={}, inFlight={}",
+            leaders.sum(), followers.sum(), streamLeaders.sum(), streamFollowers.sum(), timeouts.sum(), inFlight());
+    }
+
+    /**
+     * 一次进行中的流式调用；重放缓冲为可加入片段数的两倍，加入判断与订阅之间新到的片段也不会丢失
+     */
+    private class SharedStream {
+        private final AtomicInteger emitted = new AtomicInteger();
+        private volatile boolean finished;
+        private final Flux<TextGenerationResponse> flux;
+
+        private SharedStream(String key, Supplier<Flux<TextGenerationResponse>> call) {
+            this.flux = Flux.defer(call)
+                .doOnNext(chunk -> emitted.incrementAndGet())
+                .doFinally(signal -> {
+                    finished = true;
+                    streams.remove(key, this);
+                })
+                .replay(config.getMaxStreamReplayChunks() * 2)
+                .refCount();
+        }
+
+        private boolean isJoinable() {
+            return !finished && emitted.get() < config.getMaxStreamReplayChunks();
+        }
+    }
+
+    // ========== 结果复制 ==========
+
+    static TextGenerationResponse copy(TextGenerationResponse source) {
+        TextGenerationResponse target = new TextGenerationResponse();
+        target.setContent(source.getContent());
+        target.setProvider(source.getProvider());
+        target.setModel(source.getModel());
+        target.setFinishReason(source.getFinishReason());
+        target.setCached(source.getCached());
+        if (source.getUsage() != null) {
+            TextGenerationResponse.TokenUsage usage = new TextGenerationResponse.TokenUsage();
+            usage.setInputTokens(source.getUsage().getInputTokens());
+            usage.setOutputTokens(source.getUsage().getOutputTokens());
+            usage.setTotalTokens(source.getUsage().getTotalTokens());
+            target.setUsage(usage);
+        }
+        return target;
+    }
+
+    static ImageGenerationResponse copy(ImageGenerationResponse source) {
+        ImageGenerationResponse target = new ImageGenerationResponse();
+        target.setProvider(source.getProvider());
+        target.setModel(source.getModel());
+        if (source.getImages() != null) {
+            List<ImageGenerationResponse.Image> images = new ArrayList<>(source.getImages().size());
+            for (ImageGenerationResponse.Image image : source.getImages()) {
+                ImageGenerationResponse.Image copy = new ImageGenerationResponse.Image();
+                copy.setUrl(image.getUrl());
+                copy.setBase64(image.getBase64());
+                images.add(copy);
+            }
+            target.setImages(images);
+        }
+        if (source.getUsage() != null) {
+            ImageGenerationResponse.Usage usage = new ImageGenerationResponse.Usage();
+            usage.setImagesGenerated(source.getUsage().getImagesGenerated());
+            target.setUsage(usage);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,93 @@
+package com.heartsphere.aiagent.cache;
+
+import com.heartsphere.aiagent.dto.request.ImageGenerationRequest;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * AI请求的规范化指纹（SHA-256十六进制）
+ * 只包含影响模型输出的字段，apiKey、baseUrl、stream等不参与；
+ * 各字段以长度前缀写入摘要，区分null与空串，字段边界移动不会产生相同的指纹。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class RequestFingerprint {
+
+    private static final byte TEXT = 'T';
+    private static final byte IMAGE = 'I';
+
+    private RequestFingerprint() {
+    }
+
+    /**
+     * 文本生成请求：provider, model, 系统指令, 提示词, 对话消息, 温度, 最大Token数
+     */
+    public static String of(TextGenerationRequest request) {
+        MessageDigest digest = sha256();
+        digest.update(TEXT);
+        update(digest, request.getProvider());
+        update(digest, request.getModel());
+        update(digest, request.getSystemInstruction());
+        update(digest, request.getPrompt());
+        List<TextGenerationRequest.Message> messages = request.getMessages();
+        update(digest, messages != null ? String.valueOf(messages.size()) : null);
+        if (messages != null) {
+            for (TextGenerationRequest.Message message : messages) {
+                update(digest, message.getRole());
+                update(digest, message.getContent());
+            }
+        }
+        update(digest, request.getTemperature());
+        update(digest, request.getMaxTokens());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 图片生成请求：provider, model, 提示词, 反向提示词, 尺寸, 宽高比, 数量, 风格
+     */
+    public static String of(ImageGenerationRequest request) {
+        MessageDigest digest = sha256();
+        digest.update(IMAGE);
+        update(digest, request.getProvider());
+        update(digest, request.getModel());
+        update(digest, request.getPrompt());
+        update(digest, request.getNegativePrompt());
+        update(digest, request.getWidth());
+        update(digest, request.getHeight());
+        update(digest, request.getAspectRatio());
+        update(digest, request.getNumberOfImages());
+        update(digest, request.getStyle());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, Object value) {
+        update(digest, value != null ? value.toString() : null);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(new byte[] {
+            (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length
+        });
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,40 @@
+package com.heartsphere.aiagent.cache;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 单个模型的响应缓存统计快照
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+public class ResponseCacheStats {
+
+    private String model;
+
+    private long hits;
+
+    private long misses;
+
+    /** 其中由磁盘缓存命中的次数 */
+    private long diskHits;
+
+    /** 命中省下的输入/输出Token（按原始生成时的用量） */
+    private long savedInputTokens;
+
+    private long savedOutputTokens;
+
+    /** 命中省下的模型调用耗时（毫秒，按原始生成耗时） */
+    private long savedLatencyMs;
+
+    /** 命中省下的费用（按计费定价估算，仅统计走计费的调用） */
+    private BigDecimal savedCost;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+}
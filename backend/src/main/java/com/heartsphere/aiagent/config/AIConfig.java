@@ -15,8 +15,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * AI服务配置类
  * 配置HTTP客户端连接池、超时和重试机制
@@ -76,6 +80,24 @@ public class AIConfig {
         
         return restTemplate;
     }
+    
+    /**
+     * 容错模式下执行模型调用的线程池
+     * 调用在该线程池上执行，调用方按截止时间等待，超时即切换到降级链中的下一个模型；
+     * 不排队，线程用尽时拒绝执行（由 ModelFailover 转为可重试的 ProviderUnavailableException 快速失败），
+     * 不在调用线程上执行，保证每次调用都受截止时间约束
+     */
+    @Bean(name = "aiFailoverExecutor")
+    public Executor aiFailoverExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);           // 核心线程数
+        executor.setMaxPoolSize(64);           // 最大线程数
+        executor.setQueueCapacity(0);          // 不排队
+        executor.setThreadNamePrefix("ai-failover-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
 }
 
 
@@ -0,0 +1,347 @@
+package com.heartsphere.aiagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI服务配置属性
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "heartsphere.ai")
+public class AIProperties {
+
+    /**
+     * 文本生成响应缓存配置
+     */
+    private ResponseCache responseCache = new ResponseCache();
+
+    /**
+     * 相同请求合并配置
+     */
+    private Coalescing coalescing = new Coalescing();
+
+    /**
+     * 流式响应配置
+     */
+    private Streaming streaming = new Streaming();
+
+    /**
+     * 按提供商与能力隔离的并发限制与熔断配置
+     */
+    private Resilience resilience = new Resilience();
+
+    /**
+     * 按实时耗时路由（latency 路由策略）的耗时统计配置
+     */
+    private LatencyRouting latencyRouting = new LatencyRouting();
+
+    /**
+     * 容错模式（fallback 路由策略）的调用时故障转移配置
+     */
+    private Failover failover = new Failover();
+
+    /**
+     * 文本生成响应缓存
+     */
+    @Data
+    public static class ResponseCache {
+
+        /**
+         * 是否启用响应缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 未显式指定cacheable的请求，温度为0时是否自动缓存
+         */
+        private boolean cacheZeroTemperature = true;
+
+        /**
+         * 内存缓存按估算字节数的容量上限
+         */
+        private long maxBytes = 32L * 1024 * 1024;
+
+        /**
+         * 缓存条目存活时间（秒），自写入起计算
+         */
+        private long ttlSeconds = 3600;
+
+        /**
+         * 单条响应超过该字节数时不缓存
+         */
+        private int maxEntryBytes = 256 * 1024;
+
+        /**
+         * 命中率与节省统计的日志输出间隔（毫秒）
+         */
+        private long statsIntervalMs = 300000;
+
+        /**
+         * 磁盘缓存配置
+         */
+        private Disk disk = new Disk();
+
+        /**
+         * 磁盘缓存：内存淘汰或重启后仍可命中，条目过期时间与内存缓存一致
+         */
+        @Data
+        public static class Disk {
+
+            /**
+             * 是否启用磁盘缓存
+             */
+            private boolean enabled = false;
+
+            /**
+             * 缓存目录
+             */
+            private String directory = "data/ai-response-cache";
+
+            /**
+             * 磁盘缓存容量上限（字节），清理时超出部分按写入时间从旧到新删除
+             */
+            private long maxBytes = 256L * 1024 * 1024;
+
+            /**
+             * 过期与超容量清理间隔（毫秒）
+             */
+            private long cleanupIntervalMs = 600000;
+        }
+    }
+
+    /**
+     * 相同请求合并：并发的相同请求只向模型发起一次调用，结果分发给所有等待方
+     */
+    @Data
+    public static class Coalescing {
+
+        /**
+         * 是否启用请求合并
+         */
+        private boolean enabled = true;
+
+        /**
+         * 跟随方等待首个请求结果的最长时间（毫秒），超时后自行调用模型
+         */
+        private long waitTimeoutMs = 120000;
+
+        /**
+         * 流式请求已输出该数量的片段后不再接受新的加入方（重放缓冲保留两倍片段）
+         */
+        private int maxStreamReplayChunks = 4096;
+
+        /**
+         * 合并统计的日志输出间隔（毫秒）
+         */
+        private long statsIntervalMs = 300000;
+    }
+
+    /**
+     * 流式响应：SSE直接由Flux写出，不为每个流占用线程
+     */
+    @Data
+    public static class Streaming {
+
+        /**
+         * 首个片段前及两个片段之间的最长等待时间（毫秒），超时后发送错误事件并取消上游请求
+         */
+        private long idleTimeoutMs = 120000;
+    }
+
+    /**
+     * 提供商隔离：每个提供商的每种能力（如DashScope文本、DashScope图片）各自限制并发、各自熔断，
+     * 一个提供商变慢或故障不会占满共享的HTTP连接池而拖垮其他提供商。
+     * 下列为各能力的默认值，管理后台模型配置的modelParams中的resilience对象可按提供商覆盖
+     */
+    @Data
+    public static class Resilience {
+
+        private Guard text = new Guard(50, 10);
+
+        private Guard image = new Guard(10, 4);
+
+        private Guard audio = new Guard(20, 5);
+
+        private Guard video = new Guard(5, 2);
+
+        /**
+         * 从管理后台模型配置重新加载覆盖值的间隔（毫秒）
+         */
+        private long refreshIntervalMs = 60000;
+
+        /**
+         * 隔离统计的日志输出间隔（毫秒）
+         */
+        private long statsIntervalMs = 300000;
+
+        public Guard forCapability(String capability) {
+            return switch (capability) {
+                case "image" -> image;
+                case "audio" -> audio;
+                case "video" -> video;
+                default -> text;
+            };
+        }
+    }
+
+    /**
+     * 单个提供商单种能力的隔离参数
+     */
+    @Data
+    public static class Guard {
+
+        /**
+         * 是否启用并发限制与熔断
+         */
+        private boolean enabled = true;
+
+        /**
+         * 并发上限（隔离舱大小），自适应并发限制不会超过该值
+         */
+        private int maxConcurrency;
+
+        /**
+         * 自适应并发限制的初始值
+         */
+        private int initialConcurrency;
+
+        /**
+         * 自适应并发限制的下限
+         */
+        private int minConcurrency = 1;
+
+        /**
+         * 单次耗时超过基线耗时的倍数时视为拥塞，按backoffRatio收缩并发限制
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * 失败或拥塞时并发限制的收缩比例
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * 熔断统计的滑动窗口大小（最近调用次数）
+         */
+        private int slidingWindowSize = 20;
+
+        /**
+         * 窗口内至少有该数量的调用才计算失败率
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * 失败率达到该值时熔断
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * 熔断持续时间（毫秒），之后进入半开状态放行探测请求
+         */
+        private long openDurationMs = 30000;
+
+        /**
+         * 半开状态放行的探测请求数，全部成功后恢复
+         */
+        private int halfOpenProbes = 3;
+
+        public Guard() {
+        }
+
+        public Guard(int maxConcurrency, int initialConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            this.initialConcurrency = initialConcurrency;
+        }
+    }
+
+    /**
+     * 按模型统计首字耗时（TTFT）与输出速度，供 latency 路由策略选择当前最快的模型；
+     * 路由相关的成本上限、探索比例等在管理后台的路由策略中配置
+     */
+    @Data
+    public static class LatencyRouting {
+
+        /**
+         * 每个模型保留的最近样本数（用于计算p95）
+         */
+        private int sampleWindow = 100;
+
+        /**
+         * 首字耗时样本的有效期（毫秒），过期的样本不再计入p95，使因p95超标被排除的模型能恢复；0表示不过期
+         */
+        private long sampleTtlMs = 600000;
+
+        /**
+         * 指数移动平均的权重，越大越偏向最近的调用
+         */
+        private double ewmaAlpha = 0.2;
+
+        /**
+         * 耗时统计的日志输出间隔（毫秒）
+         */
+        private long statsIntervalMs = 300000;
+    }
+
+    /**
+     * 故障转移：容错模式下模型调用超时、5xx、限流或提供商熔断时，在截止时间内依次改用降级链中的后续模型；
+     * 流式调用只在尚未输出任何内容时转移
+     */
+    @Data
+    public static class Failover {
+
+        /**
+         * 是否启用故障转移
+         */
+        private boolean enabled = true;
+
+        private Budget text = new Budget(60000, 30000);
+
+        private Budget image = new Budget(180000, 120000);
+
+        /**
+         * 流式调用等待首个片段的超时（毫秒），超时且有后续模型时转移
+         */
+        private long streamFirstChunkTimeoutMs = 15000;
+
+        /**
+         * 剩余时间不足该值（毫秒）时不再尝试下一个模型
+         */
+        private long minAttemptMs = 1000;
+
+        /**
+         * 每个提供商最多保留的超时未返回调用数；超时的同步调用无法中断，仍占用故障转移线程，
+         * 达到该值后不再向该提供商发起新调用，直接转移到下一个模型
+         */
+        private int maxAbandonedPerProvider = 16;
+    }
+
+    /**
+     * 一次调用的时间预算
+     */
+    @Data
+    public static class Budget {
+
+        /**
+         * 整次调用（含所有转移）的截止时间（毫秒）
+         */
+        private long deadlineMs;
+
+        /**
+         * 单个模型的最长等待时间（毫秒），不超过剩余时间
+         */
+        private long attemptTimeoutMs;
+
+        public Budget() {
+        }
+
+        public Budget(long deadlineMs, long attemptTimeoutMs) {
+            this.deadlineMs = deadlineMs;
+            this.attemptTimeoutMs = attemptTimeoutMs;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.heartsphere.aiagent.controller;
 import com.heartsphere.aiagent.dto.request.*;
 import com.heartsphere.aiagent.dto.response.*;
 import com.heartsphere.aiagent.service.AIService;
+import com.heartsphere.aiagent.util.TextStreams;
 import com.heartsphere.dto.ApiResponse;
 import com.heartsphere.security.UserDetailsImpl;
 import io.swagger.v3.oas.annotations.Operation;
@@ -16,15 +17,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * AI服务控制器
@@ -110,7 +115,7 @@ public class AIServiceController {
         description = "流式生成文本内容，使用Server-Sent Events (SSE)协议。接口格式与客户端适配器保持一致。"
     )
     @PostMapping(value = "/text/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter generateTextStream(
+    public Flux<ServerSentEvent<String>> generateTextStream(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
                 description = "文本生成请求（stream=true）",
                 required = true,
@@ -118,9 +123,8 @@ public class AIServiceController {
             )
             @RequestBody TextGenerationRequest request,
             @Parameter(hidden = true) Authentication authentication) {
-        SseEmitter emitter = new SseEmitter(300000L); // 5分钟超时
-        
-        try {
+        // 订阅由Spring MVC在请求线程上发起，SSE事件随上游片段写出，客户端断开时取消订阅并取消上游请求
+        return Flux.defer(() -> {
             Long userId = getCurrentUserId(authentication);
             log.info("[AIServiceController] /text/generate/stream - 收到流式文本生成请求 - userId={}, provider={}, model={}, stream={}, hasPrompt={}, hasMessages={}, messagesCount={}", 
                 userId, 
@@ -130,164 +134,39 @@ public class AIServiceController {
                 request.getPrompt() != null && !request.getPrompt().isEmpty(),
                 request.getMessages() != null,
                 request.getMessages() != null ? request.getMessages().size() : 0);
-            log.info("[AIServiceController] /text/generate/stream - 创建SseEmitter，准备返回给客户端");
             log.debug("[AIServiceController] 请求详情 - prompt={}, systemInstruction={}, temperature={}, maxTokens={}", 
                 request.getPrompt(), 
                 request.getSystemInstruction(), 
                 request.getTemperature(), 
                 request.getMaxTokens());
             
-            // 设置emitter的错误回调
-            emitter.onError((error) -> {
-                log.error("[AIServiceController] SSE连接错误 - userId={}", userId, error);
-            });
-            
-            emitter.onTimeout(() -> {
-                log.error("[AIServiceController] SSE连接超时 - userId={}", userId);
-            });
-            
-            emitter.onCompletion(() -> {
-                log.info("[AIServiceController] SSE连接完成 - userId={}", userId);
-            });
-            
-            // 异步处理流式响应
-            CompletableFuture.runAsync(() -> {
-                try {
-                    log.info("[AIServiceController] 开始调用AIService.generateTextStream - userId={}", userId);
-                    final String responseId = "chatcmpl-" + UUID.randomUUID().toString().substring(0, 8);
-                    final String model = request.getModel() != null ? request.getModel() : "unknown";
-                    final int[] chunkCounter = {0};
-                    
-                    aiService.generateTextStream(userId, request, (response, done) -> {
-                        try {
-                            chunkCounter[0]++;
-                            log.info("[AIServiceController] /text/generate/stream - handler回调 - chunkCounter={}, hasResponse={}, hasContent={}, contentLength={}, done={}", 
-                                chunkCounter[0],
-                                response != null,
-                                response != null && response.getContent() != null,
-                                response != null && response.getContent() != null ? response.getContent().length() : 0,
-                                done);
-                            
-                            if (response != null && response.getContent() != null) {
-                                // 发送OpenAPI兼容格式的数据块（与/v1/chat/completions保持一致）
-                                String content = escapeJson(response.getContent());
-                                String data = String.format(
-                                    "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"%s\"},\"finish_reason\":null}]}",
-                                    responseId,
-                                    System.currentTimeMillis() / 1000,
-                                    model,
-                                    content
-                                );
-                                if (chunkCounter[0] <= 5 || chunkCounter[0] % 10 == 0) {
-                                    log.info("[AIServiceController] /text/generate/stream - 发送内容chunk #{} - contentLength={}", 
-                                        chunkCounter[0], content.length());
-                                }
-                                try {
-                                    emitter.send(SseEmitter.event().data(data));
-                                } catch (IOException e) {
-                                    log.error("[AIServiceController] /text/generate/stream - 发送SSE数据失败", e);
-                                    throw e;
-                                }
-                            }
-                            
-                            if (done) {
-                                log.info("[AIServiceController] /text/generate/stream - 流式响应完成 - 总chunks={}, hasResponse={}, hasUsage={}", 
-                                    chunkCounter[0], response != null, response != null && response.getUsage() != null);
-                                
-                                // 如果response为null，说明发生了错误
-                                if (response == null) {
-                                    log.warn("[AIServiceController] /text/generate/stream - 收到null响应，可能发生了错误");
-                                    try {
-                                        // 发送错误信息（OpenAPI格式）
-                                        String errorData = String.format(
-                                            "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"error\":{\"message\":\"AI服务调用失败，可能是网络连接问题或DNS解析失败。请稍后重试或联系管理员。\",\"type\":\"server_error\"}}",
-                                            responseId,
-                                            System.currentTimeMillis() / 1000,
-                                            model
-                                        );
-                                        emitter.send(SseEmitter.event().data(errorData));
-                                    } catch (IllegalStateException e) {
-                                        log.warn("[AIServiceController] /text/generate/stream - emitter已完成，无法发送错误信息: {}", e.getMessage());
-                                    } catch (Exception e) {
-                                        log.error("[AIServiceController] /text/generate/stream - 发送错误信息失败", e);
-                                    }
-                                } else {
-                                    try {
-                                        // 发送完成信号（OpenAPI格式）
-                                        if (response.getUsage() != null) {
-                                            String usageJson = String.format(
-                                                "{\"prompt_tokens\":%d,\"completion_tokens\":%d,\"total_tokens\":%d}",
-                                                response.getUsage().getInputTokens() != null ? response.getUsage().getInputTokens() : 0,
-                                                response.getUsage().getOutputTokens() != null ? response.getUsage().getOutputTokens() : 0,
-                                                response.getUsage().getTotalTokens() != null ? response.getUsage().getTotalTokens() : 0
-                                            );
-                                            String finalData = String.format(
-                                                "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],\"usage\":%s}",
-                                                responseId,
-                                                System.currentTimeMillis() / 1000,
-                                                model,
-                                                usageJson
-                                            );
-                                            emitter.send(SseEmitter.event().data(finalData));
-                                        } else {
-                                            String finalData = String.format(
-                                                "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}",
-                                                responseId,
-                                                System.currentTimeMillis() / 1000,
-                                                model
-                                            );
-                                            emitter.send(SseEmitter.event().data(finalData));
-                                        }
-                                        // 完成SSE连接
-                                        emitter.complete();
-                                        log.info("[AIServiceController] /text/generate/stream - SSE流式响应完成");
-                                    } catch (IllegalStateException e) {
-                                        log.debug("[AIServiceController] /text/generate/stream - emitter已完成，无需再次发送完成信号: {}", e.getMessage());
-                                    } catch (Exception e) {
-                                        log.error("[AIServiceController] /text/generate/stream - 发送完成信号失败", e);
-                                        try {
-                                            emitter.complete();
-                                        } catch (Exception ex) {
-                                            log.debug("[AIServiceController] /text/generate/stream - 完成SSE连接失败（可能已完成）: {}", ex.getMessage());
-                                        }
-                                    }
-                                }
-                            }
-                        } catch (IOException e) {
-                            log.error("[AIServiceController] 发送SSE数据失败 - userId={}", userId, e);
-                            emitter.completeWithError(e);
-                        }
-                    });
-                } catch (Exception e) {
-                    log.error("[AIServiceController] 流式文本生成失败 - userId={}, provider={}, model={}", 
-                        userId, request.getProvider(), request.getModel(), e);
-                    try {
-                        String errorMessage = e.getMessage() != null ? e.getMessage() : "流式文本生成失败";
-                        // 获取根本原因
-                        Throwable cause = e.getCause();
-                        if (cause != null) {
-                            String causeMessage = cause.getMessage();
-                            if (causeMessage != null && !causeMessage.isEmpty()) {
-                                errorMessage = causeMessage;
-                            }
-                        }
-                        log.error("[AIServiceController] 发送错误信息给前端 - errorMessage={}", errorMessage);
-                        emitter.send(SseEmitter.event()
-                                .data("{\"error\":\"" + escapeJson(errorMessage) + "\",\"done\":true}"));
-                        emitter.complete();
-                    } catch (IOException ex) {
-                        log.error("[AIServiceController] 发送错误信息失败", ex);
-                        emitter.completeWithError(ex);
-                    }
-                }
-            });
+            final String responseId = "chatcmpl-" + UUID.randomUUID().toString().substring(0, 8);
+            final String model = request.getModel() != null ? request.getModel() : "unknown";
             
-        } catch (Exception e) {
-            log.error("创建流式响应失败", e);
-            emitter.completeWithError(e);
-        }
-        
-        return emitter;
+            return toChunkEvents(aiService.streamText(userId, request), responseId, model)
+                .doOnCancel(() -> log.info("[AIServiceController] /text/generate/stream - 客户端断开，取消上游请求 - userId={}", userId))
+                .onErrorResume(e -> {
+                    log.warn("[AIServiceController] /text/generate/stream - 流式响应失败 - userId={}, error={}", userId, e.getMessage());
+                    // 发送错误信息（OpenAPI格式）
+                    return Flux.just(ServerSentEvent.builder(String.format(
+                        "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"error\":{\"message\":\"AI服务调用失败，可能是网络连接问题或DNS解析失败。请稍后重试或联系管理员。\",\"type\":\"server_error\"}}",
+                        responseId,
+                        System.currentTimeMillis() / 1000,
+                        model
+                    )).build());
+                });
+        }).onErrorResume(e -> {
+            // 认证失败、配额不足等在发起调用前的错误
+            log.error("[AIServiceController] 流式文本生成失败 - provider={}, model={}", 
+                request.getProvider(), request.getModel(), e);
+            String errorMessage = e.getMessage() != null ? e.getMessage() : "流式文本生成失败";
+            // 获取根本原因
+            Throwable cause = e.getCause();
+            if (cause != null && cause.getMessage() != null && !cause.getMessage().isEmpty()) {
+                errorMessage = cause.getMessage();
+            }
+            return Flux.just(ServerSentEvent.builder("{\"error\":\"" + escapeJson(errorMessage) + "\",\"done\":true}").build());
+        });
     }
 
     /**
@@ -569,126 +448,73 @@ public class AIServiceController {
     /**
      * 流式聊天完成（内部方法，由chatCompletions调用）
      */
-    private SseEmitter chatCompletionsStreamInternal(
+    private Flux<ServerSentEvent<String>> chatCompletionsStreamInternal(
             ChatCompletionRequest request,
             Long userId) {
-        SseEmitter emitter = new SseEmitter(300000L); // 5分钟超时
+        // 方法声明返回Object，Spring MVC无法从泛型判断为SSE；显式声明可产出的媒体类型，不论Accept头如何都按SSE逐条写出
+        RequestContextHolder.currentRequestAttributes().setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE,
+            Set.of(MediaType.TEXT_EVENT_STREAM), RequestAttributes.SCOPE_REQUEST);
         
-        try {
-            
+        return Flux.defer(() -> {
             // 转换为内部TextGenerationRequest格式
             TextGenerationRequest internalRequest = convertToInternalRequest(request);
             internalRequest.setStream(true);
             
             String responseId = "chatcmpl-" + UUID.randomUUID().toString().substring(0, 8);
             String model = request.getModel();
+            log.info("[AIServiceController] 统一接入模式 - 开始流式响应处理 - userId={}, model={}, responseId={}", 
+                userId, model, responseId);
             
-            // 异步处理流式响应
-            CompletableFuture.runAsync(() -> {
-                try {
-                    log.info("[AIServiceController] 统一接入模式 - 开始流式响应处理 - userId={}, model={}, responseId={}", 
-                        userId, model, responseId);
-                    final int[] chunkCounter = {0};
-                    aiService.generateTextStream(userId, internalRequest, (response, done) -> {
-                        try {
-                            chunkCounter[0]++;
-                            log.info("[AIServiceController] 统一接入模式 - handler回调被调用 - chunkCounter={}, response={}, done={}, hasContent={}, contentLength={}", 
-                                chunkCounter[0], 
-                                response != null ? "not null" : "null",
-                                done,
-                                response != null && response.getContent() != null,
-                                response != null && response.getContent() != null ? response.getContent().length() : 0);
-                            
-                            // 即使content为空，只要不是done，也发送（第一个chunk可能是空的role设置）
-                            if (response != null && response.getContent() != null) {
-                                // 发送OpenAPI格式的数据块（包括空内容）
-                                String content = escapeJson(response.getContent());
-                                String data = String.format(
-                                    "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"%s\"},\"finish_reason\":null}]}",
-                                    responseId,
-                                    System.currentTimeMillis() / 1000,
-                                    model,
-                                    content
-                                );
-                                if (chunkCounter[0] <= 5 || chunkCounter[0] % 10 == 0) {
-                                    log.info("[AIServiceController] 统一接入模式 - 发送内容chunk #{} - contentLength={}, contentPreview={}", 
-                                        chunkCounter[0], content.length(), 
-                                        content.length() > 50 ? content.substring(0, 50) + "..." : content);
-                                }
-                                try {
-                                    emitter.send(SseEmitter.event().data(data));
-                                    if (chunkCounter[0] <= 5) {
-                                        log.debug("[AIServiceController] 统一接入模式 - SSE数据已发送 - chunkCounter={}", chunkCounter[0]);
-                                    }
-                                } catch (IOException e) {
-                                    log.error("[AIServiceController] 统一接入模式 - 发送SSE数据失败 - chunkCounter={}", chunkCounter[0], e);
-                                    throw e;
-                                }
-                            } else if (response != null) {
-                                if (chunkCounter[0] <= 5) {
-                                    log.debug("[AIServiceController] 统一接入模式 - response不为null但content为null - chunkCounter={}", chunkCounter[0]);
-                                }
-                            }
-                            
-                            if (done) {
-                                log.info("[AIServiceController] 统一接入模式 - 发送完成信号 - 总chunks={}", chunkCounter[0]);
-                                // 发送完成信号
-                                if (response != null && response.getUsage() != null) {
-                                    String usageJson = String.format(
-                                        "{\"prompt_tokens\":%d,\"completion_tokens\":%d,\"total_tokens\":%d}",
-                                        response.getUsage().getInputTokens() != null ? response.getUsage().getInputTokens() : 0,
-                                        response.getUsage().getOutputTokens() != null ? response.getUsage().getOutputTokens() : 0,
-                                        response.getUsage().getTotalTokens() != null ? response.getUsage().getTotalTokens() : 0
-                                    );
-                                    String finalData = String.format(
-                                        "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],\"usage\":%s}",
-                                        responseId,
-                                        System.currentTimeMillis() / 1000,
-                                        model,
-                                        usageJson
-                                    );
-                                    log.info("[AIServiceController] 统一接入模式 - 发送完成chunk（带usage） - usage={}", usageJson);
-                                    emitter.send(SseEmitter.event().data(finalData));
-                                } else {
-                                    String finalData = String.format(
-                                        "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}",
-                                        responseId,
-                                        System.currentTimeMillis() / 1000,
-                                        model
-                                    );
-                                    log.info("[AIServiceController] 统一接入模式 - 发送完成chunk（无usage）");
-                                    emitter.send(SseEmitter.event().data(finalData));
-                                }
-                                emitter.send(SseEmitter.event().data("[DONE]"));
-                                log.info("[AIServiceController] 统一接入模式 - 流式响应完成 - 总chunks={}", chunkCounter[0]);
-                                emitter.complete();
-                            }
-                        } catch (IOException e) {
-                            log.error("[AIServiceController] 统一接入模式 - 发送SSE数据失败", e);
-                            emitter.completeWithError(e);
-                        }
-                    });
-                } catch (Exception e) {
-                    log.error("流式聊天完成失败", e);
-                    try {
-                        String errorData = String.format(
-                            "{\"error\":{\"message\":\"%s\",\"type\":\"server_error\"}}",
-                            escapeJson(e.getMessage())
-                        );
-                        emitter.send(SseEmitter.event().data(errorData));
-                        emitter.complete();
-                    } catch (IOException ex) {
-                        emitter.completeWithError(ex);
-                    }
+            return toChunkEvents(aiService.streamText(userId, internalRequest), responseId, model)
+                .concatWith(Mono.just(ServerSentEvent.builder("[DONE]").build()))
+                .doOnCancel(() -> log.info("[AIServiceController] 统一接入模式 - 客户端断开，取消上游请求 - userId={}, responseId={}", 
+                    userId, responseId));
+        }).onErrorResume(e -> {
+            log.error("流式聊天完成失败", e);
+            return Flux.just(ServerSentEvent.builder(String.format(
+                "{\"error\":{\"message\":\"%s\",\"type\":\"server_error\"}}",
+                escapeJson(e.getMessage())
+            )).build());
+        });
+    }
+
+    /**
+     * 把片段流转换为OpenAPI兼容的SSE事件：逐个发送内容片段，结束时发送带用量的完成片段。
+     * 首个片段前或两个片段之间的空闲超时由服务层（ModelFailover）处理，超时以错误结束并计入提供商熔断
+     */
+    private Flux<ServerSentEvent<String>> toChunkEvents(Flux<TextGenerationResponse> stream,
+                                                        String responseId, String model) {
+        TextGenerationResponse summary = new TextGenerationResponse();
+        return stream
+            .doOnNext(chunk -> TextStreams.merge(summary, chunk))
+            .filter(chunk -> !TextStreams.isEnd(chunk))
+            .map(chunk -> ServerSentEvent.builder(String.format(
+                "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"%s\"},\"finish_reason\":null}]}",
+                responseId,
+                System.currentTimeMillis() / 1000,
+                model,
+                escapeJson(chunk.getContent())
+            )).build())
+            .concatWith(Mono.fromSupplier(() -> {
+                // 发送完成信号（OpenAPI格式）
+                String finalData = String.format(
+                    "{\"id\":\"%s\",\"object\":\"chat.completion.chunk\",\"created\":%d,\"model\":\"%s\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]",
+                    responseId,
+                    System.currentTimeMillis() / 1000,
+                    model
+                );
+                TextGenerationResponse.TokenUsage usage = summary.getUsage();
+                if (usage != null) {
+                    finalData += String.format(
+                        ",\"usage\":{\"prompt_tokens\":%d,\"completion_tokens\":%d,\"total_tokens\":%d}",
+                        usage.getInputTokens() != null ? usage.getInputTokens() : 0,
+                        usage.getOutputTokens() != null ? usage.getOutputTokens() : 0,
+                        usage.getTotalTokens() != null ? usage.getTotalTokens() : 0
+                    );
                 }
-            });
-            
-        } catch (Exception e) {
-            log.error("创建流式响应失败", e);
-            emitter.completeWithError(e);
-        }
-        
-        return emitter;
+                log.info("[AIServiceController] 流式响应完成 - responseId={}, hasUsage={}", responseId, usage != null);
+                return ServerSentEvent.builder(finalData + "}").build();
+            }));
     }
 
     /**
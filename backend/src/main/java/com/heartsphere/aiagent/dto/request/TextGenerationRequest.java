@@ -45,6 +45,12 @@ public class TextGenerationRequest {
     @Schema(description = "API密钥（可选，用于统一接入模式，从模型配置表获取）", example = "sk-xxx")
     private String apiKey; // API密钥，从配置表中获取
     
+    @Schema(description = "是否使用响应缓存（可选）：true时相同请求直接返回缓存结果，false时不缓存；不指定时仅温度为0的请求使用缓存", example = "false")
+    private Boolean cacheable;
+    
+    @Schema(description = "记忆会话ID（可选）：指定时由服务端从该会话的短期记忆和用户长期记忆中按模型token预算组装系统指令与对话历史，替换请求中的messages", example = "session-123")
+    private String memorySessionId;
+    
     /**
      * 消息对象
      * 与前端types.ts中的Message接口保持一致
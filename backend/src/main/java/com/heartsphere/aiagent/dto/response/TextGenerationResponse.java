@@ -29,6 +29,9 @@ public class TextGenerationResponse {
     @Schema(description = "完成原因", example = "stop")
     private String finishReason;
     
+    @Schema(description = "是否命中响应缓存；命中时不调用模型、不计费，usage为原始生成时的用量", example = "false")
+    private Boolean cached;
+    
     /**
      * Token使用量
      * 与前端types.ts中的TokenUsage接口保持一致
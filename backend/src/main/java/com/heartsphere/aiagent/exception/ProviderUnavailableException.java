@@ -0,0 +1,31 @@
+package com.heartsphere.aiagent.exception;
+
+/**
+ * 提供商暂不可用异常
+ * 提供商的该能力已熔断或并发已满，请求未发往上游即被拒绝
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class ProviderUnavailableException extends AIServiceException {
+
+    private final String capability;
+    private final long retryAfterMs;
+
+    public ProviderUnavailableException(String message, String provider, String capability, long retryAfterMs) {
+        super(message, provider, null);
+        this.capability = capability;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getCapability() {
+        return capability;
+    }
+
+    /**
+     * 建议的重试等待时间（毫秒），0 表示未知
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,73 @@
+package com.heartsphere.aiagent.resilience;
+
+import java.util.function.Supplier;
+
+/**
+ * 一次可能被上层超时放弃的同步调用
+ * 上层在执行调用的线程上通过 {@link #run} 绑定，调用链中申请到的隔离舱许可经 {@link #bind} 登记到这里；
+ * 上层放弃等待时调用 {@link #timeout}，把登记的许可标记为超时并计为一次失败，
+ * 被放弃的调用之后返回时许可只归还、不再计入成功或失败，避免同一次调用在熔断窗口和并发限制中计两次。
+ * 放弃时尚未申请到许可（仍在排队）则直接补记到隔离舱，之后申请到的许可同样只归还。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class AbandonableCall {
+
+    private static final ThreadLocal<AbandonableCall> CURRENT = new ThreadLocal<>();
+
+    private ProviderGuard.Permit permit;
+    private boolean timedOut;
+
+    /**
+     * 在当前线程上绑定本次调用并执行
+     */
+    public <T> T run(Supplier<T> body) {
+        CURRENT.set(this);
+        try {
+            return body.get();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 把许可登记到当前线程绑定的调用；当前线程未绑定时忽略
+     */
+    public static void bind(ProviderGuard.Permit permit) {
+        AbandonableCall call = CURRENT.get();
+        if (call != null) {
+            call.attach(permit);
+        }
+    }
+
+    /**
+     * 上层超时放弃本次调用，对该提供商只计一次失败
+     *
+     * @param guard 尚未申请到许可时补记失败的隔离舱
+     */
+    public void timeout(ProviderGuard guard) {
+        ProviderGuard.Permit bound;
+        synchronized (this) {
+            timedOut = true;
+            bound = permit;
+        }
+        if (bound != null) {
+            bound.timeout();
+        } else {
+            guard.recordTimeout();
+        }
+    }
+
+    private void attach(ProviderGuard.Permit permit) {
+        boolean abandoned;
+        synchronized (this) {
+            this.permit = permit;
+            abandoned = timedOut;
+        }
+        if (abandoned) {
+            // 超时已补记到隔离舱，许可只需归还
+            permit.abandon();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.heartsphere.aiagent.resilience;
+
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.exception.ProviderUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 单个提供商单种能力的隔离舱 + 熔断器 + 自适应并发限制
+ * 并发限制按 AIMD 调整：调用成功且耗时未超过基线耗时的 latencyTolerance 倍时加性增长（每次 +1/limit），
+ * 失败或耗时超标时乘性收缩（×backoffRatio），始终处于 [minConcurrency, maxConcurrency]；
+ * 基线耗时为成功调用耗时的指数移动平均。并发达到限制的请求直接拒绝，不排队。
+ * 熔断按最近 slidingWindowSize 次调用的失败率判定，熔断 openDurationMs 后进入半开状态，
+ * 放行 halfOpenProbes 个探测请求，全部成功即恢复，任一失败则重新熔断。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+public class ProviderGuard {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final String provider;
+    private final String capability;
+    private final LongSupplier clock;
+
+    private AIProperties.Guard settings;
+
+    // ========== 并发限制 ==========
+
+    private double limit;
+    private int inFlight;
+    private double baselineLatencyMs;
+
+    // ========== 熔断 ==========
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean[] window;
+    private int windowSize;
+    private int windowIndex;
+    private int windowFailures;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    // ========== 统计 ==========
+
+    private long calls;
+    private long failures;
+    private long rejected;
+    private long shortCircuited;
+
+    public ProviderGuard(String provider, String capability, AIProperties.Guard settings) {
+        this(provider, capability, settings, System::currentTimeMillis);
+    }
+
+    ProviderGuard(String provider, String capability, AIProperties.Guard settings, LongSupplier clock) {
+        this.provider = provider;
+        this.capability = capability;
+        this.clock = clock;
+        this.settings = settings;
+        this.limit = clamp(settings.getInitialConcurrency());
+        this.window = new boolean[Math.max(1, settings.getSlidingWindowSize())];
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @throws ProviderUnavailableException 已熔断或并发已满
+     */
+    public synchronized Permit tryAcquire() {
+        if (!settings.isEnabled()) {
+            inFlight++;
+            return new Permit(false);
+        }
+        if (state == State.OPEN) {
+            long remaining = openedAt + settings.getOpenDurationMs() - clock.getAsLong();
+            if (remaining > 0) {
+                shortCircuited++;
+                throw unavailable("已熔断", remaining);
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            log.info("[{}:{}] 熔断时间已到，进入半开状态", provider, capability);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= settings.getHalfOpenProbes()) {
+                shortCircuited++;
+                throw unavailable("半开探测中", 0);
+            }
+            probesInFlight++;
+            inFlight++;
+            return new Permit(true);
+        }
+        if (inFlight >= (int) limit) {
+            rejected++;
+            throw unavailable("并发已满(" + (int) limit + ")", 0);
+        }
+        inFlight++;
+        return new Permit(false);
+    }
+
+    /**
+     * 当前是否会放行调用（不占用许可，用于路由时跳过不可用的提供商）
+     */
+    public synchronized boolean isCallPermitted() {
+        if (!settings.isEnabled()) {
+            return true;
+        }
+        return switch (state) {
+            case OPEN -> clock.getAsLong() - openedAt >= settings.getOpenDurationMs();
+            case HALF_OPEN -> probesInFlight < settings.getHalfOpenProbes();
+            default -> inFlight < (int) limit;
+        };
+    }
+
+    /**
+     * 应用新的参数；并发限制收敛到新的上下限内，熔断窗口大小变化时重置窗口
+     */
+    public synchronized void updateSettings(AIProperties.Guard newSettings) {
+        this.settings = newSettings;
+        this.limit = clamp(limit);
+        if (newSettings.getSlidingWindowSize() != window.length) {
+            this.window = new boolean[Math.max(1, newSettings.getSlidingWindowSize())];
+            resetWindow();
+        }
+    }
+
+    private synchronized void complete(Permit permit, Boolean success, long latencyMs) {
+        int inFlightBefore = inFlight;
+        inFlight--;
+        if (permit.probe) {
+            probesInFlight--;
+        }
+        if (success == null || !settings.isEnabled()) {
+            return;
+        }
+        calls++;
+        if (success) {
+            adjustLimit(latencyMs, inFlightBefore);
+            if (permit.probe && state == State.HALF_OPEN) {
+                if (++probeSuccesses >= settings.getHalfOpenProbes()) {
+                    state = State.CLOSED;
+                    resetWindow();
+                    log.info("[{}:{}] 探测请求全部成功，熔断恢复", provider, capability);
+                }
+            } else if (state == State.CLOSED) {
+                recordOutcome(false);
+            }
+        } else {
+            recordFailure(permit.probe, "探测请求失败");
+        }
+    }
+
+    /**
+     * 上层因超时放弃了一次调用（流式调用被取消时许可只归还、不计结果），补记为一次失败：
+     * 计入熔断窗口并收缩并发限制；半开状态下视同探测失败。
+     * 被放弃的同步调用仍持有许可时改用 {@link Permit#timeout()}，避免其返回后再计一次结果
+     */
+    public synchronized void recordTimeout() {
+        recordTimeout(state == State.HALF_OPEN);
+    }
+
+    private void recordTimeout(boolean probe) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        calls++;
+        recordFailure(probe, "探测请求超时");
+    }
+
+    private void recordFailure(boolean probe, String reason) {
+        failures++;
+        limit = clamp(limit * settings.getBackoffRatio());
+        if (probe && state == State.HALF_OPEN) {
+            open(reason);
+        } else if (state == State.CLOSED) {
+            recordOutcome(true);
+        }
+    }
+
+    private void adjustLimit(long latencyMs, int inFlightBefore) {
+        if (baselineLatencyMs <= 0) {
+            baselineLatencyMs = latencyMs;
+        }
+        if (latencyMs > baselineLatencyMs * settings.getLatencyTolerance()) {
+            limit = clamp(limit * settings.getBackoffRatio());
+        } else if (inFlightBefore * 2 >= limit) {
+            // 只在并发确实接近限制时增长，避免低负载时限制无意义地涨到上限
+            limit = clamp(limit + 1.0 / limit);
+        }
+        baselineLatencyMs += (latencyMs - baselineLatencyMs) * BASELINE_ALPHA;
+    }
+
+    private void recordOutcome(boolean failed) {
+        if (windowSize == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowSize++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowSize >= settings.getMinimumCalls()
+            && (double) windowFailures / windowSize >= settings.getFailureRateThreshold()) {
+            open("失败率 " + windowFailures + "/" + windowSize);
+        }
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        resetWindow();
+        log.warn("[{}:{}] 熔断 {} 毫秒: {}", provider, capability, settings.getOpenDurationMs(), reason);
+    }
+
+    private void resetWindow() {
+        windowSize = 0;
+        windowIndex = 0;
+        windowFailures = 0;
+    }
+
+    private double clamp(double value) {
+        int min = Math.max(1, settings.getMinConcurrency());
+        int max = Math.max(min, settings.getMaxConcurrency());
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private ProviderUnavailableException unavailable(String reason, long retryAfterMs) {
+        return new ProviderUnavailableException(
+            "提供商暂不可用: " + provider + "/" + capability + " " + reason, provider, capability, retryAfterMs);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized ProviderGuardStats stats() {
+        ProviderGuardStats stats = new ProviderGuardStats();
+        stats.setProvider(provider);
+        stats.setCapability(capability);
+        stats.setEnabled(settings.isEnabled());
+        stats.setState(state.name());
+        stats.setLimit((int) limit);
+        stats.setMaxConcurrency(settings.getMaxConcurrency());
+        stats.setInFlight(inFlight);
+        stats.setBaselineLatencyMs(Math.round(baselineLatencyMs));
+        stats.setWindowCalls(windowSize);
+        stats.setWindowFailures(windowFailures);
+        stats.setCalls(calls);
+        stats.setFailures(failures);
+        stats.setRejected(rejected);
+        stats.setShortCircuited(shortCircuited);
+        return stats;
+    }
+
+    /**
+     * 一次调用许可；以 success / failure / release 之一结束，重复结束会被忽略。
+     * 被上层超时放弃的许可（{@link #timeout()}）在调用返回时只归还，不再计入成功或失败
+     */
+    public class Permit {
+
+        private final boolean probe;
+        private final long startedAt;
+        private boolean done;
+        private boolean timedOut;
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+            this.startedAt = clock.getAsLong();
+        }
+
+        /**
+         * 自获取许可起经过的毫秒数
+         */
+        public long elapsedMs() {
+            return clock.getAsLong() - startedAt;
+        }
+
+        /**
+         * 调用成功，以获取许可至今的耗时调整并发限制
+         */
+        public void success() {
+            success(elapsedMs());
+        }
+
+        /**
+         * 调用成功
+         *
+         * @param latencyMs 用于调整并发限制的耗时（流式调用取首个片段的耗时）
+         */
+        public void success(long latencyMs) {
+            finish(Boolean.TRUE, latencyMs);
+        }
+
+        /**
+         * 调用失败，计入熔断窗口并收缩并发限制
+         */
+        public void failure() {
+            finish(Boolean.FALSE, 0);
+        }
+
+        /**
+         * 调用被取消，只归还许可，不计入成功或失败
+         */
+        public void release() {
+            finish(null, 0);
+        }
+
+        /**
+         * 上层超时放弃了本次调用：立即计为一次失败，调用之后返回时只归还许可；
+         * 调用已结束或已标记超时则忽略
+         */
+        public void timeout() {
+            synchronized (ProviderGuard.this) {
+                if (done || timedOut) {
+                    return;
+                }
+                timedOut = true;
+                recordTimeout(probe);
+            }
+        }
+
+        /**
+         * 超时已由上层补记到隔离舱，调用返回时只归还许可
+         */
+        void abandon() {
+            synchronized (ProviderGuard.this) {
+                timedOut = true;
+            }
+        }
+
+        private void finish(Boolean success, long latencyMs) {
+            synchronized (ProviderGuard.this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                complete(this, timedOut ? null : success, latencyMs);
+            }
+        }
+    }
+}
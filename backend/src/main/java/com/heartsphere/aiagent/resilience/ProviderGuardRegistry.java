@@ -0,0 +1,148 @@
+package com.heartsphere.aiagent.resilience;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.admin.service.AIModelConfigService;
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.config.AIProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 提供商隔离舱注册表
+ * 按“提供商:能力”懒创建 {@link ProviderGuard}。参数取 heartsphere.ai.resilience 下对应能力的默认值，
+ * 再以管理后台模型配置 modelParams 中的 resilience 对象覆盖（如 {"resilience": {"maxConcurrency": 8}}），
+ * 同一提供商同一能力有多条模型配置时取优先级最高且带 resilience 的一条；覆盖值定期重新加载，无需重启。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class ProviderGuardRegistry {
+
+    static final List<String> CAPABILITIES = List.of("text", "image", "audio", "video");
+
+    private final AIProperties.Resilience config;
+    private final AIModelConfigService modelConfigService;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<String, ProviderGuard> guards = new ConcurrentHashMap<>();
+    private volatile Map<String, JsonNode> overrides = Map.of();
+
+    public ProviderGuardRegistry(AIProperties aiProperties, AIModelConfigService modelConfigService,
+                                 ObjectMapper objectMapper) {
+        this.config = aiProperties.getResilience();
+        this.modelConfigService = modelConfigService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 获取提供商某种能力的隔离舱
+     *
+     * @param provider 提供商（支持别名，不区分大小写）
+     * @param capability 能力类型：text, image, audio, video
+     */
+    public ProviderGuard guard(String provider, String capability) {
+        String canonical = ModelAdapterManager.canonicalProvider(provider);
+        return guards.computeIfAbsent(key(canonical, capability),
+            k -> new ProviderGuard(canonical, capability, settingsFor(k, capability)));
+    }
+
+    /**
+     * 提供商该能力当前是否可用（未熔断且并发未满）；尚未调用过的提供商视为可用
+     */
+    public boolean isAvailable(String provider, String capability) {
+        ProviderGuard guard = guards.get(key(ModelAdapterManager.canonicalProvider(provider), capability));
+        return guard == null || guard.isCallPermitted();
+    }
+
+    public List<ProviderGuardStats> stats() {
+        return guards.values().stream()
+            .map(ProviderGuard::stats)
+            .sorted(Comparator.comparing(ProviderGuardStats::getProvider)
+                .thenComparing(ProviderGuardStats::getCapability))
+            .toList();
+    }
+
+    /**
+     * 重新加载管理后台的覆盖值并应用到已创建的隔离舱
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.resilience.refresh-interval-ms:60000}")
+    public void refreshSettings() {
+        Map<String, JsonNode> loaded = new HashMap<>();
+        try {
+            for (String capability : CAPABILITIES) {
+                for (AIModelConfigDTO modelConfig : modelConfigService.getModelConfigsByCapability(capability)) {
+                    JsonNode resilience = parseResilience(modelConfig);
+                    if (resilience != null) {
+                        // 按优先级升序返回，先到者优先
+                        loaded.putIfAbsent(key(ModelAdapterManager.canonicalProvider(modelConfig.getProvider()),
+                            capability), resilience);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("加载提供商隔离配置失败，沿用当前配置: {}", e.getMessage());
+            return;
+        }
+        overrides = loaded;
+        guards.forEach((key, guard) -> guard.updateSettings(settingsFor(key, key.substring(key.indexOf(':') + 1))));
+    }
+
+    /**
+     * 定期输出熔断与并发限制状态
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.resilience.stats-interval-ms:300000}")
+    public void logStats() {
+        for (ProviderGuardStats stats : stats()) {
+            if (stats.getCalls() == 0 && stats.getRejected() == 0 && stats.getShortCircuited() == 0) {
+                continue;
+            }
+            log.info("提供商隔离[{}:{}]: state={}, limit={}/{}, inFlight={}, baselineLatencyMs={}, calls={}, failures={}, rejected={}, shortCircuited={}",
+                stats.getProvider(), stats.getCapability(), stats.getState(), stats.getLimit(),
+                stats.getMaxConcurrency(), stats.getInFlight(), stats.getBaselineLatencyMs(), stats.getCalls(),
+                stats.getFailures(), stats.getRejected(), stats.getShortCircuited());
+        }
+    }
+
+    private AIProperties.Guard settingsFor(String key, String capability) {
+        AIProperties.Guard defaults = config.forCapability(capability);
+        JsonNode override = overrides.get(key);
+        if (override == null) {
+            return defaults;
+        }
+        try {
+            AIProperties.Guard copy = objectMapper.convertValue(defaults, AIProperties.Guard.class);
+            return objectMapper.readerForUpdating(copy).readValue(override);
+        } catch (Exception e) {
+            log.warn("提供商隔离配置无效，使用默认值: key={}, error={}", key, e.getMessage());
+            return defaults;
+        }
+    }
+
+    private JsonNode parseResilience(AIModelConfigDTO modelConfig) {
+        String params = modelConfig.getModelParams();
+        if (params == null || params.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode resilience = objectMapper.readTree(params).get("resilience");
+            return resilience != null && resilience.isObject() ? resilience : null;
+        } catch (Exception e) {
+            log.warn("模型配置参数不是有效JSON: id={}, provider={}", modelConfig.getId(), modelConfig.getProvider());
+            return null;
+        }
+    }
+
+    private static String key(String provider, String capability) {
+        return provider + ":" + capability;
+    }
+}
@@ -0,0 +1,47 @@
+package com.heartsphere.aiagent.resilience;
+
+import lombok.Data;
+
+/**
+ * 单个提供商单种能力的隔离统计快照
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+public class ProviderGuardStats {
+
+    private String provider;
+
+    private String capability;
+
+    private boolean enabled;
+
+    /** 熔断状态：CLOSED、OPEN、HALF_OPEN */
+    private String state;
+
+    /** 当前自适应并发限制 */
+    private int limit;
+
+    private int maxConcurrency;
+
+    private int inFlight;
+
+    /** 成功调用耗时的移动平均（毫秒） */
+    private long baselineLatencyMs;
+
+    /** 熔断窗口内的调用数与失败数 */
+    private int windowCalls;
+
+    private int windowFailures;
+
+    private long calls;
+
+    private long failures;
+
+    /** 因并发已满被拒绝的次数 */
+    private long rejected;
+
+    /** 因熔断被拒绝的次数 */
+    private long shortCircuited;
+}
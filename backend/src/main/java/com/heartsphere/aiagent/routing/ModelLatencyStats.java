@@ -0,0 +1,35 @@
+package com.heartsphere.aiagent.routing;
+
+import lombok.Data;
+
+/**
+ * 单个模型的实时耗时统计快照
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+public class ModelLatencyStats {
+
+    private String provider;
+
+    private String model;
+
+    /** 累计成功的流式调用数（首字耗时与输出速度的样本数） */
+    private long samples;
+
+    /** 首字耗时的指数移动平均（毫秒） */
+    private long ewmaTtftMs;
+
+    /** 最近样本的首字耗时p95（毫秒） */
+    private long p95TtftMs;
+
+    /** 输出速度的指数移动平均（tokens/s），未知时为0 */
+    private double tokensPerSecond;
+
+    /** 累计成功的非流式调用数 */
+    private long callSamples;
+
+    /** 非流式调用整次耗时的指数移动平均（毫秒） */
+    private long ewmaCallMs;
+}
@@ -0,0 +1,174 @@
+package com.heartsphere.aiagent.routing;
+
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.config.AIProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按“提供商:模型”统计实时调用的首字耗时（TTFT）与输出速度
+ * 首字耗时与输出速度只取自流式调用：首字耗时保留指数移动平均与最近 sampleWindow 个未过期样本的p95，
+ * 输出速度（tokens/s）为指数移动平均。非流式调用拿不到首字耗时，单独统计整次耗时的指数移动平均。
+ * 只统计成功的调用，失败由提供商隔离舱处理。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class ModelLatencyTracker {
+
+    private final AIProperties.LatencyRouting config;
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    public ModelLatencyTracker(AIProperties aiProperties) {
+        this.config = aiProperties.getLatencyRouting();
+    }
+
+    /**
+     * 记录一次成功的流式调用
+     *
+     * @param ttftMs 首字耗时（毫秒）
+     * @param totalMs 整次调用耗时（毫秒）
+     * @param outputTokens 输出Token数，未知时为0
+     */
+    public void record(String provider, String model, long ttftMs, long totalMs, int outputTokens) {
+        LatencyWindow window = window(provider, model);
+        if (window != null) {
+            window.record(ttftMs, totalMs, outputTokens);
+        }
+    }
+
+    /**
+     * 记录一次成功的非流式调用（不计入首字耗时与输出速度）
+     *
+     * @param latencyMs 整次调用耗时（毫秒）
+     */
+    public void recordCall(String provider, String model, long latencyMs) {
+        LatencyWindow window = window(provider, model);
+        if (window != null) {
+            window.recordCall(latencyMs);
+        }
+    }
+
+    /**
+     * 获取模型的耗时统计；没有样本时 samples 为0
+     */
+    public ModelLatencyStats get(String provider, String model) {
+        String canonical = ModelAdapterManager.canonicalProvider(provider);
+        LatencyWindow window = windows.get(key(canonical, model));
+        if (window == null) {
+            ModelLatencyStats empty = new ModelLatencyStats();
+            empty.setProvider(canonical);
+            empty.setModel(model);
+            return empty;
+        }
+        return window.stats();
+    }
+
+    public List<ModelLatencyStats> stats() {
+        return windows.values().stream()
+            .map(LatencyWindow::stats)
+            .sorted(Comparator.comparing(ModelLatencyStats::getProvider).thenComparing(ModelLatencyStats::getModel))
+            .toList();
+    }
+
+    /**
+     * 定期输出各模型耗时
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.ai.latency-routing.stats-interval-ms:300000}")
+    public void logStats() {
+        for (ModelLatencyStats stats : stats()) {
+            log.info("模型耗时[{}:{}]: samples={}, ewmaTtftMs={}, p95TtftMs={}, tokensPerSecond={}, "
+                    + "callSamples={}, ewmaCallMs={}",
+                stats.getProvider(), stats.getModel(), stats.getSamples(), stats.getEwmaTtftMs(),
+                stats.getP95TtftMs(), String.format("%.1f", stats.getTokensPerSecond()),
+                stats.getCallSamples(), stats.getEwmaCallMs());
+        }
+    }
+
+    private LatencyWindow window(String provider, String model) {
+        if (provider == null || model == null) {
+            return null;
+        }
+        String canonical = ModelAdapterManager.canonicalProvider(provider);
+        return windows.computeIfAbsent(key(canonical, model), k -> new LatencyWindow(canonical, model));
+    }
+
+    private static String key(String provider, String model) {
+        return provider + ":" + model;
+    }
+
+    private class LatencyWindow {
+        private final String provider;
+        private final String model;
+        private final long[] ttftSamples = new long[Math.max(1, config.getSampleWindow())];
+        private final long[] recordedAt = new long[ttftSamples.length];
+        private int size;
+        private int index;
+        private long samples;
+        private double ewmaTtftMs;
+        private double ewmaTokensPerSecond;
+        private long callSamples;
+        private double ewmaCallMs;
+
+        private LatencyWindow(String provider, String model) {
+            this.provider = provider;
+            this.model = model;
+        }
+
+        private synchronized void record(long ttftMs, long totalMs, int outputTokens) {
+            ttftSamples[index] = ttftMs;
+            recordedAt[index] = System.currentTimeMillis();
+            index = (index + 1) % ttftSamples.length;
+            size = Math.min(size + 1, ttftSamples.length);
+            ewmaTtftMs = samples == 0 ? ttftMs : ewmaTtftMs + (ttftMs - ewmaTtftMs) * config.getEwmaAlpha();
+
+            long generationMs = totalMs - ttftMs;
+            if (outputTokens > 0 && generationMs > 0) {
+                double tokensPerSecond = outputTokens * 1000.0 / generationMs;
+                ewmaTokensPerSecond = ewmaTokensPerSecond == 0
+                    ? tokensPerSecond
+                    : ewmaTokensPerSecond + (tokensPerSecond - ewmaTokensPerSecond) * config.getEwmaAlpha();
+            }
+            samples++;
+        }
+
+        private synchronized void recordCall(long latencyMs) {
+            ewmaCallMs = callSamples == 0 ? latencyMs : ewmaCallMs + (latencyMs - ewmaCallMs) * config.getEwmaAlpha();
+            callSamples++;
+        }
+
+        private synchronized ModelLatencyStats stats() {
+            ModelLatencyStats stats = new ModelLatencyStats();
+            stats.setProvider(provider);
+            stats.setModel(model);
+            stats.setSamples(samples);
+            stats.setEwmaTtftMs(Math.round(ewmaTtftMs));
+            stats.setTokensPerSecond(ewmaTokensPerSecond);
+            stats.setCallSamples(callSamples);
+            stats.setEwmaCallMs(Math.round(ewmaCallMs));
+            // p95只看有效期内的样本，全部过期时为0
+            long expireBefore = config.getSampleTtlMs() > 0 ? System.currentTimeMillis() - config.getSampleTtlMs() : Long.MIN_VALUE;
+            long[] live = new long[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (recordedAt[i] >= expireBefore) {
+                    live[count++] = ttftSamples[i];
+                }
+            }
+            if (count > 0) {
+                long[] sorted = Arrays.copyOf(live, count);
+                Arrays.sort(sorted);
+                stats.setP95TtftMs(sorted[(int) Math.ceil(count * 0.95) - 1]);
+            }
+            return stats;
+        }
+    }
+}
@@ -30,6 +30,15 @@ public interface AIService {
     void generateTextStream(Long userId, TextGenerationRequest request, 
                            com.heartsphere.aiagent.util.StreamResponseHandler<TextGenerationResponse> handler);
     
+    /**
+     * 流式生成文本（响应式）
+     * 订阅时才调用模型，取消订阅即取消上游请求；片段约定见 {@link com.heartsphere.aiagent.util.TextStreams}
+     * @param userId 用户ID
+     * @param request 文本生成请求
+     * @return 文本片段流
+     */
+    reactor.core.publisher.Flux<TextGenerationResponse> streamText(Long userId, TextGenerationRequest request);
+    
     /**
      * 生成图片
      * @param userId 用户ID
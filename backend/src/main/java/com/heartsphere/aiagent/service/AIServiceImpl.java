@@ -4,16 +4,30 @@ import com.heartsphere.admin.dto.AIModelConfigDTO;
 import com.heartsphere.admin.service.AIModelConfigService;
 import com.heartsphere.aiagent.adapter.ModelAdapter;
 import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.cache.AIResponseCache;
+import com.heartsphere.aiagent.cache.InFlightRequestCoalescer;
+import com.heartsphere.aiagent.cache.RequestFingerprint;
 import com.heartsphere.aiagent.dto.request.*;
 import com.heartsphere.aiagent.dto.response.*;
 import com.heartsphere.aiagent.entity.UserAIConfig;
 import com.heartsphere.aiagent.exception.AIServiceException;
 import com.heartsphere.aiagent.util.StreamResponseHandler;
+import com.heartsphere.aiagent.util.TextStreams;
 import com.heartsphere.billing.annotation.RequiresTokenQuota;
 import com.heartsphere.constants.ApplicationConstants;
+import com.heartsphere.memory.context.AssembledContext;
+import com.heartsphere.memory.context.ContextAssembler;
+import com.heartsphere.memory.context.ContextRequest;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * AI服务实现
@@ -30,6 +44,10 @@ public class AIServiceImpl implements AIService {
     private final AIConfigService configService;
     private final UnifiedModelRoutingService unifiedRoutingService;
     private final AIModelConfigService modelConfigService;
+    private final AIResponseCache responseCache;
+    private final InFlightRequestCoalescer requestCoalescer;
+    private final ModelFailover modelFailover;
+    private final ContextAssembler contextAssembler;
     
     @Override
     @RequiresTokenQuota(quotaType = "text_token", usageType = "text_generation")
@@ -106,11 +124,31 @@ public class AIServiceImpl implements AIService {
                 request.setTemperature(ApplicationConstants.AIConstants.DEFAULT_TEMPERATURE);
             }
             
-            // 获取适配器
-            ModelAdapter adapter = adapterManager.getAdapter(request.getProvider());
+            applyMemoryContext(userId, request);
             
-            // 调用适配器生成文本
-            TextGenerationResponse response = adapter.generateText(request);
+            // 响应缓存：命中时直接返回，不调用模型（计费切面对缓存结果不计费）
+            String cacheKey = responseCache.isCacheable(request) ? AIResponseCache.keyOf(request) : null;
+            if (cacheKey != null) {
+                TextGenerationResponse cached = responseCache.get(cacheKey, request.getModel());
+                if (cached != null) {
+                    log.debug("文本生成命中响应缓存，userId={}, provider={}, model={}", 
+                        userId, request.getProvider(), request.getModel());
+                    return cached;
+                }
+            }
+            
+            // 调用适配器生成文本；并发的相同请求合并为一次调用，由首个请求写入缓存；
+            // 容错模式下失败时改用降级链中的后续模型
+            TextGenerationResponse response = requestCoalescer.generateText(
+                cacheKey != null ? cacheKey : RequestFingerprint.of(request), () -> {
+                    long startTime = System.currentTimeMillis();
+                    TextGenerationResponse generated = modelFailover.generateText(request,
+                        attempt -> adapterManager.getAdapter(attempt.getProvider()).generateText(attempt));
+                    if (cacheKey != null) {
+                        responseCache.put(cacheKey, generated, System.currentTimeMillis() - startTime);
+                    }
+                    return generated;
+                });
             log.debug("文本生成成功，userId={}, provider={}, model={}", 
                 userId, response.getProvider(), response.getModel());
             
@@ -128,106 +166,7 @@ public class AIServiceImpl implements AIService {
     public void generateTextStream(Long userId, TextGenerationRequest request, 
                                    StreamResponseHandler<TextGenerationResponse> handler) {
         try {
-            log.info("[AIServiceImpl] 开始流式文本生成 - userId={}, 请求provider={}, 请求model={}, hasPrompt={}, hasMessages={}, messagesCount={}", 
-                userId, 
-                request.getProvider(), 
-                request.getModel(),
-                request.getPrompt() != null && !request.getPrompt().isEmpty(),
-                request.getMessages() != null,
-                request.getMessages() != null ? request.getMessages().size() : 0);
-            
-            // 统一接入模式：使用管理后台配置的模型和路由策略
-            // 如果请求中没有指定provider和model，则从统一路由服务获取
-            if ((request.getProvider() == null || request.getProvider().isEmpty()) &&
-                (request.getModel() == null || request.getModel().isEmpty())) {
-                   try {
-                       log.info("[AIServiceImpl] 请求未指定provider/model，尝试从统一路由服务获取");
-                       AIModelConfigDTO modelConfig = unifiedRoutingService.selectModel("text");
-                       // 统一转为小写，确保与适配器注册名称一致
-                    String provider = (modelConfig.getProvider() != null) 
-                        ? modelConfig.getProvider().toLowerCase() 
-                        : null;
-                    request.setProvider(provider);
-                       request.setModel(modelConfig.getModelName());
-                       if (modelConfig.getBaseUrl() != null && !modelConfig.getBaseUrl().isEmpty()) {
-                           request.setBaseUrl(modelConfig.getBaseUrl());
-                           log.info("[AIServiceImpl] 统一接入模式：设置baseUrl={}", modelConfig.getBaseUrl());
-                       }
-                       if (modelConfig.getApiKey() != null && !modelConfig.getApiKey().isEmpty()) {
-                           request.setApiKey(modelConfig.getApiKey());
-                           log.info("[AIServiceImpl] 统一接入模式：设置apiKey（已从数据库获取）");
-                       }
-                       log.info("[AIServiceImpl] 统一接入模式：使用模型配置 provider={}, model={}", 
-                           modelConfig.getProvider(), modelConfig.getModelName());
-                } catch (Exception e) {
-                    log.warn("[AIServiceImpl] 统一接入模式路由失败，回退到用户配置: {}", e.getMessage());
-                    // 回退到用户配置
-                    String provider = configService.getUserTextProvider(userId);
-                    String model = configService.getUserTextModel(userId);
-                    request.setProvider(provider);
-                    request.setModel(model);
-                    log.info("[AIServiceImpl] 使用用户配置 provider={}, model={}", provider, model);
-                }
-            } else {
-                // 如果请求中已指定，优先使用请求中的
-                if (request.getProvider() == null || request.getProvider().isEmpty()) {
-                    String provider = configService.getUserTextProvider(userId);
-                    request.setProvider(provider);
-                    log.info("[AIServiceImpl] 请求未指定provider，使用用户配置 provider={}", provider);
-                }
-                if (request.getModel() == null || request.getModel().isEmpty()) {
-                    String model = configService.getUserTextModel(userId);
-                    request.setModel(model);
-                    log.info("[AIServiceImpl] 请求未指定model，使用用户配置 model={}", model);
-                }
-                
-                // 即使请求中已指定provider和model，也需要从数据库获取API key和baseUrl
-                try {
-                    com.heartsphere.admin.entity.AIModelConfig modelConfig = 
-                        modelConfigService.getModelConfigWithApiKey(
-                            request.getProvider(), 
-                            request.getModel(), 
-                            "text"
-                        );
-                    if (modelConfig.getApiKey() != null && !modelConfig.getApiKey().trim().isEmpty()) {
-                        request.setApiKey(modelConfig.getApiKey());
-                        log.info("[AIServiceImpl] 从数据库获取并设置apiKey（provider={}, model={}）", 
-                            request.getProvider(), request.getModel());
-                    }
-                    if (modelConfig.getBaseUrl() != null && !modelConfig.getBaseUrl().trim().isEmpty()) {
-                        request.setBaseUrl(modelConfig.getBaseUrl());
-                        log.info("[AIServiceImpl] 从数据库获取并设置baseUrl={}", modelConfig.getBaseUrl());
-                    }
-                } catch (Exception e) {
-                    log.warn("[AIServiceImpl] 获取模型配置失败（provider={}, model={}），将继续使用默认配置: {}", 
-                        request.getProvider(), request.getModel(), e.getMessage());
-                }
-            }
-            
-            // 设置默认参数
-            if (request.getTemperature() == null) {
-                request.setTemperature(0.7);
-            }
-            if (request.getMaxTokens() == null) {
-                request.setMaxTokens(2048);
-            }
-            
-            log.info("[AIServiceImpl] 最终请求参数 - provider={}, model={}, temperature={}, maxTokens={}", 
-                request.getProvider(), request.getModel(), request.getTemperature(), request.getMaxTokens());
-            
-            // 获取适配器
-            ModelAdapter adapter = adapterManager.getAdapter(request.getProvider());
-            if (adapter == null) {
-                log.error("[AIServiceImpl] 适配器不存在 - provider={}, userId={}", request.getProvider(), userId);
-                throw new AIServiceException("适配器不存在: " + request.getProvider());
-            }
-            
-            log.info("[AIServiceImpl] 获取适配器成功 - provider={}, adapterClass={}", 
-                request.getProvider(), adapter.getClass().getSimpleName());
-            
-            // 调用适配器流式生成文本
-            log.info("[AIServiceImpl] 统一接入模式 - 开始调用适配器.generateTextStream - provider={}, model={}, baseUrl={}", 
-                request.getProvider(), request.getModel(), request.getBaseUrl());
+            Flux<TextGenerationResponse> stream = openTextStream(userId, request);
             
             // 创建一个包装的handler来记录日志
             final StreamResponseHandler<TextGenerationResponse> loggingHandler = new StreamResponseHandler<TextGenerationResponse>() {
@@ -266,10 +205,8 @@ public class AIServiceImpl implements AIService {
                 }
             };
             
-            // 注意：Flux的错误是异步的，不会立即抛出异常
-            // 错误会在Flux的error handler中处理，并通过handler.handle(null, true)传递
-            adapter.generateTextStream(request, loggingHandler);
-            log.info("[AIServiceImpl] 统一接入模式 - 适配器.generateTextStream调用完成（异步执行，错误通过Flux的error handler处理）");
+            // 订阅后立即返回，片段与错误在上游线程上通过handler回调
+            TextStreams.toHandler(stream, loggingHandler);
             
         } catch (Exception e) {
             log.error("[AIServiceImpl] 流式文本生成失败 - userId={}, provider={}, model={}", 
@@ -278,6 +215,130 @@ public class AIServiceImpl implements AIService {
         }
     }
     
+    @Override
+    @RequiresTokenQuota(quotaType = "text_token", usageType = "text_generation")
+    public Flux<TextGenerationResponse> streamText(Long userId, TextGenerationRequest request) {
+        try {
+            return openTextStream(userId, request);
+        } catch (Exception e) {
+            log.error("[AIServiceImpl] 流式文本生成失败 - userId={}, provider={}, model={}", 
+                userId, request.getProvider(), request.getModel(), e);
+            throw new AIServiceException("流式文本生成失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 解析流式请求的provider、model、密钥与默认参数，返回尚未订阅的片段流
+     */
+    private Flux<TextGenerationResponse> openTextStream(Long userId, TextGenerationRequest request) {
+        log.info("[AIServiceImpl] 开始流式文本生成 - userId={}, 请求provider={}, 请求model={}, hasPrompt={}, hasMessages={}, messagesCount={}", 
+            userId, 
+            request.getProvider(), 
+            request.getModel(),
+            request.getPrompt() != null && !request.getPrompt().isEmpty(),
+            request.getMessages() != null,
+            request.getMessages() != null ? request.getMessages().size() : 0);
+        
+        // 统一接入模式：使用管理后台配置的模型和路由策略
+        // 如果请求中没有指定provider和model，则从统一路由服务获取
+        if ((request.getProvider() == null || request.getProvider().isEmpty()) &&
+            (request.getModel() == null || request.getModel().isEmpty())) {
+            try {
+                log.info("[AIServiceImpl] 请求未指定provider/model，尝试从统一路由服务获取");
+                AIModelConfigDTO modelConfig = unifiedRoutingService.selectModel("text");
+                // 统一转为小写，确保与适配器注册名称一致
+                String provider = (modelConfig.getProvider() != null) 
+                    ? modelConfig.getProvider().toLowerCase() 
+                    : null;
+                request.setProvider(provider);
+                request.setModel(modelConfig.getModelName());
+                if (modelConfig.getBaseUrl() != null && !modelConfig.getBaseUrl().isEmpty()) {
+                    request.setBaseUrl(modelConfig.getBaseUrl());
+                    log.info("[AIServiceImpl] 统一接入模式：设置baseUrl={}", modelConfig.getBaseUrl());
+                }
+                if (modelConfig.getApiKey() != null && !modelConfig.getApiKey().isEmpty()) {
+                    request.setApiKey(modelConfig.getApiKey());
+                    log.info("[AIServiceImpl] 统一接入模式：设置apiKey（已从数据库获取）");
+                }
+                log.info("[AIServiceImpl] 统一接入模式：使用模型配置 provider={}, model={}", 
+                    modelConfig.getProvider(), modelConfig.getModelName());
+            } catch (Exception e) {
+                log.warn("[AIServiceImpl] 统一接入模式路由失败，回退到用户配置: {}", e.getMessage());
+                // 回退到用户配置
+                String provider = configService.getUserTextProvider(userId);
+                String model = configService.getUserTextModel(userId);
+                request.setProvider(provider);
+                request.setModel(model);
+                log.info("[AIServiceImpl] 使用用户配置 provider={}, model={}", provider, model);
+            }
+        } else {
+            // 如果请求中已指定，优先使用请求中的
+            if (request.getProvider() == null || request.getProvider().isEmpty()) {
+                String provider = configService.getUserTextProvider(userId);
+                request.setProvider(provider);
+                log.info("[AIServiceImpl] 请求未指定provider，使用用户配置 provider={}", provider);
+            }
+            if (request.getModel() == null || request.getModel().isEmpty()) {
+                String model = configService.getUserTextModel(userId);
+                request.setModel(model);
+                log.info("[AIServiceImpl] 请求未指定model，使用用户配置 model={}", model);
+            }
+            
+            // 即使请求中已指定provider和model，也需要从数据库获取API key和baseUrl
+            try {
+                com.heartsphere.admin.entity.AIModelConfig modelConfig = 
+                    modelConfigService.getModelConfigWithApiKey(
+                        request.getProvider(), 
+                        request.getModel(), 
+                        "text"
+                    );
+                if (modelConfig.getApiKey() != null && !modelConfig.getApiKey().trim().isEmpty()) {
+                    request.setApiKey(modelConfig.getApiKey());
+                    log.info("[AIServiceImpl] 从数据库获取并设置apiKey（provider={}, model={}）", 
+                        request.getProvider(), request.getModel());
+                }
+                if (modelConfig.getBaseUrl() != null && !modelConfig.getBaseUrl().trim().isEmpty()) {
+                    request.setBaseUrl(modelConfig.getBaseUrl());
+                    log.info("[AIServiceImpl] 从数据库获取并设置baseUrl={}", modelConfig.getBaseUrl());
+                }
+            } catch (Exception e) {
+                log.warn("[AIServiceImpl] 获取模型配置失败（provider={}, model={}），将继续使用默认配置: {}", 
+                    request.getProvider(), request.getModel(), e.getMessage());
+            }
+        }
+        
+        // 设置默认参数
+        if (request.getTemperature() == null) {
+            request.setTemperature(0.7);
+        }
+        if (request.getMaxTokens() == null) {
+            request.setMaxTokens(2048);
+        }
+        
+        applyMemoryContext(userId, request);
+        
+        log.info("[AIServiceImpl] 最终请求参数 - provider={}, model={}, temperature={}, maxTokens={}", 
+            request.getProvider(), request.getModel(), request.getTemperature(), request.getMaxTokens());
+        
+        // 获取适配器
+        ModelAdapter adapter = adapterManager.getAdapter(request.getProvider());
+        if (adapter == null) {
+            log.error("[AIServiceImpl] 适配器不存在 - provider={}, userId={}", request.getProvider(), userId);
+            throw new AIServiceException("适配器不存在: " + request.getProvider());
+        }
+        
+        log.info("[AIServiceImpl] 获取适配器成功 - provider={}, adapterClass={}", 
+            request.getProvider(), adapter.getClass().getSimpleName());
+        
+        // 调用适配器流式生成文本
+        log.info("[AIServiceImpl] 统一接入模式 - 开始调用适配器.streamText - provider={}, model={}, baseUrl={}", 
+            request.getProvider(), request.getModel(), request.getBaseUrl());
+        
+        // 并发的相同流式请求共用一次调用，后加入方先重放已输出的片段；容错模式下输出前失败可改用后续模型
+        return requestCoalescer.streamText(RequestFingerprint.of(request), () -> modelFailover.streamText(request,
+            attempt -> adapterManager.getAdapter(attempt.getProvider()).streamText(attempt)));
+    }
+    
     @Override
     @RequiresTokenQuota(quotaType = "image", usageType = "image_generation")
     public ImageGenerationResponse generateImage(Long userId, ImageGenerationRequest request) {
@@ -324,11 +385,10 @@ public class AIServiceImpl implements AIService {
                 }
             }
             
-            // 获取适配器
-            ModelAdapter adapter = adapterManager.getAdapter(request.getProvider());
-            
-            // 调用适配器生成图片
-            ImageGenerationResponse response = adapter.generateImage(request);
+            // 调用适配器生成图片；并发的相同请求合并为一次调用；容错模式下失败时改用降级链中的后续模型
+            ImageGenerationResponse response = requestCoalescer.generateImage(
+                RequestFingerprint.of(request), () -> modelFailover.generateImage(request,
+                    attempt -> adapterManager.getAdapter(attempt.getProvider()).generateImage(attempt)));
             log.debug("图片生成成功，userId={}, provider={}, model={}", 
                 userId, response.getProvider(), response.getModel());
             
@@ -410,4 +470,42 @@ public class AIServiceImpl implements AIService {
     public UserAIConfig updateUserConfig(Long userId, UserAIConfig config) {
         return configService.updateUserConfig(userId, config);
     }
+    
+    /**
+     * 请求指定了记忆会话时，按模型token预算从短期记忆和长期记忆组装系统指令与对话历史，
+     * 替换请求中的systemInstruction和messages；组装失败时按原请求继续
+     */
+    private void applyMemoryContext(Long userId, TextGenerationRequest request) {
+        if (request.getMemorySessionId() == null || request.getMemorySessionId().isEmpty()) {
+            return;
+        }
+        try {
+            AssembledContext context = contextAssembler.assemble(ContextRequest.builder()
+                .userId(userId != null ? userId.toString() : null)
+                .sessionId(request.getMemorySessionId())
+                .model(request.getModel())
+                .systemPrompt(request.getSystemInstruction())
+                .query(request.getPrompt())
+                .build());
+            String systemInstruction = null;
+            List<TextGenerationRequest.Message> messages = new ArrayList<>();
+            for (ChatMessage message : context.getMessages()) {
+                if (message.getRole() == MessageRole.SYSTEM) {
+                    systemInstruction = message.getContent();
+                    continue;
+                }
+                TextGenerationRequest.Message converted = new TextGenerationRequest.Message();
+                converted.setRole(message.getRole().name().toLowerCase(Locale.ROOT));
+                converted.setContent(message.getContent());
+                messages.add(converted);
+            }
+            request.setSystemInstruction(systemInstruction);
+            request.setMessages(messages);
+            log.debug("已组装记忆上下文，userId={}, sessionId={}, messages={}, usedTokens={}", 
+                userId, request.getMemorySessionId(), messages.size(), context.getTelemetry().getUsedTokens());
+        } catch (Exception e) {
+            log.warn("组装记忆上下文失败，按原请求继续，userId={}, sessionId={}: {}", 
+                userId, request.getMemorySessionId(), e.getMessage());
+        }
+    }
 }
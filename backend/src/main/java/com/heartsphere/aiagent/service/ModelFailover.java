@@ -0,0 +1,335 @@
+package com.heartsphere.aiagent.service;
+
+import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.admin.dto.AIRoutingStrategyDTO;
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.request.ImageGenerationRequest;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.ImageGenerationResponse;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.exception.AIServiceException;
+import com.heartsphere.aiagent.exception.ProviderUnavailableException;
+import com.heartsphere.aiagent.resilience.AbandonableCall;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 容错模式的调用时故障转移
+ * 请求的模型属于 fallback 路由策略的降级链时，调用超时、上游5xx/429、连接失败或提供商熔断，
+ * 就在截止时间内依次改用链中的后续模型；单个模型最多等待 attemptTimeoutMs，整次调用不超过 deadlineMs，
+ * 超时的调用不再等待（其结果被丢弃）。流式调用只在尚未输出内容时转移，已输出的内容无法撤回。
+ * 同步调用在专用线程池上执行，线程池已满或某提供商超时未返回的调用过多时不再发起新调用，
+ * 直接按提供商不可用处理（可转移），避免调用回落到请求线程上而不受截止时间约束。
+ * 所有流式调用都在这里限制首个片段前及片段之间的空闲时间（heartsphere.ai.streaming.idle-timeout-ms）。
+ * 超时（同步调用不再等待、流式调用被取消）都补记为该提供商隔离舱的一次失败，
+ * 否则被取消的流式调用只归还许可，变慢的提供商永远不会熔断；被放弃的同步调用之后返回时只归还许可，不重复计数。
+ * 由后续模型完成的响应会标上该模型配置的 provider 与 model，计费切面据此按实际完成的模型计费。
+ * 不属于降级链的请求（如用户显式指定的模型）原样调用。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+@Component
+public class ModelFailover {
+
+    private final UnifiedModelRoutingService routingService;
+    private final AIProperties.Failover config;
+    private final AIProperties.Streaming streaming;
+    private final ProviderGuardRegistry guardRegistry;
+    private final Executor executor;
+    /** 各提供商超时后仍未返回的同步调用数 */
+    private final ConcurrentHashMap<String, AtomicInteger> abandoned = new ConcurrentHashMap<>();
+
+    public ModelFailover(UnifiedModelRoutingService routingService, AIProperties aiProperties,
+                         ProviderGuardRegistry guardRegistry, @Qualifier("aiFailoverExecutor") Executor executor) {
+        this.routingService = routingService;
+        this.config = aiProperties.getFailover();
+        this.streaming = aiProperties.getStreaming();
+        this.guardRegistry = guardRegistry;
+        this.executor = executor;
+    }
+
+    // ========== 同步调用 ==========
+
+    public TextGenerationResponse generateText(TextGenerationRequest request,
+                                               Function<TextGenerationRequest, TextGenerationResponse> call) {
+        return execute("text", config.getText(), request, request.getProvider(), request.getModel(),
+            ModelFailover::retarget, call, (response, served) -> {
+                response.setProvider(served.getProvider());
+                response.setModel(served.getModelName());
+            });
+    }
+
+    public ImageGenerationResponse generateImage(ImageGenerationRequest request,
+                                                 Function<ImageGenerationRequest, ImageGenerationResponse> call) {
+        return execute("image", config.getImage(), request, request.getProvider(), request.getModel(),
+            ModelFailover::retarget, call, (response, served) -> {
+                response.setProvider(served.getProvider());
+                response.setModel(served.getModelName());
+            });
+    }
+
+    private <R, T> T execute(String capability, AIProperties.Budget budget, R request, String provider, String model,
+                             Retarget<R> retarget, Function<R, T> call, Stamp<T> stamp) {
+        List<AIRoutingStrategyDTO.FallbackConfig> candidates = candidates(capability, provider, model);
+        if (candidates.isEmpty()) {
+            return call.apply(request);
+        }
+
+        long deadline = System.currentTimeMillis() + budget.getDeadlineMs();
+        Iterator<AIRoutingStrategyDTO.FallbackConfig> next = candidates.iterator();
+        R current = request;
+        AIModelConfigDTO served = null;
+        while (true) {
+            long timeoutMs = Math.min(budget.getAttemptTimeoutMs(), deadline - System.currentTimeMillis());
+            try {
+                T result = callWithTimeout(capability, served != null ? served.getProvider() : provider,
+                    current, call, timeoutMs);
+                if (served != null && result != null) {
+                    stamp.apply(result, served);
+                    log.info("[故障转移] 已由降级模型完成: capability={}, provider={}, model={}",
+                        capability, served.getProvider(), served.getModelName());
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                AIModelConfigDTO target = nextTarget(capability, next, deadline);
+                if (target == null) {
+                    throw e;
+                }
+                log.warn("[故障转移] {} 调用失败，改用 provider={}, model={}，剩余 {} 毫秒: {}",
+                    served != null ? served.getModelName() : model, target.getProvider(), target.getModelName(),
+                    deadline - System.currentTimeMillis(), e.getMessage());
+                current = retarget.apply(request, target);
+                served = target;
+            }
+        }
+    }
+
+    /**
+     * 在故障转移线程池上执行调用，最多等待 timeoutMs；超时不取消上游（阻塞的HTTP调用无法中断），只是不再等待，
+     * 该调用在返回前计入提供商的未返回调用数
+     */
+    private <R, T> T callWithTimeout(String capability, String provider, R request, Function<R, T> call,
+                                     long timeoutMs) {
+        String key = String.valueOf(ModelAdapterManager.canonicalProvider(provider));
+        AtomicInteger pending = abandoned.computeIfAbsent(key, k -> new AtomicInteger());
+        if (pending.get() >= config.getMaxAbandonedPerProvider()) {
+            throw new ProviderUnavailableException("提供商超时未返回的调用过多: " + key + "/" + capability,
+                key, capability, timeoutMs);
+        }
+        AbandonableCall attempt = new AbandonableCall();
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> attempt.run(() -> call.apply(request)), executor);
+        } catch (RejectedExecutionException e) {
+            throw new ProviderUnavailableException("故障转移线程池已满: " + key + "/" + capability,
+                key, capability, 0);
+        }
+        try {
+            return future.get(Math.max(1, timeoutMs), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.incrementAndGet();
+            future.whenComplete((result, error) -> pending.decrementAndGet());
+            if (provider != null) {
+                attempt.timeout(guardRegistry.guard(provider, capability));
+            }
+            throw new AIServiceException("模型调用超时（" + timeoutMs + " 毫秒）", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new AIServiceException("模型调用失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceException("模型调用被中断", e);
+        }
+    }
+
+    // ========== 流式调用 ==========
+
+    public Flux<TextGenerationResponse> streamText(TextGenerationRequest request,
+                                                   Function<TextGenerationRequest, Flux<TextGenerationResponse>> call) {
+        return Flux.defer(() -> {
+            List<AIRoutingStrategyDTO.FallbackConfig> candidates =
+                candidates("text", request.getProvider(), request.getModel());
+            return attemptStream(request, null, call, candidates.iterator(),
+                System.currentTimeMillis() + config.getText().getDeadlineMs());
+        });
+    }
+
+    private Flux<TextGenerationResponse> attemptStream(TextGenerationRequest request, AIModelConfigDTO served,
+                                                       Function<TextGenerationRequest, Flux<TextGenerationResponse>> call,
+                                                       Iterator<AIRoutingStrategyDTO.FallbackConfig> next, long deadline) {
+        TextGenerationRequest current = served != null ? retarget(request, served) : request;
+        long idleTimeoutMs = streaming.getIdleTimeoutMs();
+        // 还有后续模型可转移时，首个片段按较短的首字超时等待
+        long firstChunkTimeoutMs = next.hasNext()
+            ? Math.max(1, Math.min(config.getStreamFirstChunkTimeoutMs(), deadline - System.currentTimeMillis()))
+            : idleTimeoutMs;
+        AtomicBoolean emitted = new AtomicBoolean();
+        Flux<TextGenerationResponse> stream = call.apply(current)
+            .timeout(Mono.delay(Duration.ofMillis(firstChunkTimeoutMs)),
+                chunk -> Mono.delay(Duration.ofMillis(idleTimeoutMs)))
+            .doOnError(TimeoutException.class, e -> reportTimeout(current.getProvider(), "text"))
+            .doOnNext(chunk -> {
+                if (chunk.getContent() != null) {
+                    emitted.set(true);
+                }
+            });
+        if (served != null) {
+            stream = stream.doOnNext(chunk -> {
+                chunk.setProvider(served.getProvider());
+                chunk.setModel(served.getModelName());
+            });
+        }
+        return stream.onErrorResume(e -> !emitted.get() && isRetryable(e), e -> {
+            AIModelConfigDTO target = nextTarget("text", next, deadline);
+            if (target == null) {
+                return Flux.error(e);
+            }
+            log.warn("[故障转移] 流式调用 {} 在输出前失败，改用 provider={}, model={}: {}",
+                current.getModel(), target.getProvider(), target.getModelName(), e.getMessage());
+            return attemptStream(request, target, call, next, deadline);
+        });
+    }
+
+    // ========== 公共 ==========
+
+    /**
+     * 超时放弃的调用补记为提供商隔离舱的一次失败
+     */
+    private void reportTimeout(String provider, String capability) {
+        if (provider != null) {
+            guardRegistry.guard(provider, capability).recordTimeout();
+        }
+    }
+
+    private List<AIRoutingStrategyDTO.FallbackConfig> candidates(String capability, String provider, String model) {
+        if (!config.isEnabled()) {
+            return List.of();
+        }
+        try {
+            return routingService.getFailoverCandidates(capability, provider, model);
+        } catch (Exception e) {
+            log.warn("[故障转移] 获取降级链失败，不做故障转移: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 取降级链中下一个可用的模型；剩余时间不足或链已用尽时返回null
+     */
+    private AIModelConfigDTO nextTarget(String capability, Iterator<AIRoutingStrategyDTO.FallbackConfig> next,
+                                        long deadline) {
+        while (next.hasNext()) {
+            if (deadline - System.currentTimeMillis() < config.getMinAttemptMs()) {
+                log.warn("[故障转移] 已接近截止时间，不再尝试后续模型: capability={}", capability);
+                return null;
+            }
+            AIRoutingStrategyDTO.FallbackConfig fallbackConfig = next.next();
+            try {
+                return routingService.resolveFallbackModel(capability, fallbackConfig);
+            } catch (Exception e) {
+                log.warn("[故障转移] 跳过无法加载的降级模型: provider={}, model={}, error={}",
+                    fallbackConfig.getProvider(), fallbackConfig.getModel(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否值得换一个模型重试：超时、连接失败、上游5xx或429、提供商熔断/并发已满。
+     * 4xx（请求本身有误、密钥无效等）换模型通常也无济于事，不转移。
+     * 同一判定也用于提供商隔离舱：只有这些错误说明提供商本身有问题，计入熔断
+     */
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ProviderUnavailableException
+                || cause instanceof TimeoutException
+                || cause instanceof SocketTimeoutException
+                || cause instanceof ConnectException
+                || cause instanceof ResourceAccessException
+                || cause instanceof WebClientRequestException) {
+                return true;
+            }
+            if (cause instanceof HttpStatusCodeException http) {
+                return http.getStatusCode().is5xxServerError() || http.getStatusCode().value() == 429;
+            }
+            if (cause instanceof WebClientResponseException http) {
+                return http.getStatusCode().is5xxServerError() || http.getStatusCode().value() == 429;
+            }
+        }
+        return false;
+    }
+
+    private static TextGenerationRequest retarget(TextGenerationRequest source, AIModelConfigDTO target) {
+        TextGenerationRequest copy = new TextGenerationRequest();
+        copy.setPrompt(source.getPrompt());
+        copy.setSystemInstruction(source.getSystemInstruction());
+        copy.setMessages(source.getMessages());
+        copy.setTemperature(source.getTemperature());
+        copy.setMaxTokens(source.getMaxTokens());
+        copy.setStream(source.getStream());
+        copy.setCacheable(source.getCacheable());
+        copy.setProvider(target.getProvider() != null ? target.getProvider().toLowerCase() : null);
+        copy.setModel(target.getModelName());
+        copy.setBaseUrl(target.getBaseUrl());
+        copy.setApiKey(target.getApiKey());
+        return copy;
+    }
+
+    private static ImageGenerationRequest retarget(ImageGenerationRequest source, AIModelConfigDTO target) {
+        ImageGenerationRequest copy = new ImageGenerationRequest();
+        copy.setPrompt(source.getPrompt());
+        copy.setNegativePrompt(source.getNegativePrompt());
+        copy.setWidth(source.getWidth());
+        copy.setHeight(source.getHeight());
+        copy.setAspectRatio(source.getAspectRatio());
+        copy.setNumberOfImages(source.getNumberOfImages());
+        copy.setStyle(source.getStyle());
+        copy.setProvider(target.getProvider() != null ? target.getProvider().toLowerCase() : null);
+        copy.setModel(target.getModelName());
+        copy.setBaseUrl(target.getBaseUrl());
+        copy.setApiKey(target.getApiKey());
+        return copy;
+    }
+
+    @FunctionalInterface
+    private interface Retarget<R> {
+        R apply(R source, AIModelConfigDTO target);
+    }
+
+    @FunctionalInterface
+    private interface Stamp<T> {
+        void apply(T result, AIModelConfigDTO served);
+    }
+}
@@ -4,12 +4,18 @@ import com.heartsphere.admin.dto.AIModelConfigDTO;
 import com.heartsphere.admin.dto.AIRoutingStrategyDTO;
 import com.heartsphere.admin.service.AIModelConfigService;
 import com.heartsphere.admin.service.AIRoutingStrategyService;
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
 import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.routing.ModelLatencyStats;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +29,8 @@ public class UnifiedModelRoutingService {
     
     private final AIModelConfigService modelConfigService;
     private final AIRoutingStrategyService routingStrategyService;
+    private final ModelLatencyTracker latencyTracker;
+    private final ProviderGuardRegistry guardRegistry;
     
     /**
      * 根据能力类型和路由策略选择模型配置
@@ -53,6 +61,10 @@ public class UnifiedModelRoutingService {
                 // 经济模式：选择最便宜的模型
                 return getEconomyModel(capability, strategy);
                 
+            case "latency":
+                // 最快响应模式：按实时耗时选择当前最快的健康模型
+                return getLatencyModel(capability, strategy);
+                
             default:
                 log.warn("未知的路由策略类型: {}, 使用默认模型", strategyType);
                 return getDefaultModel(capability);
@@ -82,7 +94,8 @@ public class UnifiedModelRoutingService {
     }
     
     /**
-     * 获取容错模式的模型（降级链中的第一个）
+     * 获取容错模式的模型（降级链中第一个未熔断的，都已熔断时取第一个）
+     * 调用失败时由 {@link ModelFailover} 依次改用链中的后续模型
      */
     private AIModelConfigDTO getFallbackModel(String capability, AIRoutingStrategyDTO strategy) {
         if (strategy.getFallbackChain() == null || strategy.getFallbackChain().isEmpty()) {
@@ -90,29 +103,67 @@ public class UnifiedModelRoutingService {
             return getDefaultModel(capability);
         }
         
-        // 按优先级排序，获取第一个
-        AIRoutingStrategyDTO.FallbackConfig firstConfig = strategy.getFallbackChain().stream()
-                .sorted((a, b) -> Integer.compare(a.getPriority(), b.getPriority()))
+        // 按优先级排序，跳过熔断中的提供商
+        List<AIRoutingStrategyDTO.FallbackConfig> chain = sortedChain(strategy);
+        AIRoutingStrategyDTO.FallbackConfig firstConfig = chain.stream()
+                .filter(c -> guardRegistry.isAvailable(c.getProvider(), capability))
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("降级链配置错误"));
+                .orElse(chain.get(0));
         
         // 查找对应的模型配置（包含完整API key）
+        return resolveFallbackModel(capability, firstConfig);
+    }
+    
+    /**
+     * 容错模式下，降级链中排在指定模型之后的各项（按优先级）
+     * 当前不是容错模式、或指定模型不在降级链中（如用户显式指定的模型）时返回空列表
+     */
+    public List<AIRoutingStrategyDTO.FallbackConfig> getFailoverCandidates(String capability, String provider, String model) {
+        AIRoutingStrategyDTO strategy = routingStrategyService.getStrategyByCapability(capability);
+        if (strategy == null || !Boolean.TRUE.equals(strategy.getIsActive())
+                || !"fallback".equals(strategy.getStrategyType())
+                || strategy.getFallbackChain() == null || provider == null || model == null) {
+            return List.of();
+        }
+        List<AIRoutingStrategyDTO.FallbackConfig> chain = sortedChain(strategy);
+        String canonicalProvider = ModelAdapterManager.canonicalProvider(provider);
+        for (int i = 0; i < chain.size(); i++) {
+            AIRoutingStrategyDTO.FallbackConfig config = chain.get(i);
+            if (model.equals(config.getModel())
+                    && canonicalProvider.equals(ModelAdapterManager.canonicalProvider(config.getProvider()))) {
+                return chain.subList(i + 1, chain.size());
+            }
+        }
+        return List.of();
+    }
+    
+    /**
+     * 查找降级链中一项的模型配置（包含完整API key）
+     */
+    public AIModelConfigDTO resolveFallbackModel(String capability, AIRoutingStrategyDTO.FallbackConfig fallbackConfig) {
         try {
             com.heartsphere.admin.entity.AIModelConfig config = 
                 modelConfigService.getModelConfigWithApiKey(
-                    firstConfig.getProvider(), 
-                    firstConfig.getModel(), 
+                    fallbackConfig.getProvider(), 
+                    fallbackConfig.getModel(), 
                     capability
                 );
             return modelConfigService.toDTOWithApiKey(config);
         } catch (Exception e) {
             throw new RuntimeException(
                 String.format("未找到模型配置: provider=%s, model=%s, capability=%s",
-                        firstConfig.getProvider(), firstConfig.getModel(), capability), e
+                        fallbackConfig.getProvider(), fallbackConfig.getModel(), capability), e
             );
         }
     }
     
+    private static List<AIRoutingStrategyDTO.FallbackConfig> sortedChain(AIRoutingStrategyDTO strategy) {
+        return strategy.getFallbackChain().stream()
+                .sorted((a, b) -> Integer.compare(
+                        a.getPriority() != null ? a.getPriority() : 0, b.getPriority() != null ? b.getPriority() : 0))
+                .collect(Collectors.toList());
+    }
+    
     /**
      * 获取经济模式的模型（最便宜的）
      */
@@ -178,6 +229,95 @@ public class UnifiedModelRoutingService {
         return selectedModel;
     }
     
+    /**
+     * 获取最快响应模式的模型
+     * 候选为成本不超过上限的活跃模型；熔断中或首字耗时p95超标的视为不健康（全部不健康时仍在候选中选）。
+     * 在样本充足的健康模型中选预计响应耗时最短的一个（见 {@link #expectedLatencyMs}）；
+     * 按 explorationRate 的概率改选其他未熔断的模型（包括p95超标的，优先样本最少的），
+     * 使未被选中或已被排除的模型的耗时统计保持新鲜。还没有样本充足的模型时按优先级选第一个健康模型。
+     */
+    private AIModelConfigDTO getLatencyModel(String capability, AIRoutingStrategyDTO strategy) {
+        AIRoutingStrategyDTO.LatencyConfig latencyConfig = strategy.getLatencyConfig() != null
+                ? strategy.getLatencyConfig()
+                : new AIRoutingStrategyDTO.LatencyConfig();
+        double explorationRate = latencyConfig.getExplorationRate() != null ? latencyConfig.getExplorationRate() : 0.05;
+        int expectedOutputTokens = latencyConfig.getExpectedOutputTokens() != null
+                ? latencyConfig.getExpectedOutputTokens() : 200;
+        int minSamples = latencyConfig.getMinSamples() != null ? latencyConfig.getMinSamples() : 5;
+        
+        // 按优先级返回，过滤超出成本上限的模型
+        List<AIModelConfigDTO> candidates = modelConfigService.getModelConfigsByCapability(capability).stream()
+                .filter(AIModelConfigDTO::getIsActive)
+                .filter(m -> latencyConfig.getMaxCostPerToken() == null || m.getCostPerToken() == null
+                        || m.getCostPerToken() <= latencyConfig.getMaxCostPerToken())
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            throw new RuntimeException(String.format("未找到%s能力符合成本上限的模型配置", capability));
+        }
+        
+        List<AIModelConfigDTO> healthy = candidates.stream()
+                .filter(m -> guardRegistry.isAvailable(m.getProvider(), capability))
+                .filter(m -> {
+                    ModelLatencyStats stats = latencyTracker.get(m.getProvider(), m.getModelName());
+                    return latencyConfig.getMaxP95TtftMs() == null || stats.getSamples() < minSamples
+                            || stats.getP95TtftMs() <= latencyConfig.getMaxP95TtftMs();
+                })
+                .collect(Collectors.toList());
+        if (healthy.isEmpty()) {
+            log.warn("最快响应模式：{}能力没有健康的模型，在全部候选中选择", capability);
+            healthy = candidates;
+        }
+        
+        AIModelConfigDTO fastest = healthy.stream()
+                .filter(m -> sampleCount(latencyTracker.get(m.getProvider(), m.getModelName())) >= minSamples)
+                .min(Comparator.comparingDouble(m -> expectedLatencyMs(
+                        latencyTracker.get(m.getProvider(), m.getModelName()), expectedOutputTokens, minSamples)))
+                .orElse(healthy.get(0));
+        
+        AIModelConfigDTO selected = fastest;
+        if (ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            // p95超标的模型不再被正常选中，只能靠探索补充新样本
+            selected = candidates.stream()
+                    .filter(m -> m != fastest)
+                    .filter(m -> guardRegistry.isAvailable(m.getProvider(), capability))
+                    .min(Comparator.comparingLong(m -> sampleCount(latencyTracker.get(m.getProvider(), m.getModelName()))))
+                    .orElse(fastest);
+            if (selected != fastest) {
+                log.debug("最快响应模式：探索 provider={}, model={}", selected.getProvider(), selected.getModelName());
+            }
+        }
+        
+        // 获取完整API key
+        if (selected.getId() != null) {
+            com.heartsphere.admin.entity.AIModelConfig config = 
+                modelConfigService.getModelConfigWithApiKey(selected.getId());
+            return modelConfigService.toDTOWithApiKey(config);
+        }
+        return selected;
+    }
+    
+    /**
+     * 模型的流式与非流式样本总数
+     */
+    private static long sampleCount(ModelLatencyStats stats) {
+        return stats.getSamples() + stats.getCallSamples();
+    }
+    
+    /**
+     * 预计响应耗时：流式样本充足时为首字耗时加上按输出速度生成预期Token数的时间（输出速度未知时只算首字耗时），
+     * 否则用非流式调用的整次耗时
+     */
+    private static double expectedLatencyMs(ModelLatencyStats stats, int expectedOutputTokens, int minSamples) {
+        if (stats.getSamples() < minSamples && stats.getCallSamples() > 0) {
+            return stats.getEwmaCallMs();
+        }
+        double latency = stats.getEwmaTtftMs();
+        if (stats.getTokensPerSecond() > 0) {
+            latency += expectedOutputTokens * 1000.0 / stats.getTokensPerSecond();
+        }
+        return latency;
+    }
+    
     /**
      * 应用模型配置到请求中
      * 设置provider、model、apiKey、baseUrl等
@@ -0,0 +1,109 @@
+package com.heartsphere.aiagent.util;
+
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.exception.AIServiceException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Consumer;
+
+/**
+ * 流式文本生成的 Flux 与回调（{@link StreamResponseHandler}）互转
+ * Flux 约定：content 不为null的元素是内容片段；content 为null的元素是结束片段，携带 finishReason 与用量
+ * （可能有多个，如用量单独下发时，以最后一个非空值为准）；正常结束即 onComplete，失败即 onError。
+ * 回调约定：内容片段以 done=false 回调，结束时以汇总了 finishReason 与用量的响应回调 done=true，失败时回调 (null, true)。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class TextStreams {
+
+    private TextStreams() {
+    }
+
+    /**
+     * 是否为结束片段（不含内容，只携带 finishReason 与用量）
+     */
+    public static boolean isEnd(TextGenerationResponse response) {
+        return response.getContent() == null;
+    }
+
+    /**
+     * 把回调式的流式调用包装为 Flux
+     *
+     * @param call 以处理器发起流式调用
+     */
+    public static Flux<TextGenerationResponse> fromHandler(Consumer<StreamResponseHandler<TextGenerationResponse>> call) {
+        return Flux.create(sink -> {
+            try {
+                call.accept((response, done) -> {
+                    if (!done) {
+                        if (response != null && response.getContent() != null) {
+                            sink.next(response);
+                        }
+                        return;
+                    }
+                    if (response == null) {
+                        sink.error(new AIServiceException("流式文本生成失败"));
+                        return;
+                    }
+                    if (response.getContent() != null && !response.getContent().isEmpty()) {
+                        TextGenerationResponse chunk = new TextGenerationResponse();
+                        chunk.setProvider(response.getProvider());
+                        chunk.setModel(response.getModel());
+                        chunk.setContent(response.getContent());
+                        sink.next(chunk);
+                    }
+                    TextGenerationResponse end = new TextGenerationResponse();
+                    end.setProvider(response.getProvider());
+                    end.setModel(response.getModel());
+                    end.setFinishReason(response.getFinishReason());
+                    end.setUsage(response.getUsage());
+                    sink.next(end);
+                    sink.complete();
+                });
+            } catch (RuntimeException e) {
+                // 已结束的 sink 会忽略重复的终止信号
+                sink.error(e);
+            }
+        });
+    }
+
+    /**
+     * 订阅 Flux 并以回调约定通知处理器
+     *
+     * @return 订阅句柄，dispose 即取消上游
+     */
+    public static Disposable toHandler(Flux<TextGenerationResponse> stream,
+                                       StreamResponseHandler<TextGenerationResponse> handler) {
+        TextGenerationResponse summary = new TextGenerationResponse();
+        return stream.subscribe(
+            response -> {
+                merge(summary, response);
+                if (!isEnd(response)) {
+                    handler.handle(response, false);
+                }
+            },
+            error -> handler.handle(null, true),
+            () -> handler.handle(summary, true)
+        );
+    }
+
+    /**
+     * 把片段的 provider、model、finishReason、用量并入汇总（只取非空值）
+     */
+    public static void merge(TextGenerationResponse summary, TextGenerationResponse response) {
+        if (response.getProvider() != null) {
+            summary.setProvider(response.getProvider());
+        }
+        if (response.getModel() != null) {
+            summary.setModel(response.getModel());
+        }
+        if (response.getFinishReason() != null) {
+            summary.setFinishReason(response.getFinishReason());
+        }
+        if (response.getUsage() != null) {
+            summary.setUsage(response.getUsage());
+        }
+    }
+}
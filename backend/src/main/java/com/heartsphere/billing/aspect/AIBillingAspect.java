@@ -1,11 +1,16 @@
 package com.heartsphere.billing.aspect;
 
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.cache.AIResponseCache;
 import com.heartsphere.aiagent.dto.request.*;
 import com.heartsphere.aiagent.dto.response.*;
 import com.heartsphere.aiagent.service.UnifiedModelRoutingService;
 import com.heartsphere.aiagent.service.AIConfigService;
 import com.heartsphere.aiagent.util.StreamResponseHandler;
+import com.heartsphere.aiagent.util.TextStreams;
 import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.admin.entity.AIModelConfig;
+import com.heartsphere.admin.service.AIModelConfigService;
 import com.heartsphere.admin.service.SystemConfigService;
 import com.heartsphere.billing.annotation.RequiresTokenQuota;
 import com.heartsphere.billing.exception.QuotaInsufficientException;
@@ -17,11 +22,16 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * AI计费切面
@@ -41,6 +51,8 @@ public class AIBillingAspect {
     private final UnifiedModelRoutingService unifiedRoutingService;
     private final AIConfigService configService;
     private final SystemConfigService systemConfigService;
+    private final AIResponseCache responseCache;
+    private final AIModelConfigService modelConfigService;
     
     /**
      * 拦截标注了@RequiresTokenQuota的方法
@@ -236,8 +248,27 @@ public class AIBillingAspect {
                     userId, quotaType, estimatedAmount);
         }
         
-        // 检查是否为流式调用（void返回类型且有StreamResponseHandler参数）
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        
+        // 响应式流式调用：返回的Flux在结束、失败或被取消（客户端断开）时计费
+        if (Flux.class.isAssignableFrom(signature.getReturnType())) {
+            log.info("[计费] 响应式流式调用模式: userId={}, provider={}, model={}", userId, finalProvider, finalModelCode);
+            Object result;
+            try {
+                result = joinPoint.proceed();
+            } catch (Throwable e) {
+                log.warn("[计费] 流式调用失败: userId={}, provider={}, model={}, error={}", 
+                        userId, finalProvider, finalModelCode, e.getMessage());
+                recordUsage(userId, providerId, modelId, usageType, requestObj, null, 
+                    e instanceof Exception ? (Exception) e : new Exception(e), quotaType);
+                throw e;
+            }
+            @SuppressWarnings("unchecked")
+            Flux<TextGenerationResponse> stream = (Flux<TextGenerationResponse>) result;
+            return meterStream(stream, userId, providerId, modelId, usageType, requestObj, quotaType);
+        }
+        
+        // 检查是否为流式调用（void返回类型且有StreamResponseHandler参数）
         boolean isStreamCall = signature.getReturnType() == void.class && args.length >= 3 
             && args[2] instanceof StreamResponseHandler;
         
@@ -291,8 +322,10 @@ public class AIBillingAspect {
                         userId, finalProvider, finalModelCode, e.getMessage());
                 throw e;
             } finally {
-                // 记录使用情况（无论成功或失败）
-                if (result != null || exception != null) {
+                // 记录使用情况（无论成功或失败）；命中响应缓存的结果未调用模型，不扣费
+                if (result instanceof TextGenerationResponse response && Boolean.TRUE.equals(response.getCached())) {
+                    recordCacheSaving(userId, modelId, finalModelCode, usageType, response);
+                } else if (result != null || exception != null) {
                     recordUsage(userId, providerId, modelId, usageType, requestObj, result, exception, quotaType);
                 }
             }
@@ -539,12 +572,122 @@ public class AIBillingAspect {
         return tokens;
     }
     
+    /**
+     * 为响应式流计费：汇总片段中的用量，流结束时按上游用量计费；
+     * 被取消或上游未返回用量时按已输出的字符数估算。计费涉及数据库写入，放到boundedElastic线程执行，不占用IO线程
+     */
+    private Flux<TextGenerationResponse> meterStream(Flux<TextGenerationResponse> stream, Long userId, Long providerId,
+                                                     Long modelId, String usageType, Object requestObj, String quotaType) {
+        TextGenerationResponse summary = new TextGenerationResponse();
+        AtomicLong outputChars = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        return stream
+            .doOnNext(chunk -> {
+                TextStreams.merge(summary, chunk);
+                if (chunk.getContent() != null) {
+                    outputChars.addAndGet(chunk.getContent().length());
+                }
+            })
+            .doOnError(failure::set)
+            .doFinally(signal -> Schedulers.boundedElastic().schedule(() -> {
+                if (signal == SignalType.ON_ERROR) {
+                    Throwable e = failure.get();
+                    log.warn("[计费] 流式调用失败: userId={}, modelId={}, error={}", 
+                            userId, modelId, e != null ? e.getMessage() : null);
+                    recordUsage(userId, providerId, modelId, usageType, requestObj, null, 
+                        e instanceof Exception ? (Exception) e : new Exception(e), quotaType);
+                    return;
+                }
+                if (summary.getUsage() == null && requestObj instanceof TextGenerationRequest request) {
+                    int inputTokens = estimateInputTokens(request);
+                    int outputTokens = (int) (outputChars.get() / 3);
+                    TextGenerationResponse.TokenUsage usage = new TextGenerationResponse.TokenUsage();
+                    usage.setInputTokens(inputTokens);
+                    usage.setOutputTokens(outputTokens);
+                    usage.setTotalTokens(inputTokens + outputTokens);
+                    summary.setUsage(usage);
+                }
+                log.info("[计费] 流式调用结束，开始计费: userId={}, modelId={}, signal={}", userId, modelId, signal);
+                recordUsage(userId, providerId, modelId, usageType, requestObj, summary, null, quotaType);
+            }));
+    }
+    
+    /**
+     * 响应缓存命中：不扣配额、不写使用记录，按原始用量估算省下的费用计入缓存统计
+     */
+    private void recordCacheSaving(Long userId, Long modelId, String modelCode, String usageType,
+                                   TextGenerationResponse response) {
+        log.info("[计费] 命中响应缓存，跳过计费: userId={}, model={}", userId, modelCode);
+        if (response.getUsage() == null) {
+            return;
+        }
+        try {
+            Map<String, Object> usageData = new HashMap<>();
+            usageData.put("inputTokens", response.getUsage().getInputTokens());
+            usageData.put("outputTokens", response.getUsage().getOutputTokens());
+            responseCache.recordSavedCost(modelCode, pricingService.calculateCost(modelId, usageType, usageData));
+        } catch (Exception e) {
+            log.warn("[计费] 估算响应缓存节省费用失败: modelId={}, error={}", modelId, e.getMessage());
+        }
+    }
+    
+    /**
+     * 实际完成请求的模型（按响应中的provider与model）；与请求计划的模型相同、无法识别或查不到模型配置时返回null
+     */
+    private ServedModel resolveServedModel(String usageType, Object requestObj, Object result) {
+        String servedProvider;
+        String servedModel;
+        if (result instanceof TextGenerationResponse response) {
+            servedProvider = response.getProvider();
+            servedModel = response.getModel();
+        } else if (result instanceof ImageGenerationResponse response) {
+            servedProvider = response.getProvider();
+            servedModel = response.getModel();
+        } else {
+            return null;
+        }
+        String plannedProvider = extractProvider(requestObj);
+        String plannedModel = extractModelCode(requestObj);
+        if (servedProvider == null || servedModel == null || plannedProvider == null
+                || (servedModel.equals(plannedModel) && ModelAdapterManager.canonicalProvider(servedProvider)
+                        .equals(ModelAdapterManager.canonicalProvider(plannedProvider)))) {
+            return null;
+        }
+        try {
+            AIModelConfig config = modelConfigService.getModelConfigWithApiKey(
+                    servedProvider, servedModel, getCapabilityFromUsageType(usageType));
+            Optional<Long> providerId = modelLookupService.findProviderId(config.getProvider());
+            if (providerId.isEmpty()) {
+                providerId = Optional.of(modelLookupService.findOrCreateProvider(
+                        config.getProvider(), getProviderDisplayName(config.getProvider())).getId());
+            }
+            return new ServedModel(providerId.get(), config.getId());
+        } catch (Exception e) {
+            log.debug("[计费] 未找到实际完成请求的模型配置，按计划的模型计费: provider={}, model={}", 
+                    servedProvider, servedModel);
+            return null;
+        }
+    }
+    
+    private record ServedModel(Long providerId, Long modelId) {
+    }
+    
     /**
      * 记录使用情况
      */
     private void recordUsage(Long userId, Long providerId, Long modelId, String usageType,
                             Object requestObj, Object result, Exception exception, String quotaType) {
         try {
+            // 容错模式下请求可能由降级链中的后续模型完成，按实际完成的模型计费
+            if (exception == null) {
+                ServedModel served = resolveServedModel(usageType, requestObj, result);
+                if (served != null) {
+                    log.info("[计费] 请求由降级模型完成，按实际模型计费: modelId={} -> {}", modelId, served.modelId());
+                    providerId = served.providerId();
+                    modelId = served.modelId();
+                }
+            }
+            
             // 提取实际使用量
             Integer inputTokens = null;
             Integer outputTokens = null;
@@ -9,7 +9,9 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import reactor.netty.http.client.HttpClient;
@@ -31,6 +33,12 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Value("${app.image.storage.local.path:./uploads/images}")
     private String localStoragePath;
 
+    /**
+     * 异步请求（SSE流式响应）总超时；未设置时Tomcat默认30秒，会截断较长的生成
+     */
+    @Value("${spring.mvc.async.request-timeout:300000}")
+    private Duration asyncRequestTimeout;
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -102,6 +110,25 @@ public class WebMvcConfig implements WebMvcConfigurer {
             .build();
     }
 
+    /**
+     * 异步请求写出线程池：SSE流式响应在片段到达时提交写任务，写完即释放线程，不为每个流占用线程
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("mvc-async-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+        configurer.setDefaultTimeout(asyncRequestTimeout.toMillis());
+    }
+
     @Override
     public void configureMessageConverters(@NonNull List<HttpMessageConverter<?>> converters) {
         // 确保字符串消息转换器使用UTF-8编码
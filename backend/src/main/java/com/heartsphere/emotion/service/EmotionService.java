@@ -72,6 +72,7 @@ public class EmotionService {
             aiRequest.setSystemInstruction("你是一个专业的情绪分析专家，擅长深入理解文本中的情绪和情感。");
             aiRequest.setTemperature(0.3); // 较低温度以获得更一致的分析
             aiRequest.setMaxTokens(500);
+            aiRequest.setCacheable(true); // 相同日记文本的分析结果可复用
             
             TextGenerationResponse aiResponse = aiService.generateText(
                 request.getUserId(),
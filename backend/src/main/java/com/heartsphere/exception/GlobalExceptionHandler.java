@@ -147,6 +147,12 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(com.heartsphere.aiagent.exception.AIServiceException.class)
     public ResponseEntity<ApiResponse<Object>> handleAIServiceException(
             com.heartsphere.aiagent.exception.AIServiceException e) {
+        // 服务层会把适配器异常包装一层，提供商不可用时按503返回
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof com.heartsphere.aiagent.exception.ProviderUnavailableException unavailable) {
+                return handleProviderUnavailableException(unavailable);
+            }
+        }
         log.error("AI服务异常: provider={}, model={}, message={}", 
             e.getProvider(), e.getModel(), e.getMessage(), e);
         return ResponseEntity
@@ -154,6 +160,21 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(500, "AI服务错误: " + e.getMessage()));
     }
 
+    /**
+     * 处理提供商暂不可用异常（熔断或并发已满）
+     */
+    @ExceptionHandler(com.heartsphere.aiagent.exception.ProviderUnavailableException.class)
+    public ResponseEntity<ApiResponse<Object>> handleProviderUnavailableException(
+            com.heartsphere.aiagent.exception.ProviderUnavailableException e) {
+        log.warn("提供商暂不可用: provider={}, capability={}, message={}",
+            e.getProvider(), e.getCapability(), e.getMessage());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (e.getRetryAfterMs() > 0) {
+            builder.header("Retry-After", String.valueOf((e.getRetryAfterMs() + 999) / 1000));
+        }
+        return builder.body(ApiResponse.error(503, e.getMessage()));
+    }
+
     /**
      * 处理不支持的模型异常
      */
@@ -68,6 +68,7 @@ public class ESoulLetterGenerator {
             aiRequest.setSystemInstruction("你是一个温暖的角色，正在给用户写一封充满情感的信件。请用第一人称，像真正的朋友一样表达关心和思念。");
             aiRequest.setTemperature(0.8); // 较高的温度以获得更有创造性的内容
             aiRequest.setMaxTokens(1000);
+            aiRequest.setCacheable(true); // 同一角色、情绪与近期日记下的来信可复用，避免重复生成
             
             TextGenerationResponse aiResponse = aiService.generateText(userId, aiRequest);
             
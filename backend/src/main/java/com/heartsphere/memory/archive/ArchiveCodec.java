@@ -0,0 +1,104 @@
+package com.heartsphere.memory.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 归档内容压缩编解码
+ * 使用不带头部的raw deflate，并预置共享字典（记忆中高频出现的中文短语和JSON键名），
+ * 让几十到几百字的短记忆也能获得可观的压缩率。字典带版本号随数据一起存储，
+ * 调整字典时新增版本、保留旧版本用于解压历史数据。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class ArchiveCodec {
+
+    /**
+     * 当前字典版本
+     */
+    public static final int DICTIONARY_VERSION = 1;
+
+    /**
+     * 版本1字典：越常见的片段越靠后（deflate对靠近窗口末尾的匹配编码更短）
+     */
+    private static final byte[] DICTIONARY_V1 = String.join("",
+        "\"metadata\":{\"structuredData\":{\"tags\":[\"content\":\"",
+        "\"source\":\"extraction\",\"confidence\":\"sessionId\":\"",
+        "工作职业公司上班同事领导学习学校考试老师",
+        "家人父母妈妈爸爸孩子朋友男朋友女朋友老婆老公",
+        "生日纪念日周末晚上早上今天昨天明天去年今年每天经常",
+        "心情开心难过焦虑压力担心害怕生气失眠",
+        "旅行电影音乐游戏运动跑步健身看书读书做饭",
+        "住在来自出生在城市北京上海广州深圳杭州",
+        "最近一直觉得想要希望计划打算因为所以但是",
+        "用户不喜欢用户喜欢用户的用户是用户在用户"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private ArchiveCodec() {
+    }
+
+    /**
+     * 压缩文本
+     */
+    public static byte[] compress(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(dictionary(DICTIONARY_VERSION));
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压文本
+     *
+     * @param data 压缩数据
+     * @param originalLength 原始UTF-8字节数
+     * @param dictionaryVersion 压缩时使用的字典版本
+     */
+    public static String decompress(byte[] data, int originalLength, int dictionaryVersion) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(dictionary(dictionaryVersion));
+            inflater.setInput(data);
+            byte[] output = new byte[originalLength];
+            int offset = 0;
+            while (offset < originalLength && !inflater.finished()) {
+                int length = inflater.inflate(output, offset, originalLength - offset);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != originalLength) {
+                throw new IllegalStateException("归档内容长度不符: expected=" + originalLength + ", actual=" + offset);
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("解压归档内容失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] dictionary(int version) {
+        if (version == 1) {
+            return DICTIONARY_V1;
+        }
+        throw new IllegalArgumentException("未知的归档字典版本: " + version);
+    }
+}
@@ -0,0 +1,191 @@
+package com.heartsphere.memory.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.text.CjkTokenizer;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 归档记忆摘要索引
+ * 每条归档记忆只保留少量词项哈希（按词频取前N个、升序排列的int数组），随归档行一起存储；
+ * 检索时按用户把摘要加载为几段连续的基本类型数组，用有序数组求交集计算命中词项数，
+ * 只对排名靠前的少数记忆解压正文，不需要为归档数据维护全文索引。
+ * 按用户缓存，用户数有上限；归档或删除时使该用户的缓存失效。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+public class ArchiveSummaryIndex {
+
+    private final MemoryProperties.Archive config;
+    private final Cache<String, UserSummaries> cache;
+
+    public ArchiveSummaryIndex(MemoryProperties memoryProperties) {
+        this.config = memoryProperties.getArchive();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(config.getSummaryCacheUsers())
+            .build();
+    }
+
+    /**
+     * 计算文本摘要：出现最多的若干词项哈希，升序；与查询使用同样的切分，汉字串只取二字词项
+     */
+    public int[] summarize(String text) {
+        List<String> tokens = CjkTokenizer.tokenizeForQuery(text);
+        Map<Integer, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token.hashCode(), 1, Integer::sum);
+        }
+        return frequencies.entrySet().stream()
+            .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()))
+            .limit(config.getSummaryTokens())
+            .mapToInt(Map.Entry::getKey)
+            .sorted()
+            .toArray();
+    }
+
+    /**
+     * 检索用户的归档记忆
+     *
+     * @param userId 用户ID
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @param loader 未缓存时加载用户全部归档摘要
+     * @return 按命中词项数降序的归档记忆ID
+     */
+    public List<String> search(String userId, String query, int limit, Function<String, List<Summary>> loader) {
+        int[] queryTokens = CjkTokenizer.tokenizeForQuery(query).stream()
+            .mapToInt(String::hashCode)
+            .distinct()
+            .sorted()
+            .toArray();
+        if (queryTokens.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        UserSummaries summaries = cache.get(userId, key -> UserSummaries.of(loader.apply(key)));
+        return summaries.topMatches(queryTokens, limit);
+    }
+
+    /**
+     * 使用户的摘要缓存失效
+     */
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public static byte[] encode(int[] tokens) {
+        ByteBuffer buffer = ByteBuffer.allocate(tokens.length * Integer.BYTES);
+        for (int token : tokens) {
+            buffer.putInt(token);
+        }
+        return buffer.array();
+    }
+
+    public static int[] decode(byte[] data) {
+        if (data == null) {
+            return new int[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int[] tokens = new int[data.length / Integer.BYTES];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = buffer.getInt();
+        }
+        return tokens;
+    }
+
+    /**
+     * 单条归档记忆的摘要
+     */
+    public record Summary(String id, int[] tokens) {
+    }
+
+    /**
+     * 一个用户的全部摘要：第i条记忆的词项为 tokens[offsets[i], offsets[i+1])
+     */
+    private static final class UserSummaries {
+        private final String[] ids;
+        private final int[] offsets;
+        private final int[] tokens;
+
+        private UserSummaries(String[] ids, int[] offsets, int[] tokens) {
+            this.ids = ids;
+            this.offsets = offsets;
+            this.tokens = tokens;
+        }
+
+        private static UserSummaries of(List<Summary> summaries) {
+            String[] ids = new String[summaries.size()];
+            int[] offsets = new int[summaries.size() + 1];
+            int total = 0;
+            for (int i = 0; i < summaries.size(); i++) {
+                ids[i] = summaries.get(i).id();
+                offsets[i] = total;
+                total += summaries.get(i).tokens().length;
+            }
+            offsets[summaries.size()] = total;
+            int[] tokens = new int[total];
+            for (int i = 0; i < summaries.size(); i++) {
+                int[] source = summaries.get(i).tokens();
+                System.arraycopy(source, 0, tokens, offsets[i], source.length);
+            }
+            return new UserSummaries(ids, offsets, tokens);
+        }
+
+        private List<String> topMatches(int[] queryTokens, int limit) {
+            int[] scores = new int[ids.length];
+            int matched = 0;
+            for (int i = 0; i < ids.length; i++) {
+                scores[i] = intersect(queryTokens, offsets[i], offsets[i + 1]);
+                if (scores[i] > 0) {
+                    matched++;
+                }
+            }
+            if (matched == 0) {
+                return List.of();
+            }
+            // 命中数相同按归档顺序，结果稳定
+            Integer[] order = new Integer[matched];
+            int n = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (scores[i] > 0) {
+                    order[n++] = i;
+                }
+            }
+            Arrays.sort(order, (a, b) -> scores[b] != scores[a] ? Integer.compare(scores[b], scores[a]) : Integer.compare(a, b));
+            List<String> result = new ArrayList<>(Math.min(limit, matched));
+            for (int i = 0; i < matched && result.size() < limit; i++) {
+                result.add(ids[order[i]]);
+            }
+            return result;
+        }
+
+        private int intersect(int[] queryTokens, int from, int to) {
+            int count = 0;
+            int q = 0;
+            int t = from;
+            while (q < queryTokens.length && t < to) {
+                if (queryTokens[q] == tokens[t]) {
+                    count++;
+                    q++;
+                    t++;
+                } else if (queryTokens[q] < tokens[t]) {
+                    q++;
+                } else {
+                    t++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.heartsphere.memory.archive;
+
+import com.heartsphere.memory.entity.ArchivedMemoryEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.repository.jpa.ArchivedMemoryRepository;
+import com.heartsphere.memory.text.TokenEstimator;
+import com.heartsphere.memory.util.MemoryEntityConverter;
+import com.heartsphere.memory.util.MemoryJsonCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 冷记忆归档层
+ * 归档记忆的正文和JSON列合并为一个压缩块存入 archived_memories，检索时先用词项摘要排序，
+ * 只解压排名靠前的几条。只在热数据命中不足时查询，平时不参与检索；
+ * 关闭归档任务不影响已归档记忆的读取。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryArchive {
+
+    private static final String CONTENT = "content";
+    private static final String STRUCTURED_DATA = "structuredData";
+    private static final String TAGS = "tags";
+    private static final String METADATA = "metadata";
+
+    private final ArchivedMemoryRepository archivedMemoryRepository;
+    private final ArchiveSummaryIndex summaryIndex;
+    private final MemoryJsonCodec jsonCodec;
+    private final MemoryEntityConverter memoryEntityConverter;
+
+    public MemoryArchive(
+            ArchivedMemoryRepository archivedMemoryRepository,
+            ArchiveSummaryIndex summaryIndex,
+            MemoryJsonCodec jsonCodec,
+            MemoryEntityConverter memoryEntityConverter) {
+        this.archivedMemoryRepository = archivedMemoryRepository;
+        this.summaryIndex = summaryIndex;
+        this.jsonCodec = jsonCodec;
+        this.memoryEntityConverter = memoryEntityConverter;
+    }
+
+    // ========== 写入 ==========
+
+    /**
+     * 把热记忆转换为归档实体（不保存）
+     */
+    public ArchivedMemoryEntity toArchived(UserMemoryEntity memory, LocalDateTime archivedAt) {
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put(CONTENT, memory.getContent());
+        putIfPresent(payload, STRUCTURED_DATA, memory.getStructuredData());
+        putIfPresent(payload, TAGS, memory.getTags());
+        putIfPresent(payload, METADATA, memory.getMetadata());
+        try {
+            String json = jsonCodec.write(payload);
+            return ArchivedMemoryEntity.builder()
+                .id(memory.getId())
+                .userId(memory.getUserId())
+                .type(memory.getType())
+                .importance(memory.getImportance())
+                .source(memory.getSource())
+                .sourceId(memory.getSourceId())
+                .confidence(memory.getConfidence())
+                .accessCount(memory.getAccessCount() != null ? memory.getAccessCount() : 0)
+                .createdAt(memory.getCreatedAt())
+                .lastAccessedAt(memory.getLastAccessedAt())
+                .archivedAt(archivedAt)
+                .payload(ArchiveCodec.compress(json))
+                .payloadLength(json.getBytes(StandardCharsets.UTF_8).length)
+                .dictionaryVersion(ArchiveCodec.DICTIONARY_VERSION)
+                .summaryTokens(ArchiveSummaryIndex.encode(summaryIndex.summarize(memory.getContent())))
+                .build();
+        } catch (IOException e) {
+            throw new RuntimeException("转换归档记忆失败", e);
+        }
+    }
+
+    /**
+     * 删除归档记忆
+     *
+     * @return 是否存在并已删除
+     */
+    public boolean delete(String memoryId) {
+        Optional<ArchivedMemoryEntity> archived = archivedMemoryRepository.findById(memoryId);
+        if (archived.isEmpty()) {
+            return false;
+        }
+        archivedMemoryRepository.delete(archived.get());
+        summaryIndex.invalidate(archived.get().getUserId());
+        return true;
+    }
+
+    /**
+     * 把归档实体解压还原为热记忆实体（不保存），用于回迁热表
+     */
+    public UserMemoryEntity toHot(ArchivedMemoryEntity entity) throws IOException {
+        String json = ArchiveCodec.decompress(
+            entity.getPayload(), entity.getPayloadLength(), entity.getDictionaryVersion());
+        Map<String, Object> payload = jsonCodec.readMap(json);
+        String content = (String) payload.get(CONTENT);
+        return UserMemoryEntity.builder()
+            .id(entity.getId())
+            .userId(entity.getUserId())
+            .type(entity.getType())
+            .importance(entity.getImportance())
+            .content(content)
+            .structuredData((String) payload.get(STRUCTURED_DATA))
+            .source(entity.getSource())
+            .sourceId(entity.getSourceId())
+            .createdAt(entity.getCreatedAt())
+            .lastAccessedAt(entity.getLastAccessedAt())
+            .accessCount(entity.getAccessCount())
+            .confidence(entity.getConfidence())
+            .tags((String) payload.get(TAGS))
+            .metadata((String) payload.get(METADATA))
+            .tokenCount(TokenEstimator.estimate(content))
+            .build();
+    }
+
+    // ========== 读取 ==========
+
+    /**
+     * 检索用户的归档记忆
+     *
+     * @param userId 用户ID
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @return 按摘要命中词项数排序的记忆，解压后的完整内容
+     */
+    public List<UserMemory> search(String userId, String query, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> ids = summaryIndex.search(userId, query, limit, this::loadSummaries);
+            if (ids.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Map<String, ArchivedMemoryEntity> entitiesById = archivedMemoryRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(ArchivedMemoryEntity::getId, Function.identity()));
+            List<UserMemory> memories = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ArchivedMemoryEntity entity = entitiesById.get(id);
+                if (entity != null && userId.equals(entity.getUserId())) {
+                    UserMemory memory = toModel(entity);
+                    if (memory != null) {
+                        memories.add(memory);
+                    }
+                }
+            }
+            return memories;
+        } catch (Exception e) {
+            log.error("检索归档记忆失败: userId={}, query={}", userId, query, e);
+            return Collections.emptyList();
+        }
+    }
+
+    // ========== 私有方法 ==========
+
+    private List<ArchiveSummaryIndex.Summary> loadSummaries(String userId) {
+        return archivedMemoryRepository.findSummariesByUserId(userId).stream()
+            .map(row -> new ArchiveSummaryIndex.Summary((String) row[0], ArchiveSummaryIndex.decode((byte[]) row[1])))
+            .collect(Collectors.toList());
+    }
+
+    private UserMemory toModel(ArchivedMemoryEntity entity) {
+        try {
+            return memoryEntityConverter.toModel(toHot(entity));
+        } catch (Exception e) {
+            log.error("读取归档记忆失败: memoryId={}", entity.getId(), e);
+            return null;
+        }
+    }
+
+    private static void putIfPresent(Map<String, String> payload, String key, String value) {
+        if (value != null) {
+            payload.put(key, value);
+        }
+    }
+}
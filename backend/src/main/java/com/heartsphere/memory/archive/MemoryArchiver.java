@@ -0,0 +1,220 @@
+package com.heartsphere.memory.archive;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ArchivedMemoryEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.repository.jpa.ArchivedMemoryRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 冷记忆归档任务
+ * 按重要性和空闲时长计算记忆热度：
+ * heat = 重要性权重 × 0.5^(空闲天数 / 半衰期) × (1 + ln(1 + 访问次数))，
+ * 空闲超过最短天数且热度低于阈值的非核心记忆移入归档表，热表及其索引只保留活跃数据。
+ * 候选按ID游标分批扫描，游标跨运行保留，扫描到末尾后从头开始；每批一个短事务。
+ * 按ID读取或更新已归档的记忆时移回热表。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryArchiver {
+
+    /**
+     * 单次运行最多评估的批数，剩余的留给下一次运行
+     */
+    private static final int MAX_BATCHES_PER_RUN = 50;
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final ArchivedMemoryRepository archivedMemoryRepository;
+    private final MemoryArchive memoryArchive;
+    private final ArchiveSummaryIndex summaryIndex;
+    private final MemoryVectorIndex memoryVectorIndex;
+    private final MemoryTextIndex memoryTextIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final MemoryProperties.Archive config;
+
+    private String cursor = "";
+
+    public MemoryArchiver(
+            UserMemoryRepository userMemoryRepository,
+            ArchivedMemoryRepository archivedMemoryRepository,
+            MemoryArchive memoryArchive,
+            ArchiveSummaryIndex summaryIndex,
+            MemoryVectorIndex memoryVectorIndex,
+            MemoryTextIndex memoryTextIndex,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.archivedMemoryRepository = archivedMemoryRepository;
+        this.memoryArchive = memoryArchive;
+        this.summaryIndex = summaryIndex;
+        this.memoryVectorIndex = memoryVectorIndex;
+        this.memoryTextIndex = memoryTextIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = memoryProperties.getArchive();
+    }
+
+    @Scheduled(fixedDelayString = "${heartsphere.memory.archive.interval-ms:3600000}")
+    public void archiveColdMemories() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            int archived = archive(LocalDateTime.now());
+            if (archived > 0) {
+                log.info("归档冷记忆: {}", archived);
+            }
+        } catch (Exception e) {
+            log.error("归档冷记忆失败", e);
+        }
+    }
+
+    /**
+     * 评估空闲记忆并把冷记忆移入归档
+     *
+     * @param now 评估时间
+     * @return 归档的记忆数量
+     */
+    public synchronized int archive(LocalDateTime now) {
+        LocalDateTime idleBefore = now.minusDays(config.getMinIdleDays());
+        int total = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            List<UserMemoryEntity> candidates = userMemoryRepository.findArchiveCandidates(
+                cursor, MemoryImportance.CORE, idleBefore, PageRequest.of(0, config.getBatchSize()));
+            if (candidates.isEmpty()) {
+                cursor = "";
+                break;
+            }
+            cursor = candidates.get(candidates.size() - 1).getId();
+
+            List<UserMemoryEntity> cold = candidates.stream()
+                .filter(memory -> heat(memory, now) < config.getScoreThreshold())
+                .collect(Collectors.toList());
+            if (!cold.isEmpty()) {
+                total += moveToArchive(cold, now);
+            }
+            if (candidates.size() < config.getBatchSize()) {
+                cursor = "";
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 计算记忆热度；核心记忆永不归档
+     */
+    public double heat(UserMemoryEntity memory, LocalDateTime now) {
+        if (memory.getImportance() == MemoryImportance.CORE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        LocalDateTime lastActive = memory.getLastAccessedAt() != null ? memory.getLastAccessedAt() : memory.getCreatedAt();
+        double idleDays = lastActive != null ? Math.max(0, Duration.between(lastActive, now).toMinutes() / 1440.0) : 0;
+        int accessCount = memory.getAccessCount() != null ? memory.getAccessCount() : 0;
+        return importanceWeight(memory.getImportance())
+            * Math.pow(0.5, idleDays / config.getHalfLifeDays())
+            * (1 + Math.log1p(accessCount));
+    }
+
+    /**
+     * 把归档记忆移回热表（按ID读取或更新已归档的记忆时调用）
+     * 加入调用方事务（没有事务时单独提交）；回迁后的记忆重新参与近似去重，
+     * 内存索引由调用方在提交后写入
+     *
+     * @param memoryId 记忆ID
+     * @return 回迁后的热记忆；并发回迁时返回已在热表中的记忆；都不存在时返回null
+     */
+    public UserMemoryEntity restore(String memoryId) {
+        UserMemoryEntity restored = transactionTemplate.execute(status -> {
+            Optional<ArchivedMemoryEntity> archived = archivedMemoryRepository.findByIdForUpdate(memoryId);
+            if (archived.isEmpty()) {
+                return userMemoryRepository.findById(memoryId).orElse(null);
+            }
+            UserMemoryEntity hot;
+            try {
+                hot = memoryArchive.toHot(archived.get());
+            } catch (IOException e) {
+                throw new RuntimeException("解压归档记忆失败: memoryId=" + memoryId, e);
+            }
+            archivedMemoryRepository.delete(archived.get());
+            return userMemoryRepository.save(hot);
+        });
+        if (restored != null) {
+            summaryIndex.invalidate(restored.getUserId());
+            log.debug("归档记忆回迁热表: memoryId={}", memoryId);
+        }
+        return restored;
+    }
+
+    // ========== 私有方法 ==========
+
+    /**
+     * 加锁重新读取候选行并归档：候选是在事务外读取的，期间可能被访问、编辑或删除，
+     * 锁定后用最新数据重新计算热度，最新的访问计数和内容随行一起进入归档
+     *
+     * @return 实际归档的数量
+     */
+    private int moveToArchive(List<UserMemoryEntity> candidates, LocalDateTime now) {
+        List<String> candidateIds = candidates.stream().map(UserMemoryEntity::getId).collect(Collectors.toList());
+        List<UserMemoryEntity> cold = transactionTemplate.execute(status -> {
+            List<UserMemoryEntity> locked = userMemoryRepository.findAllByIdForUpdate(candidateIds).stream()
+                .filter(memory -> heat(memory, now) < config.getScoreThreshold())
+                .collect(Collectors.toList());
+            if (locked.isEmpty()) {
+                return locked;
+            }
+            archivedMemoryRepository.saveAll(locked.stream()
+                .map(memory -> memoryArchive.toArchived(memory, now))
+                .collect(Collectors.toList()));
+            userMemoryRepository.deleteAllByIdInBatch(
+                locked.stream().map(UserMemoryEntity::getId).collect(Collectors.toList()));
+            return locked;
+        });
+        if (cold == null || cold.isEmpty()) {
+            return 0;
+        }
+
+        // 已提交，移出热数据的内存索引
+        cold.forEach(memory -> {
+            memoryVectorIndex.remove(memory.getId());
+            memoryTextIndex.removeMemory(memory.getId());
+        });
+        Set<String> userIds = cold.stream().map(UserMemoryEntity::getUserId).collect(Collectors.toSet());
+        userIds.forEach(summaryIndex::invalidate);
+        return cold.size();
+    }
+
+    private static double importanceWeight(MemoryImportance importance) {
+        if (importance == null) {
+            return 0.6;
+        }
+        switch (importance) {
+            case IMPORTANT:
+                return 1.0;
+            case TEMPORARY:
+                return 0.3;
+            case NORMAL:
+            default:
+                return 0.6;
+        }
+    }
+}
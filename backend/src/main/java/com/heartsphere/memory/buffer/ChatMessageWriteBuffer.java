@@ -0,0 +1,465 @@
+package com.heartsphere.memory.buffer;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ChatMessageEntity;
+import com.heartsphere.memory.entity.SessionEntity;
+import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
+import com.heartsphere.memory.repository.jpa.SessionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 对话消息写缓冲（Write-Behind）
+ * saveMessage只把消息追加到会话缓冲区后立即返回，由后台线程每隔几毫秒或累计到一批时
+ * 在一个事务内批量写入chat_messages，并顺带完成超量裁剪和会话索引更新，
+ * 把每条消息4~5次数据库往返合并为每批固定几次。
+ * 每个会话的消息按写入顺序分配单调递增的序号（memory_sessions.head_seq 记录最新序号），
+ * 超量裁剪为一条 seq <= head - maxMessagesPerSession 的索引范围删除，无需先计数再逐条删除。
+ * 缓冲总量有上限，写满时由调用线程同步刷盘；关闭时把剩余消息全部写完。
+ * <p>
+ * 持久性：saveMessage返回时消息只在内存中。进程被强制终止（kill -9、OOM、宕机）时，
+ * 最近一个刷盘间隔内（flush-interval-ms，默认10毫秒，外加正在执行的一次刷盘）确认的消息会丢失，
+ * 数量不超过 max-pending-messages；正常关闭不丢消息。不能接受该窗口时关闭 write-behind-enabled，
+ * 每条消息在返回前同步提交。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class ChatMessageWriteBuffer {
+
+    private static final String INSERT_MESSAGE_SQL = "INSERT INTO chat_messages "
+        + "(id, session_id, user_id, role, content, metadata, timestamp, seq, importance, created_at, updated_at, expires_at, token_count) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String LOCK_SESSIONS_SQL = "SELECT session_id, head_seq FROM memory_sessions "
+        + "WHERE session_id IN (%s) FOR UPDATE";
+    private static final String MAX_SEQ_SQL = "SELECT MAX(seq) FROM chat_messages WHERE session_id = ?";
+    private static final String TRIM_DELETE_SQL = "DELETE FROM chat_messages WHERE session_id = ? AND seq <= ?";
+    private static final String UPDATE_SESSION_SQL = "UPDATE memory_sessions SET updated_at = ?, expires_at = ?, head_seq = ? "
+        + "WHERE session_id = ?";
+    private static final String INSERT_SESSION_SQL = "INSERT INTO memory_sessions "
+        + "(session_id, user_id, head_seq, created_at, updated_at, expires_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatMessageRepository chatMessageRepository;
+    private final SessionRepository sessionRepository;
+    private final MemoryProperties.ShortMemory config;
+
+    private final Map<String, SessionBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+
+    public ChatMessageWriteBuffer(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ChatMessageRepository chatMessageRepository,
+            SessionRepository sessionRepository,
+            MemoryProperties memoryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 独立事务：调用方已有事务时（如清空会话）先提交缓冲消息，失败也不影响调用方事务
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chatMessageRepository = chatMessageRepository;
+        this.sessionRepository = sessionRepository;
+        this.config = memoryProperties.getShortMemory();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isWriteBehindEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-message-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly,
+            config.getFlushIntervalMs(), config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭时停止定时刷盘并写完剩余消息
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        log.info("对话消息写缓冲已关闭");
+    }
+
+    // ========== 写入 ==========
+
+    /**
+     * 追加消息到会话缓冲区
+     *
+     * @param entity 消息实体（ID、时间戳、会话ID均已填充）
+     * @return 是否已被缓冲；未启用写缓冲时返回false，由调用方直接写库
+     */
+    public boolean append(ChatMessageEntity entity) {
+        if (!config.isWriteBehindEnabled() || scheduler == null || scheduler.isShutdown()) {
+            return false;
+        }
+        int sessionPending = -1;
+        while (sessionPending < 0) {
+            SessionBuffer buffer = buffers.computeIfAbsent(entity.getSessionId(), SessionBuffer::new);
+            synchronized (buffer) {
+                // 缓冲区可能刚被刷盘线程回收，此时重新获取
+                if (!buffer.closed) {
+                    buffer.pending.add(entity);
+                    sessionPending = buffer.pending.size();
+                }
+            }
+        }
+        int total = pendingCount.incrementAndGet();
+
+        if (total >= config.getMaxPendingMessages()) {
+            // 缓冲已满：调用线程同步刷盘，形成背压
+            flush();
+        } else if (sessionPending >= config.getFlushBatchSize() && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return true;
+    }
+
+    /**
+     * 不经缓冲直接写入单条消息（同样完成裁剪和会话索引更新），未启用写缓冲时使用
+     *
+     * @param entity 消息实体
+     */
+    public void writeNow(ChatMessageEntity entity) {
+        Map<String, List<ChatMessageEntity>> batch = Map.of(entity.getSessionId(), List.of(entity));
+        transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+    }
+
+    // ========== 读取 ==========
+
+    /**
+     * 获取会话中尚未落库（含正在写入）的消息，按时间戳倒序
+     */
+    public List<ChatMessageEntity> pendingMessages(String sessionId) {
+        SessionBuffer buffer = buffers.get(sessionId);
+        if (buffer == null) {
+            return Collections.emptyList();
+        }
+        List<ChatMessageEntity> messages;
+        synchronized (buffer) {
+            if (buffer.pending.isEmpty() && buffer.inflight.isEmpty()) {
+                return Collections.emptyList();
+            }
+            messages = new ArrayList<>(buffer.inflight.size() + buffer.pending.size());
+            messages.addAll(buffer.inflight);
+            messages.addAll(buffer.pending);
+        }
+        messages.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+        return messages;
+    }
+
+    /**
+     * 获取会话中尚未提交的消息数量
+     */
+    public int pendingCount(String sessionId) {
+        SessionBuffer buffer = buffers.get(sessionId);
+        if (buffer == null) {
+            return 0;
+        }
+        synchronized (buffer) {
+            return buffer.pending.size() + buffer.inflight.size();
+        }
+    }
+
+    // ========== 刷盘 ==========
+
+    /**
+     * 把所有缓冲消息写入数据库；删除消息/清空会话前调用，保证删除不会被稍后落库的消息覆盖
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            Map<String, List<ChatMessageEntity>> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            } catch (Exception e) {
+                log.warn("批量写入对话消息失败，改为逐条写入: sessions={}", batch.size(), e);
+                writeOneByOne(batch);
+            } finally {
+                complete(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("对话消息刷盘失败", e);
+        }
+    }
+
+    /**
+     * 把各会话的待写消息移入写入中列表，写入期间读取方仍能看到这些消息
+     */
+    private Map<String, List<ChatMessageEntity>> drain() {
+        Map<String, List<ChatMessageEntity>> batch = new LinkedHashMap<>();
+        for (SessionBuffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty()) {
+                    continue;
+                }
+                buffer.inflight.addAll(buffer.pending);
+                batch.put(buffer.sessionId, new ArrayList<>(buffer.pending));
+                buffer.pending.clear();
+            }
+        }
+        return batch;
+    }
+
+    private void complete(Map<String, List<ChatMessageEntity>> batch) {
+        int written = 0;
+        for (Map.Entry<String, List<ChatMessageEntity>> entry : batch.entrySet()) {
+            SessionBuffer buffer = buffers.get(entry.getKey());
+            if (buffer == null) {
+                continue;
+            }
+            synchronized (buffer) {
+                buffer.inflight.removeAll(entry.getValue());
+                if (buffer.pending.isEmpty() && buffer.inflight.isEmpty()) {
+                    buffer.closed = true;
+                    buffers.remove(entry.getKey(), buffer);
+                }
+            }
+            written += entry.getValue().size();
+        }
+        pendingCount.addAndGet(-written);
+    }
+
+    /**
+     * 一个事务内：锁定会话并分配序号、批量插入消息、按序号范围裁剪超量消息、批量更新会话索引
+     */
+    private void writeBatch(Map<String, List<ChatMessageEntity>> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTs = Timestamp.valueOf(now);
+
+        Map<String, Long> existingHeads = lockSessionHeads(batch.keySet());
+        Map<String, Long> heads = assignSequences(batch, existingHeads);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (List<ChatMessageEntity> messages : batch.values()) {
+            for (ChatMessageEntity message : messages) {
+                rows.add(new Object[] {
+                    message.getId(),
+                    message.getSessionId(),
+                    message.getUserId(),
+                    message.getRole() != null ? message.getRole().name() : null,
+                    message.getContent(),
+                    message.getMetadata(),
+                    message.getTimestamp(),
+                    message.getSeq(),
+                    message.getImportance(),
+                    nowTs,
+                    nowTs,
+                    message.getExpiresAt() != null ? Timestamp.valueOf(message.getExpiresAt()) : null,
+                    message.getTokenCount()
+                });
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, rows);
+
+        // 超出容量的消息序号一定不大于 head - maxMessages，一条按索引的范围删除即可
+        List<Object[]> trims = new ArrayList<>();
+        for (Map.Entry<String, Long> head : heads.entrySet()) {
+            long cutoff = head.getValue() - config.getMaxMessagesPerSession();
+            if (cutoff > 0) {
+                trims.add(new Object[] {head.getKey(), cutoff});
+            }
+        }
+        if (!trims.isEmpty()) {
+            jdbcTemplate.batchUpdate(TRIM_DELETE_SQL, trims);
+        }
+
+        upsertSessions(batch, heads, existingHeads.keySet(), now);
+    }
+
+    /**
+     * 锁定已有会话并读取其最新序号
+     */
+    private Map<String, Long> lockSessionHeads(Set<String> sessionIds) {
+        String placeholders = sessionIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        Map<String, Long> heads = new HashMap<>();
+        jdbcTemplate.query(String.format(LOCK_SESSIONS_SQL, placeholders),
+            (RowCallbackHandler) rs -> heads.put(rs.getString("session_id"), rs.getLong("head_seq")),
+            sessionIds.toArray());
+        return heads;
+    }
+
+    /**
+     * 按写入顺序为消息分配会话内序号，返回各会话新的最新序号；
+     * 会话索引不存在（新会话或索引已过期清理）时从已有消息的最大序号继续
+     */
+    private Map<String, Long> assignSequences(Map<String, List<ChatMessageEntity>> batch, Map<String, Long> existingHeads) {
+        Map<String, Long> heads = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ChatMessageEntity>> entry : batch.entrySet()) {
+            Long head = existingHeads.get(entry.getKey());
+            if (head == null) {
+                head = jdbcTemplate.queryForObject(MAX_SEQ_SQL, Long.class, entry.getKey());
+            }
+            long seq = head != null ? head : 0L;
+            for (ChatMessageEntity message : entry.getValue()) {
+                message.setSeq(++seq);
+            }
+            heads.put(entry.getKey(), seq);
+        }
+        return heads;
+    }
+
+    /**
+     * 已有会话批量更新、新会话批量插入
+     */
+    private void upsertSessions(
+            Map<String, List<ChatMessageEntity>> batch,
+            Map<String, Long> heads,
+            Set<String> existing,
+            LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        Timestamp expiresAt = Timestamp.valueOf(now.plusSeconds(config.getMessageTtl()));
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<String, List<ChatMessageEntity>> entry : batch.entrySet()) {
+            String sessionId = entry.getKey();
+            Long head = heads.get(sessionId);
+            if (existing.contains(sessionId)) {
+                updates.add(new Object[] {nowTs, expiresAt, head, sessionId});
+            } else {
+                String userId = entry.getValue().get(entry.getValue().size() - 1).getUserId();
+                inserts.add(new Object[] {sessionId, userId, head, nowTs, nowTs, expiresAt});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SESSION_SQL, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SESSION_SQL, inserts);
+        }
+    }
+
+    /**
+     * 批量写入失败（例如重复保存同一ID的消息、并发创建会话索引）时的兜底：
+     * 逐条按实体保存（同ID覆盖，沿用已分配的序号），单条失败只影响该条；
+     * 会话索引更新失败时仍按已写入的最大序号裁剪超量消息
+     */
+    private void writeOneByOne(Map<String, List<ChatMessageEntity>> batch) {
+        for (Map.Entry<String, List<ChatMessageEntity>> entry : batch.entrySet()) {
+            ensureSequences(entry.getKey(), entry.getValue());
+            long head = 0;
+            for (ChatMessageEntity message : entry.getValue()) {
+                try {
+                    chatMessageRepository.save(message);
+                    if (message.getSeq() != null) {
+                        head = Math.max(head, message.getSeq());
+                    }
+                } catch (Exception e) {
+                    log.error("保存消息失败，已丢弃: sessionId={}, messageId={}", entry.getKey(), message.getId(), e);
+                }
+            }
+            try {
+                String userId = entry.getValue().get(entry.getValue().size() - 1).getUserId();
+                SessionEntity session = sessionRepository.findBySessionId(entry.getKey())
+                    .orElseGet(() -> SessionEntity.builder().sessionId(entry.getKey()).userId(userId).build());
+                head = Math.max(session.getHeadSeq() != null ? session.getHeadSeq() : 0L, head);
+                session.setHeadSeq(head);
+                session.setUpdatedAt(LocalDateTime.now());
+                session.setExpiresAt(LocalDateTime.now().plusSeconds(config.getMessageTtl()));
+                sessionRepository.save(session);
+            } catch (Exception e) {
+                log.warn("更新会话索引失败: sessionId={}", entry.getKey(), e);
+            }
+            long cutoff = head - config.getMaxMessagesPerSession();
+            if (cutoff > 0) {
+                try {
+                    jdbcTemplate.update(TRIM_DELETE_SQL, entry.getKey(), cutoff);
+                } catch (Exception e) {
+                    log.warn("裁剪会话消息失败: sessionId={}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量事务在分配序号之前失败时，从已有消息的最大序号继续为消息补分配序号，保证兜底写入的消息也能被裁剪
+     */
+    private void ensureSequences(String sessionId, List<ChatMessageEntity> messages) {
+        if (messages.stream().allMatch(message -> message.getSeq() != null)) {
+            return;
+        }
+        try {
+            Long max = jdbcTemplate.queryForObject(MAX_SEQ_SQL, Long.class, sessionId);
+            long seq = max != null ? max : 0L;
+            for (ChatMessageEntity message : messages) {
+                if (message.getSeq() == null) {
+                    message.setSeq(++seq);
+                } else {
+                    seq = Math.max(seq, message.getSeq());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("分配消息序号失败: sessionId={}", sessionId, e);
+        }
+    }
+
+    /**
+     * 单个会话的缓冲区
+     */
+    private static class SessionBuffer {
+        private final String sessionId;
+        private final List<ChatMessageEntity> pending = new ArrayList<>();
+        private final List<ChatMessageEntity> inflight = new ArrayList<>();
+        private boolean closed;
+
+        private SessionBuffer(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+}
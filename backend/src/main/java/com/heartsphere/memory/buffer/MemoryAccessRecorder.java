@@ -0,0 +1,230 @@
+package com.heartsphere.memory.buffer;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 记忆访问统计累加器
+ * 读取记忆/事实时只在内存中按ID累加访问次数并记录最后访问时间，不再每次读取都执行一条UPDATE；
+ * 后台每隔几秒把累计值合并为一批 access_count = access_count + n 的JDBC批量更新写回，
+ * 读路径不再产生行锁，按访问次数排序的误差在一个刷写间隔之内。
+ * 待写ID数量有上限，超出时丢弃新ID的访问记录（已在累计中的ID不受影响）；关闭时写完剩余统计。
+ * 写回时热表中已不存在的记忆（累计期间被归档）改写到归档表，访问计数随归档记忆保留。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryAccessRecorder {
+
+    private static final String UPDATE_MEMORY_SQL = "UPDATE user_memories SET access_count = COALESCE(access_count, 0) + ?, "
+        + "last_accessed_at = CASE WHEN last_accessed_at IS NULL OR last_accessed_at < ? THEN ? ELSE last_accessed_at END "
+        + "WHERE id = ?";
+    private static final String UPDATE_ARCHIVED_MEMORY_SQL = "UPDATE archived_memories SET access_count = access_count + ?, "
+        + "last_accessed_at = CASE WHEN last_accessed_at IS NULL OR last_accessed_at < ? THEN ? ELSE last_accessed_at END "
+        + "WHERE id = ?";
+    private static final String UPDATE_FACT_SQL = "UPDATE user_facts SET access_count = COALESCE(access_count, 0) + ?, "
+        + "last_accessed_at = CASE WHEN last_accessed_at IS NULL OR last_accessed_at < ? THEN ? ELSE last_accessed_at END "
+        + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MemoryProperties.LongMemory config;
+
+    private final Map<String, Access> memoryAccesses = new ConcurrentHashMap<>();
+    private final Map<String, Access> factAccesses = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean closed;
+
+    public MemoryAccessRecorder(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 独立事务：在只读或其他事务中记录访问时，统计写回不受调用方事务影响
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.config = memoryProperties.getLongMemory();
+    }
+
+    // ========== 记录 ==========
+
+    /**
+     * 记录一次记忆访问
+     */
+    public void recordMemoryAccess(String memoryId) {
+        record(memoryAccesses, UPDATE_MEMORY_SQL, memoryId, System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一批记忆各被访问一次（如一次检索返回的结果）
+     */
+    public void recordMemoryAccess(Collection<String> memoryIds) {
+        long now = System.currentTimeMillis();
+        memoryIds.forEach(id -> record(memoryAccesses, UPDATE_MEMORY_SQL, id, now));
+    }
+
+    /**
+     * 记录一次事实访问
+     */
+    public void recordFactAccess(String factId) {
+        record(factAccesses, UPDATE_FACT_SQL, factId, System.currentTimeMillis());
+    }
+
+    /**
+     * 尚未写回的ID数量
+     */
+    public int pendingCount() {
+        return memoryAccesses.size() + factAccesses.size();
+    }
+
+    private void record(Map<String, Access> accesses, String sql, String id, long now) {
+        if (id == null) {
+            return;
+        }
+        if (!config.isAccessStatsBufferEnabled() || closed) {
+            // 未启用累加时直接写回单条
+            writeBatch(sql, List.of(Map.entry(id, new Access(1, now))));
+            return;
+        }
+        if (accesses.size() >= config.getAccessStatsMaxPendingIds() && !accesses.containsKey(id)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        // compute在ID所在的哈希桶上原地累加，不同ID之间互不阻塞，刷写时remove取走的值不会丢失累加
+        accesses.compute(id, (key, access) -> {
+            if (access == null) {
+                return new Access(1, now);
+            }
+            access.count++;
+            access.lastAccessedAt = Math.max(access.lastAccessedAt, now);
+            return access;
+        });
+    }
+
+    // ========== 写回 ==========
+
+    @Scheduled(fixedDelayString = "${heartsphere.memory.long-memory.access-stats-flush-interval-ms:2000}")
+    public void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("记忆访问统计写回失败", e);
+        }
+    }
+
+    /**
+     * 把累计的访问统计批量写回数据库
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flush(memoryAccesses, UPDATE_MEMORY_SQL);
+            flush(factAccesses, UPDATE_FACT_SQL);
+            long droppedCount = dropped.getAndSet(0);
+            if (droppedCount > 0) {
+                log.warn("访问统计待写ID已达上限，丢弃访问记录: {}", droppedCount);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭时写完剩余统计，之后的访问直接写回
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        flush();
+        log.info("记忆访问统计累加器已关闭");
+    }
+
+    private void flush(Map<String, Access> accesses, String sql) {
+        if (accesses.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Access>> batch = new ArrayList<>(accesses.size());
+        for (String id : new ArrayList<>(accesses.keySet())) {
+            Access access = accesses.remove(id);
+            if (access != null) {
+                batch.add(Map.entry(id, access));
+            }
+        }
+        // 按ID排序，多实例同时写回时加锁顺序一致
+        batch.sort(Map.Entry.comparingByKey());
+        int batchSize = config.getAccessStatsFlushBatchSize();
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Map.Entry<String, Access>> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            try {
+                writeBatch(sql, chunk);
+            } catch (Exception e) {
+                log.error("批量写回访问统计失败，放回下次重试: count={}", chunk.size(), e);
+                chunk.forEach(entry -> restore(accesses, entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private void writeBatch(String sql, List<Map.Entry<String, Access>> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Map.Entry<String, Access> entry : batch) {
+            Timestamp lastAccessedAt = new Timestamp(entry.getValue().lastAccessedAt);
+            args.add(new Object[]{entry.getValue().count, lastAccessedAt, lastAccessedAt, entry.getKey()});
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] updated = jdbcTemplate.batchUpdate(sql, args);
+            if (!UPDATE_MEMORY_SQL.equals(sql)) {
+                return;
+            }
+            // 热表未命中的记忆可能已被归档，计数改写到归档表
+            List<Object[]> missed = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    missed.add(args.get(i));
+                }
+            }
+            if (!missed.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_ARCHIVED_MEMORY_SQL, missed);
+            }
+        });
+    }
+
+    private void restore(Map<String, Access> accesses, String id, Access failed) {
+        accesses.merge(id, failed, (current, previous) -> {
+            current.count += previous.count;
+            current.lastAccessedAt = Math.max(current.lastAccessedAt, previous.lastAccessedAt);
+            return current;
+        });
+    }
+
+    /**
+     * 单个ID的累计访问
+     */
+    private static class Access {
+        private long count;
+        private long lastAccessedAt;
+
+        private Access(long count, long lastAccessedAt) {
+            this.count = count;
+            this.lastAccessedAt = lastAccessedAt;
+        }
+    }
+}
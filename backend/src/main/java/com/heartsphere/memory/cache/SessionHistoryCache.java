@@ -0,0 +1,236 @@
+package com.heartsphere.memory.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.util.LazyJsonValue;
+import com.heartsphere.memory.util.MemoryJsonCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 活跃会话的近期消息缓存
+ * 每个会话缓存最近 maxMessagesPerSession 条已解码的消息（与数据库裁剪后的窗口一致），
+ * 读取近期历史时不再查询数据库、也不再逐条解析metadata JSON。
+ * 按估算字节数限制总容量，会话空闲超时后过期；保存/删除/清空时原地更新。
+ * 缓存中的消息对外只提供副本，调用方修改返回结果不会影响缓存。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class SessionHistoryCache {
+
+    private static final Comparator<ChatMessage> BY_TIMESTAMP =
+        Comparator.comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final MemoryProperties.ShortMemory config;
+    private final Cache<String, SessionHistory> cache;
+
+    public SessionHistoryCache(MemoryProperties memoryProperties) {
+        this.config = memoryProperties.getShortMemory();
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(config.getHistoryCacheMaxBytes())
+            .weigher((String sessionId, SessionHistory history) -> history.weight())
+            .expireAfterAccess(Duration.ofSeconds(config.getHistoryCacheIdleSeconds()))
+            .recordStats()
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return config.isHistoryCacheEnabled();
+    }
+
+    /**
+     * 获取会话最近的消息，按时间戳倒序
+     *
+     * @param sessionId 会话ID
+     * @param limit 返回数量
+     * @param loader 未命中时按（会话ID, 条数）加载会话最近的消息，顺序不限；条数为单会话消息上限
+     * @return 最近的消息副本
+     */
+    public List<ChatMessage> getRecent(String sessionId, int limit, BiFunction<String, Integer, List<ChatMessage>> loader) {
+        SessionHistory history = cache.get(sessionId, key -> SessionHistory.of(loader.apply(key, capacity()), capacity()));
+        synchronized (history) {
+            List<ChatMessage> recent = new ArrayList<>(Math.min(limit, history.messages.size()));
+            for (int i = history.messages.size() - 1; i >= 0 && recent.size() < limit; i--) {
+                recent.add(copy(history.messages.get(i)));
+            }
+            return recent;
+        }
+    }
+
+    /**
+     * 获取已缓存会话在时间范围内的消息，按时间戳正序；会话未缓存时返回null
+     */
+    public List<ChatMessage> getRange(String sessionId, long startTimestamp, long endTimestamp) {
+        SessionHistory history = cache.getIfPresent(sessionId);
+        if (history == null) {
+            return null;
+        }
+        synchronized (history) {
+            // 缓存窗口之外的更早消息已被裁剪，范围起点早于窗口时仍需查库
+            if (history.messages.size() >= capacity()
+                    && (history.messages.get(0).getTimestamp() == null
+                        || history.messages.get(0).getTimestamp() > startTimestamp)) {
+                return null;
+            }
+            List<ChatMessage> range = new ArrayList<>();
+            for (ChatMessage message : history.messages) {
+                Long timestamp = message.getTimestamp();
+                if (timestamp != null && timestamp >= startTimestamp && timestamp <= endTimestamp) {
+                    range.add(copy(message));
+                }
+            }
+            return range;
+        }
+    }
+
+    // ========== 原地更新 ==========
+
+    /**
+     * 追加消息；会话未缓存时忽略，下次读取时再整体加载
+     */
+    public void append(String sessionId, ChatMessage message) {
+        cache.asMap().computeIfPresent(sessionId, (key, history) -> {
+            synchronized (history) {
+                history.put(copy(message), capacity());
+            }
+            return history;
+        });
+    }
+
+    /**
+     * 删除会话中的一条消息
+     */
+    public void remove(String sessionId, String messageId) {
+        cache.asMap().computeIfPresent(sessionId, (key, history) -> {
+            synchronized (history) {
+                history.messages.removeIf(message -> messageId.equals(message.getId()));
+            }
+            return history;
+        });
+    }
+
+    /**
+     * 移除整个会话的缓存
+     */
+    public void invalidate(String sessionId) {
+        cache.invalidate(sessionId);
+    }
+
+    // ========== 统计 ==========
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 立即执行挂起的淘汰与过期处理
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    /**
+     * 定期输出命中率与淘汰次数
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.short-memory.history-cache-stats-interval-ms:300000}")
+    public void logStats() {
+        CacheStats stats = cache.stats();
+        if (stats.requestCount() == 0) {
+            return;
+        }
+        log.info("会话消息缓存: sessions={}, hits={}, misses={}, hitRate={}, evictions={}, evictedWeight={}",
+            cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+            String.format("%.3f", stats.hitRate()), stats.evictionCount(), stats.evictionWeight());
+    }
+
+    private int capacity() {
+        return config.getMaxMessagesPerSession();
+    }
+
+    private static ChatMessage copy(ChatMessage message) {
+        return ChatMessage.builder()
+            .id(message.getId())
+            .sessionId(message.getSessionId())
+            .userId(message.getUserId())
+            .role(message.getRole())
+            .content(message.getContent())
+            .metadata(MemoryJsonCodec.copyMap(message.getMetadata()))
+            .timestamp(message.getTimestamp())
+            .importance(message.getImportance())
+            .extractedFacts(message.getExtractedFacts() != null ? new ArrayList<>(message.getExtractedFacts()) : null)
+            .tokenCount(message.getTokenCount())
+            .build();
+    }
+
+    /**
+     * 单个会话的消息窗口，按时间戳正序
+     */
+    private static class SessionHistory {
+        private static final int MESSAGE_OVERHEAD = 96;
+        private static final int METADATA_ENTRY_OVERHEAD = 64;
+
+        private final List<ChatMessage> messages = new ArrayList<>();
+
+        private static SessionHistory of(List<ChatMessage> loaded, int capacity) {
+            SessionHistory history = new SessionHistory();
+            if (loaded != null) {
+                loaded.forEach(message -> history.put(message, capacity));
+            }
+            return history;
+        }
+
+        /**
+         * 按时间戳插入（同ID覆盖），超出容量时丢弃最旧的消息
+         */
+        private void put(ChatMessage message, int capacity) {
+            if (message.getId() != null) {
+                messages.removeIf(existing -> message.getId().equals(existing.getId()));
+            }
+            int index = messages.size();
+            while (index > 0 && BY_TIMESTAMP.compare(messages.get(index - 1), message) > 0) {
+                index--;
+            }
+            messages.add(index, message);
+            while (messages.size() > capacity) {
+                messages.remove(0);
+            }
+        }
+
+        /**
+         * 估算占用字节数（字符串按UTF-16计）
+         */
+        private synchronized int weight() {
+            long bytes = 0;
+            for (ChatMessage message : messages) {
+                bytes += MESSAGE_OVERHEAD;
+                bytes += message.getContent() != null ? 2L * message.getContent().length() : 0;
+                Map<String, Object> metadata = message.getMetadata();
+                if (metadata instanceof LazyJsonValue lazy && !lazy.isDecoded()) {
+                    // 未解码的元数据按原始JSON估算，避免为计算权重而解析
+                    bytes += 2L * lazy.rawJson().length();
+                } else if (metadata != null) {
+                    bytes += (long) METADATA_ENTRY_OVERHEAD * metadata.size();
+                }
+            }
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+    }
+}
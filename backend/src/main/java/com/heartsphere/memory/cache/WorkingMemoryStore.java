@@ -0,0 +1,242 @@
+package com.heartsphere.memory.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.WorkingMemoryEntity;
+import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 工作记忆两级存储
+ * 进程内缓存值的JSON，每个条目按自身的过期时间失效；写入时同步写库（write-through），
+ * 事务提交后才更新缓存，回滚的写入不会进入缓存。读取命中缓存时不访问数据库；
+ * 未命中时从数据库加载并按剩余有效期缓存。
+ * 缓存不持有调用方的对象：字符串、数字等不可变值直接复用，其他值每次读取都从JSON解码出新对象，
+ * 调用方修改写入或读到的对象不会影响缓存。
+ * 过期行由 {@link com.heartsphere.memory.maintenance.ExpiredMemoryPurger} 在后台分批删除。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class WorkingMemoryStore {
+
+    private final WorkingMemoryRepository workingMemoryRepository;
+    private final ObjectMapper objectMapper;
+    private final MemoryProperties.ShortMemory config;
+    private final Cache<Key, Entry> cache;
+
+    public WorkingMemoryStore(
+            WorkingMemoryRepository workingMemoryRepository,
+            ObjectMapper objectMapper,
+            MemoryProperties memoryProperties) {
+        this.workingMemoryRepository = workingMemoryRepository;
+        this.objectMapper = objectMapper;
+        this.config = memoryProperties.getShortMemory();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(config.getWorkingMemoryCacheMaxEntries())
+            .expireAfter(new Expiry<Key, Entry>() {
+                @Override
+                public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                    return entry.remainingNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                    return entry.remainingNanos();
+                }
+
+                @Override
+                public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    /**
+     * 写入工作记忆：序列化一次后写库，提交后再更新缓存；需在事务中调用
+     *
+     * @param sessionId 会话ID
+     * @param key 键
+     * @param value 值
+     */
+    public void put(String sessionId, String key, Object value) throws Exception {
+        String valueJson = objectMapper.writeValueAsString(value);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(config.getWorkingMemoryTtl());
+
+        // 先按唯一键直接更新，不存在时再插入，常见的覆盖写只需一次往返
+        int updated = workingMemoryRepository.updateValue(sessionId, key, valueJson, expiresAt, now);
+        if (updated == 0) {
+            workingMemoryRepository.save(WorkingMemoryEntity.builder()
+                .sessionId(sessionId)
+                .memoryKey(key)
+                .memoryValue(valueJson)
+                .expiresAt(expiresAt)
+                .build());
+        }
+        Key cacheKey = new Key(sessionId, key);
+        Entry entry = new Entry(immutableOrNull(value), valueJson, toEpochMillis(expiresAt));
+        // 提交前先丢弃旧条目，事务内的读取回到数据库；提交后再写入新值，回滚时保持失效
+        cache.invalidate(cacheKey);
+        afterCompletion(committed -> {
+            if (committed) {
+                cache.put(cacheKey, entry);
+            } else {
+                cache.invalidate(cacheKey);
+            }
+        });
+    }
+
+    /**
+     * 读取工作记忆
+     *
+     * @param sessionId 会话ID
+     * @param key 键
+     * @param type 值类型
+     * @return 值；不存在或已过期时返回null
+     */
+    public <T> T get(String sessionId, String key, Class<T> type) throws Exception {
+        Key cacheKey = new Key(sessionId, key);
+        Entry entry = cache.getIfPresent(cacheKey);
+        if (entry == null) {
+            entry = load(sessionId, key);
+            if (entry == null) {
+                return null;
+            }
+            cache.put(cacheKey, entry);
+        }
+        if (entry.isExpired()) {
+            cache.invalidate(cacheKey);
+            return null;
+        }
+        if (entry.value != null && type.isInstance(entry.value)) {
+            return type.cast(entry.value);
+        }
+        if (entry.json == null) {
+            return null;
+        }
+        T decoded = objectMapper.readValue(entry.json, type);
+        Object immutable = immutableOrNull(decoded);
+        if (immutable != null) {
+            // 不可变值解码一次后直接复用
+            cache.asMap().replace(cacheKey, entry, new Entry(immutable, entry.json, entry.expiresAtMillis));
+        }
+        return decoded;
+    }
+
+    /**
+     * 删除工作记忆；需在事务中调用
+     */
+    public void remove(String sessionId, String key) {
+        Key cacheKey = new Key(sessionId, key);
+        cache.invalidate(cacheKey);
+        workingMemoryRepository.deleteBySessionIdAndMemoryKey(sessionId, key);
+        // 提交前并发读取可能重新加载了旧行
+        afterCompletion(committed -> cache.invalidate(cacheKey));
+    }
+
+    /**
+     * 删除会话的所有工作记忆；需在事务中调用
+     */
+    public void clearSession(String sessionId) {
+        invalidateSession(sessionId);
+        workingMemoryRepository.deleteBySessionId(sessionId);
+        afterCompletion(committed -> invalidateSession(sessionId));
+    }
+
+    /**
+     * 丢弃会话的缓存条目（不删除数据库中的行），用于绕过本类直接写库之后
+     */
+    public void invalidateSession(String sessionId) {
+        cache.asMap().keySet().removeIf(cacheKey -> cacheKey.sessionId.equals(sessionId));
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    private Entry load(String sessionId, String key) {
+        Optional<WorkingMemoryEntity> entityOpt = workingMemoryRepository.findBySessionIdAndMemoryKey(sessionId, key);
+        if (entityOpt.isEmpty()) {
+            return null;
+        }
+        WorkingMemoryEntity entity = entityOpt.get();
+        long expiresAt = entity.getExpiresAt() != null ? toEpochMillis(entity.getExpiresAt()) : Long.MAX_VALUE;
+        if (expiresAt <= System.currentTimeMillis()) {
+            // 过期行留给后台清理任务删除
+            return null;
+        }
+        String json = entity.getMemoryValue();
+        return new Entry(null, json == null || json.isEmpty() ? null : json, expiresAt);
+    }
+
+    /**
+     * 在事务结束后执行（没有事务时立即按已提交执行）
+     */
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    /**
+     * 不可变值可以在缓存和调用方之间共享，其他值返回null（只缓存JSON）
+     */
+    private static Object immutableOrNull(Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Character
+            || value instanceof Integer || value instanceof Long || value instanceof Double
+            || value instanceof Float || value instanceof Short || value instanceof Byte
+            || value instanceof BigDecimal || value instanceof BigInteger || value instanceof Enum<?>) {
+            return value;
+        }
+        return null;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Key(String sessionId, String key) {
+    }
+
+    /**
+     * 已解码的不可变值（可为空）、原始JSON及过期时间
+     */
+    private record Entry(Object value, String json, long expiresAtMillis) {
+
+        private boolean isExpired() {
+            return expiresAtMillis <= System.currentTimeMillis();
+        }
+
+        private long remainingNanos() {
+            if (expiresAtMillis == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
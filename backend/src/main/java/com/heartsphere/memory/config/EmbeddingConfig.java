@@ -0,0 +1,45 @@
+package com.heartsphere.memory.config;
+
+import com.heartsphere.memory.embedding.CachingEmbeddingService;
+import com.heartsphere.memory.embedding.MappedVectorStore;
+import com.heartsphere.memory.service.EmbeddingService;
+import com.heartsphere.memory.service.impl.HashingEmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 向量化服务配置
+ * 本地向量化实现外包一层按内容寻址的向量缓存；向量文件打开失败时退化为只用内存缓存
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Configuration
+@Slf4j
+public class EmbeddingConfig {
+
+    @Bean
+    @Primary
+    public EmbeddingService embeddingService(HashingEmbeddingService localEmbedder, MemoryProperties memoryProperties) {
+        MemoryProperties.EmbeddingCache config = memoryProperties.getEmbeddingCache();
+        if (!config.isEnabled()) {
+            return localEmbedder;
+        }
+        MappedVectorStore store = null;
+        if (config.isDiskEnabled()) {
+            Path file = Paths.get(config.getPath(), localEmbedder.getModelId() + ".vec");
+            try {
+                store = MappedVectorStore.open(file, localEmbedder.getModelId(),
+                    localEmbedder.getDimension(), config.getDiskMaxVectors());
+            } catch (Exception e) {
+                log.warn("打开向量缓存文件失败，只使用内存缓存: file={}", file, e);
+            }
+        }
+        return new CachingEmbeddingService(localEmbedder, store, config.getMaxCachedVectors());
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 记忆系统异步处理配置
@@ -32,6 +33,25 @@ public class MemoryAsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * 记忆检索线程池
+     * 用于并发执行关键词/语义/关联候选召回；队列满时拒绝任务，该路召回按空结果处理，
+     * 不在请求线程上同步执行（否则不受召回超时约束）
+     */
+    @Bean(name = "memoryRetrievalExecutor")
+    public Executor memoryRetrievalExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);           // 核心线程数
+        executor.setMaxPoolSize(16);           // 最大线程数
+        executor.setQueueCapacity(200);        // 队列容量
+        executor.setThreadNamePrefix("memory-retrieval-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
 }
 
 
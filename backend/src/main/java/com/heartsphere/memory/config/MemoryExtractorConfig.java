@@ -98,6 +98,33 @@ public class MemoryExtractorConfig {
             return ruleExtractor.extractMemories(userId, messages);
         }
         
+        @Override
+        public com.heartsphere.memory.model.ExtractionResult extractAll(
+                String userId, java.util.List<com.heartsphere.memory.model.ChatMessage> messages) {
+            com.heartsphere.memory.model.ExtractionResult result = null;
+            if (preferLlm) {
+                try {
+                    result = llmExtractor.extractAll(userId, messages);
+                } catch (Exception e) {
+                    // LLM提取失败，降级到规则提取
+                }
+            }
+            if (result == null) {
+                result = new com.heartsphere.memory.model.ExtractionResult();
+            }
+            // 按类别降级：LLM未提取到的类别使用规则提取器补充
+            if (result.getFacts() == null || result.getFacts().isEmpty()) {
+                result.setFacts(ruleExtractor.extractFacts(userId, messages));
+            }
+            if (result.getPreferences() == null || result.getPreferences().isEmpty()) {
+                result.setPreferences(ruleExtractor.extractPreferences(userId, messages));
+            }
+            if (result.getMemories() == null || result.getMemories().isEmpty()) {
+                result.setMemories(ruleExtractor.extractMemories(userId, messages));
+            }
+            return result;
+        }
+        
         @Override
         public java.util.List<com.heartsphere.memory.model.UserFact> validateAndCleanFacts(
                 java.util.List<com.heartsphere.memory.model.UserFact> facts) {
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 记忆系统配置属性
  * 
@@ -30,6 +33,51 @@ public class MemoryProperties {
      */
     private Extraction extraction = new Extraction();
     
+    /**
+     * 向量索引配置
+     */
+    private VectorIndex vectorIndex = new VectorIndex();
+    
+    /**
+     * 混合检索配置
+     */
+    private Retrieval retrieval = new Retrieval();
+    
+    /**
+     * 全文索引配置
+     */
+    private TextIndex textIndex = new TextIndex();
+    
+    /**
+     * 提取任务队列配置
+     */
+    private ExtractionQueue extractionQueue = new ExtractionQueue();
+    
+    /**
+     * 近似重复合并配置
+     */
+    private Consolidation consolidation = new Consolidation();
+    
+    /**
+     * 冷记忆归档配置
+     */
+    private Archive archive = new Archive();
+    
+    /**
+     * 向量缓存配置
+     */
+    private EmbeddingCache embeddingCache = new EmbeddingCache();
+    
+    /**
+     * 提示词上下文组装配置
+     */
+    private Context context = new Context();
+    
+    /**
+     * 导出/导入配置
+     */
+    private Transfer transfer = new Transfer();
+    
     @Data
     public static class ShortMemory {
         /**
@@ -46,6 +94,62 @@ public class MemoryProperties {
          * 工作记忆TTL（秒），默认24小时
          */
         private int workingMemoryTtl = 3600 * 24;
+        
+        /**
+         * 工作记忆进程内缓存的最大条目数，默认100000
+         */
+        private long workingMemoryCacheMaxEntries = 100000;
+        
+        /**
+         * 是否启用消息写缓冲（异步批量落库），默认true
+         * 启用时进程被强制终止会丢失最近一个刷盘间隔内确认的消息；关闭后每条消息同步提交
+         */
+        private boolean writeBehindEnabled = true;
+        
+        /**
+         * 写缓冲刷盘间隔（毫秒），默认10
+         */
+        private long flushIntervalMs = 10;
+        
+        /**
+         * 单个会话累计多少条消息时立即刷盘，默认50
+         */
+        private int flushBatchSize = 50;
+        
+        /**
+         * 写缓冲最多容纳的消息数，超过时由写入线程同步刷盘，默认10000
+         */
+        private int maxPendingMessages = 10000;
+        
+        /**
+         * 是否启用会话消息缓存，默认true
+         */
+        private boolean historyCacheEnabled = true;
+        
+        /**
+         * 会话消息缓存的容量上限（估算字节数），默认64MB
+         */
+        private long historyCacheMaxBytes = 64L * 1024 * 1024;
+        
+        /**
+         * 会话空闲多久后移出缓存（秒），默认30分钟
+         */
+        private long historyCacheIdleSeconds = 1800;
+        
+        /**
+         * 缓存统计日志输出间隔（毫秒），默认5分钟
+         */
+        private long historyCacheStatsIntervalMs = 300000;
+        
+        /**
+         * 过期消息清理间隔（毫秒），默认1分钟
+         */
+        private long expiredPurgeIntervalMs = 60000;
+        
+        /**
+         * 过期消息每批删除条数，默认1000
+         */
+        private int expiredPurgeBatchSize = 1000;
     }
     
     @Data
@@ -59,6 +163,26 @@ public class MemoryProperties {
          * 记忆提取置信度阈值，默认0.6
          */
         private double extractionConfidenceThreshold = 0.6;
+        
+        /**
+         * 是否在内存中累加访问统计后批量写回，默认true；关闭时每次访问直接写库
+         */
+        private boolean accessStatsBufferEnabled = true;
+        
+        /**
+         * 访问统计写回间隔（毫秒），默认2000
+         */
+        private long accessStatsFlushIntervalMs = 2000;
+        
+        /**
+         * 每批写回的ID数，默认500
+         */
+        private int accessStatsFlushBatchSize = 500;
+        
+        /**
+         * 待写回ID数量上限，默认100000
+         */
+        private int accessStatsMaxPendingIds = 100000;
     }
     
     @Data
@@ -77,9 +201,340 @@ public class MemoryProperties {
          * 提取批次大小，默认10
          */
         private int batchSize = 10;
+        
+        /**
+         * 是否一次调用同时提取事实、偏好和记忆，默认true
+         */
+        private boolean combinedExtraction = true;
+    }
+    
+    @Data
+    public static class VectorIndex {
+        /**
+         * 是否启用向量索引，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 索引文件目录
+         */
+        private String path = "./data/memory-index";
+        
+        /**
+         * 向量维度，默认256
+         */
+        private int dimension = 256;
+        
+        /**
+         * HNSW每层最大连接数，默认16
+         */
+        private int m = 16;
+        
+        /**
+         * 建索引时的候选集大小，默认100
+         */
+        private int efConstruction = 100;
+        
+        /**
+         * 查询时的候选集大小，默认64
+         */
+        private int efSearch = 64;
+        
+        /**
+         * 语义召回的最低相似度，默认0.25
+         */
+        private double minSimilarity = 0.25;
+        
+        /**
+         * 脏索引落盘间隔（毫秒），默认30秒
+         */
+        private long flushIntervalMs = 30000;
+        
+        /**
+         * 内存中最多保留的用户索引数，超出时淘汰最久未用的（有变更的先落盘），默认1000
+         */
+        private int maxLoadedUsers = 1000;
+        
+        /**
+         * 重建用户索引时每批读取的记忆数，默认500
+         */
+        private int rebuildBatchSize = 500;
+    }
+    
+    @Data
+    public static class Retrieval {
+        /**
+         * 每路召回的候选数 = 返回数量 × 该倍数，默认3
+         */
+        private int candidateMultiplier = 3;
+        
+        /**
+         * 单路召回的超时时间（毫秒），超时的召回按空结果参与融合，默认200
+         */
+        private long timeoutMs = 200;
+        
+        /**
+         * 倒数排名融合的平滑常数k，默认60
+         */
+        private int rrfK = 60;
+    }
+    
+    @Data
+    public static class TextIndex {
+        /**
+         * 是否启用全文索引，关闭时关键词检索退回LIKE查询，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 启动时是否从MySQL重建索引，默认true；关闭时索引只包含启动后写入的内容
+         */
+        private boolean rebuildOnStartup = true;
+        
+        /**
+         * 重建时每批读取的行数，默认500
+         */
+        private int rebuildBatchSize = 500;
+        
+        /**
+         * 重建失败后的重试间隔（毫秒），默认60000
+         */
+        private long rebuildRetryIntervalMs = 60000;
+    }
+    
+    @Data
+    public static class ExtractionQueue {
+        /**
+         * 是否启用提取任务调度，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 调度轮询间隔（毫秒），默认1000
+         */
+        private long pollIntervalMs = 1000;
+        
+        /**
+         * 合并窗口（毫秒）：触发后延迟调度，窗口内同一会话的重复触发合并为一个任务，默认5000
+         */
+        private long coalesceDelayMs = 5000;
+        
+        /**
+         * 单个提供商同时进行的LLM提取数，默认4
+         * 许可在每个实例内独立计数，多实例部署时集群总并发为 实例数 × 该值，按提供商限额除以实例数配置
+         */
+        private int defaultProviderConcurrency = 4;
+        
+        /**
+         * 按提供商覆盖并发数（键为提供商名称，小写），同样按实例计
+         */
+        private Map<String, Integer> providerConcurrency = new HashMap<>();
+        
+        /**
+         * 为交互通道保留的并发数，回填任务不占用，默认1
+         */
+        private int interactiveReservedSlots = 1;
+        
+        /**
+         * 最大执行次数，默认5
+         */
+        private int maxAttempts = 5;
+        
+        /**
+         * 重试退避基数（秒），按执行次数指数增长，默认30
+         */
+        private long retryBackoffSeconds = 30;
+        
+        /**
+         * 执行租约（秒）：超过该时间仍未完成的任务视为实例已失效，重新入队，默认600
+         */
+        private long leaseSeconds = 600;
+        
+        /**
+         * 执行中任务的租约续期间隔（毫秒），须明显小于租约时长，默认60000
+         */
+        private long leaseRenewIntervalMs = 60000;
+        
+        /**
+         * 每次提取读取的最近消息数，默认100
+         */
+        private int messageWindow = 100;
+        
+        /**
+         * 获取提供商的并发上限
+         */
+        public int concurrencyFor(String provider) {
+            return providerConcurrency.getOrDefault(provider, defaultProviderConcurrency);
+        }
+    }
+    
+    @Data
+    public static class Consolidation {
+        /**
+         * 是否启用近似重复合并，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 合并任务运行间隔（毫秒），默认300000
+         */
+        private long intervalMs = 300000;
+        
+        /**
+         * 每批处理的未计算指纹条目数，默认500
+         */
+        private int batchSize = 500;
+        
+        /**
+         * SimHash指纹汉明距离阈值，不超过该值视为近似重复，默认3
+         */
+        private int hammingThreshold = 3;
+    }
+    
+    @Data
+    public static class Archive {
+        /**
+         * 是否启用冷记忆归档，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 归档任务运行间隔（毫秒），默认3600000
+         */
+        private long intervalMs = 3600000;
+        
+        /**
+         * 最短空闲天数，未超过的记忆不参与评估，默认30
+         */
+        private int minIdleDays = 30;
+        
+        /**
+         * 热度半衰期（天）：空闲每经过一个半衰期，热度减半，默认30
+         */
+        private double halfLifeDays = 30;
+        
+        /**
+         * 热度低于该值的记忆移入归档，默认0.15
+         */
+        private double scoreThreshold = 0.15;
+        
+        /**
+         * 每批评估的候选记忆数，默认200
+         */
+        private int batchSize = 200;
+        
+        /**
+         * 每条归档记忆保留的摘要词项数，默认64
+         */
+        private int summaryTokens = 64;
+        
+        /**
+         * 摘要缓存的用户数上限，默认1000
+         */
+        private int summaryCacheUsers = 1000;
+    }
+    
+    @Data
+    public static class EmbeddingCache {
+        /**
+         * 是否启用向量缓存，默认true
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 内存缓存的向量数上限，默认10000
+         */
+        private long maxCachedVectors = 10000;
+        
+        /**
+         * 是否使用内存映射的向量文件，默认true
+         */
+        private boolean diskEnabled = true;
+        
+        /**
+         * 向量文件目录
+         */
+        private String path = "./data/embedding-cache";
+        
+        /**
+         * 向量文件最多保存的向量数，默认100000；写满后下次启动时清空重建
+         */
+        private int diskMaxVectors = 100000;
+        
+        /**
+         * 命中统计输出间隔（毫秒），默认300000
+         */
+        private long statsIntervalMs = 300000;
+    }
+    
+    @Data
+    public static class Context {
+        /**
+         * 默认的上下文token预算，默认3000
+         */
+        private int defaultTokenBudget = 3000;
+        
+        /**
+         * 按模型覆盖token预算（键为模型名称，小写）
+         */
+        private Map<String, Integer> modelTokenBudgets = new HashMap<>();
+        
+        /**
+         * 候选的近期消息条数，默认50
+         */
+        private int historyLimit = 50;
+        
+        /**
+         * 必须保留的最近消息条数（不参与打分），默认2
+         */
+        private int pinnedRecentMessages = 2;
+        
+        /**
+         * 候选的相关记忆条数，默认10
+         */
+        private int memoryLimit = 10;
+        
+        /**
+         * 候选事实的最小重要性，默认0.3
+         */
+        private double minFactImportance = 0.3;
+        
+        /**
+         * 候选的事实条数上限（按重要性取前N条），默认30
+         */
+        private int factLimit = 30;
+        
+        /**
+         * 消息新近度半衰期（轮数），默认8
+         */
+        private double messageHalfLifeTurns = 8;
+        
+        /**
+         * 事实/偏好/记忆新近度半衰期（天），默认30
+         */
+        private double memoryHalfLifeDays = 30;
+        
+        /**
+         * 新近度权重，默认0.4
+         */
+        private double recencyWeight = 0.4;
+        
+        /**
+         * 重要性权重，默认0.6
+         */
+        private double importanceWeight = 0.6;
+    }
+    
+    @Data
+    public static class Transfer {
+        /**
+         * 导出时每次查询的行数，默认1000
+         */
+        private int exportBatchSize = 1000;
+        
+        /**
+         * 导入时每个批量插入事务的行数，默认500
+         */
+        private int importBatchSize = 500;
     }
 }
-
-
-
-
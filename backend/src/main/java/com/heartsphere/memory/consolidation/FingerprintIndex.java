@@ -0,0 +1,91 @@
+package com.heartsphere.memory.consolidation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 指纹近邻索引（分段LSH）
+ * 把64位指纹切成 阈值+1 段，按 (分组, 段号, 段值) 分桶。两个指纹的汉明距离不超过阈值时，
+ * 由抽屉原理至少有一段完全相同，因此只需比较同桶的指纹，无需两两比较。非线程安全。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class FingerprintIndex {
+
+    private final int threshold;
+    private final int bands;
+    private final int bandBits;
+    private final Map<BandKey, List<Entry>> buckets = new HashMap<>();
+
+    /**
+     * @param threshold 视为近似重复的最大汉明距离（0-63）
+     */
+    public FingerprintIndex(int threshold) {
+        if (threshold < 0 || threshold > 63) {
+            throw new IllegalArgumentException("汉明距离阈值必须在0到63之间: " + threshold);
+        }
+        this.threshold = threshold;
+        this.bands = threshold + 1;
+        this.bandBits = 64 / bands;
+    }
+
+    public void add(String group, String id, long fingerprint) {
+        Entry entry = new Entry(id, fingerprint);
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(key(group, band, fingerprint), k -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    public void remove(String group, String id, long fingerprint) {
+        for (int band = 0; band < bands; band++) {
+            BandKey key = key(group, band, fingerprint);
+            List<Entry> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.removeIf(entry -> entry.id().equals(id));
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找同组内汉明距离不超过阈值的条目
+     */
+    public List<Entry> findNear(String group, long fingerprint) {
+        Set<Entry> near = new LinkedHashSet<>();
+        for (int band = 0; band < bands; band++) {
+            List<Entry> bucket = buckets.get(key(group, band, fingerprint));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry entry : bucket) {
+                if (SimHash.distance(entry.fingerprint(), fingerprint) <= threshold) {
+                    near.add(entry);
+                }
+            }
+        }
+        return new ArrayList<>(near);
+    }
+
+    private BandKey key(String group, int band, long fingerprint) {
+        int shift = band * bandBits;
+        // 最后一段包含剩余的所有位
+        long mask = band == bands - 1 ? -1L >>> shift : (1L << bandBits) - 1;
+        return new BandKey(group, band, (fingerprint >>> shift) & mask);
+    }
+
+    private record BandKey(String group, int band, long value) {
+    }
+
+    /**
+     * 索引条目
+     */
+    public record Entry(String id, long fingerprint) {
+    }
+}
@@ -0,0 +1,317 @@
+package com.heartsphere.memory.consolidation;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.UserFactEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.repository.jpa.UserFactRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 近似重复记忆合并任务
+ * 增量处理尚未计算指纹（content_fingerprint为空）的记忆和事实：计算SimHash指纹，
+ * 在同一用户、同一类型/类别内查找汉明距离不超过阈值、且数字串完全一致的已有条目，
+ * 合并为置信度最高的一条（置信度相同时保留最新的一条，即用户最近更正的内容），
+ * 访问次数累加、最后访问时间取最新，其余条目删除并移出向量索引和全文索引。
+ * 只有数字不同的内容（日期、电话号码等）指纹几乎相同，但表达的是不同事实，不合并。
+ * 按ID游标分批读取待处理条目的ID，每个用户一个短事务，在事务内加锁重新读取条目，
+ * 不会覆盖读取之后的编辑或访问统计写回；已有条目只读取ID和指纹，合并时才加锁加载实体。
+ * 没有可用词元的内容（如纯标点、表情）指纹为0，只记录指纹、不参与合并。
+ * 某个用户处理失败时游标照常前移，不影响同批及之后的用户，失败的条目留待下次运行重试。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryConsolidator {
+
+    /**
+     * 单次运行每类数据最多处理的批数，剩余的留给下一次运行
+     */
+    private static final int MAX_BATCHES_PER_RUN = 20;
+
+    /**
+     * 置信度相同时创建时间最新的条目胜出（缺失创建时间视为最早）
+     */
+    private static final Comparator<LocalDateTime> LATEST_WINS =
+        Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder());
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final UserFactRepository userFactRepository;
+    private final MemoryVectorIndex memoryVectorIndex;
+    private final MemoryTextIndex memoryTextIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final MemoryProperties.Consolidation config;
+
+    public MemoryConsolidator(
+            UserMemoryRepository userMemoryRepository,
+            UserFactRepository userFactRepository,
+            MemoryVectorIndex memoryVectorIndex,
+            MemoryTextIndex memoryTextIndex,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.userFactRepository = userFactRepository;
+        this.memoryVectorIndex = memoryVectorIndex;
+        this.memoryTextIndex = memoryTextIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = memoryProperties.getConsolidation();
+    }
+
+    @Scheduled(fixedDelayString = "${heartsphere.memory.consolidation.interval-ms:300000}")
+    public void consolidate() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            int merged = consolidateMemories();
+            if (merged > 0) {
+                log.info("合并近似重复记忆: {}", merged);
+            }
+        } catch (Exception e) {
+            log.error("合并近似重复记忆失败", e);
+        }
+        try {
+            int merged = consolidateFacts();
+            if (merged > 0) {
+                log.info("合并近似重复事实: {}", merged);
+            }
+        } catch (Exception e) {
+            log.error("合并近似重复事实失败", e);
+        }
+    }
+
+    // ========== 记忆 ==========
+
+    /**
+     * 处理尚未计算指纹的记忆
+     *
+     * @return 删除（并入其他条目）的记忆数量
+     */
+    public int consolidateMemories() {
+        return consolidateInBatches(
+            afterId -> userMemoryRepository.findUnfingerprinted(afterId, PageRequest.of(0, config.getBatchSize())),
+            this::consolidateUserMemories,
+            id -> {
+                memoryVectorIndex.remove(id);
+                memoryTextIndex.removeMemory(id);
+            });
+    }
+
+    private Merged consolidateUserMemories(String userId, List<String> ids) {
+        FingerprintIndex index = fingerprintIndex(userMemoryRepository.findFingerprintsByUserId(userId));
+        Map<String, UserMemoryEntity> loaded = userMemoryRepository.findAllByIdForUpdate(ids).stream()
+            .collect(Collectors.toMap(UserMemoryEntity::getId, Function.identity()));
+
+        Merged merged = new Merged();
+        for (String id : ids) {
+            UserMemoryEntity row = loaded.get(id);
+            if (row == null || row.getContentFingerprint() != null) {
+                // 已被删除、合并或由其他实例处理
+                continue;
+            }
+            long fingerprint = SimHash.fingerprint(row.getContent());
+            row.setContentFingerprint(fingerprint);
+            if (fingerprint == 0L) {
+                continue;
+            }
+            String group = String.valueOf(row.getType());
+            List<FingerprintIndex.Entry> near = index.findNear(group, fingerprint);
+            if (near.isEmpty()) {
+                index.add(group, row.getId(), fingerprint);
+                continue;
+            }
+
+            List<UserMemoryEntity> cluster = new ArrayList<>(userMemoryRepository.findAllByIdForUpdate(ids(near)));
+            cluster.removeIf(candidate -> !SimHash.sameNumbers(candidate.getContent(), row.getContent()));
+            if (cluster.isEmpty()) {
+                index.add(group, row.getId(), fingerprint);
+                continue;
+            }
+            cluster.add(row);
+            UserMemoryEntity survivor = cluster.stream()
+                .max(Comparator.comparingDouble((UserMemoryEntity m) -> confidence(m.getConfidence()))
+                    .thenComparing(UserMemoryEntity::getCreatedAt, LATEST_WINS))
+                .orElseThrow();
+            survivor.setAccessCount(cluster.stream().mapToInt(m -> count(m.getAccessCount())).sum());
+            survivor.setLastAccessedAt(latest(cluster.stream().map(UserMemoryEntity::getLastAccessedAt)));
+
+            for (UserMemoryEntity duplicate : cluster) {
+                if (duplicate != survivor) {
+                    index.remove(group, duplicate.getId(), duplicate.getContentFingerprint());
+                    userMemoryRepository.delete(duplicate);
+                    merged.removedIds.add(duplicate.getId());
+                }
+            }
+            if (survivor == row) {
+                index.add(group, row.getId(), fingerprint);
+            }
+        }
+        return merged;
+    }
+
+    // ========== 事实 ==========
+
+    /**
+     * 处理尚未计算指纹的事实
+     *
+     * @return 删除（并入其他条目）的事实数量
+     */
+    public int consolidateFacts() {
+        return consolidateInBatches(
+            afterId -> userFactRepository.findUnfingerprinted(afterId, PageRequest.of(0, config.getBatchSize())),
+            this::consolidateUserFacts,
+            memoryTextIndex::removeFact);
+    }
+
+    private Merged consolidateUserFacts(String userId, List<String> ids) {
+        FingerprintIndex index = fingerprintIndex(userFactRepository.findFingerprintsByUserId(userId));
+        Map<String, UserFactEntity> loaded = userFactRepository.findAllByIdForUpdate(ids).stream()
+            .collect(Collectors.toMap(UserFactEntity::getId, Function.identity()));
+
+        Merged merged = new Merged();
+        for (String id : ids) {
+            UserFactEntity row = loaded.get(id);
+            if (row == null || row.getContentFingerprint() != null) {
+                continue;
+            }
+            long fingerprint = SimHash.fingerprint(row.getFact());
+            row.setContentFingerprint(fingerprint);
+            if (fingerprint == 0L) {
+                continue;
+            }
+            String group = String.valueOf(row.getCategory());
+            List<FingerprintIndex.Entry> near = index.findNear(group, fingerprint);
+            if (near.isEmpty()) {
+                index.add(group, row.getId(), fingerprint);
+                continue;
+            }
+
+            List<UserFactEntity> cluster = new ArrayList<>(userFactRepository.findAllByIdForUpdate(ids(near)));
+            cluster.removeIf(candidate -> !SimHash.sameNumbers(candidate.getFact(), row.getFact()));
+            if (cluster.isEmpty()) {
+                index.add(group, row.getId(), fingerprint);
+                continue;
+            }
+            cluster.add(row);
+            UserFactEntity survivor = cluster.stream()
+                .max(Comparator.comparingDouble((UserFactEntity f) -> confidence(f.getConfidence()))
+                    .thenComparing(UserFactEntity::getCreatedAt, LATEST_WINS))
+                .orElseThrow();
+            survivor.setAccessCount(cluster.stream().mapToInt(f -> count(f.getAccessCount())).sum());
+            survivor.setLastAccessedAt(latest(cluster.stream().map(UserFactEntity::getLastAccessedAt)));
+            survivor.setImportance(cluster.stream().mapToDouble(f -> confidence(f.getImportance())).max().orElse(0.5));
+
+            for (UserFactEntity duplicate : cluster) {
+                if (duplicate != survivor) {
+                    index.remove(group, duplicate.getId(), duplicate.getContentFingerprint());
+                    userFactRepository.delete(duplicate);
+                    merged.removedIds.add(duplicate.getId());
+                }
+            }
+            if (survivor == row) {
+                index.add(group, row.getId(), fingerprint);
+            }
+        }
+        return merged;
+    }
+
+    // ========== 私有方法 ==========
+
+    /**
+     * 按ID游标分批读取未计算指纹的条目（ID、用户ID），按用户分组，每个用户一个事务；
+     * 提交后再把删除的条目移出内存索引
+     */
+    private int consolidateInBatches(
+            Function<String, List<Object[]>> batchLoader,
+            BiFunction<String, List<String>, Merged> consolidateUser,
+            Consumer<String> removeFromIndexes) {
+        int total = 0;
+        String cursor = "";
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            List<Object[]> batch = batchLoader.apply(cursor);
+            if (batch.isEmpty()) {
+                break;
+            }
+            cursor = (String) batch.get(batch.size() - 1)[0];
+            Map<String, List<String>> byUser = batch.stream()
+                .collect(Collectors.groupingBy(row -> (String) row[1], LinkedHashMap::new,
+                    Collectors.mapping(row -> (String) row[0], Collectors.toList())));
+            for (Map.Entry<String, List<String>> entry : byUser.entrySet()) {
+                try {
+                    Merged merged = transactionTemplate.execute(
+                        status -> consolidateUser.apply(entry.getKey(), entry.getValue()));
+                    if (merged != null) {
+                        merged.removedIds.forEach(removeFromIndexes);
+                        total += merged.removedIds.size();
+                    }
+                } catch (Exception e) {
+                    // 该用户的条目保持未处理状态，下次运行重试；游标已越过，不阻塞其他用户
+                    log.error("合并用户近似重复条目失败: userId={}", entry.getKey(), e);
+                }
+            }
+            if (batch.size() < config.getBatchSize()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 用已有条目的ID、分组、指纹建立指纹索引；指纹为0（无可用词元）的条目不参与合并
+     */
+    private FingerprintIndex fingerprintIndex(List<Object[]> fingerprints) {
+        FingerprintIndex index = new FingerprintIndex(config.getHammingThreshold());
+        for (Object[] row : fingerprints) {
+            long fingerprint = (Long) row[2];
+            if (fingerprint != 0L) {
+                index.add(String.valueOf(row[1]), (String) row[0], fingerprint);
+            }
+        }
+        return index;
+    }
+
+    private static List<String> ids(List<FingerprintIndex.Entry> entries) {
+        return entries.stream().map(FingerprintIndex.Entry::id).collect(Collectors.toList());
+    }
+
+    private static double confidence(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static int count(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static LocalDateTime latest(Stream<LocalDateTime> times) {
+        return times.filter(Objects::nonNull).max(Comparator.naturalOrder()).orElse(null);
+    }
+
+    /**
+     * 单个用户的合并结果
+     */
+    private static class Merged {
+        private final List<String> removedIds = new ArrayList<>();
+    }
+}
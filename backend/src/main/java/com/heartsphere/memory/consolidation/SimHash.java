@@ -0,0 +1,110 @@
+package com.heartsphere.memory.consolidation;
+
+import com.heartsphere.memory.text.CjkTokenizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 64位SimHash文本指纹
+ * 以中文单字/二字词项和拉丁单词为特征、词频为权重；内容相近的文本指纹的汉明距离小，
+ * 标点、空白和大小写差异不影响指纹。
+ * 数字只占少量词项，只有数字不同的文本（日期、电话号码）指纹几乎相同，合并前需再用 {@link #sameNumbers} 比较。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class SimHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * 计算文本指纹；没有有效词项时返回0
+     */
+    public static long fingerprint(String text) {
+        List<String> tokens = CjkTokenizer.tokenizeForIndex(text);
+        if (tokens.isEmpty()) {
+            return 0L;
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        int[] weights = new int[64];
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            long hash = hash64(entry.getKey());
+            int weight = entry.getValue();
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) != 0 ? weight : -weight;
+            }
+        }
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 两个指纹的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 两段文本中的数字串（按出现顺序，全角数字按半角处理）是否完全一致
+     */
+    public static boolean sameNumbers(String a, String b) {
+        return numbers(a).equals(numbers(b));
+    }
+
+    /**
+     * 按出现顺序提取文本中的连续数字串
+     */
+    static List<String> numbers(String text) {
+        List<String> numbers = new ArrayList<>();
+        if (text == null) {
+            return numbers;
+        }
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            int digit = Character.digit(text.charAt(i), 10);
+            if (digit >= 0) {
+                current.append((char) ('0' + digit));
+            } else if (current.length() > 0) {
+                numbers.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            numbers.add(current.toString());
+        }
+        return numbers;
+    }
+
+    /**
+     * FNV-1a后接murmur3的fmix64，使短词项的各位分布均匀
+     */
+    private static long hash64(String token) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
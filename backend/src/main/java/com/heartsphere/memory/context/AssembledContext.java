@@ -0,0 +1,27 @@
+package com.heartsphere.memory.context;
+
+import com.heartsphere.memory.model.ChatMessage;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 组装完成的提示词上下文
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+public class AssembledContext {
+    /**
+     * 最终发送给模型的消息列表：可选的系统消息（系统提示词与选中的事实、偏好、记忆），随后是按时间正序的历史消息
+     */
+    private List<ChatMessage> messages;
+    
+    /**
+     * 组装统计
+     */
+    private ContextTelemetry telemetry;
+}
@@ -0,0 +1,366 @@
+package com.heartsphere.memory.context;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.context.ContextTelemetry.DroppedItem;
+import com.heartsphere.memory.context.ContextTelemetry.ItemKind;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.model.UserPreference;
+import com.heartsphere.memory.service.LongMemoryService;
+import com.heartsphere.memory.service.ShortMemoryService;
+import com.heartsphere.memory.text.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 按token预算组装提示词上下文
+ * 从短期记忆取近期消息、从长期记忆取事实、偏好和相关记忆作为候选项，
+ * 按新近度和重要性打分后在模型的token预算内贪心装入：系统提示词和最近几条消息必定保留，
+ * 其余候选按得分从高到低装入，装不下的跳过并记入统计。
+ * 消息、事实和记忆的token数在写入时已计算并随数据保存，组装时不再重新估算（早期数据除外）。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class ContextAssembler {
+
+    /**
+     * 每条消息的格式开销（角色标记、分隔符）
+     */
+    static final int MESSAGE_OVERHEAD = 4;
+
+    /**
+     * 系统消息中每个条目的格式开销（列表符号、换行）
+     */
+    static final int LINE_OVERHEAD = 2;
+
+    /**
+     * 系统消息中每个分节标题的开销
+     */
+    static final int SECTION_OVERHEAD = 6;
+
+    private static final Comparator<Candidate> BY_SCORE_DESC = Comparator.comparingDouble((Candidate c) -> c.score).reversed();
+
+    private final ShortMemoryService shortMemoryService;
+    private final LongMemoryService longMemoryService;
+    private final MemoryProperties.Context config;
+
+    public ContextAssembler(
+            ShortMemoryService shortMemoryService,
+            LongMemoryService longMemoryService,
+            MemoryProperties memoryProperties) {
+        this.shortMemoryService = shortMemoryService;
+        this.longMemoryService = longMemoryService;
+        this.config = memoryProperties.getContext();
+    }
+
+    /**
+     * 组装一轮对话的上下文
+     *
+     * @param request 组装请求
+     * @return 最终消息列表与统计
+     */
+    public AssembledContext assemble(ContextRequest request) {
+        int budget = tokenBudget(request.getModel());
+        Packer packer = new Packer(budget);
+
+        String systemPrompt = request.getSystemPrompt();
+        if (systemPrompt != null && !systemPrompt.isBlank()) {
+            packer.forceAdd(MESSAGE_OVERHEAD + TokenEstimator.estimate(systemPrompt));
+            packer.systemMessageCharged = true;
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<Candidate> pinned = new ArrayList<>();
+        collectMessages(request.getUserId(), request.getSessionId(), candidates, pinned);
+        collectFacts(request.getUserId(), candidates);
+        collectPreferences(request.getUserId(), candidates);
+        collectMemories(request.getUserId(), request.getQuery(), candidates);
+
+        // 最近的消息必定保留，即使超出预算
+        pinned.forEach(candidate -> {
+            packer.forceAdd(candidate.tokens);
+            candidate.included = true;
+        });
+
+        candidates.sort(BY_SCORE_DESC);
+        List<DroppedItem> dropped = new ArrayList<>();
+        int droppedTokens = 0;
+        for (Candidate candidate : candidates) {
+            if (packer.tryAdd(candidate)) {
+                candidate.included = true;
+            } else {
+                dropped.add(new DroppedItem(candidate.kind, candidate.id, candidate.tokens, candidate.score));
+                droppedTokens += candidate.tokens;
+            }
+        }
+
+        List<Candidate> all = new ArrayList<>(pinned);
+        all.addAll(candidates);
+        List<ChatMessage> messages = buildMessages(systemPrompt, all);
+
+        Map<ItemKind, Integer> includedCounts = new EnumMap<>(ItemKind.class);
+        all.stream().filter(c -> c.included).forEach(c -> includedCounts.merge(c.kind, 1, Integer::sum));
+
+        ContextTelemetry telemetry = ContextTelemetry.builder()
+            .model(request.getModel())
+            .tokenBudget(budget)
+            .usedTokens(packer.used)
+            .candidateCount(all.size())
+            .includedCounts(includedCounts)
+            .dropped(dropped)
+            .droppedTokens(droppedTokens)
+            .build();
+        log.debug("组装上下文: sessionId={}, model={}, budget={}, used={}, candidates={}, included={}, dropped={}, droppedTokens={}",
+            request.getSessionId(), request.getModel(), budget, packer.used, all.size(), includedCounts,
+            dropped.size(), droppedTokens);
+        return AssembledContext.builder()
+            .messages(messages)
+            .telemetry(telemetry)
+            .build();
+    }
+
+    /**
+     * 获取模型的token预算，未配置的模型使用默认预算
+     */
+    public int tokenBudget(String model) {
+        if (model != null) {
+            Integer budget = config.getModelTokenBudgets().get(model.toLowerCase(Locale.ROOT));
+            if (budget != null) {
+                return budget;
+            }
+        }
+        return config.getDefaultTokenBudget();
+    }
+
+    // ========== 候选项 ==========
+
+    /**
+     * 近期消息按轮次衰减；最新的几条不参与打分。指定用户时只取该用户的消息
+     */
+    private void collectMessages(String userId, String sessionId, List<Candidate> candidates, List<Candidate> pinned) {
+        if (sessionId == null) {
+            return;
+        }
+        List<ChatMessage> recent = shortMemoryService.getMessages(sessionId, config.getHistoryLimit()).stream()
+            .filter(message -> userId == null || message.getUserId() == null || userId.equals(message.getUserId()))
+            .toList();
+        for (int i = 0; i < recent.size(); i++) {
+            ChatMessage message = recent.get(i);
+            Candidate candidate = new Candidate(ItemKind.MESSAGE, message.getId(),
+                MESSAGE_OVERHEAD + tokens(message.getTokenCount(), message.getContent()));
+            candidate.message = message;
+            candidate.order = i;
+            if (i < config.getPinnedRecentMessages()) {
+                pinned.add(candidate);
+            } else {
+                double importance = message.getImportance() != null ? message.getImportance() : 0.5;
+                candidate.score = score(importance, Math.pow(0.5, i / config.getMessageHalfLifeTurns()));
+                candidates.add(candidate);
+            }
+        }
+    }
+
+    private void collectFacts(String userId, List<Candidate> candidates) {
+        if (userId == null) {
+            return;
+        }
+        List<UserFact> facts = new ArrayList<>(longMemoryService.getImportantFacts(userId, config.getMinFactImportance()));
+        facts.sort(Comparator.comparing((UserFact fact) -> fact.getImportance() != null ? fact.getImportance() : 0.0).reversed());
+        Instant now = Instant.now();
+        for (UserFact fact : facts.subList(0, Math.min(facts.size(), config.getFactLimit()))) {
+            Candidate candidate = new Candidate(ItemKind.FACT, fact.getId(),
+                LINE_OVERHEAD + tokens(fact.getTokenCount(), fact.getFact()));
+            candidate.text = fact.getFact();
+            Instant touched = fact.getLastAccessedAt() != null ? fact.getLastAccessedAt() : fact.getCreatedAt();
+            candidate.score = score(fact.getImportance() != null ? fact.getImportance() : 0.5, recency(touched, now));
+            candidates.add(candidate);
+        }
+    }
+
+    /**
+     * 偏好条目很短，token数在组装时估算
+     */
+    private void collectPreferences(String userId, List<Candidate> candidates) {
+        if (userId == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (UserPreference preference : longMemoryService.getAllPreferences(userId)) {
+            String text = preference.getKey() + ": " + preference.getValue();
+            Candidate candidate = new Candidate(ItemKind.PREFERENCE, preference.getId(),
+                LINE_OVERHEAD + TokenEstimator.estimate(text));
+            candidate.text = text;
+            double confidence = preference.getConfidence() != null ? preference.getConfidence() : 0.5;
+            candidate.score = score(confidence, recency(preference.getUpdatedAt(), now));
+            candidates.add(candidate);
+        }
+    }
+
+    /**
+     * 相关记忆的重要性由记忆等级和检索排名各占一半
+     */
+    private void collectMemories(String userId, String query, List<Candidate> candidates) {
+        if (userId == null || query == null || query.isBlank()) {
+            return;
+        }
+        List<UserMemory> memories = longMemoryService.retrieveRelevantMemories(userId, query, config.getMemoryLimit());
+        Instant now = Instant.now();
+        for (int rank = 0; rank < memories.size(); rank++) {
+            UserMemory memory = memories.get(rank);
+            Candidate candidate = new Candidate(ItemKind.MEMORY, memory.getId(),
+                LINE_OVERHEAD + tokens(memory.getTokenCount(), memory.getContent()));
+            candidate.text = memory.getContent();
+            double relevance = 1.0 - (double) rank / memories.size();
+            double importance = 0.5 * importanceLevel(memory.getImportance()) + 0.5 * relevance;
+            Instant touched = memory.getLastAccessedAt() != null ? memory.getLastAccessedAt() : memory.getCreatedAt();
+            candidate.score = score(importance, recency(touched, now));
+            candidates.add(candidate);
+        }
+    }
+
+    // ========== 输出 ==========
+
+    private List<ChatMessage> buildMessages(String systemPrompt, List<Candidate> candidates) {
+        StringBuilder system = new StringBuilder();
+        if (systemPrompt != null && !systemPrompt.isBlank()) {
+            system.append(systemPrompt);
+        }
+        appendSection(system, "【关于用户的事实】", candidates, ItemKind.FACT);
+        appendSection(system, "【用户偏好】", candidates, ItemKind.PREFERENCE);
+        appendSection(system, "【相关记忆】", candidates, ItemKind.MEMORY);
+
+        List<ChatMessage> messages = new ArrayList<>();
+        if (system.length() > 0) {
+            messages.add(ChatMessage.system(system.toString()));
+        }
+        // 历史消息按时间正序（order越大越早）
+        candidates.stream()
+            .filter(c -> c.included && c.kind == ItemKind.MESSAGE)
+            .sorted(Comparator.comparingInt((Candidate c) -> c.order).reversed())
+            .forEach(c -> messages.add(c.message));
+        return messages;
+    }
+
+    private void appendSection(StringBuilder system, String title, List<Candidate> candidates, ItemKind kind) {
+        List<Candidate> items = candidates.stream()
+            .filter(c -> c.included && c.kind == kind)
+            .sorted(BY_SCORE_DESC)
+            .toList();
+        if (items.isEmpty()) {
+            return;
+        }
+        if (system.length() > 0) {
+            system.append("\n\n");
+        }
+        system.append(title);
+        items.forEach(item -> system.append("\n- ").append(item.text));
+    }
+
+    // ========== 打分 ==========
+
+    private double score(double importance, double recency) {
+        return config.getImportanceWeight() * importance + config.getRecencyWeight() * recency;
+    }
+
+    private double recency(Instant time, Instant now) {
+        if (time == null) {
+            return 0.0;
+        }
+        double ageDays = Math.max(0, Duration.between(time, now).toMillis()) / (double) Duration.ofDays(1).toMillis();
+        return Math.pow(0.5, ageDays / config.getMemoryHalfLifeDays());
+    }
+
+    private static double importanceLevel(MemoryImportance importance) {
+        if (importance == null) {
+            return 0.5;
+        }
+        return switch (importance) {
+            case CORE -> 1.0;
+            case IMPORTANT -> 0.8;
+            case NORMAL -> 0.5;
+            case TEMPORARY -> 0.2;
+        };
+    }
+
+    /**
+     * 优先使用写入时计算的token数，早期数据现场估算
+     */
+    private static int tokens(Integer cached, String content) {
+        return cached != null ? cached : TokenEstimator.estimate(content);
+    }
+
+    /**
+     * 候选项
+     */
+    private static class Candidate {
+        private final ItemKind kind;
+        private final String id;
+        private final int tokens;
+        private double score;
+        private boolean included;
+        private ChatMessage message;
+        private String text;
+        private int order;
+
+        private Candidate(ItemKind kind, String id, int tokens) {
+            this.kind = kind;
+            this.id = id;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * 预算装箱；系统消息和分节标题的开销在该部分第一次装入条目时计入
+     */
+    private static class Packer {
+        private final int budget;
+        private final Map<ItemKind, Boolean> sections = new EnumMap<>(ItemKind.class);
+        private int used;
+        private boolean systemMessageCharged;
+
+        private Packer(int budget) {
+            this.budget = budget;
+        }
+
+        private void forceAdd(int tokens) {
+            used += tokens;
+        }
+
+        private boolean tryAdd(Candidate candidate) {
+            int cost = candidate.tokens;
+            boolean inSystemMessage = candidate.kind != ItemKind.MESSAGE;
+            boolean newSection = inSystemMessage && !sections.containsKey(candidate.kind);
+            if (newSection) {
+                cost += SECTION_OVERHEAD;
+            }
+            if (inSystemMessage && !systemMessageCharged) {
+                cost += MESSAGE_OVERHEAD;
+            }
+            if (used + cost > budget) {
+                return false;
+            }
+            used += cost;
+            if (newSection) {
+                sections.put(candidate.kind, Boolean.TRUE);
+            }
+            if (inSystemMessage) {
+                systemMessageCharged = true;
+            }
+            return true;
+        }
+    }
+}
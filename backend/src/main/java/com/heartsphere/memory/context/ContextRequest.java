@@ -0,0 +1,39 @@
+package com.heartsphere.memory.context;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 上下文组装请求
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+public class ContextRequest {
+    /**
+     * 用户ID
+     */
+    private String userId;
+    
+    /**
+     * 会话ID
+     */
+    private String sessionId;
+    
+    /**
+     * 目标模型名称，用于选择token预算
+     */
+    private String model;
+    
+    /**
+     * 角色/系统提示词（可选，必定保留）
+     */
+    private String systemPrompt;
+    
+    /**
+     * 本轮用户输入，用于检索相关记忆（可选）
+     */
+    private String query;
+}
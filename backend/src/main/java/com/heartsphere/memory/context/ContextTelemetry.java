@@ -0,0 +1,77 @@
+package com.heartsphere.memory.context;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上下文组装统计
+ * 记录预算、实际占用以及因预算不足被丢弃的候选项
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+public class ContextTelemetry {
+    
+    /**
+     * 候选项类型
+     */
+    public enum ItemKind {
+        MESSAGE,
+        FACT,
+        PREFERENCE,
+        MEMORY
+    }
+    
+    /**
+     * 目标模型
+     */
+    private String model;
+    
+    /**
+     * token预算
+     */
+    private int tokenBudget;
+    
+    /**
+     * 实际占用的估算token数
+     */
+    private int usedTokens;
+    
+    /**
+     * 候选项总数
+     */
+    private int candidateCount;
+    
+    /**
+     * 各类型选中的数量
+     */
+    private Map<ItemKind, Integer> includedCounts;
+    
+    /**
+     * 被丢弃的候选项，按得分降序
+     */
+    private List<DroppedItem> dropped;
+    
+    /**
+     * 被丢弃候选项的token总数
+     */
+    private int droppedTokens;
+    
+    /**
+     * 被丢弃的候选项
+     */
+    @Data
+    @AllArgsConstructor
+    public static class DroppedItem {
+        private ItemKind kind;
+        private String id;
+        private int tokens;
+        private double score;
+    }
+}
@@ -1,27 +1,45 @@
 package com.heartsphere.memory.controller;
 
 import com.heartsphere.dto.ApiResponse;
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.dto.MemoryQueryRequest;
 import com.heartsphere.memory.dto.SaveMemoryRequest;
+import com.heartsphere.memory.extraction.ExtractionJobQueue;
+import com.heartsphere.memory.extraction.ExtractionResultWriter;
 import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.ExtractionLane;
+import com.heartsphere.memory.model.ExtractionResult;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemoryPage;
 import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
 import com.heartsphere.memory.model.UserMemory;
 import com.heartsphere.memory.service.LongMemoryService;
 import com.heartsphere.memory.service.MemoryExtractor;
 import com.heartsphere.memory.service.ShortMemoryService;
 import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import com.heartsphere.memory.transfer.MemoryExporter;
+import com.heartsphere.memory.transfer.MemoryImportResult;
+import com.heartsphere.memory.transfer.MemoryImporter;
 import com.heartsphere.security.UserDetailsImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -40,10 +58,16 @@ import java.util.stream.Collectors;
 @Tag(name = "记忆系统", description = "记忆系统API")
 public class MemoryController {
     
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    
     private final LongMemoryService longMemoryService;
     private final MySQLLongMemoryService mySQLLongMemoryService;
     private final ShortMemoryService shortMemoryService;
     private final MemoryExtractor memoryExtractor;
+    private final ExtractionJobQueue extractionJobQueue;
+    private final ExtractionResultWriter extractionResultWriter;
+    private final MemoryExporter memoryExporter;
+    private final MemoryImporter memoryImporter;
     
     /**
      * 验证用户权限
@@ -173,6 +197,75 @@ public class MemoryController {
         }
     }
     
+    @Operation(summary = "分页查询用户记忆", description = "按类型、重要性、来源、时间范围和标签过滤，按创建时间倒序键集分页")
+    @GetMapping("/users/{userId}/memories")
+    public ResponseEntity<ApiResponse<MemoryPage>> listMemories(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @Parameter(description = "记忆类型") @RequestParam(required = false) MemoryType type,
+            @Parameter(description = "重要性") @RequestParam(required = false) MemoryImportance importance,
+            @Parameter(description = "来源") @RequestParam(required = false) MemorySource source,
+            @Parameter(description = "创建时间下界（ISO-8601，包含）") @RequestParam(required = false) Instant startTime,
+            @Parameter(description = "创建时间上界（ISO-8601，不包含）") @RequestParam(required = false) Instant endTime,
+            @Parameter(description = "标签") @RequestParam(required = false) String tag,
+            @Parameter(description = "上一页返回的游标") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "是否返回结构化数据、标签和元数据") @RequestParam(defaultValue = "true") boolean includeDetails,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            // 验证用户权限
+            String authenticatedUserId = getAuthenticatedUserId(userDetails);
+            if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权访问该用户的数据"));
+            }
+            
+            MemoryQueryRequest request = MemoryQueryRequest.builder()
+                .userId(userId)
+                .type(type)
+                .importance(importance)
+                .source(source)
+                .startTime(startTime)
+                .endTime(endTime)
+                .tag(tag)
+                .cursor(cursor)
+                .limit(limit)
+                .includeDetails(includeDetails)
+                .build();
+            return ResponseEntity.ok(ApiResponse.success(longMemoryService.queryMemories(request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("查询参数错误: " + e.getMessage()));
+        } catch (Exception e) {
+            log.error("分页查询用户记忆失败: userId={}", userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("查询记忆失败: " + e.getMessage()));
+        }
+    }
+    
+    @Operation(summary = "混合检索用户记忆", description = "按语义/关键词/关联权重融合检索用户记忆")
+    @PostMapping("/users/{userId}/memories/hybrid-search")
+    public ResponseEntity<ApiResponse<List<UserMemory>>> hybridSearchMemories(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @Parameter(description = "智能检索请求") @RequestBody IntelligentSearchRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            // 验证用户权限
+            String authenticatedUserId = getAuthenticatedUserId(userDetails);
+            if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权访问该用户的数据"));
+            }
+            
+            request.setUserId(userId);
+            List<UserMemory> memories = longMemoryService.hybridSearch(request);
+            return ResponseEntity.ok(ApiResponse.success(memories));
+        } catch (Exception e) {
+            log.error("混合检索用户记忆失败: userId={}, query={}", userId, request.getQuery(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("检索记忆失败: " + e.getMessage()));
+        }
+    }
+    
     @Operation(summary = "获取单个记忆", description = "根据记忆ID获取用户记忆")
     @GetMapping("/users/{userId}/memories/{memoryId}")
     public ResponseEntity<ApiResponse<UserMemory>> getMemoryById(
@@ -305,7 +398,7 @@ public class MemoryController {
         }
     }
     
-    @Operation(summary = "从会话提取记忆", description = "从指定会话的消息中提取并保存记忆")
+    @Operation(summary = "从会话提取记忆", description = "从指定会话的消息中一次提取并保存事实、偏好和记忆，返回提取的记忆")
     @PostMapping("/users/{userId}/sessions/{sessionId}/extract")
     public ResponseEntity<ApiResponse<List<UserMemory>>> extractMemoriesFromSession(
             @Parameter(description = "用户ID") @PathVariable String userId,
@@ -325,24 +418,12 @@ public class MemoryController {
                 return ResponseEntity.ok(ApiResponse.success(List.of()));
             }
             
-            // 提取记忆
-            List<UserMemory> extractedMemories = memoryExtractor.extractMemories(userId, messages);
-            if (extractedMemories == null || extractedMemories.isEmpty()) {
-                return ResponseEntity.ok(ApiResponse.success(List.of()));
-            }
-            
-            // 设置sourceId为会话ID
-            extractedMemories.forEach(memory -> {
-                if (memory.getSourceId() == null || memory.getSourceId().isEmpty()) {
-                    memory.setSourceId(sessionId);
-                }
-                if (memory.getSource() == null) {
-                    memory.setSource(MemorySource.CONVERSATION);
-                }
-            });
-            
-            // 保存提取的记忆
-            mySQLLongMemoryService.saveMemories(extractedMemories);
+            // 一次提取事实、偏好和记忆；getMessages按时间倒序返回，提取时按对话顺序
+            List<ChatMessage> ordered = new ArrayList<>(messages);
+            Collections.reverse(ordered);
+            ExtractionResult result = memoryExtractor.extractAll(userId, ordered);
+            extractionResultWriter.save(sessionId, result);
+            List<UserMemory> extractedMemories = result.getMemories();
             
             log.debug("从会话提取记忆成功: userId={}, sessionId={}, count={}", 
                 userId, sessionId, extractedMemories.size());
@@ -354,4 +435,105 @@ public class MemoryController {
                 .body(ApiResponse.error("提取记忆失败: " + e.getMessage()));
         }
     }
+    
+    @Operation(summary = "提交会话提取任务", description = "把会话加入后台提取队列，同一会话的重复提交会合并")
+    @PostMapping("/users/{userId}/sessions/{sessionId}/extract/async")
+    public ResponseEntity<ApiResponse<Void>> enqueueSessionExtraction(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @Parameter(description = "会话ID") @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            // 验证用户权限
+            String authenticatedUserId = getAuthenticatedUserId(userDetails);
+            if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权访问该用户的数据"));
+            }
+            
+            extractionJobQueue.enqueue(userId, sessionId, ExtractionLane.INTERACTIVE);
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(null));
+        } catch (Exception e) {
+            log.error("提交提取任务失败: userId={}, sessionId={}", userId, sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("提交提取任务失败: " + e.getMessage()));
+        }
+    }
+    
+    @Operation(summary = "回填用户提取任务", description = "把用户的所有会话以低优先级加入后台提取队列")
+    @PostMapping("/users/{userId}/extract/backfill")
+    public ResponseEntity<ApiResponse<Integer>> enqueueBackfillExtraction(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            // 验证用户权限
+            String authenticatedUserId = getAuthenticatedUserId(userDetails);
+            if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权访问该用户的数据"));
+            }
+            
+            List<String> sessionIds = shortMemoryService.getAllSessionIds(userId);
+            sessionIds.forEach(sessionId -> extractionJobQueue.enqueue(userId, sessionId, ExtractionLane.BACKFILL));
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(sessionIds.size()));
+        } catch (Exception e) {
+            log.error("提交回填提取任务失败: userId={}", userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("提交回填提取任务失败: " + e.getMessage()));
+        }
+    }
+    
+    @Operation(summary = "导出用户记忆", description = "以NDJSON流式导出会话、消息、工作记忆、偏好、事实和记忆")
+    @GetMapping("/users/{userId}/export")
+    public void exportMemories(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletResponse response) throws IOException {
+        // 验证用户权限
+        String authenticatedUserId = getAuthenticatedUserId(userDetails);
+        if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "无权访问该用户的数据");
+            return;
+        }
+        
+        // 在请求线程中直接写响应流，导出耗时不受异步请求超时限制
+        response.setContentType(NDJSON_MEDIA_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"memory-" + userId + ".ndjson\"");
+        try {
+            memoryExporter.export(userId, response.getOutputStream());
+        } catch (Exception e) {
+            // 响应头已提交，只能中断输出
+            log.error("导出用户记忆失败: userId={}", userId, e);
+            throw e;
+        }
+    }
+    
+    @Operation(summary = "导入用户记忆", description = "从NDJSON流批量导入记忆到该用户，默认重新生成ID")
+    @PostMapping("/users/{userId}/import")
+    public ResponseEntity<ApiResponse<MemoryImportResult>> importMemories(
+            @Parameter(description = "用户ID") @PathVariable String userId,
+            @Parameter(description = "是否重新生成主键和会话ID") @RequestParam(defaultValue = "true") boolean remapIds,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+        try {
+            // 验证用户权限
+            String authenticatedUserId = getAuthenticatedUserId(userDetails);
+            if (authenticatedUserId == null || !authenticatedUserId.equals(userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权访问该用户的数据"));
+            }
+            
+            MemoryImportResult result = memoryImporter.importFrom(userId, request.getInputStream(), remapIds);
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("导入数据格式错误: " + e.getMessage()));
+        } catch (Exception e) {
+            log.error("导入用户记忆失败: userId={}", userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("导入记忆失败: " + e.getMessage()));
+        }
+    }
 }
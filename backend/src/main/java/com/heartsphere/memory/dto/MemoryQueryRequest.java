@@ -0,0 +1,77 @@
+package com.heartsphere.memory.dto;
+
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 记忆列表查询请求DTO
+ * 所有过滤条件可选，按创建时间倒序键集分页
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemoryQueryRequest {
+    
+    /**
+     * 用户ID
+     */
+    private String userId;
+    
+    /**
+     * 记忆类型（可选）
+     */
+    private MemoryType type;
+    
+    /**
+     * 重要性（可选）
+     */
+    private MemoryImportance importance;
+    
+    /**
+     * 来源（可选）
+     */
+    private MemorySource source;
+    
+    /**
+     * 创建时间下界，包含（可选）
+     */
+    private Instant startTime;
+    
+    /**
+     * 创建时间上界，不包含（可选）
+     */
+    private Instant endTime;
+    
+    /**
+     * 标签（可选）
+     */
+    private String tag;
+    
+    /**
+     * 上一页返回的游标，为空时从最新的记忆开始
+     */
+    private String cursor;
+    
+    /**
+     * 每页数量，默认20
+     */
+    @lombok.Builder.Default
+    private Integer limit = 20;
+    
+    /**
+     * 是否返回结构化数据、标签和元数据，默认true；只需要列表展示时设为false可跳过JSON列
+     */
+    @lombok.Builder.Default
+    private Boolean includeDetails = true;
+}
@@ -0,0 +1,144 @@
+package com.heartsphere.memory.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.heartsphere.memory.service.EmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按内容寻址的向量缓存
+ * 包装任意向量化实现：以文本内容哈希为键，先查进程内LRU，再查内存映射的向量文件，
+ * 都未命中才调用底层实现，并把结果写入两级缓存。重复提取的事实、重发的消息、相同的查询
+ * 只计算一次向量；向量文件跨重启保留，模型标识变化时自动作废。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+public class CachingEmbeddingService implements EmbeddingService, AutoCloseable {
+
+    private final EmbeddingService delegate;
+    private final MappedVectorStore store;
+    private final Cache<EmbeddingKey, float[]> cache;
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+
+    /**
+     * @param delegate 底层向量化实现
+     * @param store 向量文件，为null时只使用内存缓存
+     * @param maxCachedVectors 内存缓存的向量数上限
+     */
+    public CachingEmbeddingService(EmbeddingService delegate, MappedVectorStore store, long maxCachedVectors) {
+        this.delegate = delegate;
+        this.store = store;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxCachedVectors)
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return lookup(EmbeddingKey.of(text), text).clone();
+    }
+
+    /**
+     * 获取向量的只读视图；向量已在文件中时直接返回映射内存的视图，不拷贝
+     *
+     * @param text 文本内容
+     * @return 只读向量，存储关闭前有效
+     */
+    public FloatBuffer view(String text) {
+        EmbeddingKey key = EmbeddingKey.of(text);
+        if (store != null) {
+            FloatBuffer mapped = store.view(key);
+            if (mapped != null) {
+                storeHits.incrementAndGet();
+                return mapped;
+            }
+        }
+        return FloatBuffer.wrap(lookup(key, text)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int getDimension() {
+        return delegate.getDimension();
+    }
+
+    @Override
+    public String getModelId() {
+        return delegate.getModelId();
+    }
+
+    // ========== 统计 ==========
+
+    /**
+     * 内存缓存命中次数
+     */
+    public long memoryHits() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * 向量文件命中次数
+     */
+    public long storeHits() {
+        return storeHits.get();
+    }
+
+    /**
+     * 实际调用底层实现的次数
+     */
+    public long computedCount() {
+        return computed.get();
+    }
+
+    /**
+     * 定期输出各级命中次数
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.embedding-cache.stats-interval-ms:300000}")
+    public void logStats() {
+        if (cache.stats().requestCount() == 0) {
+            return;
+        }
+        log.info("向量缓存: memoryHits={}, storeHits={}, computed={}, cached={}, stored={}",
+            memoryHits(), storeHits(), computedCount(), cache.estimatedSize(), store != null ? store.size() : 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    // ========== 私有方法 ==========
+
+    /**
+     * 依次查内存缓存、向量文件、底层实现；返回缓存中的数组，调用方不得修改
+     */
+    private float[] lookup(EmbeddingKey key, String text) {
+        return cache.get(key, k -> {
+            if (store != null) {
+                FloatBuffer mapped = store.view(k);
+                if (mapped != null) {
+                    storeHits.incrementAndGet();
+                    float[] vector = new float[mapped.remaining()];
+                    mapped.get(vector);
+                    return vector;
+                }
+            }
+            float[] vector = delegate.embed(text);
+            computed.incrementAndGet();
+            if (store != null) {
+                store.put(k, vector);
+            }
+            return vector;
+        });
+    }
+}
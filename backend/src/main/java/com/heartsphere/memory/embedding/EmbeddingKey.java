@@ -0,0 +1,32 @@
+package com.heartsphere.memory.embedding;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 文本内容地址：UTF-8内容SHA-256的前128位
+ * 相同文本得到相同的键，与文本来自哪条记忆、哪次请求无关
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public record EmbeddingKey(long high, long low) {
+
+    /**
+     * 键的字节数
+     */
+    public static final int BYTES = 16;
+
+    public static EmbeddingKey of(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((text != null ? text : "").getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            return new EmbeddingKey(buffer.getLong(), buffer.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+}
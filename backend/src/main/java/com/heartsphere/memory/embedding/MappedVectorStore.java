@@ -0,0 +1,176 @@
+package com.heartsphere.memory.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存映射的向量文件存储
+ * 文件头之后是定长记录（16字节内容键 + dimension个小端float），只追加、不覆盖，
+ * 因此返回的只读视图在存储关闭前始终有效，读取向量无需拷贝。
+ * 打开时扫描记录键重建内存中的键到槽位映射；模型或维度变化、或上次已写满时清空重建。
+ * 写满后不再追加，新向量只进入上层的内存缓存。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+public class MappedVectorStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x48534556;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COUNT_OFFSET = 12;
+    private static final int MODEL_OFFSET = 16;
+
+    private final Path file;
+    private final int dimension;
+    private final int capacity;
+    private final int recordBytes;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final Map<EmbeddingKey, Integer> slots = new ConcurrentHashMap<>();
+    private int count;
+    private boolean fullLogged;
+
+    private MappedVectorStore(Path file, int dimension, int capacity, FileChannel channel, MappedByteBuffer mapped) {
+        this.file = file;
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.recordBytes = EmbeddingKey.BYTES + dimension * Float.BYTES;
+        this.channel = channel;
+        this.mapped = mapped;
+    }
+
+    /**
+     * 打开（或创建）存储文件
+     *
+     * @param file 文件路径
+     * @param modelId 向量模型标识，与文件中记录的不一致时清空
+     * @param dimension 向量维度
+     * @param capacity 最多保存的向量数
+     */
+    public static MappedVectorStore open(Path file, String modelId, int dimension, int capacity) throws IOException {
+        long size = HEADER_BYTES + (long) capacity * (EmbeddingKey.BYTES + (long) dimension * Float.BYTES);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("向量存储容量过大: capacity=" + capacity + ", dimension=" + dimension);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            MappedVectorStore store = new MappedVectorStore(file, dimension, capacity, channel, mapped);
+            store.load(modelId.hashCode());
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // ========== 读写 ==========
+
+    /**
+     * 获取向量的只读视图（不拷贝），不存在时返回null
+     */
+    public FloatBuffer view(EmbeddingKey key) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            return null;
+        }
+        ByteBuffer record = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int offset = vectorOffset(slot);
+        record.position(offset).limit(offset + dimension * Float.BYTES);
+        return record.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * 追加向量；已存在或存储已满时忽略
+     *
+     * @return 是否写入
+     */
+    public synchronized boolean put(EmbeddingKey key, float[] vector) {
+        if (vector.length != dimension || slots.containsKey(key)) {
+            return false;
+        }
+        if (count >= capacity) {
+            if (!fullLogged) {
+                log.warn("向量缓存文件已满，新向量只保存在内存中: file={}, capacity={}", file, capacity);
+                fullLogged = true;
+            }
+            return false;
+        }
+        int slot = count;
+        int offset = HEADER_BYTES + slot * recordBytes;
+        mapped.putLong(offset, key.high());
+        mapped.putLong(offset + Long.BYTES, key.low());
+        for (int i = 0; i < dimension; i++) {
+            mapped.putFloat(offset + EmbeddingKey.BYTES + i * Float.BYTES, vector[i]);
+        }
+        // 记录写完后再更新计数和映射，崩溃时最多丢失最后一条
+        count++;
+        mapped.putInt(COUNT_OFFSET, count);
+        slots.put(key, slot);
+        return true;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 把修改刷到磁盘并关闭文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mapped.force();
+        channel.close();
+    }
+
+    // ========== 私有方法 ==========
+
+    private void load(int modelHash) {
+        boolean valid = mapped.getInt(0) == MAGIC
+            && mapped.getInt(4) == FORMAT_VERSION
+            && mapped.getInt(8) == dimension
+            && mapped.getInt(MODEL_OFFSET) == modelHash;
+        int stored = valid ? mapped.getInt(COUNT_OFFSET) : 0;
+        if (!valid || stored < 0 || stored >= capacity) {
+            // 新文件、格式或模型变化、上次已写满：从空文件开始
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, FORMAT_VERSION);
+            mapped.putInt(8, dimension);
+            mapped.putInt(COUNT_OFFSET, 0);
+            mapped.putInt(MODEL_OFFSET, modelHash);
+            stored = 0;
+        }
+        for (int slot = 0; slot < stored; slot++) {
+            int offset = HEADER_BYTES + slot * recordBytes;
+            slots.put(new EmbeddingKey(mapped.getLong(offset), mapped.getLong(offset + Long.BYTES)), slot);
+        }
+        count = stored;
+        log.info("向量缓存文件已加载: file={}, vectors={}, capacity={}", file, count, capacity);
+    }
+
+    private int vectorOffset(int slot) {
+        return HEADER_BYTES + slot * recordBytes + EmbeddingKey.BYTES;
+    }
+}
@@ -0,0 +1,125 @@
+package com.heartsphere.memory.entity;
+
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 归档记忆实体（MySQL）
+ * 冷记忆从 user_memories 移入此表：ID与原记忆相同，正文和JSON列合并后压缩存储，
+ * 另存一份词项摘要用于不解压的检索。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "archived_memories", indexes = {
+    @Index(name = "idx_archived_user", columnList = "user_id,archived_at")
+})
+public class ArchivedMemoryEntity {
+
+    /**
+     * 记忆ID（与原记忆相同）
+     */
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false, length = 64)
+    private String userId;
+
+    /**
+     * 记忆类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 50)
+    private MemoryType type;
+
+    /**
+     * 重要性
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "importance", nullable = false, length = 20)
+    private MemoryImportance importance;
+
+    /**
+     * 记忆来源
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "source", nullable = false, length = 30)
+    private MemorySource source;
+
+    /**
+     * 来源ID
+     */
+    @Column(name = "source_id", length = 64)
+    private String sourceId;
+
+    /**
+     * 提取置信度
+     */
+    @Column(name = "confidence")
+    private Double confidence;
+
+    /**
+     * 访问次数
+     */
+    @Column(name = "access_count", nullable = false)
+    private Integer accessCount;
+
+    /**
+     * 原始创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 最后访问时间
+     */
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+
+    /**
+     * 归档时间
+     */
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    /**
+     * 压缩后的内容（正文、结构化数据、标签、元数据合并的JSON）
+     */
+    @Column(name = "payload", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+
+    /**
+     * 压缩前的字节数
+     */
+    @Column(name = "payload_length", nullable = false)
+    private Integer payloadLength;
+
+    /**
+     * 压缩字典版本
+     */
+    @Column(name = "dictionary_version", nullable = false)
+    private Integer dictionaryVersion;
+
+    /**
+     * 词项摘要（升序int数组，大端序）
+     */
+    @Column(name = "summary_tokens", columnDefinition = "VARBINARY(1024)")
+    private byte[] summaryTokens;
+}
@@ -29,7 +29,9 @@ import java.util.Map;
     @Index(name = "idx_session_id", columnList = "session_id"),
     @Index(name = "idx_user_id", columnList = "user_id"),
     @Index(name = "idx_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_session_timestamp", columnList = "session_id,timestamp")
+    @Index(name = "idx_session_timestamp", columnList = "session_id,timestamp"),
+    @Index(name = "idx_session_seq", columnList = "session_id,seq"),
+    @Index(name = "idx_expires_at", columnList = "expires_at")
 })
 public class ChatMessageEntity {
     
@@ -74,6 +76,12 @@ public class ChatMessageEntity {
     @Column(name = "timestamp", nullable = false)
     private Long timestamp;
     
+    /**
+     * 会话内序号（按写入顺序单调递增，用于按范围裁剪超量消息）
+     */
+    @Column(name = "seq")
+    private Long seq;
+    
     /**
      * 重要性
      */
@@ -99,6 +107,12 @@ public class ChatMessageEntity {
      */
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
+    
+    /**
+     * 内容的估算token数（写入时计算）
+     */
+    @Column(name = "token_count")
+    private Integer tokenCount;
 }
 
 
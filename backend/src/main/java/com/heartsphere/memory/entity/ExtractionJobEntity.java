@@ -0,0 +1,122 @@
+package com.heartsphere.memory.entity;
+
+import com.heartsphere.memory.model.ExtractionJobStatus;
+import com.heartsphere.memory.model.ExtractionLane;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 记忆提取任务实体（MySQL）
+ * 持久化的提取队列，重启后未完成的任务继续执行
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "memory_extraction_jobs", indexes = {
+    @Index(name = "idx_extraction_job_pending_key", columnList = "pending_key", unique = true),
+    @Index(name = "idx_extraction_job_ready", columnList = "status,lane,available_at"),
+    @Index(name = "idx_extraction_job_started_at", columnList = "status,started_at")
+})
+public class ExtractionJobEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false, length = 64)
+    private String userId;
+    
+    /**
+     * 会话ID
+     */
+    @Column(name = "session_id", nullable = false, length = 64)
+    private String sessionId;
+    
+    /**
+     * 合并键：等待调度时为会话ID，其他状态为空
+     * 唯一索引保证每个会话最多一个等待中的任务，重复触发合并到该任务
+     */
+    @Column(name = "pending_key", length = 64)
+    private String pendingKey;
+    
+    /**
+     * 优先级通道
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "lane", nullable = false, length = 20)
+    private ExtractionLane lane;
+    
+    /**
+     * 任务状态
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ExtractionJobStatus status;
+    
+    /**
+     * 合并的触发次数
+     */
+    @Column(name = "trigger_count", nullable = false)
+    @Builder.Default
+    private Integer triggerCount = 1;
+    
+    /**
+     * 已执行次数
+     */
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+    
+    /**
+     * 最早可调度时间（合并窗口/重试退避）
+     */
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+    
+    /**
+     * 首次触发时间（用于计算队列延迟）
+     */
+    @Column(name = "first_triggered_at", nullable = false)
+    private LocalDateTime firstTriggeredAt;
+    
+    /**
+     * 租约起点：领取时设置，执行中定期续期（用于回收超时任务）
+     */
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    /**
+     * 最近一次失败原因
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+    
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
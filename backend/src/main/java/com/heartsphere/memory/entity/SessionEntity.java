@@ -45,6 +45,13 @@ public class SessionEntity {
     @Column(name = "user_id", nullable = false, length = 64)
     private String userId;
     
+    /**
+     * 会话内最新消息序号
+     */
+    @Column(name = "head_seq", nullable = false)
+    @Builder.Default
+    private Long headSeq = 0L;
+    
     /**
      * 创建时间
      */
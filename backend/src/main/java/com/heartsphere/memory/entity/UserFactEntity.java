@@ -28,7 +28,8 @@ import java.util.Map;
 @Table(name = "user_facts", indexes = {
     @Index(name = "idx_user_id", columnList = "user_id"),
     @Index(name = "idx_category", columnList = "category"),
-    @Index(name = "idx_user_category", columnList = "user_id,category")
+    @Index(name = "idx_user_category", columnList = "user_id,category"),
+    @Index(name = "idx_fact_fingerprint", columnList = "content_fingerprint")
 })
 public class UserFactEntity {
     
@@ -107,12 +108,24 @@ public class UserFactEntity {
     @Column(name = "metadata", columnDefinition = "JSON")
     private String metadata; // JSON字符串
     
+    /**
+     * 内容指纹（SimHash），为空表示尚未参与近似去重
+     */
+    @Column(name = "content_fingerprint")
+    private Long contentFingerprint;
+    
     /**
      * 更新时间
      */
     @Column(name = "updated_at")
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+    
+    /**
+     * 内容的估算token数（写入时计算）
+     */
+    @Column(name = "token_count")
+    private Integer tokenCount;
 }
 
 
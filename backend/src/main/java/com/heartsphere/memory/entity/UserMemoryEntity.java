@@ -36,7 +36,9 @@ import java.util.Map;
     @Index(name = "idx_source_id", columnList = "source_id"),
     @Index(name = "idx_created_at", columnList = "created_at"),
     @Index(name = "idx_user_type", columnList = "user_id,type"),
-    @Index(name = "idx_user_importance", columnList = "user_id,importance")
+    @Index(name = "idx_user_importance", columnList = "user_id,importance"),
+    @Index(name = "idx_memory_fingerprint", columnList = "content_fingerprint"),
+    @Index(name = "idx_memory_user_created", columnList = "user_id,created_at,id")
 })
 public class UserMemoryEntity {
     
@@ -127,12 +129,24 @@ public class UserMemoryEntity {
     @Column(name = "metadata", columnDefinition = "JSON")
     private String metadata; // JSON字符串，存储Map<String, Object>
     
+    /**
+     * 内容指纹（SimHash），为空表示尚未参与近似去重
+     */
+    @Column(name = "content_fingerprint")
+    private Long contentFingerprint;
+    
     /**
      * 更新时间
      */
     @Column(name = "updated_at")
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+    
+    /**
+     * 内容的估算token数（写入时计算）
+     */
+    @Column(name = "token_count")
+    private Integer tokenCount;
 }
 
 
@@ -0,0 +1,260 @@
+package com.heartsphere.memory.extraction;
+
+import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.aiagent.service.UnifiedModelRoutingService;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ExtractionJobEntity;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.ExtractionLane;
+import com.heartsphere.memory.model.ExtractionResult;
+import com.heartsphere.memory.service.MemoryExtractor;
+import com.heartsphere.memory.service.ShortMemoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 记忆提取任务调度器
+ * 定期从持久化队列领取任务交给提取线程池执行。每个LLM提供商有独立的并发许可，
+ * 只有拿到许可才领取任务，线程池不会因突发流量拒绝任务；超出并发的任务留在表中延后执行。
+ * 交互通道优先领取，回填通道只使用为交互通道保留之外的空闲许可。
+ * 并发许可只在本实例内计数，多实例部署时各提供商的总并发为 实例数 × 配置值。
+ * 执行中的任务定期续期租约，保存结果前确认租约仍有效，避免超时回收后被两个实例重复处理。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class ExtractionJobDispatcher {
+
+    private static final String DEFAULT_PROVIDER = "default";
+
+    private final ExtractionJobQueue queue;
+    private final MemoryExtractor memoryExtractor;
+    private final ShortMemoryService shortMemoryService;
+    private final ExtractionResultWriter resultWriter;
+    private final UnifiedModelRoutingService routingService;
+    private final Executor executor;
+    private final MemoryProperties.ExtractionQueue config;
+    private final Map<String, Semaphore> providerPermits = new ConcurrentHashMap<>();
+    private final Map<Long, ExtractionJobEntity> running = new ConcurrentHashMap<>();
+
+    public ExtractionJobDispatcher(
+            ExtractionJobQueue queue,
+            MemoryExtractor memoryExtractor,
+            ShortMemoryService shortMemoryService,
+            ExtractionResultWriter resultWriter,
+            UnifiedModelRoutingService routingService,
+            @Qualifier("memoryExtractionExecutor") Executor executor,
+            MemoryProperties memoryProperties) {
+        this.queue = queue;
+        this.memoryExtractor = memoryExtractor;
+        this.shortMemoryService = shortMemoryService;
+        this.resultWriter = resultWriter;
+        this.routingService = routingService;
+        this.executor = executor;
+        this.config = memoryProperties.getExtractionQueue();
+    }
+
+    // ========== 调度 ==========
+
+    @Scheduled(fixedDelayString = "${heartsphere.memory.extraction-queue.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            String provider = currentProvider();
+            Semaphore permits = permitsFor(provider);
+            int free = permits.availablePermits();
+            if (free <= 0) {
+                return;
+            }
+            int started = dispatchLane(ExtractionLane.INTERACTIVE, free, provider, permits);
+            int backfillSlots = free - started - config.getInteractiveReservedSlots();
+            if (backfillSlots > 0) {
+                dispatchLane(ExtractionLane.BACKFILL, backfillSlots, provider, permits);
+            }
+        } catch (Exception e) {
+            log.error("调度提取任务失败", e);
+        }
+    }
+
+    /**
+     * 回收租约过期的任务（执行中的实例崩溃或重启）
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.extraction-queue.recover-interval-ms:60000}")
+    public void recoverStale() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            int recovered = queue.recoverStale();
+            if (recovered > 0) {
+                log.warn("回收租约过期的提取任务: {}", recovered);
+            }
+        } catch (Exception e) {
+            log.error("回收提取任务失败", e);
+        }
+    }
+
+    /**
+     * 为本实例执行中的任务续期租约
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.extraction-queue.lease-renew-interval-ms:60000}")
+    public void renewLeases() {
+        for (ExtractionJobEntity job : running.values()) {
+            try {
+                if (!queue.renew(job)) {
+                    log.warn("提取任务租约已失效: jobId={}, sessionId={}", job.getId(), job.getSessionId());
+                }
+            } catch (Exception e) {
+                log.error("续期提取任务租约失败: jobId={}", job.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 定期输出队列深度、延迟与各提供商的在途数
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.extraction-queue.stats-interval-ms:300000}")
+    public void logStats() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            ExtractionQueueStats stats = queue.stats();
+            if (stats.getInteractivePending() + stats.getBackfillPending() + stats.getRunning() == 0) {
+                return;
+            }
+            log.info("记忆提取队列: interactive={}, backfill={}, running={}, failed={}, interactiveLag={}s, backfillLag={}s, inFlight={}",
+                stats.getInteractivePending(), stats.getBackfillPending(), stats.getRunning(), stats.getFailed(),
+                stats.getInteractiveLagSeconds(), stats.getBackfillLagSeconds(), inFlight());
+        } catch (Exception e) {
+            log.error("获取提取队列状态失败", e);
+        }
+    }
+
+    /**
+     * 各提供商正在执行的提取数
+     */
+    public Map<String, Integer> inFlight() {
+        Map<String, Integer> inFlight = new TreeMap<>();
+        providerPermits.forEach((provider, permits) ->
+            inFlight.put(provider, config.concurrencyFor(provider) - permits.availablePermits()));
+        return inFlight;
+    }
+
+    private int dispatchLane(ExtractionLane lane, int slots, String provider, Semaphore permits) {
+        int started = 0;
+        for (Long jobId : queue.findReady(lane, slots)) {
+            if (!permits.tryAcquire()) {
+                break;
+            }
+            Optional<ExtractionJobEntity> claimed;
+            try {
+                claimed = queue.claim(jobId);
+            } catch (Exception e) {
+                permits.release();
+                throw e;
+            }
+            if (claimed.isEmpty()) {
+                // 已被其他实例领取
+                permits.release();
+                continue;
+            }
+            ExtractionJobEntity job = claimed.get();
+            try {
+                executor.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        permits.release();
+                    }
+                });
+                started++;
+            } catch (TaskRejectedException e) {
+                // 线程池饱和：放回队列稍后执行
+                permits.release();
+                queue.requeue(job.getId(), LocalDateTime.now().plus(Duration.ofMillis(config.getPollIntervalMs())), "线程池饱和");
+                log.warn("提取线程池饱和，任务延后: jobId={}, provider={}", job.getId(), provider);
+                break;
+            }
+        }
+        return started;
+    }
+
+    // ========== 执行 ==========
+
+    /**
+     * 执行一个提取任务：读取会话最近的消息，一次提取事实、偏好和记忆并保存
+     */
+    void run(ExtractionJobEntity job) {
+        running.put(job.getId(), job);
+        try {
+            List<ChatMessage> messages = new ArrayList<>(
+                shortMemoryService.getMessages(job.getSessionId(), config.getMessageWindow()));
+            // getMessages按时间倒序返回，提取时按对话顺序
+            Collections.reverse(messages);
+            if (!messages.isEmpty()) {
+                ExtractionResult result = memoryExtractor.extractAll(job.getUserId(), messages);
+                // 提取耗时可能超过租约：已被回收的任务由新的执行者处理，这里不再保存
+                if (!queue.renew(job)) {
+                    log.warn("提取任务租约已失效，丢弃本次结果: jobId={}, sessionId={}", job.getId(), job.getSessionId());
+                    return;
+                }
+                resultWriter.save(job.getSessionId(), result);
+            }
+            queue.complete(job);
+            log.debug("提取任务完成: jobId={}, sessionId={}, triggers={}",
+                job.getId(), job.getSessionId(), job.getTriggerCount());
+        } catch (Exception e) {
+            log.error("提取任务失败: jobId={}, sessionId={}, attempts={}",
+                job.getId(), job.getSessionId(), job.getAttempts(), e);
+            try {
+                queue.fail(job, e);
+            } catch (Exception ex) {
+                // 状态更新失败时任务保持执行中，租约过期后回收
+                log.error("更新提取任务状态失败: jobId={}", job.getId(), ex);
+            }
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    // ========== 提供商并发 ==========
+
+    /**
+     * 当前文本模型的提供商；LLM提取与对话使用同一路由
+     */
+    private String currentProvider() {
+        try {
+            AIModelConfigDTO model = routingService.selectModel("text");
+            if (model != null && model.getProvider() != null) {
+                return model.getProvider().toLowerCase();
+            }
+        } catch (Exception e) {
+            log.debug("获取文本模型提供商失败，使用默认并发: {}", e.getMessage());
+        }
+        return DEFAULT_PROVIDER;
+    }
+
+    private Semaphore permitsFor(String provider) {
+        return providerPermits.computeIfAbsent(provider, key -> new Semaphore(config.concurrencyFor(key)));
+    }
+}
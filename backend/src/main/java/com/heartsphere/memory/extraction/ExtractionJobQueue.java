@@ -0,0 +1,202 @@
+package com.heartsphere.memory.extraction;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ExtractionJobEntity;
+import com.heartsphere.memory.model.ExtractionJobStatus;
+import com.heartsphere.memory.model.ExtractionLane;
+import com.heartsphere.memory.repository.jpa.ExtractionJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 持久化的记忆提取任务队列
+ * 任务保存在 memory_extraction_jobs 表中，重启后继续执行；同一会话的重复触发合并为一个等待任务。
+ * 完成的任务直接删除，失败的任务按指数退避重新入队，次数用尽后标记为FAILED保留排查。
+ * 领取后的任务以“任务ID + 执行次数”标识本次领取；租约过期被回收或被重新领取后，原执行者的续期、完成和失败都不再生效。
+ * 每次状态变更一个短事务，合并键冲突时在新事务中重试。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class ExtractionJobQueue {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    private final ExtractionJobRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final MemoryProperties.ExtractionQueue config;
+
+    public ExtractionJobQueue(
+            ExtractionJobRepository repository,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = memoryProperties.getExtractionQueue();
+    }
+
+    // ========== 入队 ==========
+
+    /**
+     * 提交会话提取任务
+     * 会话已有等待中的任务时合并到该任务（交互触发会把回填任务提升到交互通道），否则新建任务
+     *
+     * @param userId 用户ID
+     * @param sessionId 会话ID
+     * @param lane 优先级通道
+     */
+    public void enqueue(String userId, String sessionId, ExtractionLane lane) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> enqueueOnce(userId, sessionId, lane));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // 并发插入了同一会话的等待任务，重试时合并到该任务
+                if (attempt >= 2) {
+                    throw new RuntimeException("提交提取任务失败", e);
+                }
+            }
+        }
+    }
+
+    private void enqueueOnce(String userId, String sessionId, ExtractionLane lane) {
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.coalesce(sessionId, now) > 0) {
+            if (lane == ExtractionLane.INTERACTIVE) {
+                repository.changeLane(sessionId, ExtractionLane.BACKFILL, ExtractionLane.INTERACTIVE);
+            }
+            log.debug("合并提取任务: sessionId={}, lane={}", sessionId, lane);
+            return;
+        }
+        repository.saveAndFlush(ExtractionJobEntity.builder()
+            .userId(userId)
+            .sessionId(sessionId)
+            .pendingKey(sessionId)
+            .lane(lane)
+            .status(ExtractionJobStatus.PENDING)
+            .availableAt(now.plus(Duration.ofMillis(config.getCoalesceDelayMs())))
+            .firstTriggeredAt(now)
+            .build());
+        log.debug("新建提取任务: sessionId={}, lane={}", sessionId, lane);
+    }
+
+    // ========== 领取与状态变更 ==========
+
+    /**
+     * 获取通道中已到调度时间的等待任务ID
+     */
+    public List<Long> findReady(ExtractionLane lane, int limit) {
+        return repository.findReadyIds(lane, LocalDateTime.now(), PageRequest.of(0, limit));
+    }
+
+    /**
+     * 领取任务；已被其他实例领取时返回空
+     */
+    public Optional<ExtractionJobEntity> claim(Long jobId) {
+        return transactionTemplate.execute(status -> repository.claim(jobId, LocalDateTime.now()) > 0
+            ? repository.findById(jobId)
+            : Optional.<ExtractionJobEntity>empty());
+    }
+
+    /**
+     * 续期本次领取的执行租约
+     *
+     * @return false表示租约已失效（任务被回收或被其他实例重新领取）
+     */
+    public boolean renew(ExtractionJobEntity job) {
+        Integer renewed = transactionTemplate.execute(status ->
+            repository.renewLease(job.getId(), job.getAttempts(), LocalDateTime.now()));
+        return renewed != null && renewed > 0;
+    }
+
+    /**
+     * 任务完成，删除任务记录；租约已失效时不删除（任务归新的执行者）
+     */
+    public void complete(ExtractionJobEntity job) {
+        Integer deleted = transactionTemplate.execute(status -> repository.deleteOwned(job.getId(), job.getAttempts()));
+        if (deleted == null || deleted == 0) {
+            log.warn("提取任务租约已失效，不删除任务: jobId={}, attempts={}", job.getId(), job.getAttempts());
+        }
+    }
+
+    /**
+     * 任务失败：未达最大次数时按指数退避重新入队，否则标记为FAILED；租约已失效时忽略
+     */
+    public void fail(ExtractionJobEntity job, Exception error) {
+        if (!renew(job)) {
+            log.warn("提取任务租约已失效，忽略失败: jobId={}, attempts={}", job.getId(), job.getAttempts());
+            return;
+        }
+        String message = truncate(error.getMessage() != null ? error.getMessage() : error.getClass().getName());
+        if (job.getAttempts() >= config.getMaxAttempts()) {
+            transactionTemplate.executeWithoutResult(status -> repository.markFailed(job.getId(), message));
+            log.warn("提取任务重试次数用尽: jobId={}, sessionId={}", job.getId(), job.getSessionId());
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_SECONDS,
+            config.getRetryBackoffSeconds() << Math.min(20, Math.max(0, job.getAttempts() - 1)));
+        requeue(job.getId(), LocalDateTime.now().plusSeconds(backoff), message);
+    }
+
+    /**
+     * 执行中的任务放回等待队列（调度失败或租约过期）
+     * 会话已有新的等待任务时，新任务会读取到最新消息，直接删除当前任务
+     */
+    public void requeue(Long jobId, LocalDateTime availableAt, String error) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.requeue(jobId, availableAt, error));
+        } catch (DataIntegrityViolationException e) {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteById(jobId));
+            log.debug("会话已有等待中的提取任务，合并: jobId={}", jobId);
+        }
+    }
+
+    /**
+     * 回收租约过期的执行中任务
+     *
+     * @return 回收的任务数
+     */
+    public int recoverStale() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> staleIds = repository.findStaleRunningIds(now.minusSeconds(config.getLeaseSeconds()));
+        staleIds.forEach(id -> requeue(id, now, "执行租约过期"));
+        return staleIds.size();
+    }
+
+    // ========== 统计 ==========
+
+    /**
+     * 队列深度与延迟
+     */
+    public ExtractionQueueStats stats() {
+        LocalDateTime now = LocalDateTime.now();
+        return ExtractionQueueStats.builder()
+            .interactivePending(repository.countByStatusAndLane(ExtractionJobStatus.PENDING, ExtractionLane.INTERACTIVE))
+            .backfillPending(repository.countByStatusAndLane(ExtractionJobStatus.PENDING, ExtractionLane.BACKFILL))
+            .running(repository.countByStatus(ExtractionJobStatus.RUNNING))
+            .failed(repository.countByStatus(ExtractionJobStatus.FAILED))
+            .interactiveLagSeconds(lagSeconds(repository.findOldestPendingTrigger(ExtractionLane.INTERACTIVE), now))
+            .backfillLagSeconds(lagSeconds(repository.findOldestPendingTrigger(ExtractionLane.BACKFILL), now))
+            .build();
+    }
+
+    private static long lagSeconds(LocalDateTime oldest, LocalDateTime now) {
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest, now).getSeconds());
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,49 @@
+package com.heartsphere.memory.extraction;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 提取任务队列状态
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExtractionQueueStats {
+    
+    /**
+     * 交互通道等待中的任务数
+     */
+    private long interactivePending;
+    
+    /**
+     * 回填通道等待中的任务数
+     */
+    private long backfillPending;
+    
+    /**
+     * 执行中的任务数
+     */
+    private long running;
+    
+    /**
+     * 重试用尽的任务数
+     */
+    private long failed;
+    
+    /**
+     * 交互通道最早等待任务的延迟（秒）
+     */
+    private long interactiveLagSeconds;
+    
+    /**
+     * 回填通道最早等待任务的延迟（秒）
+     */
+    private long backfillLagSeconds;
+}
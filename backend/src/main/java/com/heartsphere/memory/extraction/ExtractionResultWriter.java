@@ -0,0 +1,47 @@
+package com.heartsphere.memory.extraction;
+
+import com.heartsphere.memory.model.ExtractionResult;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 合并提取结果的保存
+ * 同步提取接口和后台提取任务共用：保存事实、偏好和记忆，记忆未指明来源时归属提取的会话。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+public class ExtractionResultWriter {
+
+    private final MySQLLongMemoryService longMemoryService;
+
+    public ExtractionResultWriter(MySQLLongMemoryService longMemoryService) {
+        this.longMemoryService = longMemoryService;
+    }
+
+    /**
+     * 保存一次提取的结果
+     *
+     * @param sessionId 提取的会话ID，作为记忆的默认来源
+     * @param result 提取结果
+     */
+    public void save(String sessionId, ExtractionResult result) {
+        if (!result.getFacts().isEmpty()) {
+            longMemoryService.saveFacts(result.getFacts());
+        }
+        result.getPreferences().forEach(longMemoryService::savePreference);
+        if (!result.getMemories().isEmpty()) {
+            result.getMemories().forEach(memory -> {
+                if (memory.getSourceId() == null || memory.getSourceId().isEmpty()) {
+                    memory.setSourceId(sessionId);
+                }
+                if (memory.getSource() == null) {
+                    memory.setSource(MemorySource.CONVERSATION);
+                }
+            });
+            longMemoryService.saveMemories(result.getMemories());
+        }
+    }
+}
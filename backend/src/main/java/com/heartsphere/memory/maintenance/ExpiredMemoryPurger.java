@@ -0,0 +1,112 @@
+package com.heartsphere.memory.maintenance;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
+import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 过期短期记忆清理任务
+ * 在后台按 expires_at 分批删除过期的对话消息和工作记忆，每批一个短事务，
+ * 避免在读写路径上清理，也避免一次大范围删除长时间持有锁。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class ExpiredMemoryPurger {
+
+    /**
+     * 单次运行每类数据最多删除的批数，剩余的留给下一次运行
+     */
+    private static final int MAX_BATCHES_PER_RUN = 100;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final WorkingMemoryRepository workingMemoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MemoryProperties.ShortMemory config;
+
+    public ExpiredMemoryPurger(
+            ChatMessageRepository chatMessageRepository,
+            WorkingMemoryRepository workingMemoryRepository,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.workingMemoryRepository = workingMemoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = memoryProperties.getShortMemory();
+    }
+
+    @Scheduled(fixedDelayString = "${heartsphere.memory.short-memory.expired-purge-interval-ms:60000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int deleted = purgeMessages(now);
+            if (deleted > 0) {
+                log.info("清理过期对话消息: {}", deleted);
+            }
+        } catch (Exception e) {
+            log.error("清理过期对话消息失败", e);
+        }
+        try {
+            int deleted = purgeWorkingMemories(now);
+            if (deleted > 0) {
+                log.info("清理过期工作记忆: {}", deleted);
+            }
+        } catch (Exception e) {
+            log.error("清理过期工作记忆失败", e);
+        }
+    }
+
+    /**
+     * 分批删除在指定时间之前过期的对话消息
+     *
+     * @param now 过期判断时间
+     * @return 删除的消息数量
+     */
+    public int purgeMessages(LocalDateTime now) {
+        return purgeInBatches(
+            pageable -> chatMessageRepository.findExpiredIds(now, pageable),
+            chatMessageRepository::deleteByIdIn);
+    }
+
+    /**
+     * 分批删除在指定时间之前过期的工作记忆
+     *
+     * @param now 过期判断时间
+     * @return 删除的条目数量
+     */
+    public int purgeWorkingMemories(LocalDateTime now) {
+        return purgeInBatches(
+            pageable -> workingMemoryRepository.findExpiredIds(now, pageable),
+            workingMemoryRepository::deleteByIdIn);
+    }
+
+    private <ID> int purgeInBatches(Function<Pageable, List<ID>> finder, Function<List<ID>, Integer> deleter) {
+        int batchSize = config.getExpiredPurgeBatchSize();
+        int total = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<ID> ids = finder.apply(PageRequest.of(0, batchSize));
+                return ids.isEmpty() ? 0 : deleter.apply(ids);
+            });
+            int count = deleted != null ? deleted : 0;
+            total += count;
+            if (count < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+}
@@ -65,6 +65,11 @@ public class ChatMessage {
      */
     private List<String> extractedFacts;
     
+    /**
+     * 估算的token数（写入时计算，组装上下文时直接使用）
+     */
+    private Integer tokenCount;
+    
     /**
      * 创建用户消息的工厂方法
      */
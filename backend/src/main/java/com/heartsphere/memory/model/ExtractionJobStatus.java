@@ -0,0 +1,25 @@
+package com.heartsphere.memory.model;
+
+/**
+ * 记忆提取任务状态
+ * 完成的任务直接删除，表中只保留未完成的任务
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public enum ExtractionJobStatus {
+    /**
+     * 等待调度
+     */
+    PENDING,
+    
+    /**
+     * 执行中
+     */
+    RUNNING,
+    
+    /**
+     * 重试次数用尽
+     */
+    FAILED
+}
@@ -0,0 +1,19 @@
+package com.heartsphere.memory.model;
+
+/**
+ * 记忆提取任务优先级通道
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public enum ExtractionLane {
+    /**
+     * 交互触发（会话进行中），优先调度
+     */
+    INTERACTIVE,
+    
+    /**
+     * 回填（历史会话补提取），空闲时调度
+     */
+    BACKFILL
+}
@@ -0,0 +1,48 @@
+package com.heartsphere.memory.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次提取的结果
+ * 合并提取时一次调用同时得到事实、偏好和记忆
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExtractionResult {
+    
+    /**
+     * 用户事实
+     */
+    @Builder.Default
+    private List<UserFact> facts = new ArrayList<>();
+    
+    /**
+     * 用户偏好
+     */
+    @Builder.Default
+    private List<UserPreference> preferences = new ArrayList<>();
+    
+    /**
+     * 用户记忆
+     */
+    @Builder.Default
+    private List<UserMemory> memories = new ArrayList<>();
+    
+    /**
+     * 是否没有提取到任何内容
+     */
+    public boolean isEmpty() {
+        return facts.isEmpty() && preferences.isEmpty() && memories.isEmpty();
+    }
+}
@@ -0,0 +1,35 @@
+package com.heartsphere.memory.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 记忆列表分页结果
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemoryPage {
+    /**
+     * 本页记忆
+     */
+    private List<UserMemory> items;
+    
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+    
+    public static MemoryPage empty() {
+        return new MemoryPage(Collections.emptyList(), null);
+    }
+}
@@ -81,6 +81,11 @@ public class UserFact {
      */
     private Map<String, Object> metadata;
     
+    /**
+     * 估算的token数（写入时计算，组装上下文时直接使用）
+     */
+    private Integer tokenCount;
+    
     /**
      * 计算衰减后的重要性
      * 
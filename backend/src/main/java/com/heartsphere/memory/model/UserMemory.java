@@ -89,6 +89,11 @@ public class UserMemory {
      * 扩展元数据
      */
     private Map<String, Object> metadata;
+    
+    /**
+     * 估算的token数（写入时计算，组装上下文时直接使用）
+     */
+    private Integer tokenCount;
 }
 
 
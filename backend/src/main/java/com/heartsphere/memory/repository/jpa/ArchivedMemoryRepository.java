@@ -0,0 +1,37 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.entity.ArchivedMemoryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import jakarta.persistence.LockModeType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 归档记忆Repository（JPA）
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Repository
+public interface ArchivedMemoryRepository extends JpaRepository<ArchivedMemoryEntity, String> {
+    
+    /**
+     * 读取用户全部归档记忆的词项摘要，不加载压缩内容
+     *
+     * @return 每行为 [id, summaryTokens]
+     */
+    @Query("SELECT a.id, a.summaryTokens FROM ArchivedMemoryEntity a WHERE a.userId = :userId ORDER BY a.archivedAt ASC, a.id ASC")
+    List<Object[]> findSummariesByUserId(@Param("userId") String userId);
+    
+    /**
+     * 加锁读取归档记忆（回迁热表时使用，避免并发回迁重复插入）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM ArchivedMemoryEntity a WHERE a.id = :id")
+    Optional<ArchivedMemoryEntity> findByIdForUpdate(@Param("id") String id);
+}
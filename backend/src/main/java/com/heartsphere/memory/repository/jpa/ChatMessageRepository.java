@@ -69,6 +69,19 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity,
     @Query("DELETE FROM ChatMessageEntity m WHERE m.expiresAt < :now")
     void deleteExpiredMessages(@Param("now") LocalDateTime now);
     
+    /**
+     * 获取一批过期消息ID（分批清理用）
+     */
+    @Query("SELECT m.id FROM ChatMessageEntity m WHERE m.expiresAt < :now")
+    List<String> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * 根据ID批量删除消息
+     */
+    @Modifying
+    @Query("DELETE FROM ChatMessageEntity m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<String> ids);
+    
     /**
      * 根据会话ID删除指定消息
      */
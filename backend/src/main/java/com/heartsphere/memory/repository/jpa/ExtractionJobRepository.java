@@ -0,0 +1,127 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.entity.ExtractionJobEntity;
+import com.heartsphere.memory.model.ExtractionJobStatus;
+import com.heartsphere.memory.model.ExtractionLane;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 记忆提取任务Repository（JPA）
+ * 
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Repository
+public interface ExtractionJobRepository extends JpaRepository<ExtractionJobEntity, Long> {
+    
+    /**
+     * 把一次触发合并到会话等待中的任务
+     *
+     * @return 更新的行数，0表示没有等待中的任务
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.triggerCount = j.triggerCount + 1, j.updatedAt = :now " +
+           "WHERE j.pendingKey = :sessionId")
+    int coalesce(@Param("sessionId") String sessionId, @Param("now") LocalDateTime now);
+    
+    /**
+     * 调整等待中任务的优先级通道
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.lane = :to WHERE j.pendingKey = :sessionId AND j.lane = :from")
+    int changeLane(
+        @Param("sessionId") String sessionId,
+        @Param("from") ExtractionLane from,
+        @Param("to") ExtractionLane to
+    );
+    
+    /**
+     * 获取通道中已到调度时间的等待任务ID，先到先得
+     */
+    @Query("SELECT j.id FROM ExtractionJobEntity j " +
+           "WHERE j.status = com.heartsphere.memory.model.ExtractionJobStatus.PENDING " +
+           "AND j.lane = :lane AND j.availableAt <= :now ORDER BY j.availableAt ASC, j.id ASC")
+    List<Long> findReadyIds(@Param("lane") ExtractionLane lane, @Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * 领取等待中的任务；多实例并发领取时只有一个成功
+     *
+     * @return 1表示领取成功
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.status = com.heartsphere.memory.model.ExtractionJobStatus.RUNNING, " +
+           "j.pendingKey = NULL, j.startedAt = :now, j.attempts = j.attempts + 1, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status = com.heartsphere.memory.model.ExtractionJobStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /**
+     * 续期执行租约；任务已被回收或被其他实例重新领取（执行次数变化）时不更新
+     *
+     * @return 1表示仍持有租约
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.startedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.attempts = :attempts " +
+           "AND j.status = com.heartsphere.memory.model.ExtractionJobStatus.RUNNING")
+    int renewLease(@Param("id") Long id, @Param("attempts") int attempts, @Param("now") LocalDateTime now);
+    
+    /**
+     * 删除仍由本次领取持有的执行中任务
+     *
+     * @return 1表示删除成功
+     */
+    @Modifying
+    @Query("DELETE FROM ExtractionJobEntity j WHERE j.id = :id AND j.attempts = :attempts " +
+           "AND j.status = com.heartsphere.memory.model.ExtractionJobStatus.RUNNING")
+    int deleteOwned(@Param("id") Long id, @Param("attempts") int attempts);
+    
+    /**
+     * 把执行中的任务放回等待队列
+     * 会话已有新的等待任务时违反合并键唯一约束，由调用方合并
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.status = com.heartsphere.memory.model.ExtractionJobStatus.PENDING, " +
+           "j.pendingKey = j.sessionId, j.availableAt = :availableAt, j.startedAt = NULL, " +
+           "j.lastError = :error, j.updatedAt = CURRENT_TIMESTAMP WHERE j.id = :id")
+    int requeue(@Param("id") Long id, @Param("availableAt") LocalDateTime availableAt, @Param("error") String error);
+    
+    /**
+     * 标记任务最终失败
+     */
+    @Modifying
+    @Query("UPDATE ExtractionJobEntity j SET j.status = com.heartsphere.memory.model.ExtractionJobStatus.FAILED, " +
+           "j.lastError = :error, j.updatedAt = CURRENT_TIMESTAMP WHERE j.id = :id")
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+    
+    /**
+     * 获取租约起点早于指定时间仍在执行的任务（实例崩溃或重启遗留）
+     */
+    @Query("SELECT j.id FROM ExtractionJobEntity j " +
+           "WHERE j.status = com.heartsphere.memory.model.ExtractionJobStatus.RUNNING AND j.startedAt < :before")
+    List<Long> findStaleRunningIds(@Param("before") LocalDateTime before);
+    
+    /**
+     * 按状态统计任务数
+     */
+    long countByStatus(ExtractionJobStatus status);
+    
+    /**
+     * 按状态和通道统计任务数
+     */
+    long countByStatusAndLane(ExtractionJobStatus status, ExtractionLane lane);
+    
+    /**
+     * 通道中最早的等待任务的首次触发时间
+     */
+    @Query("SELECT MIN(j.firstTriggeredAt) FROM ExtractionJobEntity j " +
+           "WHERE j.status = com.heartsphere.memory.model.ExtractionJobStatus.PENDING AND j.lane = :lane")
+    LocalDateTime findOldestPendingTrigger(@Param("lane") ExtractionLane lane);
+}
@@ -0,0 +1,43 @@
+package com.heartsphere.memory.repository.jpa;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 记忆列表的键集分页游标
+ * 指向上一页最后一条记忆的 (created_at, id)，下一页从它之后（更早）开始；
+ * 对外以URL安全的Base64字符串传递。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public record MemoryCursor(LocalDateTime createdAt, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = createdAt + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @throws IllegalArgumentException 游标格式无效
+     */
+    public static MemoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("无效的分页游标: " + token);
+            }
+            return new MemoryCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的分页游标: " + token, e);
+        }
+    }
+}
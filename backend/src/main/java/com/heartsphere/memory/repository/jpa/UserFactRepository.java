@@ -4,11 +4,14 @@ import com.heartsphere.memory.entity.UserFactEntity;
 import com.heartsphere.memory.model.FactCategory;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.LockModeType;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -25,6 +28,11 @@ public interface UserFactRepository extends JpaRepository<UserFactEntity, String
      */
     List<UserFactEntity> findByUserIdOrderByCreatedAtDesc(String userId);
     
+    /**
+     * 根据用户ID分页获取事实
+     */
+    List<UserFactEntity> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    
     /**
      * 根据用户ID和类别获取事实
      */
@@ -55,6 +63,12 @@ public interface UserFactRepository extends JpaRepository<UserFactEntity, String
         @Param("query") String query
     );
     
+    /**
+     * 按主键顺序分批读取事实文本（键集分页），只取ID、用户ID和内容，用于重建全文索引
+     */
+    @Query("SELECT f.id, f.userId, f.fact FROM UserFactEntity f WHERE f.id > :afterId ORDER BY f.id")
+    List<Object[]> findTextBatchAfter(@Param("afterId") String afterId, Pageable pageable);
+    
     /**
      * 根据用户ID统计事实数量
      */
@@ -66,6 +80,25 @@ public interface UserFactRepository extends JpaRepository<UserFactEntity, String
     @Modifying
     @Query("DELETE FROM UserFactEntity f WHERE f.id = :factId")
     void deleteById(@Param("factId") String factId);
+    
+    /**
+     * 获取一批尚未计算指纹的事实的ID与所属用户（近似去重的增量输入），按ID游标分页
+     */
+    @Query("SELECT f.id, f.userId FROM UserFactEntity f WHERE f.contentFingerprint IS NULL " +
+           "AND f.id > :afterId ORDER BY f.id ASC")
+    List<Object[]> findUnfingerprinted(@Param("afterId") String afterId, Pageable pageable);
+    
+    /**
+     * 加锁读取一批事实（近似去重合并时使用，避免与并发的编辑、访问统计写回互相覆盖）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM UserFactEntity f WHERE f.id IN :ids")
+    List<UserFactEntity> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+    
+    /**
+     * 获取用户已计算指纹的事实：ID、类别、指纹
+     */
+    @Query("SELECT f.id, f.category, f.contentFingerprint FROM UserFactEntity f " +
+           "WHERE f.userId = :userId AND f.contentFingerprint IS NOT NULL")
+    List<Object[]> findFingerprintsByUserId(@Param("userId") String userId);
 }
-
-
@@ -0,0 +1,25 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * 用户记忆的组合条件查询
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public interface UserMemoryQueryRepository {
+
+    /**
+     * 按条件查询一页记忆，按 (created_at DESC, id DESC) 排序，不执行count查询
+     *
+     * @param spec 查询条件（可包含键集游标）
+     * @param limit 返回数量
+     * @param withDetails 是否读取JSON列（structuredData、tags、metadata）；为false时只查询标量列，实体中这些字段为null
+     * @return 记忆实体
+     */
+    List<UserMemoryEntity> findPage(Specification<UserMemoryEntity> spec, int limit, boolean withDetails);
+}
@@ -0,0 +1,89 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@link UserMemoryQueryRepository} 的Criteria实现，由Spring Data按命名约定合并到 {@link UserMemoryRepository}
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class UserMemoryQueryRepositoryImpl implements UserMemoryQueryRepository {
+
+    /**
+     * 不含JSON列时查询的标量列
+     */
+    private static final List<String> SCALAR_COLUMNS = List.of(
+        "id", "userId", "type", "importance", "content", "source", "sourceId",
+        "createdAt", "lastAccessedAt", "accessCount", "confidence", "tokenCount");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserMemoryEntity> findPage(Specification<UserMemoryEntity> spec, int limit, boolean withDetails) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        if (withDetails) {
+            CriteriaQuery<UserMemoryEntity> query = cb.createQuery(UserMemoryEntity.class);
+            Root<UserMemoryEntity> root = query.from(UserMemoryEntity.class);
+            query.select(root);
+            applyFilterAndOrder(spec, root, query, cb);
+            return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+        }
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<UserMemoryEntity> root = query.from(UserMemoryEntity.class);
+        query.multiselect(SCALAR_COLUMNS.stream().map(column -> root.get(column).alias(column)).collect(Collectors.toList()));
+        applyFilterAndOrder(spec, root, query, cb);
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+            .map(UserMemoryQueryRepositoryImpl::toScalarEntity)
+            .collect(Collectors.toList());
+    }
+
+    private static void applyFilterAndOrder(
+            Specification<UserMemoryEntity> spec,
+            Root<UserMemoryEntity> root,
+            CriteriaQuery<?> query,
+            CriteriaBuilder cb) {
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+    }
+
+    /**
+     * 只含标量列的实体，仅用于只读展示，不能用于保存
+     */
+    private static UserMemoryEntity toScalarEntity(Tuple tuple) {
+        return UserMemoryEntity.builder()
+            .id(tuple.get("id", String.class))
+            .userId(tuple.get("userId", String.class))
+            .type(tuple.get("type", MemoryType.class))
+            .importance(tuple.get("importance", MemoryImportance.class))
+            .content(tuple.get("content", String.class))
+            .source(tuple.get("source", MemorySource.class))
+            .sourceId(tuple.get("sourceId", String.class))
+            .createdAt(tuple.get("createdAt", LocalDateTime.class))
+            .lastAccessedAt(tuple.get("lastAccessedAt", LocalDateTime.class))
+            .accessCount(tuple.get("accessCount", Integer.class))
+            .confidence(tuple.get("confidence", Double.class))
+            .tokenCount(tuple.get("tokenCount", Integer.class))
+            .build();
+    }
+}
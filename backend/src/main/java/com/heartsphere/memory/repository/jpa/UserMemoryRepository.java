@@ -6,12 +6,15 @@ import com.heartsphere.memory.model.MemorySource;
 import com.heartsphere.memory.model.MemoryType;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.LockModeType;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -21,13 +24,18 @@ import java.util.List;
  * @date 2025-12-31
  */
 @Repository
-public interface UserMemoryRepository extends JpaRepository<UserMemoryEntity, String> {
+public interface UserMemoryRepository extends JpaRepository<UserMemoryEntity, String>, UserMemoryQueryRepository {
     
     /**
      * 根据用户ID获取所有记忆
      */
     List<UserMemoryEntity> findByUserIdOrderByCreatedAtDesc(String userId);
     
+    /**
+     * 根据用户ID分页获取记忆
+     */
+    List<UserMemoryEntity> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    
     /**
      * 根据用户ID和类型获取记忆
      */
@@ -72,6 +80,56 @@ public interface UserMemoryRepository extends JpaRepository<UserMemoryEntity, St
         Pageable pageable
     );
     
+    /**
+     * 搜索记忆ID（内容包含关键词），只取主键，供混合检索召回
+     */
+    @Query("SELECT m.id FROM UserMemoryEntity m WHERE m.userId = :userId " +
+           "AND m.content LIKE %:keyword% " +
+           "ORDER BY m.createdAt DESC")
+    List<String> searchIdsByContent(
+        @Param("userId") String userId,
+        @Param("keyword") String keyword,
+        Pageable pageable
+    );
+    
+    /**
+     * 根据用户ID和来源ID获取记忆ID（按时间倒序）
+     */
+    @Query("SELECT m.id FROM UserMemoryEntity m WHERE m.userId = :userId " +
+           "AND m.sourceId = :sourceId " +
+           "ORDER BY m.createdAt DESC")
+    List<String> findIdsByUserIdAndSourceId(
+        @Param("userId") String userId,
+        @Param("sourceId") String sourceId,
+        Pageable pageable
+    );
+    
+    /**
+     * 获取用户访问最频繁的记忆ID
+     */
+    @Query("SELECT m.id FROM UserMemoryEntity m WHERE m.userId = :userId " +
+           "ORDER BY m.accessCount DESC, m.lastAccessedAt DESC")
+    List<String> findFrequentlyAccessedIds(
+        @Param("userId") String userId,
+        Pageable pageable
+    );
+    
+    /**
+     * 按主键顺序分批读取记忆文本（键集分页），只取ID、用户ID和内容，用于重建全文索引
+     */
+    @Query("SELECT m.id, m.userId, m.content FROM UserMemoryEntity m WHERE m.id > :afterId ORDER BY m.id")
+    List<Object[]> findTextBatchAfter(@Param("afterId") String afterId, Pageable pageable);
+    
+    /**
+     * 按主键顺序分批读取一个用户的记忆文本（键集分页），只取ID和内容，用于重建向量索引
+     */
+    @Query("SELECT m.id, m.content FROM UserMemoryEntity m WHERE m.userId = :userId AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findTextBatchByUserAfter(
+        @Param("userId") String userId,
+        @Param("afterId") String afterId,
+        Pageable pageable
+    );
+    
     /**
      * 根据用户ID统计记忆数量
      */
@@ -101,6 +159,37 @@ public interface UserMemoryRepository extends JpaRepository<UserMemoryEntity, St
     @Query("UPDATE UserMemoryEntity m SET m.lastAccessedAt = :lastAccessedAt, " +
            "m.accessCount = m.accessCount + 1 WHERE m.id = :memoryId")
     void updateAccessInfo(@Param("memoryId") String memoryId, @Param("lastAccessedAt") LocalDateTime lastAccessedAt);
+    
+    /**
+     * 获取一批尚未计算指纹的记忆的ID与所属用户（近似去重的增量输入），按ID游标分页
+     */
+    @Query("SELECT m.id, m.userId FROM UserMemoryEntity m WHERE m.contentFingerprint IS NULL " +
+           "AND m.id > :afterId ORDER BY m.id ASC")
+    List<Object[]> findUnfingerprinted(@Param("afterId") String afterId, Pageable pageable);
+    
+    /**
+     * 加锁读取一批记忆（近似去重合并时使用，避免与并发的编辑、访问统计写回互相覆盖）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM UserMemoryEntity m WHERE m.id IN :ids")
+    List<UserMemoryEntity> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+    
+    /**
+     * 获取用户已计算指纹的记忆：ID、类型、指纹
+     */
+    @Query("SELECT m.id, m.type, m.contentFingerprint FROM UserMemoryEntity m " +
+           "WHERE m.userId = :userId AND m.contentFingerprint IS NOT NULL")
+    List<Object[]> findFingerprintsByUserId(@Param("userId") String userId);
+    
+    /**
+     * 获取一批空闲超过指定时间的非核心记忆（归档候选），按ID游标分页
+     */
+    @Query("SELECT m FROM UserMemoryEntity m WHERE m.id > :afterId AND m.importance <> :keep " +
+           "AND COALESCE(m.lastAccessedAt, m.createdAt) < :idleBefore ORDER BY m.id ASC")
+    List<UserMemoryEntity> findArchiveCandidates(
+        @Param("afterId") String afterId,
+        @Param("keep") MemoryImportance keep,
+        @Param("idleBefore") LocalDateTime idleBefore,
+        Pageable pageable
+    );
 }
-
-
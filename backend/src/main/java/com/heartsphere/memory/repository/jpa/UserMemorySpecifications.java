@@ -0,0 +1,71 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户记忆查询条件
+ * 每个条件都下推到SQL；参数为空的条件返回null，与 {@link Specification#where} / {@code and} 组合时自动忽略。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class UserMemorySpecifications {
+
+    private UserMemorySpecifications() {
+    }
+
+    public static Specification<UserMemoryEntity> ofUser(String userId) {
+        return (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    public static Specification<UserMemoryEntity> hasType(MemoryType type) {
+        return type == null ? null : (root, query, cb) -> cb.equal(root.get("type"), type);
+    }
+
+    public static Specification<UserMemoryEntity> hasImportance(MemoryImportance importance) {
+        return importance == null ? null : (root, query, cb) -> cb.equal(root.get("importance"), importance);
+    }
+
+    public static Specification<UserMemoryEntity> hasSource(MemorySource source) {
+        return source == null ? null : (root, query, cb) -> cb.equal(root.get("source"), source);
+    }
+
+    public static Specification<UserMemoryEntity> createdFrom(LocalDateTime from) {
+        return from == null ? null : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), from);
+    }
+
+    public static Specification<UserMemoryEntity> createdBefore(LocalDateTime to) {
+        return to == null ? null : (root, query, cb) -> cb.lessThan(root.get("createdAt"), to);
+    }
+
+    /**
+     * 标签过滤：tags为JSON数组，按带引号的元素文本匹配
+     */
+    public static Specification<UserMemoryEntity> hasTag(String tag) {
+        if (tag == null || tag.isBlank()) {
+            return null;
+        }
+        String pattern = "%\"" + tag.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "\"%";
+        return (root, query, cb) -> cb.like(root.get("tags"), pattern, '\\');
+    }
+
+    /**
+     * 键集分页：按 (created_at DESC, id DESC) 排序时位于游标之后的记录
+     */
+    public static Specification<UserMemoryEntity> after(MemoryCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+            cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+            cb.and(
+                cb.equal(root.get("createdAt"), cursor.createdAt()),
+                cb.lessThan(root.get("id"), cursor.id())));
+    }
+}
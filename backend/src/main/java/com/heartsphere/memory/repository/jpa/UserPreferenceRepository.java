@@ -1,6 +1,7 @@
 package com.heartsphere.memory.repository.jpa;
 
 import com.heartsphere.memory.entity.UserPreferenceEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -24,6 +25,11 @@ public interface UserPreferenceRepository extends JpaRepository<UserPreferenceEn
      */
     List<UserPreferenceEntity> findByUserIdOrderByCreatedAtDesc(String userId);
     
+    /**
+     * 根据用户ID分页获取偏好
+     */
+    List<UserPreferenceEntity> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    
     /**
      * 根据用户ID和键获取偏好
      */
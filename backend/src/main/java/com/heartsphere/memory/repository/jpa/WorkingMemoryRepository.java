@@ -1,6 +1,7 @@
 package com.heartsphere.memory.repository.jpa;
 
 import com.heartsphere.memory.entity.WorkingMemoryEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -37,6 +39,42 @@ public interface WorkingMemoryRepository extends JpaRepository<WorkingMemoryEnti
     @Modifying
     @Query("DELETE FROM WorkingMemoryEntity w WHERE w.expiresAt < :now")
     void deleteExpired(@Param("now") LocalDateTime now);
+    
+    /**
+     * 按会话ID和键更新值与过期时间
+     *
+     * @return 更新的行数，0表示不存在
+     */
+    @Modifying
+    @Query("UPDATE WorkingMemoryEntity w SET w.memoryValue = :value, w.expiresAt = :expiresAt, w.updatedAt = :now " +
+           "WHERE w.sessionId = :sessionId AND w.memoryKey = :memoryKey")
+    int updateValue(
+        @Param("sessionId") String sessionId,
+        @Param("memoryKey") String memoryKey,
+        @Param("value") String value,
+        @Param("expiresAt") LocalDateTime expiresAt,
+        @Param("now") LocalDateTime now
+    );
+    
+    /**
+     * 根据会话ID和键删除
+     */
+    @Modifying
+    @Query("DELETE FROM WorkingMemoryEntity w WHERE w.sessionId = :sessionId AND w.memoryKey = :memoryKey")
+    void deleteBySessionIdAndMemoryKey(@Param("sessionId") String sessionId, @Param("memoryKey") String memoryKey);
+    
+    /**
+     * 获取一批过期工作记忆ID（分批清理用）
+     */
+    @Query("SELECT w.id FROM WorkingMemoryEntity w WHERE w.expiresAt < :now")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * 根据ID批量删除
+     */
+    @Modifying
+    @Query("DELETE FROM WorkingMemoryEntity w WHERE w.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
 }
 
 
@@ -0,0 +1,180 @@
+package com.heartsphere.memory.retrieval;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.text.InvertedIndex;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.HnswIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 混合记忆检索器
+ * 关键词、语义、关联三路召回并发执行，只取记忆ID，再按请求中的权重做倒数排名融合。
+ * 单路召回超时或失败时按空结果处理，整体耗时受最慢一路的超时上限约束。
+ * 超时的召回任务会被取消（仍在排队的不再执行，执行中的被中断），数据库召回在带超时的只读事务中执行，
+ * 超时后由驱动取消查询，不会在返回结果后继续占用工作线程和数据库连接。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class HybridMemoryRetriever {
+
+    private static final double DEFAULT_SEMANTIC_WEIGHT = 0.4;
+    private static final double DEFAULT_KEYWORD_WEIGHT = 0.4;
+    private static final double DEFAULT_ASSOCIATION_WEIGHT = 0.2;
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final MemoryVectorIndex memoryVectorIndex;
+    private final MemoryTextIndex memoryTextIndex;
+    private final Executor executor;
+    private final TransactionTemplate queryTemplate;
+    private final MemoryProperties.Retrieval config;
+
+    public HybridMemoryRetriever(
+            UserMemoryRepository userMemoryRepository,
+            MemoryVectorIndex memoryVectorIndex,
+            MemoryTextIndex memoryTextIndex,
+            @Qualifier("memoryRetrievalExecutor") Executor executor,
+            PlatformTransactionManager transactionManager,
+            MemoryProperties memoryProperties) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.memoryVectorIndex = memoryVectorIndex;
+        this.memoryTextIndex = memoryTextIndex;
+        this.executor = executor;
+        this.config = memoryProperties.getRetrieval();
+        // 事务超时只支持秒级，向上取整；事务内的JPA查询据此设置语句超时
+        this.queryTemplate = new TransactionTemplate(transactionManager);
+        this.queryTemplate.setReadOnly(true);
+        this.queryTemplate.setTimeout((int) Math.max(1, (config.getTimeoutMs() + 999) / 1000));
+    }
+
+    /**
+     * 执行混合检索
+     *
+     * @param request 智能检索请求
+     * @return 按融合分数降序排列的记忆ID
+     */
+    public List<RankFusion.Scored> retrieve(IntelligentSearchRequest request) {
+        String userId = request.getUserId();
+        if (userId == null || userId.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int limit = request.getLimit() != null && request.getLimit() > 0 ? request.getLimit() : 10;
+        int depth = limit * Math.max(1, config.getCandidateMultiplier());
+        String query = request.getQuery();
+
+        double keywordWeight = weightOrDefault(request.getKeywordWeight(), DEFAULT_KEYWORD_WEIGHT);
+        double semanticWeight = weightOrDefault(request.getSemanticWeight(), DEFAULT_SEMANTIC_WEIGHT);
+        double associationWeight = weightOrDefault(request.getAssociationWeight(), DEFAULT_ASSOCIATION_WEIGHT);
+
+        CompletableFuture<List<String>> keyword = submit("keyword", keywordWeight,
+            () -> keywordCandidates(userId, query, depth));
+        CompletableFuture<List<String>> semantic = submit("semantic", semanticWeight,
+            () -> semanticCandidates(userId, query, depth));
+        CompletableFuture<List<String>> association = submit("association", associationWeight,
+            () -> associationCandidates(userId, request.getContext(), depth));
+
+        return RankFusion.fuse(
+            List.of(keyword.join(), semantic.join(), association.join()),
+            new double[] {keywordWeight, semanticWeight, associationWeight},
+            config.getRrfK(),
+            limit);
+    }
+
+    // ========== 召回通道 ==========
+
+    /**
+     * 关键词召回：全文索引就绪时按BM25排序，否则退回LIKE查询
+     */
+    private List<String> keywordCandidates(String userId, String query, int depth) {
+        if (query == null || query.isBlank()) {
+            return Collections.emptyList();
+        }
+        if (memoryTextIndex.isReady()) {
+            return memoryTextIndex.searchMemories(userId, query, depth).stream()
+                .map(InvertedIndex.Hit::getId)
+                .collect(Collectors.toList());
+        }
+        return queryTemplate.execute(status ->
+            userMemoryRepository.searchIdsByContent(userId, query.trim(), PageRequest.of(0, depth)));
+    }
+
+    private List<String> semanticCandidates(String userId, String query, int depth) {
+        return memoryVectorIndex.search(userId, query, depth).stream()
+            .map(HnswIndex.Hit::getId)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 关联召回：上下文指明来源（会话）时取同一来源的记忆，否则取用户最常访问的记忆
+     */
+    private List<String> associationCandidates(String userId, Map<String, Object> context, int depth) {
+        Object sourceId = context == null ? null
+            : context.getOrDefault("sourceId", context.get("sessionId"));
+        if (sourceId != null && !sourceId.toString().isEmpty()) {
+            return queryTemplate.execute(status ->
+                userMemoryRepository.findIdsByUserIdAndSourceId(userId, sourceId.toString(), PageRequest.of(0, depth)));
+        }
+        return queryTemplate.execute(status ->
+            userMemoryRepository.findFrequentlyAccessedIds(userId, PageRequest.of(0, depth)));
+    }
+
+    // ========== 工具方法 ==========
+
+    private CompletableFuture<List<String>> submit(String channel, double weight, Supplier<List<String>> supplier) {
+        if (weight <= 0) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }, null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result
+            .orTimeout(config.getTimeoutMs(), TimeUnit.MILLISECONDS)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof TimeoutException) {
+                    task.cancel(true);
+                    log.warn("记忆召回超时，已取消并按空结果处理: channel={}, timeoutMs={}", channel, config.getTimeoutMs());
+                } else {
+                    log.warn("记忆召回失败，按空结果处理: channel={}", channel, cause);
+                }
+                return Collections.emptyList();
+            });
+    }
+
+    private static double weightOrDefault(Double weight, double defaultWeight) {
+        return weight != null ? Math.max(0, weight) : defaultWeight;
+    }
+}
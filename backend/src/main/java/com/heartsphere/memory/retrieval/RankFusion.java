@@ -0,0 +1,93 @@
+package com.heartsphere.memory.retrieval;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 加权倒数排名融合（Weighted Reciprocal Rank Fusion）
+ * score(d) = Σ weight_i / (k + rank_i(d))，rank从1开始
+ * 只用排名不用原始分数，不同召回通道的分数尺度无需对齐
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * 融合多路排名并取前topK
+     *
+     * @param rankings 每路召回的有序ID列表
+     * @param weights 每路召回的权重，与rankings一一对应
+     * @param rrfK 平滑常数
+     * @param topK 返回数量
+     * @return 按融合分数降序排列的结果
+     */
+    public static List<Scored> fuse(List<List<String>> rankings, double[] weights, int rrfK, int topK) {
+        if (rankings.size() != weights.length) {
+            throw new IllegalArgumentException("召回通道数与权重数不一致");
+        }
+        if (topK <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<String, double[]> scores = new HashMap<>();
+        for (int channel = 0; channel < rankings.size(); channel++) {
+            List<String> ranking = rankings.get(channel);
+            double weight = weights[channel];
+            if (ranking == null || weight <= 0) {
+                continue;
+            }
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                double contribution = weight / (rrfK + rank + 1);
+                scores.computeIfAbsent(ranking.get(rank), id -> new double[1])[0] += contribution;
+            }
+        }
+
+        // 大小为topK的小顶堆，避免对全部候选排序
+        PriorityQueue<Scored> heap = new PriorityQueue<>(topK + 1, RankFusion::compareAscending);
+        for (Map.Entry<String, double[]> entry : scores.entrySet()) {
+            Scored candidate = new Scored(entry.getKey(), entry.getValue()[0]);
+            if (heap.size() < topK) {
+                heap.offer(candidate);
+            } else if (compareAscending(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.offer(candidate);
+            }
+        }
+
+        List<Scored> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 分数升序；分数相同时按ID降序，保证结果稳定
+     */
+    private static int compareAscending(Scored a, Scored b) {
+        int byScore = Double.compare(a.getScore(), b.getScore());
+        return byScore != 0 ? byScore : b.getId().compareTo(a.getId());
+    }
+
+    /**
+     * 融合结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Scored {
+        private final String id;
+        private final double score;
+    }
+}
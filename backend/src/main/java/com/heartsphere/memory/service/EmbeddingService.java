@@ -0,0 +1,34 @@
+package com.heartsphere.memory.service;
+
+/**
+ * 文本向量化服务接口
+ * 负责把记忆内容转换为定长向量，供语义检索使用
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public interface EmbeddingService {
+
+    /**
+     * 计算文本向量（已做L2归一化）
+     *
+     * @param text 文本内容
+     * @return 向量，文本为空时返回全零向量
+     */
+    float[] embed(String text);
+
+    /**
+     * 获取向量维度
+     *
+     * @return 向量维度
+     */
+    int getDimension();
+
+    /**
+     * 获取向量模型标识
+     * 持久化的向量索引以此判断是否需要重建
+     *
+     * @return 模型标识
+     */
+    String getModelId();
+}
@@ -1,6 +1,9 @@
 package com.heartsphere.memory.service;
 
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.dto.MemoryQueryRequest;
 import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MemoryPage;
 import com.heartsphere.memory.model.UserFact;
 import com.heartsphere.memory.model.UserMemory;
 import com.heartsphere.memory.model.UserPreference;
@@ -43,6 +46,7 @@ public interface LongMemoryService {
     
     /**
      * 获取用户的所有事实
+     * 最多返回最新的1000条，超出部分不返回并记录警告日志
      * 
      * @param userId 用户ID
      * @return 用户事实列表
@@ -103,6 +107,7 @@ public interface LongMemoryService {
     
     /**
      * 获取用户的所有偏好
+     * 最多返回最新的1000条，超出部分不返回并记录警告日志
      * 
      * @param userId 用户ID
      * @return 用户偏好列表
@@ -131,6 +136,7 @@ public interface LongMemoryService {
     
     /**
      * 根据上下文检索记忆
+     * 上下文支持的过滤键：type、importance、source、startTime、endTime、tag、cursor，无效的值忽略
      * 
      * @param userId 用户ID
      * @param context 上下文信息
@@ -138,6 +144,25 @@ public interface LongMemoryService {
      * @return 用户记忆列表
      */
     List<UserMemory> retrieveMemoriesByContext(String userId, Map<String, Object> context, int limit);
+    
+    /**
+     * 按条件分页查询记忆
+     * 过滤条件在数据库中执行，按创建时间倒序键集分页
+     * 
+     * @param request 查询请求
+     * @return 一页记忆及下一页游标
+     * @throws IllegalArgumentException 游标格式无效
+     */
+    MemoryPage queryMemories(MemoryQueryRequest request);
+    
+    /**
+     * 混合检索记忆
+     * 并发执行关键词、语义、关联召回，并按请求中的权重融合排序
+     * 
+     * @param request 智能检索请求
+     * @return 按相关度降序的用户记忆列表
+     */
+    List<UserMemory> hybridSearch(IntelligentSearchRequest request);
 }
 
 
@@ -1,12 +1,14 @@
 package com.heartsphere.memory.service;
 
 import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.ExtractionResult;
 import com.heartsphere.memory.model.UserFact;
 import com.heartsphere.memory.model.UserMemory;
 import com.heartsphere.memory.model.UserPreference;
 import com.heartsphere.memory.model.character.CharacterInteractionMemory;
 import com.heartsphere.memory.model.character.CharacterSceneMemory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -45,6 +47,22 @@ public interface MemoryExtractor {
      */
     List<UserMemory> extractMemories(String userId, List<ChatMessage> messages);
     
+    /**
+     * 从对话中同时提取用户事实、偏好和记忆
+     * 默认分别调用三个提取方法，支持合并提取的实现可以一次完成
+     * 
+     * @param userId 用户ID
+     * @param messages 对话消息列表
+     * @return 提取结果
+     */
+    default ExtractionResult extractAll(String userId, List<ChatMessage> messages) {
+        return ExtractionResult.builder()
+            .facts(new ArrayList<>(extractFacts(userId, messages)))
+            .preferences(new ArrayList<>(extractPreferences(userId, messages)))
+            .memories(new ArrayList<>(extractMemories(userId, messages)))
+            .build();
+    }
+    
     /**
      * 从对话中提取角色交互记忆
      * 
@@ -0,0 +1,119 @@
+package com.heartsphere.memory.service.impl;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.service.EmbeddingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 基于特征哈希的本地向量化实现
+ * 对中文按单字和相邻二字切分、对英文数字按单词切分，再用带符号哈希映射到固定维度
+ * 无需外部模型即可离线运行，结果确定
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Service
+public class HashingEmbeddingService implements EmbeddingService {
+
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+    private static final float BIGRAM_WEIGHT = 1.0f;
+
+    private final int dimension;
+
+    @Autowired
+    public HashingEmbeddingService(MemoryProperties memoryProperties) {
+        this(memoryProperties.getVectorIndex().getDimension());
+    }
+
+    public HashingEmbeddingService(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("向量维度必须大于0: " + dimension);
+        }
+        this.dimension = dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        if (text == null || text.isEmpty()) {
+            return vector;
+        }
+
+        int prev = -1;
+        int wordHash = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (Character.isLetterOrDigit(cp) && cp < 0x2E80) {
+                // 拉丁字母/数字：累积为单词
+                wordHash = 31 * wordHash + Character.toLowerCase(cp);
+                wordLength++;
+                prev = -1;
+                continue;
+            }
+            if (wordLength > 0) {
+                accumulate(vector, mix(wordHash), BIGRAM_WEIGHT);
+                wordHash = 0;
+                wordLength = 0;
+            }
+            if (!Character.isLetterOrDigit(cp)) {
+                // 标点与空白切断二元组
+                prev = -1;
+                continue;
+            }
+
+            accumulate(vector, mix(cp), UNIGRAM_WEIGHT);
+            if (prev >= 0) {
+                accumulate(vector, mix(prev * 0x10FFFF + cp), BIGRAM_WEIGHT);
+            }
+            prev = cp;
+        }
+        if (wordLength > 0) {
+            accumulate(vector, mix(wordHash), BIGRAM_WEIGHT);
+        }
+
+        normalize(vector);
+        return vector;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public String getModelId() {
+        return "hashing-ngram-v1-" + dimension;
+    }
+
+    private void accumulate(float[] vector, int hash, float weight) {
+        int bucket = (hash >>> 1) % dimension;
+        vector[bucket] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static int mix(long key) {
+        // splitmix64 的收尾步骤，保证低位分布均匀
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) z;
+    }
+
+    private static void normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return;
+        }
+        float inv = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inv;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.heartsphere.memory.service.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
@@ -36,6 +38,9 @@ public class LLMMemoryExtractor implements MemoryExtractor {
     @Value("${heartsphere.memory.extraction.enable-llm-extraction:true}")
     private boolean enableLlmExtraction;
     
+    @Value("${heartsphere.memory.extraction.combined-extraction:true}")
+    private boolean combinedExtraction;
+    
     @Value("${heartsphere.memory.long-memory.extraction-confidence-threshold:0.6}")
     private double confidenceThreshold;
     
@@ -521,6 +526,143 @@ public class LLMMemoryExtractor implements MemoryExtractor {
         }
     }
     
+    // ========== 合并提取 ==========
+    
+    /**
+     * 一次调用同时提取事实、偏好和记忆
+     * 对话窗口只发送一次；响应按token流式解析，输出被截断时保留已完整解析的条目
+     */
+    @Override
+    public ExtractionResult extractAll(String userId, List<ChatMessage> messages) {
+        if (!enableLlmExtraction || messages == null || messages.isEmpty()) {
+            return new ExtractionResult();
+        }
+        if (!combinedExtraction) {
+            return MemoryExtractor.super.extractAll(userId, messages);
+        }
+        
+        try {
+            // 构建提取提示词
+            String prompt = buildCombinedExtractionPrompt(messages);
+            
+            // 调用AI服务
+            TextGenerationRequest request = new TextGenerationRequest();
+            request.setPrompt(prompt);
+            request.setSystemInstruction("你是一个专业的记忆提取专家，擅长从对话中同时提取用户的事实、偏好和重要记忆。请以JSON格式返回结果。");
+            request.setTemperature(0.3);
+            request.setMaxTokens(4000);
+            
+            TextGenerationResponse response = aiService.generateText(Long.parseLong(userId), request);
+            
+            // 解析响应
+            ExtractionResult result = parseCombinedResponse(response.getContent(), userId, messages);
+            
+            // 验证和清理
+            result.setFacts(new ArrayList<>(validateAndCleanFacts(result.getFacts())));
+            result.setPreferences(new ArrayList<>(validateAndCleanPreferences(result.getPreferences())));
+            return result;
+            
+        } catch (Exception e) {
+            log.error("LLM合并提取失败: userId={}", userId, e);
+            return new ExtractionResult();
+        }
+    }
+    
+    /**
+     * 构建合并提取提示词
+     */
+    private String buildCombinedExtractionPrompt(List<ChatMessage> messages) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请从以下对话中同时提取用户的事实信息、偏好信息和重要记忆，返回一个JSON对象。\n\n");
+        prompt.append("对话内容：\n");
+        
+        for (ChatMessage message : messages) {
+            if (message.getRole() == MessageRole.USER) {
+                prompt.append("用户: ").append(message.getContent()).append("\n");
+            } else {
+                prompt.append(message.getRole().name()).append(": ").append(message.getContent()).append("\n");
+            }
+        }
+        
+        prompt.append("\n提取要求：\n");
+        prompt.append("1. facts：只根据用户的发言提取事实，包括个人信息、习惯、关系、工作、健康、位置、技能、目标等\n");
+        prompt.append("2. preferences：只根据用户的发言提取偏好，包括食物、活动、时间、交互风格等\n");
+        prompt.append("3. memories：根据整段对话提取重要时刻、情感经历、成长轨迹等重要记忆\n");
+        prompt.append("没有可提取的内容时返回空数组。\n\n");
+        
+        prompt.append("返回格式（JSON对象）：\n");
+        prompt.append("{\n");
+        prompt.append("  \"facts\": [\n");
+        prompt.append("    {\"fact\": \"事实描述\", \"category\": \"PERSONAL|PREFERENCE|HABIT|RELATIONSHIP|WORK|HEALTH|FINANCE|LOCATION|CONTACT|SKILL|GOAL|OTHER\", ");
+        prompt.append("\"importance\": 0.0-1.0, \"confidence\": 0.0-1.0, \"tags\": [\"标签1\"]}\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"preferences\": [\n");
+        prompt.append("    {\"key\": \"偏好键（如：favorite_food）\", \"value\": \"偏好值\", ");
+        prompt.append("\"type\": \"STRING|NUMBER|BOOLEAN|JSON|LIST|RATING\", \"confidence\": 0.0-1.0}\n");
+        prompt.append("  ],\n");
+        prompt.append("  \"memories\": [\n");
+        prompt.append("    {\"type\": \"IMPORTANT_MOMENT|EMOTIONAL_EXPERIENCE|GROWTH_TRAJECTORY|...\", ");
+        prompt.append("\"importance\": \"CORE|IMPORTANT|NORMAL|TEMPORARY\", \"content\": \"记忆内容\", ");
+        prompt.append("\"confidence\": 0.0-1.0, \"tags\": [\"标签1\"]}\n");
+        prompt.append("  ]\n");
+        prompt.append("}\n");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * 流式解析合并提取的响应
+     * 逐个读取facts/preferences/memories数组中的对象，交给对应的节点解析方法；
+     * JSON在中途被截断或格式错误时，保留此前已解析的条目
+     */
+    private ExtractionResult parseCombinedResponse(String responseContent, String userId, List<ChatMessage> messages) {
+        ExtractionResult result = new ExtractionResult();
+        if (responseContent == null) {
+            return result;
+        }
+        // 跳过代码块标记等前缀，从第一个对象开始解析；对象结束后的内容不会被读取
+        int start = responseContent.indexOf('{');
+        if (start == -1) {
+            return result;
+        }
+        
+        try (JsonParser parser = objectMapper.createParser(responseContent.substring(start))) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    JsonNode node = parser.readValueAsTree();
+                    switch (field) {
+                        case "facts" -> addIfPresent(result.getFacts(), parseFactNode(node, userId, messages));
+                        case "preferences" -> addIfPresent(result.getPreferences(), parsePreferenceNode(node, userId));
+                        case "memories" -> addIfPresent(result.getMemories(), parseMemoryNode(node, userId, messages));
+                        default -> log.debug("忽略未知的提取字段: {}", field);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("合并提取响应解析中断，保留已解析的条目: facts={}, preferences={}, memories={}",
+                result.getFacts().size(), result.getPreferences().size(), result.getMemories().size(), e);
+        }
+        
+        return result;
+    }
+    
+    private static <T> void addIfPresent(List<T> list, T item) {
+        if (item != null) {
+            list.add(item);
+        }
+    }
+    
     // ========== 提取角色交互记忆 ==========
     
     @Override
@@ -632,9 +774,9 @@ public class LLMMemoryExtractor implements MemoryExtractor {
     // ========== 辅助方法 ==========
     
     /**
-     * 从响应中提取JSON内容（可能包含markdown代码块）
+     * 从响应中提取JSON内容（可能包含markdown代码块）；包可见供基准测试直接调用
      */
-    private String extractJsonFromResponse(String response) {
+    static String extractJsonFromResponse(String response) {
         if (response == null || response.trim().isEmpty()) {
             return "[]";
         }
@@ -676,7 +818,7 @@ public class LLMMemoryExtractor implements MemoryExtractor {
     /**
      * 找到匹配的括号
      */
-    private int findMatchingBracket(String str, char openBracket) {
+    private static int findMatchingBracket(String str, char openBracket) {
         char closeBracket = openBracket == '[' ? ']' : '}';
         int depth = 0;
         for (int i = 0; i < str.length(); i++) {
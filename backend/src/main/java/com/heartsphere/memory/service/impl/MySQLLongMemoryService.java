@@ -1,32 +1,54 @@
 package com.heartsphere.memory.service.impl;
 
+import com.heartsphere.memory.archive.MemoryArchive;
+import com.heartsphere.memory.archive.MemoryArchiver;
+import com.heartsphere.memory.buffer.MemoryAccessRecorder;
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.dto.MemoryQueryRequest;
 import com.heartsphere.memory.entity.UserFactEntity;
 import com.heartsphere.memory.entity.UserMemoryEntity;
 import com.heartsphere.memory.entity.UserPreferenceEntity;
 import com.heartsphere.memory.model.FactCategory;
 import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemoryPage;
+import com.heartsphere.memory.model.MemorySource;
 import com.heartsphere.memory.model.MemoryType;
 import com.heartsphere.memory.model.UserFact;
 import com.heartsphere.memory.model.UserMemory;
 import com.heartsphere.memory.model.UserPreference;
+import com.heartsphere.memory.repository.jpa.MemoryCursor;
 import com.heartsphere.memory.repository.jpa.UserFactRepository;
 import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.repository.jpa.UserMemorySpecifications;
 import com.heartsphere.memory.repository.jpa.UserPreferenceRepository;
+import com.heartsphere.memory.retrieval.HybridMemoryRetriever;
+import com.heartsphere.memory.retrieval.RankFusion;
 import com.heartsphere.memory.service.LongMemoryService;
+import com.heartsphere.memory.text.InvertedIndex;
+import com.heartsphere.memory.text.MemoryTextIndex;
 import com.heartsphere.memory.util.MemoryEntityConverter;
+import com.heartsphere.memory.vector.HnswIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -40,17 +62,53 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MySQLLongMemoryService implements LongMemoryService {
 
+    /**
+     * 事实全文检索的最大返回数量
+     */
+    private static final int FACT_SEARCH_LIMIT = 100;
+
+    /**
+     * 列表类查询（全部事实、全部偏好、记忆分页）的最大返回数量
+     */
+    private static final int MAX_LIST_SIZE = 1000;
+
+    /**
+     * 语义与关键词两路结果融合时的RRF平滑常数
+     */
+    private static final int RELEVANT_RRF_K = 60;
+
     private final UserFactRepository userFactRepository;
     private final UserPreferenceRepository userPreferenceRepository;
     private final UserMemoryRepository userMemoryRepository;
+    private final MemoryVectorIndex memoryVectorIndex;
+    private final HybridMemoryRetriever hybridMemoryRetriever;
+    private final MemoryTextIndex memoryTextIndex;
+    private final MemoryAccessRecorder memoryAccessRecorder;
+    private final MemoryArchive memoryArchive;
+    private final MemoryArchiver memoryArchiver;
+    private final MemoryEntityConverter memoryEntityConverter;
 
     public MySQLLongMemoryService(
             UserFactRepository userFactRepository,
             UserPreferenceRepository userPreferenceRepository,
-            UserMemoryRepository userMemoryRepository) {
+            UserMemoryRepository userMemoryRepository,
+            MemoryVectorIndex memoryVectorIndex,
+            HybridMemoryRetriever hybridMemoryRetriever,
+            MemoryTextIndex memoryTextIndex,
+            MemoryAccessRecorder memoryAccessRecorder,
+            MemoryArchive memoryArchive,
+            MemoryArchiver memoryArchiver,
+            MemoryEntityConverter memoryEntityConverter) {
         this.userFactRepository = userFactRepository;
         this.userPreferenceRepository = userPreferenceRepository;
         this.userMemoryRepository = userMemoryRepository;
+        this.memoryVectorIndex = memoryVectorIndex;
+        this.hybridMemoryRetriever = hybridMemoryRetriever;
+        this.memoryTextIndex = memoryTextIndex;
+        this.memoryAccessRecorder = memoryAccessRecorder;
+        this.memoryArchive = memoryArchive;
+        this.memoryArchiver = memoryArchiver;
+        this.memoryEntityConverter = memoryEntityConverter;
     }
     
     // ========== 用户事实 ==========
@@ -72,12 +130,13 @@ public class MySQLLongMemoryService implements LongMemoryService {
                 fact.setAccessCount(0);
             }
             
-            UserFactEntity entity = MemoryEntityConverter.toEntity(fact);
+            UserFactEntity entity = memoryEntityConverter.toEntity(fact);
             if (entity == null) {
                 throw new RuntimeException("转换用户事实实体失败");
             }
             
             userFactRepository.save(entity);
+            afterCommit(() -> memoryTextIndex.indexFact(fact.getUserId(), fact.getId(), fact.getFact()));
             log.debug("保存用户事实: userId={}, factId={}", fact.getUserId(), fact.getId());
         } catch (Exception e) {
             log.error("保存用户事实失败: userId={}", fact.getUserId(), e);
@@ -105,11 +164,13 @@ public class MySQLLongMemoryService implements LongMemoryService {
             });
             
             List<UserFactEntity> entities = facts.stream()
-                .map(MemoryEntityConverter::toEntity)
+                .map(memoryEntityConverter::toEntity)
                 .filter(entity -> entity != null)
                 .collect(Collectors.toList());
             
             userFactRepository.saveAll(entities);
+            afterCommit(() -> facts.forEach(fact ->
+                memoryTextIndex.indexFact(fact.getUserId(), fact.getId(), fact.getFact())));
             log.debug("批量保存用户事实: count={}", facts.size());
         } catch (Exception e) {
             log.error("批量保存用户事实失败", e);
@@ -125,11 +186,11 @@ public class MySQLLongMemoryService implements LongMemoryService {
                 return null;
             }
             
-            UserFact fact = MemoryEntityConverter.toModel(entityOpt.get());
+            UserFact fact = memoryEntityConverter.toModel(entityOpt.get());
             if (fact != null) {
-                // 更新访问信息
+                // 访问信息由累加器批量写回
                 fact.recordAccess();
-                saveFact(fact);
+                memoryAccessRecorder.recordFactAccess(factId);
             }
             
             return fact;
@@ -142,9 +203,15 @@ public class MySQLLongMemoryService implements LongMemoryService {
     @Override
     public List<UserFact> getAllFacts(String userId) {
         try {
-            List<UserFactEntity> entities = userFactRepository.findByUserIdOrderByCreatedAtDesc(userId);
+            // 多取一条判断是否被截断
+            List<UserFactEntity> entities = userFactRepository.findByUserIdOrderByCreatedAtDesc(
+                userId, PageRequest.of(0, MAX_LIST_SIZE + 1));
+            if (entities.size() > MAX_LIST_SIZE) {
+                log.warn("用户事实超过列表上限，只返回最新的{}条: userId={}", MAX_LIST_SIZE, userId);
+                entities = entities.subList(0, MAX_LIST_SIZE);
+            }
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(fact -> fact != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -158,7 +225,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
         try {
             List<UserFactEntity> entities = userFactRepository.findByUserIdAndCategoryOrderByCreatedAtDesc(userId, category);
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(fact -> fact != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -172,7 +239,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
         try {
             List<UserFactEntity> entities = userFactRepository.findByUserIdAndMinImportance(userId, minImportance);
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(fact -> fact != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -184,9 +251,13 @@ public class MySQLLongMemoryService implements LongMemoryService {
     @Override
     public List<UserFact> searchFacts(String userId, String query) {
         try {
+            if (memoryTextIndex.isReady()) {
+                return searchFactsByIndex(userId, query);
+            }
+            
             List<UserFactEntity> entities = userFactRepository.searchFacts(userId, query);
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(fact -> fact != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -200,6 +271,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
     public void deleteFact(String factId) {
         try {
             userFactRepository.deleteById(factId);
+            afterCommit(() -> memoryTextIndex.removeFact(factId));
             log.debug("删除用户事实: factId={}", factId);
         } catch (Exception e) {
             log.error("删除用户事实失败: factId={}", factId, e);
@@ -229,7 +301,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
             Optional<UserPreferenceEntity> existingOpt = userPreferenceRepository
                 .findByUserIdAndKey(preference.getUserId(), preference.getKey());
             
-            UserPreferenceEntity entity = MemoryEntityConverter.toEntity(preference);
+            UserPreferenceEntity entity = memoryEntityConverter.toEntity(preference);
             if (entity == null) {
                 throw new RuntimeException("转换用户偏好实体失败");
             }
@@ -258,7 +330,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
                 return null;
             }
             
-            UserPreference preference = MemoryEntityConverter.toModel(entityOpt.get());
+            UserPreference preference = memoryEntityConverter.toModel(entityOpt.get());
             if (preference != null) {
                 // 更新访问信息
                 preference.recordAccess();
@@ -275,9 +347,15 @@ public class MySQLLongMemoryService implements LongMemoryService {
     @Override
     public List<UserPreference> getAllPreferences(String userId) {
         try {
-            List<UserPreferenceEntity> entities = userPreferenceRepository.findByUserIdOrderByCreatedAtDesc(userId);
+            // 多取一条判断是否被截断
+            List<UserPreferenceEntity> entities = userPreferenceRepository.findByUserIdOrderByCreatedAtDesc(
+                userId, PageRequest.of(0, MAX_LIST_SIZE + 1));
+            if (entities.size() > MAX_LIST_SIZE) {
+                log.warn("用户偏好超过列表上限，只返回最新的{}条: userId={}", MAX_LIST_SIZE, userId);
+                entities = entities.subList(0, MAX_LIST_SIZE);
+            }
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(pref -> pref != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -302,25 +380,40 @@ public class MySQLLongMemoryService implements LongMemoryService {
     @Override
     public List<UserMemory> retrieveRelevantMemories(String userId, String query, int limit) {
         try {
-            Pageable pageable = PageRequest.of(0, limit, Sort.by("importance").descending()
-                .and(Sort.by("accessCount").descending()));
-            
-            // 使用文本搜索
-            List<UserMemoryEntity> entities = userMemoryRepository.searchByContent(userId, query, pageable);
+            // 向量索引做语义检索，耗时与记忆总量基本无关
+            List<UserMemory> semantic = retrieveBySimilarity(userId, query, limit);
             
-            if (!entities.isEmpty()) {
-                return entities.stream()
-                    .map(MemoryEntityConverter::toModel)
+            List<UserMemory> keyword;
+            if (memoryTextIndex.isReady()) {
+                // 全文索引按BM25排序，不再对内容做LIKE扫描
+                keyword = retrieveByKeyword(userId, query, limit);
+            } else {
+                Pageable pageable = PageRequest.of(0, limit, Sort.by("importance").descending()
+                    .and(Sort.by("accessCount").descending()));
+                
+                // 使用文本搜索
+                keyword = userMemoryRepository.searchByContent(userId, query, pageable).stream()
+                    .map(memoryEntityConverter::toModel)
                     .filter(memory -> memory != null)
                     .collect(Collectors.toList());
             }
             
+            // 两路结果合并：语义相近但不含关键词的、含关键词但相似度低的都保留
+            List<UserMemory> matched = fuseRelevant(semantic, keyword, limit);
+            if (!matched.isEmpty()) {
+                return withArchived(userId, query, recordAccess(matched), limit);
+            }
+            
+            // 热数据没有命中时查归档
+            List<UserMemory> archived = memoryArchive.search(userId, query, limit);
+            if (!archived.isEmpty()) {
+                return archived;
+            }
+            
             // 如果文本搜索没有结果，返回最近的记忆
-            pageable = PageRequest.of(0, limit, Sort.by("createdAt").descending());
-            entities = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
+            List<UserMemoryEntity> entities = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(0, limit));
             return entities.stream()
-                .limit(limit)
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(memory -> memory != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -332,41 +425,74 @@ public class MySQLLongMemoryService implements LongMemoryService {
     @Override
     public List<UserMemory> retrieveMemoriesByContext(String userId, Map<String, Object> context, int limit) {
         try {
-            List<UserMemoryEntity> entities;
+            MemoryQueryRequest request = MemoryQueryRequest.builder()
+                .userId(userId)
+                .type(parseEnum(MemoryType.class, context.get("type"), "记忆类型"))
+                .importance(parseEnum(MemoryImportance.class, context.get("importance"), "重要性"))
+                .source(parseEnum(MemorySource.class, context.get("source"), "记忆来源"))
+                .startTime(parseInstant(context.get("startTime")))
+                .endTime(parseInstant(context.get("endTime")))
+                .tag(context.get("tag") != null ? context.get("tag").toString() : null)
+                .cursor(context.get("cursor") != null ? context.get("cursor").toString() : null)
+                .limit(limit)
+                .build();
+            return queryMemories(request).getItems();
+        } catch (Exception e) {
+            log.error("根据上下文检索记忆失败: userId={}, context={}", userId, context, e);
+            return Collections.emptyList();
+        }
+    }
+    
+    @Override
+    public MemoryPage queryMemories(MemoryQueryRequest request) {
+        int limit = Math.max(1, Math.min(request.getLimit() != null ? request.getLimit() : 20, MAX_LIST_SIZE));
+        // 无效游标是调用方错误，直接抛出，不当作空页返回
+        MemoryCursor cursor = request.getCursor() != null && !request.getCursor().isEmpty()
+            ? MemoryCursor.decode(request.getCursor())
+            : null;
+        try {
+            Specification<UserMemoryEntity> spec = Specification.where(UserMemorySpecifications.ofUser(request.getUserId()))
+                .and(UserMemorySpecifications.hasType(request.getType()))
+                .and(UserMemorySpecifications.hasImportance(request.getImportance()))
+                .and(UserMemorySpecifications.hasSource(request.getSource()))
+                .and(UserMemorySpecifications.createdFrom(toLocalDateTime(request.getStartTime())))
+                .and(UserMemorySpecifications.createdBefore(toLocalDateTime(request.getEndTime())))
+                .and(UserMemorySpecifications.hasTag(request.getTag()))
+                .and(UserMemorySpecifications.after(cursor));
+            boolean withDetails = !Boolean.FALSE.equals(request.getIncludeDetails());
             
-            // 根据上下文构建查询条件
-            if (context.containsKey("type")) {
-                String typeStr = context.get("type").toString();
-                try {
-                    MemoryType type = MemoryType.valueOf(typeStr);
-                    Pageable pageable = PageRequest.of(0, limit, Sort.by("createdAt").descending());
-                    entities = userMemoryRepository.findByUserIdAndTypeOrderByCreatedAtDesc(userId, type, pageable);
-                } catch (IllegalArgumentException e) {
-                    log.warn("无效的记忆类型: {}", typeStr);
-                    entities = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
-                }
-            } else if (context.containsKey("importance")) {
-                String importanceStr = context.get("importance").toString();
-                try {
-                    MemoryImportance importance = MemoryImportance.valueOf(importanceStr);
-                    Pageable pageable = PageRequest.of(0, limit, Sort.by("createdAt").descending());
-                    entities = userMemoryRepository.findByUserIdAndImportanceOrderByCreatedAtDesc(userId, importance, pageable);
-                } catch (IllegalArgumentException e) {
-                    log.warn("无效的重要性: {}", importanceStr);
-                    entities = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
-                }
-            } else {
-                entities = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
+            // 多取一条判断是否还有下一页
+            List<UserMemoryEntity> entities = userMemoryRepository.findPage(spec, limit + 1, withDetails);
+            String nextCursor = null;
+            if (entities.size() > limit) {
+                entities = entities.subList(0, limit);
+                UserMemoryEntity last = entities.get(limit - 1);
+                nextCursor = new MemoryCursor(last.getCreatedAt(), last.getId()).encode();
             }
             
-            // 限制数量
-            return entities.stream()
-                .limit(limit)
-                .map(MemoryEntityConverter::toModel)
+            List<UserMemory> items = entities.stream()
+                .map(memoryEntityConverter::toModel)
                 .filter(memory -> memory != null)
                 .collect(Collectors.toList());
+            return MemoryPage.builder().items(items).nextCursor(nextCursor).build();
         } catch (Exception e) {
-            log.error("根据上下文检索记忆失败: userId={}, context={}", userId, context, e);
+            log.error("分页查询记忆失败: userId={}", request.getUserId(), e);
+            return MemoryPage.empty();
+        }
+    }
+    
+    @Override
+    public List<UserMemory> hybridSearch(IntelligentSearchRequest request) {
+        try {
+            List<RankFusion.Scored> ranked = hybridMemoryRetriever.retrieve(request);
+            if (ranked.isEmpty()) {
+                return Collections.emptyList();
+            }
+            
+            List<String> ids = ranked.stream().map(RankFusion.Scored::getId).collect(Collectors.toList());
+            return recordAccess(loadInOrder(request.getUserId(), ids));
+        } catch (Exception e) {
+            log.error("混合检索记忆失败: userId={}, query={}", request.getUserId(), request.getQuery(), e);
             return Collections.emptyList();
         }
     }
@@ -392,12 +518,16 @@ public class MySQLLongMemoryService implements LongMemoryService {
                 memory.setAccessCount(0);
             }
             
-            UserMemoryEntity entity = MemoryEntityConverter.toEntity(memory);
+            UserMemoryEntity entity = memoryEntityConverter.toEntity(memory);
             if (entity == null) {
                 throw new RuntimeException("转换用户记忆实体失败");
             }
             
             userMemoryRepository.save(entity);
+            afterCommit(() -> {
+                memoryVectorIndex.index(memory.getUserId(), memory.getId(), memory.getContent());
+                memoryTextIndex.indexMemory(memory.getUserId(), memory.getId(), memory.getContent());
+            });
             log.debug("保存用户记忆: userId={}, memoryId={}, type={}", 
                 memory.getUserId(), memory.getId(), memory.getType());
         } catch (Exception e) {
@@ -428,11 +558,15 @@ public class MySQLLongMemoryService implements LongMemoryService {
             });
             
             List<UserMemoryEntity> entities = memories.stream()
-                .map(MemoryEntityConverter::toEntity)
+                .map(memoryEntityConverter::toEntity)
                 .filter(entity -> entity != null)
                 .collect(Collectors.toList());
             
             userMemoryRepository.saveAll(entities);
+            afterCommit(() -> memories.forEach(memory -> {
+                memoryVectorIndex.index(memory.getUserId(), memory.getId(), memory.getContent());
+                memoryTextIndex.indexMemory(memory.getUserId(), memory.getId(), memory.getContent());
+            }));
             log.debug("批量保存用户记忆: count={}", memories.size());
         } catch (Exception e) {
             log.error("批量保存用户记忆失败", e);
@@ -455,7 +589,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
             }
             
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(memory -> memory != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -471,16 +605,19 @@ public class MySQLLongMemoryService implements LongMemoryService {
         try {
             Optional<UserMemoryEntity> entityOpt = userMemoryRepository.findById(memoryId);
             if (entityOpt.isEmpty()) {
-                return null;
+                // 可能已被归档，被访问的记忆移回热表
+                entityOpt = Optional.ofNullable(restoreArchived(memoryId));
+                if (entityOpt.isEmpty()) {
+                    return null;
+                }
             }
             
-            UserMemory memory = MemoryEntityConverter.toModel(entityOpt.get());
+            UserMemory memory = memoryEntityConverter.toModel(entityOpt.get());
             if (memory != null) {
-                // 更新访问信息
+                // 访问信息由累加器批量写回
                 memory.setLastAccessedAt(Instant.now());
                 memory.setAccessCount((memory.getAccessCount() == null ? 0 : memory.getAccessCount()) + 1);
-                userMemoryRepository.updateAccessInfo(memoryId, 
-                    java.time.LocalDateTime.now());
+                memoryAccessRecorder.recordMemoryAccess(memoryId);
             }
             
             return memory;
@@ -502,6 +639,10 @@ public class MySQLLongMemoryService implements LongMemoryService {
             
             // 检查记忆是否存在
             Optional<UserMemoryEntity> existingOpt = userMemoryRepository.findById(memory.getId());
+            if (existingOpt.isEmpty()) {
+                // 已归档的记忆先移回热表再更新
+                existingOpt = Optional.ofNullable(restoreArchived(memory.getId()));
+            }
             if (existingOpt.isEmpty()) {
                 throw new RuntimeException("记忆不存在: memoryId=" + memory.getId());
             }
@@ -515,7 +656,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
             
             // 更新字段（保留创建时间）
             // 使用MemoryEntityConverter转换UserMemory到Entity，然后只更新需要的字段
-            UserMemoryEntity updateEntity = MemoryEntityConverter.toEntity(memory);
+            UserMemoryEntity updateEntity = memoryEntityConverter.toEntity(memory);
             if (updateEntity == null) {
                 throw new RuntimeException("转换记忆实体失败");
             }
@@ -528,6 +669,7 @@ public class MySQLLongMemoryService implements LongMemoryService {
             }
             if (memory.getContent() != null) {
                 existing.setContent(memory.getContent());
+                existing.setTokenCount(updateEntity.getTokenCount());
             }
             if (updateEntity.getStructuredData() != null) {
                 existing.setStructuredData(updateEntity.getStructuredData());
@@ -552,8 +694,16 @@ public class MySQLLongMemoryService implements LongMemoryService {
             if (memory.getAccessCount() != null) {
                 existing.setAccessCount(memory.getAccessCount());
             }
+            // 内容或类型变化后重新参与近似去重
+            if (memory.getContent() != null || memory.getType() != null) {
+                existing.setContentFingerprint(null);
+            }
             
             userMemoryRepository.save(existing);
+            afterCommit(() -> {
+                memoryVectorIndex.index(existing.getUserId(), existing.getId(), existing.getContent());
+                memoryTextIndex.indexMemory(existing.getUserId(), existing.getId(), existing.getContent());
+            });
             log.debug("更新记忆成功: memoryId={}", memory.getId());
         } catch (Exception e) {
             log.error("更新记忆失败: memoryId={}", memory.getId(), e);
@@ -568,11 +718,205 @@ public class MySQLLongMemoryService implements LongMemoryService {
     public void deleteMemory(String memoryId) {
         try {
             userMemoryRepository.deleteById(memoryId);
+            memoryArchive.delete(memoryId);
+            afterCommit(() -> {
+                memoryVectorIndex.remove(memoryId);
+                memoryTextIndex.removeMemory(memoryId);
+            });
             log.debug("删除记忆成功: memoryId={}", memoryId);
         } catch (Exception e) {
             log.error("删除记忆失败: memoryId={}", memoryId, e);
             throw new RuntimeException("删除记忆失败", e);
         }
     }
+    
+    // ========== 私有方法 ==========
+    
+    private <E extends Enum<E>> E parseEnum(Class<E> type, Object value, String name) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.toString());
+        } catch (IllegalArgumentException e) {
+            log.warn("无效的{}: {}", name, value);
+            return null;
+        }
+    }
+    
+    private Instant parseInstant(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        if (value instanceof Number number) {
+            return Instant.ofEpochMilli(number.longValue());
+        }
+        try {
+            return Instant.parse(value.toString());
+        } catch (Exception e) {
+            log.warn("无效的时间: {}", value);
+            return null;
+        }
+    }
+    
+    private static java.time.LocalDateTime toLocalDateTime(Instant instant) {
+        return instant != null ? java.time.LocalDateTime.ofInstant(instant, java.time.ZoneId.systemDefault()) : null;
+    }
+    
+    /**
+     * 通过向量索引检索，结果按相似度排序
+     */
+    private List<UserMemory> retrieveBySimilarity(String userId, String query, int limit) {
+        List<HnswIndex.Hit> hits = memoryVectorIndex.search(userId, query, limit);
+        if (hits == null || hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> ids = hits.stream().map(HnswIndex.Hit::getId).collect(Collectors.toList());
+        return loadInOrder(userId, ids);
+    }
+    
+    /**
+     * 通过全文索引检索记忆，结果按BM25分数排序
+     */
+    private List<UserMemory> retrieveByKeyword(String userId, String query, int limit) {
+        List<InvertedIndex.Hit> hits = memoryTextIndex.searchMemories(userId, query, limit);
+        if (hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> ids = hits.stream().map(InvertedIndex.Hit::getId).collect(Collectors.toList());
+        return loadInOrder(userId, ids);
+    }
+    
+    /**
+     * 通过全文索引检索事实，结果按BM25分数排序
+     */
+    private List<UserFact> searchFactsByIndex(String userId, String query) {
+        List<InvertedIndex.Hit> hits = memoryTextIndex.searchFacts(userId, query, FACT_SEARCH_LIMIT);
+        if (hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> ids = hits.stream().map(InvertedIndex.Hit::getId).collect(Collectors.toList());
+        Map<String, UserFactEntity> entitiesById = userFactRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(UserFactEntity::getId, Function.identity()));
+        
+        List<UserFact> facts = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            UserFactEntity entity = entitiesById.get(id);
+            if (entity != null && userId.equals(entity.getUserId())) {
+                UserFact fact = memoryEntityConverter.toModel(entity);
+                if (fact != null) {
+                    facts.add(fact);
+                }
+            }
+        }
+        return facts;
+    }
+    
+    /**
+     * 按给定ID顺序加载记忆；已不存在的ID从向量索引和全文索引中清理
+     */
+    private List<UserMemory> loadInOrder(String userId, List<String> ids) {
+        Map<String, UserMemoryEntity> entitiesById = userMemoryRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(UserMemoryEntity::getId, Function.identity()));
+        
+        List<UserMemory> memories = new ArrayList<>(ids.size());
+        List<String> staleIds = new ArrayList<>();
+        for (String id : ids) {
+            UserMemoryEntity entity = entitiesById.get(id);
+            if (entity == null || !userId.equals(entity.getUserId())) {
+                staleIds.add(id);
+                continue;
+            }
+            UserMemory memory = memoryEntityConverter.toModel(entity);
+            if (memory != null) {
+                memories.add(memory);
+            }
+        }
+        if (!staleIds.isEmpty()) {
+            memoryVectorIndex.removeStale(userId, staleIds);
+            staleIds.forEach(memoryTextIndex::removeMemory);
+        }
+        return memories;
+    }
+    
+    /**
+     * 记录检索结果的访问，由累加器批量写回访问次数和最后访问时间
+     */
+    private List<UserMemory> recordAccess(List<UserMemory> memories) {
+        memoryAccessRecorder.recordMemoryAccess(
+            memories.stream().map(UserMemory::getId).collect(Collectors.toList()));
+        return memories;
+    }
+    
+    /**
+     * 按倒数排名融合语义与关键词两路结果，取前limit条
+     */
+    private List<UserMemory> fuseRelevant(List<UserMemory> semantic, List<UserMemory> keyword, int limit) {
+        if (semantic.isEmpty() || keyword.isEmpty()) {
+            return semantic.isEmpty() ? keyword : semantic;
+        }
+        Map<String, UserMemory> byId = new HashMap<>();
+        semantic.forEach(memory -> byId.put(memory.getId(), memory));
+        keyword.forEach(memory -> byId.putIfAbsent(memory.getId(), memory));
+        List<List<String>> rankings = List.of(
+            semantic.stream().map(UserMemory::getId).collect(Collectors.toList()),
+            keyword.stream().map(UserMemory::getId).collect(Collectors.toList()));
+        return RankFusion.fuse(rankings, new double[] {1.0, 1.0}, RELEVANT_RRF_K, limit).stream()
+            .map(scored -> byId.get(scored.getId()))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * 把归档记忆移回热表，提交后重新写入内存索引
+     */
+    private UserMemoryEntity restoreArchived(String memoryId) {
+        UserMemoryEntity restored = memoryArchiver.restore(memoryId);
+        if (restored != null) {
+            afterCommit(() -> {
+                memoryVectorIndex.index(restored.getUserId(), restored.getId(), restored.getContent());
+                memoryTextIndex.indexMemory(restored.getUserId(), restored.getId(), restored.getContent());
+            });
+        }
+        return restored;
+    }
+    
+    /**
+     * 热数据命中不足时用归档记忆补足
+     */
+    private List<UserMemory> withArchived(String userId, String query, List<UserMemory> hot, int limit) {
+        if (hot.size() >= limit) {
+            return hot;
+        }
+        List<UserMemory> archived = memoryArchive.search(userId, query, limit - hot.size());
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<String> hotIds = hot.stream().map(UserMemory::getId).collect(Collectors.toSet());
+        List<UserMemory> merged = new ArrayList<>(hot);
+        archived.stream().filter(memory -> !hotIds.contains(memory.getId())).forEach(merged::add);
+        return merged;
+    }
+    
+    /**
+     * 在事务提交后执行（没有事务时立即执行），避免回滚的数据进入内存索引
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
 
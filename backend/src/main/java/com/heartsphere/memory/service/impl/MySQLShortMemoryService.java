@@ -1,15 +1,15 @@
 package com.heartsphere.memory.service.impl;
 
+import com.heartsphere.memory.buffer.ChatMessageWriteBuffer;
+import com.heartsphere.memory.cache.SessionHistoryCache;
+import com.heartsphere.memory.cache.WorkingMemoryStore;
 import com.heartsphere.memory.entity.ChatMessageEntity;
 import com.heartsphere.memory.entity.SessionEntity;
-import com.heartsphere.memory.entity.WorkingMemoryEntity;
 import com.heartsphere.memory.model.ChatMessage;
 import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
 import com.heartsphere.memory.repository.jpa.SessionRepository;
-import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
 import com.heartsphere.memory.service.ShortMemoryService;
 import com.heartsphere.memory.util.MemoryEntityConverter;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
@@ -18,9 +18,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -39,17 +41,19 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     
     private final ChatMessageRepository chatMessageRepository;
     private final SessionRepository sessionRepository;
-    private final WorkingMemoryRepository workingMemoryRepository;
-    private final ObjectMapper objectMapper;
-    
-    // 配置参数
-    private static final int MAX_MESSAGES_PER_SESSION = 100;      // 最多100条消息
-    private static final int DEFAULT_MESSAGE_TTL_DAYS = 7;        // 7天过期
+    private final ChatMessageWriteBuffer chatMessageWriteBuffer;
+    private final SessionHistoryCache sessionHistoryCache;
+    private final WorkingMemoryStore workingMemoryStore;
+    private final MemoryEntityConverter memoryEntityConverter;
     
     // ========== 消息管理 ==========
     
+    /**
+     * 保存消息
+     * 消息进入写缓冲后立即返回，由后台批量落库并完成超量裁剪和会话索引更新；
+     * 未启用写缓冲时在当前线程以同样的方式写入
+     */
     @Override
-    @Transactional
     public void saveMessage(String sessionId, ChatMessage message) {
         try {
             // 如果没有ID，生成一个
@@ -66,26 +70,16 @@ public class MySQLShortMemoryService implements ShortMemoryService {
             message.setSessionId(sessionId);
             
             // 转换为实体并保存
-            ChatMessageEntity entity = MemoryEntityConverter.toEntity(message);
+            ChatMessageEntity entity = memoryEntityConverter.toEntity(message);
             if (entity == null) {
                 throw new RuntimeException("转换消息实体失败");
             }
+            message.setTokenCount(entity.getTokenCount());
             
-            chatMessageRepository.save(entity);
-            
-            // 限制消息数量（遵循容量限制原则）
-            long count = chatMessageRepository.countBySessionId(sessionId);
-            if (count > MAX_MESSAGES_PER_SESSION) {
-                // 删除最旧的消息
-                Pageable pageable = PageRequest.of(0, (int)(count - MAX_MESSAGES_PER_SESSION));
-                List<ChatMessageEntity> oldMessages = chatMessageRepository
-                    .findBySessionIdOrderByTimestampDesc(sessionId, pageable);
-                chatMessageRepository.deleteAll(oldMessages);
-                log.debug("会话 {} 消息数量超过限制，删除最旧消息", sessionId);
+            if (!chatMessageWriteBuffer.append(entity)) {
+                chatMessageWriteBuffer.writeNow(entity);
             }
-            
-            // 更新或创建会话索引
-            updateSessionIndex(sessionId, message.getUserId());
+            sessionHistoryCache.append(sessionId, message);
             
             log.debug("保存消息到短期记忆: sessionId={}, messageId={}", sessionId, message.getId());
         } catch (Exception e) {
@@ -97,14 +91,10 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Override
     public List<ChatMessage> getMessages(String sessionId, int limit) {
         try {
-            Pageable pageable = PageRequest.of(0, limit);
-            List<ChatMessageEntity> entities = chatMessageRepository
-                .findBySessionIdOrderByTimestampDesc(sessionId, pageable);
-            
-            return entities.stream()
-                .map(MemoryEntityConverter::toModel)
-                .filter(msg -> msg != null)
-                .collect(Collectors.toList());
+            if (sessionHistoryCache.isEnabled()) {
+                return sessionHistoryCache.getRecent(sessionId, limit, this::loadRecentMessages);
+            }
+            return loadRecentMessages(sessionId, limit);
         } catch (Exception e) {
             log.error("获取消息失败: sessionId={}", sessionId, e);
             return Collections.emptyList();
@@ -117,11 +107,22 @@ public class MySQLShortMemoryService implements ShortMemoryService {
             long startTimestamp = startTime.toEpochMilli();
             long endTimestamp = endTime.toEpochMilli();
             
-            List<ChatMessageEntity> entities = chatMessageRepository
-                .findBySessionIdAndTimestampBetween(sessionId, startTimestamp, endTimestamp);
+            if (sessionHistoryCache.isEnabled()) {
+                List<ChatMessage> cached = sessionHistoryCache.getRange(sessionId, startTimestamp, endTimestamp);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            
+            List<ChatMessageEntity> pending = chatMessageWriteBuffer.pendingMessages(sessionId).stream()
+                .filter(entity -> entity.getTimestamp() >= startTimestamp && entity.getTimestamp() <= endTimestamp)
+                .collect(Collectors.toList());
+            List<ChatMessageEntity> entities = mergeById(pending, chatMessageRepository
+                .findBySessionIdAndTimestampBetween(sessionId, startTimestamp, endTimestamp),
+                Comparator.comparing(ChatMessageEntity::getTimestamp));
             
             return entities.stream()
-                .map(MemoryEntityConverter::toModel)
+                .map(memoryEntityConverter::toModel)
                 .filter(msg -> msg != null)
                 .collect(Collectors.toList());
         } catch (Exception e) {
@@ -134,7 +135,10 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Transactional
     public void deleteMessage(String sessionId, String messageId) {
         try {
+            // 先把缓冲消息落库，避免删除后又被写入
+            chatMessageWriteBuffer.flush();
             chatMessageRepository.deleteBySessionIdAndId(sessionId, messageId);
+            sessionHistoryCache.remove(sessionId, messageId);
             log.debug("删除消息: sessionId={}, messageId={}", sessionId, messageId);
         } catch (Exception e) {
             log.error("删除消息失败: sessionId={}, messageId={}", sessionId, messageId, e);
@@ -145,11 +149,15 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Transactional
     public void clearSession(String sessionId) {
         try {
+            // 先把缓冲消息落库，避免删除后又被写入
+            chatMessageWriteBuffer.flush();
+            
             // 删除所有消息
             chatMessageRepository.deleteBySessionId(sessionId);
+            sessionHistoryCache.invalidate(sessionId);
             
             // 删除所有工作记忆
-            workingMemoryRepository.deleteBySessionId(sessionId);
+            workingMemoryStore.clearSession(sessionId);
             
             log.debug("清空会话记忆: sessionId={}", sessionId);
         } catch (Exception e) {
@@ -163,27 +171,7 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Transactional
     public void saveWorkingMemory(String sessionId, String key, Object value) {
         try {
-            Optional<WorkingMemoryEntity> existing = workingMemoryRepository
-                .findBySessionIdAndMemoryKey(sessionId, key);
-            
-            String valueJson = objectMapper.writeValueAsString(value);
-            LocalDateTime expiresAt = LocalDateTime.now().plusHours(24);
-            
-            if (existing.isPresent()) {
-                WorkingMemoryEntity entity = existing.get();
-                entity.setMemoryValue(valueJson);
-                entity.setExpiresAt(expiresAt);
-                workingMemoryRepository.save(entity);
-            } else {
-                WorkingMemoryEntity entity = WorkingMemoryEntity.builder()
-                    .sessionId(sessionId)
-                    .memoryKey(key)
-                    .memoryValue(valueJson)
-                    .expiresAt(expiresAt)
-                    .build();
-                workingMemoryRepository.save(entity);
-            }
-            
+            workingMemoryStore.put(sessionId, key, value);
             log.debug("保存工作记忆: sessionId={}, key={}", sessionId, key);
         } catch (Exception e) {
             log.error("保存工作记忆失败: sessionId={}, key={}", sessionId, key, e);
@@ -193,26 +181,7 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Override
     public <T> T getWorkingMemory(String sessionId, String key, Class<T> type) {
         try {
-            Optional<WorkingMemoryEntity> entityOpt = workingMemoryRepository
-                .findBySessionIdAndMemoryKey(sessionId, key);
-            
-            if (entityOpt.isEmpty()) {
-                return null;
-            }
-            
-            WorkingMemoryEntity entity = entityOpt.get();
-            
-            // 检查是否过期
-            if (entity.getExpiresAt() != null && entity.getExpiresAt().isBefore(LocalDateTime.now())) {
-                workingMemoryRepository.delete(entity);
-                return null;
-            }
-            
-            if (entity.getMemoryValue() == null || entity.getMemoryValue().isEmpty()) {
-                return null;
-            }
-            
-            return objectMapper.readValue(entity.getMemoryValue(), type);
+            return workingMemoryStore.get(sessionId, key, type);
         } catch (Exception e) {
             log.error("获取工作记忆失败: sessionId={}, key={}", sessionId, key, e);
             return null;
@@ -223,13 +192,8 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Transactional
     public void deleteWorkingMemory(String sessionId, String key) {
         try {
-            Optional<WorkingMemoryEntity> entityOpt = workingMemoryRepository
-                .findBySessionIdAndMemoryKey(sessionId, key);
-            
-            if (entityOpt.isPresent()) {
-                workingMemoryRepository.delete(entityOpt.get());
-                log.debug("删除工作记忆: sessionId={}, key={}", sessionId, key);
-            }
+            workingMemoryStore.remove(sessionId, key);
+            log.debug("删除工作记忆: sessionId={}, key={}", sessionId, key);
         } catch (Exception e) {
             log.error("删除工作记忆失败: sessionId={}, key={}", sessionId, key, e);
         }
@@ -240,7 +204,8 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Override
     public boolean sessionExists(String sessionId) {
         try {
-            return chatMessageRepository.countBySessionId(sessionId) > 0;
+            return chatMessageWriteBuffer.pendingCount(sessionId) > 0
+                || chatMessageRepository.countBySessionId(sessionId) > 0;
         } catch (Exception e) {
             log.error("检查会话存在性失败: sessionId={}", sessionId, e);
             return false;
@@ -272,7 +237,8 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     @Override
     public int getMessageCount(String sessionId) {
         try {
-            return (int) chatMessageRepository.countBySessionId(sessionId);
+            return (int) chatMessageRepository.countBySessionId(sessionId)
+                + chatMessageWriteBuffer.pendingCount(sessionId);
         } catch (Exception e) {
             log.error("获取消息数量失败: sessionId={}", sessionId, e);
             return 0;
@@ -292,31 +258,39 @@ public class MySQLShortMemoryService implements ShortMemoryService {
     // ========== 私有方法 ==========
     
     /**
-     * 更新或创建会话索引
+     * 从写缓冲和数据库读取最近的消息，按时间戳倒序
      */
-    @Transactional
-    private void updateSessionIndex(String sessionId, String userId) {
-        try {
-            Optional<SessionEntity> existing = sessionRepository.findBySessionId(sessionId);
-            
-            LocalDateTime expiresAt = LocalDateTime.now().plusDays(DEFAULT_MESSAGE_TTL_DAYS);
-            
-            if (existing.isPresent()) {
-                SessionEntity entity = existing.get();
-                entity.setUpdatedAt(LocalDateTime.now());
-                entity.setExpiresAt(expiresAt);
-                sessionRepository.save(entity);
-            } else {
-                SessionEntity entity = SessionEntity.builder()
-                    .sessionId(sessionId)
-                    .userId(userId)
-                    .expiresAt(expiresAt)
-                    .build();
-                sessionRepository.save(entity);
-            }
-        } catch (Exception e) {
-            log.warn("更新会话索引失败: sessionId={}, userId={}", sessionId, userId, e);
+    private List<ChatMessage> loadRecentMessages(String sessionId, int limit) {
+        // 写缓冲中的消息一定比已落库的新
+        List<ChatMessageEntity> pending = chatMessageWriteBuffer.pendingMessages(sessionId);
+        List<ChatMessageEntity> entities = pending;
+        if (pending.size() < limit) {
+            Pageable pageable = PageRequest.of(0, limit);
+            entities = mergeById(pending, chatMessageRepository
+                .findBySessionIdOrderByTimestampDesc(sessionId, pageable),
+                Comparator.comparing(ChatMessageEntity::getTimestamp).reversed());
         }
+        
+        return entities.stream()
+            .limit(limit)
+            .map(memoryEntityConverter::toModel)
+            .filter(msg -> msg != null)
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * 合并写缓冲与数据库中的消息并排序；刚提交的消息可能同时出现在两边，按ID去重
+     */
+    private List<ChatMessageEntity> mergeById(
+            List<ChatMessageEntity> pending,
+            List<ChatMessageEntity> stored,
+            Comparator<ChatMessageEntity> order) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        Map<String, ChatMessageEntity> merged = new LinkedHashMap<>();
+        pending.forEach(entity -> merged.put(entity.getId(), entity));
+        stored.forEach(entity -> merged.putIfAbsent(entity.getId(), entity));
+        return merged.values().stream().sorted(order).collect(Collectors.toList());
     }
 }
-
@@ -4,6 +4,7 @@ import com.heartsphere.memory.model.*;
 import com.heartsphere.memory.model.character.CharacterInteractionMemory;
 import com.heartsphere.memory.model.character.CharacterSceneMemory;
 import com.heartsphere.memory.service.MemoryExtractor;
+import com.heartsphere.memory.text.KeywordAutomaton;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,6 +19,7 @@ import java.util.stream.Collectors;
 /**
  * 基于规则的记忆提取器实现
  * 使用规则和正则表达式从对话中提取用户事实、偏好和记忆
+ * 先用关键词自动机一次遍历找出所有触发词，只在触发词附近运行正则，长文本中没有触发词的部分不再被反复扫描
  * 作为LLM提取的备用方案
  * 
  * @author HeartSphere
@@ -67,6 +69,46 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
         "(?:我|我的)?(?:习惯|经常|总是)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z\\s]{2,30})"
     );
     
+    private static final Pattern IMPORTANT_SENTENCE_PATTERN = Pattern.compile(
+        "([^。！？]*生日|纪念日|重要[^。！？]*[。！？])"
+    );
+    
+    // 触发词分组：每个模式的匹配都包含本组的一个触发词，且匹配起点在触发词之前至多 *_LEAD 个字符
+    private static final int NAME = 0;
+    private static final int AGE = 1;
+    private static final int BIRTHDAY = 2;
+    private static final int LOCATION = 3;
+    private static final int JOB = 4;
+    private static final int LIKE = 5;
+    private static final int DISLIKE = 6;
+    private static final int HABIT = 7;
+    private static final int BIRTHDAY_MOMENT = 8;
+    private static final int OTHER_MOMENT = 9;
+    private static final int SENTENCE_END = 10;
+    
+    private static final int NAME_LEAD = 2;       // 我的
+    private static final int AGE_LEAD = 7;        // 今年 + 已经 + 三位数字
+    private static final int BIRTHDAY_LEAD = 2;   // 我的
+    private static final int JOB_LEAD = 2;        // 我的
+    private static final int HABIT_LEAD = 2;      // 我的
+    
+    /**
+     * 所有触发词和句末标点的自动机，一次遍历得到全部位置
+     */
+    private static final KeywordAutomaton TRIGGERS = KeywordAutomaton.builder()
+        .add(NAME, "名字", "姓名", "叫")
+        .add(AGE, "岁")
+        .add(BIRTHDAY, "生日", "出生日期")
+        .add(LOCATION, "我在", "我住在", "我来自")
+        .add(JOB, "工作", "职业", "是")
+        .add(LIKE, "我喜欢", "我爱好", "我爱", "我偏好")
+        .add(DISLIKE, "我不喜欢", "我讨厌", "我厌恶")
+        .add(HABIT, "习惯", "经常", "总是")
+        .add(BIRTHDAY_MOMENT, "生日")
+        .add(OTHER_MOMENT, "纪念日", "重要")
+        .add(SENTENCE_END, "。", "！", "？")
+        .build();
+    
     // ========== 提取用户事实 ==========
     
     @Override
@@ -89,23 +131,25 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
                 return Collections.emptyList();
             }
             
+            int[][] triggers = TRIGGERS.scan(allText);
+            
             // 提取姓名
-            extractName(allText, userId, messages, facts);
+            extractName(allText, triggers, userId, messages, facts);
             
             // 提取年龄
-            extractAge(allText, userId, messages, facts);
+            extractAge(allText, triggers, userId, messages, facts);
             
             // 提取生日
-            extractBirthday(allText, userId, messages, facts);
+            extractBirthday(allText, triggers, userId, messages, facts);
             
             // 提取位置
-            extractLocation(allText, userId, messages, facts);
+            extractLocation(allText, triggers, userId, messages, facts);
             
             // 提取职业
-            extractJob(allText, userId, messages, facts);
+            extractJob(allText, triggers, userId, messages, facts);
             
             // 提取习惯
-            extractHabits(allText, userId, messages, facts);
+            extractHabits(allText, triggers, userId, messages, facts);
             
             // 验证和清理
             return validateAndCleanFacts(facts);
@@ -119,9 +163,9 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取姓名
      */
-    private void extractName(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = NAME_PATTERN.matcher(text);
-        if (matcher.find()) {
+    private void extractName(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        Matcher matcher = findNear(NAME_PATTERN, text, 0, triggers[NAME], NAME_LEAD);
+        if (matcher != null) {
             String name = matcher.group(1);
             UserFact fact = UserFact.builder()
                 .userId(userId)
@@ -143,9 +187,9 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取年龄
      */
-    private void extractAge(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = AGE_PATTERN.matcher(text);
-        if (matcher.find()) {
+    private void extractAge(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        Matcher matcher = findNear(AGE_PATTERN, text, 0, triggers[AGE], AGE_LEAD);
+        if (matcher != null) {
             String ageStr = matcher.group(1);
             try {
                 int age = Integer.parseInt(ageStr);
@@ -174,9 +218,9 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取生日
      */
-    private void extractBirthday(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = BIRTHDAY_PATTERN.matcher(text);
-        if (matcher.find()) {
+    private void extractBirthday(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        Matcher matcher = findNear(BIRTHDAY_PATTERN, text, 0, triggers[BIRTHDAY], BIRTHDAY_LEAD);
+        if (matcher != null) {
             String year = matcher.group(1);
             String month = matcher.group(2);
             String day = matcher.group(3);
@@ -202,9 +246,9 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取位置
      */
-    private void extractLocation(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = LOCATION_PATTERN.matcher(text);
-        if (matcher.find()) {
+    private void extractLocation(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        Matcher matcher = findNear(LOCATION_PATTERN, text, 0, triggers[LOCATION], 0);
+        if (matcher != null) {
             String location = matcher.group(1);
             UserFact fact = UserFact.builder()
                 .userId(userId)
@@ -226,9 +270,9 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取职业
      */
-    private void extractJob(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = JOB_PATTERN.matcher(text);
-        if (matcher.find()) {
+    private void extractJob(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        Matcher matcher = findNear(JOB_PATTERN, text, 0, triggers[JOB], JOB_LEAD);
+        if (matcher != null) {
             String job = matcher.group(1);
             UserFact fact = UserFact.builder()
                 .userId(userId)
@@ -250,9 +294,10 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取习惯
      */
-    private void extractHabits(String text, String userId, List<ChatMessage> messages, List<UserFact> facts) {
-        Matcher matcher = HABIT_PATTERN.matcher(text);
-        while (matcher.find()) {
+    private void extractHabits(String text, int[][] triggers, String userId, List<ChatMessage> messages, List<UserFact> facts) {
+        for (Matcher matcher = findNear(HABIT_PATTERN, text, 0, triggers[HABIT], HABIT_LEAD);
+                matcher != null;
+                matcher = findNear(HABIT_PATTERN, text, matcher.end(), triggers[HABIT], HABIT_LEAD)) {
             String habit = matcher.group(1);
             UserFact fact = UserFact.builder()
                 .userId(userId)
@@ -292,11 +337,13 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
                 return Collections.emptyList();
             }
             
+            int[][] triggers = TRIGGERS.scan(allText);
+            
             // 提取喜欢的事物
-            extractLikes(allText, userId, preferences);
+            extractLikes(allText, triggers, userId, preferences);
             
             // 提取不喜欢的事物
-            extractDislikes(allText, userId, preferences);
+            extractDislikes(allText, triggers, userId, preferences);
             
             // 验证和清理
             return validateAndCleanPreferences(preferences);
@@ -310,10 +357,11 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取喜欢的事物
      */
-    private void extractLikes(String text, String userId, List<UserPreference> preferences) {
-        Matcher matcher = LIKE_PATTERN.matcher(text);
+    private void extractLikes(String text, int[][] triggers, String userId, List<UserPreference> preferences) {
         int index = 0;
-        while (matcher.find()) {
+        for (Matcher matcher = findNear(LIKE_PATTERN, text, 0, triggers[LIKE], 0);
+                matcher != null;
+                matcher = findNear(LIKE_PATTERN, text, matcher.end(), triggers[LIKE], 0)) {
             String like = matcher.group(1).trim();
             UserPreference preference = UserPreference.builder()
                 .userId(userId)
@@ -333,10 +381,11 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     /**
      * 提取不喜欢的事物
      */
-    private void extractDislikes(String text, String userId, List<UserPreference> preferences) {
-        Matcher matcher = DISLIKE_PATTERN.matcher(text);
+    private void extractDislikes(String text, int[][] triggers, String userId, List<UserPreference> preferences) {
         int index = 0;
-        while (matcher.find()) {
+        for (Matcher matcher = findNear(DISLIKE_PATTERN, text, 0, triggers[DISLIKE], 0);
+                matcher != null;
+                matcher = findNear(DISLIKE_PATTERN, text, matcher.end(), triggers[DISLIKE], 0)) {
             String dislike = matcher.group(1).trim();
             UserPreference preference = UserPreference.builder()
                 .userId(userId)
@@ -376,13 +425,15 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
                 return Collections.emptyList();
             }
             
+            int[][] triggers = TRIGGERS.scan(allText);
+            
             // 提取重要时刻（包含"生日"、"纪念日"等关键词）
-            if (allText.contains("生日") || allText.contains("纪念日") || allText.contains("重要")) {
+            if (triggers[BIRTHDAY_MOMENT].length > 0 || triggers[OTHER_MOMENT].length > 0) {
                 UserMemory memory = UserMemory.builder()
                     .userId(userId)
                     .type(MemoryType.IMPORTANT_MOMENT)
                     .importance(MemoryImportance.IMPORTANT)
-                    .content("用户提到了重要时刻：" + extractRelevantSentence(allText, "生日|纪念日|重要"))
+                    .content("用户提到了重要时刻：" + extractImportantSentence(allText, triggers))
                     .source(MemorySource.CONVERSATION)
                     .sourceId(getSessionId(messages))
                     .confidence(0.6)
@@ -565,18 +616,62 @@ public class RuleBasedMemoryExtractor implements MemoryExtractor {
     }
     
     /**
-     * 提取包含关键词的句子
+     * 从from开始查找模式的下一个匹配，结果与 pattern.matcher(text).find(from) 相同
+     * 模式的每个匹配都包含一个触发词，且起点在触发词之前至多maxLead个字符，
+     * 因此只需按升序在各触发词附近尝试锚定匹配，第一个成功的就是最左匹配；没有触发词时不扫描文本
+     *
+     * @param triggerStarts 触发词起始位置（升序）
+     * @return 匹配成功的Matcher，没有匹配时返回null
      */
-    private String extractRelevantSentence(String text, String keywordPattern) {
-        Pattern pattern = Pattern.compile("([^。！？]*" + keywordPattern + "[^。！？]*[。！？])");
-        Matcher matcher = pattern.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    private static Matcher findNear(Pattern pattern, String text, int from, int[] triggerStarts, int maxLead) {
+        Matcher matcher = null;
+        int tried = from - 1;
+        for (int trigger : triggerStarts) {
+            if (trigger < from) {
+                continue;
+            }
+            for (int start = Math.max(tried + 1, trigger - maxLead); start <= trigger; start++) {
+                if (matcher == null) {
+                    matcher = pattern.matcher(text);
+                }
+                matcher.region(start, text.length());
+                if (matcher.lookingAt()) {
+                    return matcher;
+                }
+            }
+            tried = trigger;
+        }
+        return null;
+    }
+    
+    /**
+     * 提取包含"生日|纪念日|重要"的句子
+     * 按 IMPORTANT_SENTENCE_PATTERN 的最左匹配取句：生日分支从所在句子的开头开始匹配，
+     * 纪念日/重要分支从关键词处开始匹配，候选起点都由触发词和句末标点的位置得到
+     */
+    private String extractImportantSentence(String text, int[][] triggers) {
+        int[] sentenceEnds = triggers[SENTENCE_END];
+        TreeSet<Integer> candidates = new TreeSet<>();
+        for (int start : triggers[BIRTHDAY_MOMENT]) {
+            // 所在句子的开头：前一个句末标点之后
+            int index = Arrays.binarySearch(sentenceEnds, start);
+            int previous = -(index + 1) - 1;
+            candidates.add(previous >= 0 ? sentenceEnds[previous] + 1 : 0);
+        }
+        for (int start : triggers[OTHER_MOMENT]) {
+            candidates.add(start);
+        }
+        Matcher matcher = IMPORTANT_SENTENCE_PATTERN.matcher(text);
+        for (int start : candidates) {
+            matcher.region(start, text.length());
+            if (matcher.lookingAt()) {
+                return matcher.group(1).trim();
+            }
         }
         // 如果找不到完整句子，返回包含关键词的部分
         int maxLength = 50;
-        int index = text.indexOf(keywordPattern.split("\\|")[0]);
-        if (index != -1) {
+        if (triggers[BIRTHDAY_MOMENT].length > 0) {
+            int index = triggers[BIRTHDAY_MOMENT][0];
             int start = Math.max(0, index - 20);
             int end = Math.min(text.length(), index + 30);
             return text.substring(start, end).trim();
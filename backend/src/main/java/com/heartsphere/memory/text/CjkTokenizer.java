@@ -0,0 +1,90 @@
+package com.heartsphere.memory.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 中文友好的分词器
+ * 连续的中日韩字符切分为单字和相邻二字，拉丁字母/数字按单词切分并转小写，标点与空白作为分隔符。
+ * 建索引时同时输出单字和二字词项；查询时长度不小于2的汉字串只输出二字词项，
+ * 单个汉字才输出单字词项，既支持单字检索，又避免常用字拉低排序精度。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class CjkTokenizer {
+
+    private CjkTokenizer() {
+    }
+
+    /**
+     * 切分建索引用的词项
+     */
+    public static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * 切分查询用的词项
+     */
+    public static List<String> tokenizeForQuery(String text) {
+        return tokenize(text, true);
+    }
+
+    private static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        List<String> run = new ArrayList<>();
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                run.add(new String(Character.toChars(cp)));
+                continue;
+            }
+            flushRun(run, tokens, query);
+            if (Character.isLetterOrDigit(cp)) {
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                flushWord(word, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        flushRun(run, tokens, query);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushRun(List<String> run, List<String> tokens, boolean query) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (!query || run.size() == 1) {
+            tokens.addAll(run);
+        }
+        for (int i = 1; i < run.size(); i++) {
+            tokens.add(run.get(i - 1) + run.get(i));
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,387 @@
+package com.heartsphere.memory.text;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * BM25倒排索引（单用户）
+ * 倒排表按词项保存为基本类型数组（文档号、词频），文档号随写入递增，倒排表天然有序；
+ * 删除与替换采用标记删除并即时维护文档频率，删除比例过高时整体压缩。
+ * 读写锁保护，查询可并发执行。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class InvertedIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int COMPACT_MIN_SIZE = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ========== 词项 ==========
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[][] postingDocs = new int[INITIAL_CAPACITY][];
+    private int[][] postingFreqs = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    /** 只统计未删除文档 */
+    private int[] docFreqs = new int[INITIAL_CAPACITY];
+    private int termCount;
+
+    // ========== 文档 ==========
+
+    private final Map<String, Integer> docByKey = new HashMap<>();
+    private String[] docKeys = new String[INITIAL_CAPACITY];
+    private int[] docLengths = new int[INITIAL_CAPACITY];
+    /** 文档内容的SHA-256摘要，用于跳过未变化的内容 */
+    private byte[][] docDigests = new byte[INITIAL_CAPACITY][];
+    /** 文档包含的去重词项，删除时用于维护文档频率 */
+    private int[][] docTerms = new int[INITIAL_CAPACITY][];
+    private final BitSet deleted = new BitSet();
+    private int docCount;
+    private int liveDocs;
+    private long totalLength;
+
+    /**
+     * 添加或替换文档；内容未变化时直接跳过
+     *
+     * @param key 文档主键
+     * @param text 文档内容
+     */
+    public void add(String key, String text) {
+        List<String> tokens = CjkTokenizer.tokenizeForIndex(text);
+        byte[] digest = digest(text);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = docByKey.get(key);
+            if (existing != null && MessageDigest.isEqual(docDigests[existing], digest)) {
+                return;
+            }
+            // 替换同样留下已删除的旧文档，需要和删除一样检查是否压缩
+            if (removeInternal(key)) {
+                maybeCompact();
+            }
+            if (tokens.isEmpty()) {
+                return;
+            }
+
+            Map<String, int[]> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.computeIfAbsent(token, t -> new int[1])[0]++;
+            }
+
+            int doc = docCount++;
+            ensureDocCapacity(docCount);
+            int[] terms = new int[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                int term = termId(entry.getKey());
+                appendPosting(term, doc, entry.getValue()[0]);
+                docFreqs[term]++;
+                terms[i++] = term;
+            }
+
+            docKeys[doc] = key;
+            docLengths[doc] = tokens.size();
+            docDigests[doc] = digest;
+            docTerms[doc] = terms;
+            docByKey.put(key, doc);
+            liveDocs++;
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     *
+     * @param key 文档主键
+     * @return 文档是否存在
+     */
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removeInternal(key);
+            if (removed) {
+                maybeCompact();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25检索
+     *
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @return 按BM25分数降序的结果
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(CjkTokenizer.tokenizeForQuery(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / liveDocs;
+            double[] scores = new double[docCount];
+            int[] candidates = new int[docCount];
+            int candidateCount = 0;
+
+            for (String token : queryTerms) {
+                Integer term = termIds.get(token);
+                if (term == null || docFreqs[term] == 0) {
+                    continue;
+                }
+                int df = docFreqs[term];
+                double idf = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+                int[] docs = postingDocs[term];
+                int[] freqs = postingFreqs[term];
+                for (int i = 0; i < postingSizes[term]; i++) {
+                    int doc = docs[i];
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    double tf = freqs[i];
+                    double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLengths[doc] / avgLength));
+                    if (scores[doc] == 0) {
+                        candidates[candidateCount++] = doc;
+                    }
+                    scores[doc] += idf * norm;
+                }
+            }
+            return topK(scores, candidates, candidateCount, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return docByKey.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== 内部实现 ==========
+
+    private boolean removeInternal(String key) {
+        Integer doc = docByKey.remove(key);
+        if (doc == null) {
+            return false;
+        }
+        deleted.set(doc);
+        for (int term : docTerms[doc]) {
+            docFreqs[term]--;
+        }
+        docTerms[doc] = null;
+        docKeys[doc] = null;
+        docDigests[doc] = null;
+        liveDocs--;
+        totalLength -= docLengths[doc];
+        return true;
+    }
+
+    private List<Hit> topK(double[] scores, int[] candidates, int candidateCount, int limit) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (a, b) -> compareAscending(scores, a, b));
+        for (int i = 0; i < candidateCount; i++) {
+            int doc = candidates[i];
+            if (heap.size() < limit) {
+                heap.offer(doc);
+            } else if (compareAscending(scores, doc, heap.peek()) > 0) {
+                heap.poll();
+                heap.offer(doc);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int doc = heap.poll();
+            hits.add(new Hit(docKeys[doc], scores[doc]));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    /**
+     * 分数升序；分数相同时较新的文档（文档号大）排在后面，即优先保留
+     */
+    private static int compareAscending(double[] scores, int a, int b) {
+        int byScore = Double.compare(scores[a], scores[b]);
+        return byScore != 0 ? byScore : Integer.compare(a, b);
+    }
+
+    private static byte[] digest(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private int termId(String token) {
+        Integer term = termIds.get(token);
+        if (term != null) {
+            return term;
+        }
+        int id = termCount++;
+        if (termCount > postingSizes.length) {
+            int capacity = postingSizes.length * 2;
+            postingDocs = Arrays.copyOf(postingDocs, capacity);
+            postingFreqs = Arrays.copyOf(postingFreqs, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+            docFreqs = Arrays.copyOf(docFreqs, capacity);
+        }
+        postingDocs[id] = new int[2];
+        postingFreqs[id] = new int[2];
+        termIds.put(token, id);
+        return id;
+    }
+
+    private void appendPosting(int term, int doc, int freq) {
+        int size = postingSizes[term];
+        if (size == postingDocs[term].length) {
+            postingDocs[term] = Arrays.copyOf(postingDocs[term], size * 2);
+            postingFreqs[term] = Arrays.copyOf(postingFreqs[term], size * 2);
+        }
+        postingDocs[term][size] = doc;
+        postingFreqs[term][size] = freq;
+        postingSizes[term] = size + 1;
+    }
+
+    private void ensureDocCapacity(int required) {
+        if (required <= docKeys.length) {
+            return;
+        }
+        int capacity = Math.max(required, docKeys.length * 2);
+        docKeys = Arrays.copyOf(docKeys, capacity);
+        docLengths = Arrays.copyOf(docLengths, capacity);
+        docDigests = Arrays.copyOf(docDigests, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+    }
+
+    /**
+     * 已删除文档超过一半时压缩：重排文档号、丢弃空词项，倒排表中的失效条目一并清除
+     */
+    private void maybeCompact() {
+        int deletedCount = docCount - liveDocs;
+        if (docCount < COMPACT_MIN_SIZE || deletedCount * 2 < docCount) {
+            return;
+        }
+
+        int[] docMap = new int[docCount];
+        int newDocCount = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                docMap[doc] = -1;
+                continue;
+            }
+            docMap[doc] = newDocCount;
+            docKeys[newDocCount] = docKeys[doc];
+            docLengths[newDocCount] = docLengths[doc];
+            docDigests[newDocCount] = docDigests[doc];
+            docTerms[newDocCount] = docTerms[doc];
+            newDocCount++;
+        }
+
+        int[] termMap = new int[termCount];
+        int newTermCount = 0;
+        for (int term = 0; term < termCount; term++) {
+            if (docFreqs[term] == 0) {
+                termMap[term] = -1;
+                continue;
+            }
+            int[] docs = new int[docFreqs[term]];
+            int[] freqs = new int[docFreqs[term]];
+            int size = 0;
+            for (int i = 0; i < postingSizes[term]; i++) {
+                int mapped = docMap[postingDocs[term][i]];
+                if (mapped >= 0) {
+                    docs[size] = mapped;
+                    freqs[size] = postingFreqs[term][i];
+                    size++;
+                }
+            }
+            termMap[term] = newTermCount;
+            postingDocs[newTermCount] = docs;
+            postingFreqs[newTermCount] = freqs;
+            postingSizes[newTermCount] = size;
+            docFreqs[newTermCount] = size;
+            newTermCount++;
+        }
+
+        for (int term = newTermCount; term < termCount; term++) {
+            postingDocs[term] = null;
+            postingFreqs[term] = null;
+            postingSizes[term] = 0;
+            docFreqs[term] = 0;
+        }
+        for (int doc = newDocCount; doc < docCount; doc++) {
+            docKeys[doc] = null;
+            docTerms[doc] = null;
+            docDigests[doc] = null;
+        }
+        for (int doc = 0; doc < newDocCount; doc++) {
+            int[] terms = docTerms[doc];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = termMap[terms[i]];
+            }
+        }
+        termIds.values().removeIf(term -> termMap[term] < 0);
+        termIds.replaceAll((token, term) -> termMap[term]);
+        docByKey.replaceAll((key, doc) -> docMap[doc]);
+
+        deleted.clear();
+        docCount = newDocCount;
+        termCount = newTermCount;
+    }
+
+    /**
+     * 检索结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Hit {
+        private final String id;
+        private final double score;
+    }
+}
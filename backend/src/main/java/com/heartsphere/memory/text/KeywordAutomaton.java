@@ -0,0 +1,202 @@
+package com.heartsphere.memory.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多关键词匹配自动机（Aho–Corasick）
+ * 关键词按组登记，一次遍历文本即可找出所有组的全部出现位置（含重叠），
+ * 耗时与文本长度成正比，与关键词数量无关。构建后不可变，可在多线程间共享。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public final class KeywordAutomaton {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int groupCount;
+    /** 每个状态的出边字符（升序）与目标状态 */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    /** 失配转移 */
+    private final int[] fail;
+    /** 每个状态命中的关键词：组号与长度（已合并失配链上的输出） */
+    private final int[][] outputGroups;
+    private final int[][] outputLengths;
+
+    private KeywordAutomaton(int groupCount, char[][] edgeChars, int[][] edgeTargets, int[] fail,
+                             int[][] outputGroups, int[][] outputLengths) {
+        this.groupCount = groupCount;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputGroups = outputGroups;
+        this.outputLengths = outputLengths;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * 扫描文本
+     *
+     * @param text 文本
+     * @return 按组号索引的关键词起始位置，每组升序且去重
+     */
+    public int[][] scan(CharSequence text) {
+        int[][] starts = new int[groupCount][];
+        int[] sizes = new int[groupCount];
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            int[] groups = outputGroups[state];
+            for (int k = 0; k < groups.length; k++) {
+                int group = groups[k];
+                if (starts[group] == null) {
+                    starts[group] = new int[8];
+                } else if (sizes[group] == starts[group].length) {
+                    starts[group] = Arrays.copyOf(starts[group], sizes[group] * 2);
+                }
+                starts[group][sizes[group]++] = i - outputLengths[state][k] + 1;
+            }
+        }
+        for (int group = 0; group < groupCount; group++) {
+            starts[group] = starts[group] == null ? EMPTY : sortedUnique(starts[group], sizes[group]);
+        }
+        return starts;
+    }
+
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index < 0 ? -1 : edgeTargets[state][index];
+    }
+
+    /**
+     * 命中按结束位置产生，同组不同长度的关键词起点可能乱序或重复
+     */
+    private static int[] sortedUnique(int[] values, int size) {
+        int[] result = Arrays.copyOf(values, size);
+        Arrays.sort(result);
+        int unique = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[unique++] = result[i];
+            }
+        }
+        return unique == result.length ? result : Arrays.copyOf(result, unique);
+    }
+
+    /**
+     * 自动机构建器
+     */
+    public static final class Builder {
+
+        private final List<Map<Character, Integer>> trie = new ArrayList<>();
+        private final List<List<int[]>> outputs = new ArrayList<>();
+        private int groupCount;
+
+        private Builder() {
+            newState();
+        }
+
+        /**
+         * 登记一组关键词
+         *
+         * @param group 组号（从0开始）
+         * @param keywords 关键词
+         */
+        public Builder add(int group, String... keywords) {
+            if (group < 0) {
+                throw new IllegalArgumentException("组号不能为负数: " + group);
+            }
+            for (String keyword : keywords) {
+                if (keyword == null || keyword.isEmpty()) {
+                    throw new IllegalArgumentException("关键词不能为空");
+                }
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    Integer next = trie.get(state).get(keyword.charAt(i));
+                    if (next == null) {
+                        next = newState();
+                        trie.get(state).put(keyword.charAt(i), next);
+                    }
+                    state = next;
+                }
+                outputs.get(state).add(new int[]{group, keyword.length()});
+            }
+            groupCount = Math.max(groupCount, group + 1);
+            return this;
+        }
+
+        public KeywordAutomaton build() {
+            int size = trie.size();
+            int[] fail = new int[size];
+            // 按层序计算失配转移，并把失配状态的输出并入当前状态
+            int[] queue = new int[size];
+            int head = 0;
+            int tail = 0;
+            for (int child : trie.get(0).values()) {
+                queue[tail++] = child;
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                    int child = edge.getValue();
+                    int f = fail[state];
+                    while (f != 0 && !trie.get(f).containsKey(edge.getKey())) {
+                        f = fail[f];
+                    }
+                    Integer target = trie.get(f).get(edge.getKey());
+                    fail[child] = target != null && target != child ? target : 0;
+                    outputs.get(child).addAll(outputs.get(fail[child]));
+                    queue[tail++] = child;
+                }
+            }
+
+            char[][] edgeChars = new char[size][];
+            int[][] edgeTargets = new int[size][];
+            int[][] outputGroups = new int[size][];
+            int[][] outputLengths = new int[size][];
+            for (int state = 0; state < size; state++) {
+                Map<Character, Integer> edges = trie.get(state);
+                edgeChars[state] = new char[edges.size()];
+                edgeTargets[state] = new int[edges.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                    edgeChars[state][i] = edge.getKey();
+                    edgeTargets[state][i++] = edge.getValue();
+                }
+                List<int[]> out = outputs.get(state);
+                outputGroups[state] = new int[out.size()];
+                outputLengths[state] = new int[out.size()];
+                for (int k = 0; k < out.size(); k++) {
+                    outputGroups[state][k] = out.get(k)[0];
+                    outputLengths[state][k] = out.get(k)[1];
+                }
+            }
+            return new KeywordAutomaton(groupCount, edgeChars, edgeTargets, fail, outputGroups, outputLengths);
+        }
+
+        private int newState() {
+            // TreeMap保证出边按字符升序，供二分查找
+            trie.add(new TreeMap<>());
+            outputs.add(new ArrayList<>());
+            return trie.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.heartsphere.memory.text;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.repository.jpa.UserFactRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * 用户记忆与事实的全文索引
+ * 每个用户各一份记忆倒排索引和事实倒排索引，随保存/更新/删除增量维护；
+ * 启动后按主键分批流式读取MySQL重建，重建完成前检索方应退回LIKE查询，重建失败时定期重试。
+ * 关闭启动重建时索引只含启动后写入的内容，直接视为可用
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryTextIndex {
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final UserFactRepository userFactRepository;
+    private final MemoryProperties.TextIndex config;
+
+    private final Scope memories = new Scope();
+    private final Scope facts = new Scope();
+
+    private volatile boolean rebuilding;
+    private volatile boolean ready;
+    private volatile boolean rebuildFailed;
+
+    public MemoryTextIndex(
+            UserMemoryRepository userMemoryRepository,
+            UserFactRepository userFactRepository,
+            MemoryProperties memoryProperties) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.userFactRepository = userFactRepository;
+        this.config = memoryProperties.getTextIndex();
+    }
+
+    /**
+     * 索引是否可用于检索（已启用且完成重建）
+     */
+    public boolean isReady() {
+        return config.isEnabled() && ready;
+    }
+
+    // ========== 记忆 ==========
+
+    public void indexMemory(String userId, String memoryId, String content) {
+        index(memories, userId, memoryId, content);
+    }
+
+    public void removeMemory(String memoryId) {
+        remove(memories, memoryId);
+    }
+
+    public List<InvertedIndex.Hit> searchMemories(String userId, String query, int limit) {
+        return search(memories, userId, query, limit);
+    }
+
+    // ========== 事实 ==========
+
+    public void indexFact(String userId, String factId, String fact) {
+        index(facts, userId, factId, fact);
+    }
+
+    public void removeFact(String factId) {
+        remove(facts, factId);
+    }
+
+    public List<InvertedIndex.Hit> searchFacts(String userId, String query, int limit) {
+        return search(facts, userId, query, limit);
+    }
+
+    // ========== 重建 ==========
+
+    /**
+     * 应用启动完成后在后台重建索引
+     */
+    @Async("memoryExtractionExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.isRebuildOnStartup()) {
+            rebuild();
+        } else {
+            ready = true;
+            log.info("全文索引未启用启动重建，只包含启动后写入的内容");
+        }
+    }
+
+    /**
+     * 上次重建失败时重试，成功前检索继续使用LIKE查询
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.text-index.rebuild-retry-interval-ms:60000}")
+    public void retryFailedRebuild() {
+        if (rebuildFailed && !rebuilding) {
+            log.info("重试全文索引重建");
+            rebuild();
+        }
+    }
+
+    /**
+     * 从MySQL重建索引
+     * 按主键键集分页，每批只取ID、用户ID和文本，任何时刻只有一批数据在堆中；
+     * 重建期间被增量写入或删除过的主键以增量结果为准，不会被旧数据覆盖
+     */
+    public void rebuild() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        try {
+            long memoryCount = load(memories, userMemoryRepository::findTextBatchAfter);
+            long factCount = load(facts, userFactRepository::findTextBatchAfter);
+            ready = true;
+            rebuildFailed = false;
+            log.info("全文索引重建完成: memories={}, facts={}, 耗时{}ms",
+                memoryCount, factCount, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            rebuildFailed = true;
+            log.error("全文索引重建失败，关键词检索将继续使用LIKE查询，稍后重试", e);
+        } finally {
+            rebuilding = false;
+            memories.touched.clear();
+            facts.touched.clear();
+        }
+    }
+
+    private long load(Scope scope, BiFunction<String, PageRequest, List<Object[]>> batchLoader) {
+        int batchSize = Math.max(1, config.getRebuildBatchSize());
+        String afterId = "";
+        long count = 0;
+        while (true) {
+            List<Object[]> rows = batchLoader.apply(afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                String id = (String) row[0];
+                synchronized (scope) {
+                    if (!scope.touched.contains(id)) {
+                        put(scope, (String) row[1], id, (String) row[2]);
+                        count++;
+                    }
+                }
+            }
+            if (rows.size() < batchSize) {
+                return count;
+            }
+            afterId = (String) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    // ========== 内部实现 ==========
+
+    private void index(Scope scope, String userId, String id, String text) {
+        if (!config.isEnabled() || userId == null || id == null) {
+            return;
+        }
+        try {
+            if (rebuilding) {
+                synchronized (scope) {
+                    scope.touched.add(id);
+                    put(scope, userId, id, text);
+                }
+            } else {
+                put(scope, userId, id, text);
+            }
+        } catch (Exception e) {
+            log.warn("更新全文索引失败: userId={}, id={}", userId, id, e);
+        }
+    }
+
+    private void put(Scope scope, String userId, String id, String text) {
+        String previousOwner = scope.owners.put(id, userId);
+        if (previousOwner != null && !previousOwner.equals(userId)) {
+            InvertedIndex previous = scope.indexes.get(previousOwner);
+            if (previous != null) {
+                previous.remove(id);
+            }
+        }
+        scope.indexes.computeIfAbsent(userId, key -> new InvertedIndex()).add(id, text);
+    }
+
+    private void remove(Scope scope, String id) {
+        if (!config.isEnabled() || id == null) {
+            return;
+        }
+        if (rebuilding) {
+            synchronized (scope) {
+                scope.touched.add(id);
+                removeOwned(scope, id);
+            }
+        } else {
+            removeOwned(scope, id);
+        }
+    }
+
+    private void removeOwned(Scope scope, String id) {
+        String userId = scope.owners.remove(id);
+        if (userId == null) {
+            return;
+        }
+        InvertedIndex index = scope.indexes.get(userId);
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    private List<InvertedIndex.Hit> search(Scope scope, String userId, String query, int limit) {
+        if (!isReady() || userId == null || query == null || query.isBlank()) {
+            return Collections.emptyList();
+        }
+        InvertedIndex index = scope.indexes.get(userId);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return index.search(query, limit);
+        } catch (Exception e) {
+            log.warn("全文索引检索失败: userId={}", userId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 一类文档（记忆或事实）的索引集合
+     */
+    private static class Scope {
+        private final Map<String, InvertedIndex> indexes = new ConcurrentHashMap<>();
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        private final Set<String> touched = ConcurrentHashMap.newKeySet();
+    }
+}
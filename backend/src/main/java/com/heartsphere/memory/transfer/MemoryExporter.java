@@ -0,0 +1,193 @@
+package com.heartsphere.memory.transfer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.buffer.ChatMessageWriteBuffer;
+import com.heartsphere.memory.buffer.MemoryAccessRecorder;
+import com.heartsphere.memory.config.MemoryProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * 用户记忆流式导出
+ * 按 {@link TransferTable} 的顺序逐表以主键游标分批查询，每行直接写成一条NDJSON记录，
+ * 不在内存中累积结果，堆占用与用户数据量无关。
+ * 第一行为导出头（kind=export），其余每行形如 {"kind":"memory","id":...,"content":...}。
+ * 各批次分别查询，导出期间并发写入的数据可能出现也可能不出现在结果中。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryExporter {
+
+    static final String HEADER_KIND = "export";
+    static final int FORMAT_VERSION = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatMessageWriteBuffer chatMessageWriteBuffer;
+    private final MemoryAccessRecorder memoryAccessRecorder;
+    private final MemoryProperties.Transfer config;
+
+    public MemoryExporter(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            ChatMessageWriteBuffer chatMessageWriteBuffer,
+            MemoryAccessRecorder memoryAccessRecorder,
+            MemoryProperties memoryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.chatMessageWriteBuffer = chatMessageWriteBuffer;
+        this.memoryAccessRecorder = memoryAccessRecorder;
+        this.config = memoryProperties.getTransfer();
+    }
+
+    /**
+     * 把用户的全部记忆写入输出流
+     *
+     * @param userId 用户ID
+     * @param out 输出流（调用方负责关闭）
+     * @return 导出的记录数（不含导出头）
+     */
+    public long export(String userId, OutputStream out) throws IOException {
+        // 先落库缓冲中的消息和访问统计，导出结果与当前可见数据一致
+        chatMessageWriteBuffer.flush();
+        memoryAccessRecorder.flush();
+
+        long total = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeHeader(generator, userId);
+            for (TransferTable table : TransferTable.values()) {
+                long count = exportTable(generator, table, userId);
+                log.debug("导出记忆数据: userId={}, kind={}, count={}", userId, table.kind(), count);
+                total += count;
+            }
+            generator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("导出用户记忆完成: userId={}, records={}", userId, total);
+        return total;
+    }
+
+    private void writeHeader(JsonGenerator generator, String userId) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("kind", HEADER_KIND);
+        generator.writeNumberField("formatVersion", FORMAT_VERSION);
+        generator.writeStringField("userId", userId);
+        generator.writeStringField("exportedAt", LocalDateTime.now().toString());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private long exportTable(JsonGenerator generator, TransferTable table, String userId) throws IOException {
+        String sql = table.exportSql();
+        int batchSize = Math.max(1, config.getExportBatchSize());
+        Object cursor = table.hasStringKey() ? "" : (Object) 0L;
+        long total = 0;
+        while (true) {
+            Batch batch = new Batch();
+            jdbcTemplate.query(sql, rs -> {
+                batch.lastKey = table.hasStringKey() ? rs.getString(1) : (Object) rs.getLong(1);
+                batch.rows++;
+                writeRow(generator, table, rs);
+            }, userId, cursor, batchSize);
+            total += batch.rows;
+            generator.flush();
+            if (batch.rows < batchSize) {
+                return total;
+            }
+            cursor = batch.lastKey;
+        }
+    }
+
+    private void writeRow(JsonGenerator generator, TransferTable table, ResultSet rs) throws SQLException {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("kind", table.kind());
+            int index = 2;
+            for (TransferTable.Column column : table.columns()) {
+                generator.writeFieldName(column.name());
+                writeValue(generator, column.type(), rs, index++);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeValue(JsonGenerator generator, TransferTable.ColumnType type, ResultSet rs, int index)
+            throws SQLException, IOException {
+        switch (type) {
+            case LONG -> {
+                long value = rs.getLong(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case INTEGER -> {
+                int value = rs.getInt(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case DOUBLE -> {
+                double value = rs.getDouble(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case DATETIME -> {
+                Timestamp value = rs.getTimestamp(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(value.toLocalDateTime().toString());
+                }
+            }
+            case BINARY -> {
+                byte[] value = rs.getBytes(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeBinary(value);
+                }
+            }
+            default -> {
+                String value = rs.getString(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单批查询的游标位置
+     */
+    private static class Batch {
+        private Object lastKey;
+        private int rows;
+    }
+}
@@ -0,0 +1,39 @@
+package com.heartsphere.memory.transfer;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 记忆导入结果
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Data
+public class MemoryImportResult {
+
+    /**
+     * 目标用户ID
+     */
+    private String userId;
+
+    /**
+     * 各类记录的导入行数（按kind统计；主键冲突被忽略的行也计入）
+     */
+    private Map<String, Long> counts = new LinkedHashMap<>();
+
+    /**
+     * 无法识别的记录数
+     */
+    private long skipped;
+
+    void increment(String kind) {
+        counts.merge(kind, 1L, Long::sum);
+    }
+
+    public long getTotal() {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
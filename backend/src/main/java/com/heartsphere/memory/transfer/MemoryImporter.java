@@ -0,0 +1,380 @@
+package com.heartsphere.memory.transfer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.archive.ArchiveSummaryIndex;
+import com.heartsphere.memory.cache.SessionHistoryCache;
+import com.heartsphere.memory.cache.WorkingMemoryStore;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 用户记忆流式导入
+ * 逐条读取 {@link MemoryExporter} 生成的NDJSON，按表累积到一批后以JDBC批量插入，每批一个短事务；
+ * 内存中只保留各表未提交的一批数据和会话ID映射。
+ * 所有记录的 user_id 改写为目标用户。重映射ID时为主键生成新UUID，同一旧会话ID映射到同一新会话ID，
+ * 记忆的来源ID若指向已映射的会话则一并替换；不重映射时按原ID写入，主键已存在的行被跳过，
+ * 但属于其他用户的会话ID一律改为新ID，不会向他人的会话写入数据。
+ * 会话、偏好与工作记忆按唯一键覆盖，覆盖只作用于目标用户自己的行。导入中途失败时已提交的批次保留。
+ * 消息序号不沿用文件中的值：每批按原序号排序后从目标会话的最新序号（head_seq）继续分配并推进 head_seq，
+ * 导入到已有消息的会话时也不会与已有序号重复，超量裁剪的范围删除仍然只命中最早的消息。
+ * 内容指纹不导入，由近似重复合并任务重新计算；记忆和事实在批次提交后写入向量/全文索引。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryImporter {
+
+    private static final String LOCK_SESSIONS_SQL = "SELECT session_id, head_seq FROM memory_sessions "
+        + "WHERE session_id IN (%s) FOR UPDATE";
+    private static final String MAX_SEQ_SQL = "SELECT MAX(seq) FROM chat_messages WHERE session_id = ?";
+    private static final String UPDATE_HEAD_SQL = "UPDATE memory_sessions SET head_seq = ? WHERE session_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MemoryVectorIndex memoryVectorIndex;
+    private final MemoryTextIndex memoryTextIndex;
+    private final ArchiveSummaryIndex archiveSummaryIndex;
+    private final SessionHistoryCache sessionHistoryCache;
+    private final WorkingMemoryStore workingMemoryStore;
+    private final MemoryProperties.Transfer config;
+
+    public MemoryImporter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MemoryVectorIndex memoryVectorIndex,
+            MemoryTextIndex memoryTextIndex,
+            ArchiveSummaryIndex archiveSummaryIndex,
+            SessionHistoryCache sessionHistoryCache,
+            WorkingMemoryStore workingMemoryStore,
+            MemoryProperties memoryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.memoryVectorIndex = memoryVectorIndex;
+        this.memoryTextIndex = memoryTextIndex;
+        this.archiveSummaryIndex = archiveSummaryIndex;
+        this.sessionHistoryCache = sessionHistoryCache;
+        this.workingMemoryStore = workingMemoryStore;
+        this.config = memoryProperties.getTransfer();
+    }
+
+    /**
+     * 从输入流导入记忆到目标用户
+     *
+     * @param userId 目标用户ID
+     * @param in NDJSON输入流（调用方负责关闭）
+     * @param remapIds 是否为主键和会话生成新ID
+     * @return 导入结果
+     */
+    public MemoryImportResult importFrom(String userId, InputStream in, boolean remapIds) throws IOException {
+        ImportRun run = new ImportRun(userId, remapIds);
+        try (MappingIterator<JsonNode> records = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+            while (records.hasNextValue()) {
+                run.accept(records.nextValue());
+            }
+        } finally {
+            // 解析失败时也把已读取的完整批次写完，与已提交的批次保持一致
+            run.flushAll();
+            run.finish();
+        }
+        log.info("导入用户记忆完成: userId={}, counts={}, skipped={}",
+            userId, run.result.getCounts(), run.result.getSkipped());
+        return run.result;
+    }
+
+    /**
+     * 单次导入的状态
+     */
+    private class ImportRun {
+        private final String userId;
+        private final boolean remapIds;
+        private final int batchSize = Math.max(1, config.getImportBatchSize());
+        private final MemoryImportResult result = new MemoryImportResult();
+        private final Map<TransferTable, List<Object[]>> pending = new EnumMap<>(TransferTable.class);
+        private final Map<String, String> sessionIds = new HashMap<>();
+        private final Set<String> touchedSessions = new HashSet<>();
+
+        private ImportRun(String userId, boolean remapIds) {
+            this.userId = userId;
+            this.remapIds = remapIds;
+            this.result.setUserId(userId);
+        }
+
+        private void accept(JsonNode record) {
+            String kind = record.path("kind").asText(null);
+            if (MemoryExporter.HEADER_KIND.equals(kind)) {
+                int version = record.path("formatVersion").asInt(MemoryExporter.FORMAT_VERSION);
+                if (version > MemoryExporter.FORMAT_VERSION) {
+                    throw new IllegalArgumentException("不支持的导出格式版本: " + version);
+                }
+                return;
+            }
+            TransferTable table = kind != null ? TransferTable.ofKind(kind) : null;
+            if (table == null) {
+                result.setSkipped(result.getSkipped() + 1);
+                return;
+            }
+            List<Object[]> rows = pending.computeIfAbsent(table, key -> new ArrayList<>(batchSize));
+            rows.add(toRow(table, record));
+            result.increment(kind);
+            if (rows.size() >= batchSize) {
+                flush(table, rows);
+                rows.clear();
+            }
+        }
+
+        private Object[] toRow(TransferTable table, JsonNode record) {
+            List<TransferTable.Column> columns = table.columns();
+            int offset = table.bindsUserId() ? 1 : 0;
+            Object[] row = new Object[columns.size() + offset];
+            if (table.bindsUserId()) {
+                row[0] = userId;
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                TransferTable.Column column = columns.get(i);
+                row[i + offset] = remap(column, toValue(column.type(), record.get(column.name())));
+            }
+            return row;
+        }
+
+        private Object remap(TransferTable.Column column, Object value) {
+            switch (column.idRole()) {
+                case PRIMARY:
+                    return remapIds || value == null ? UUID.randomUUID().toString() : value;
+                case SESSION:
+                    if (value == null) {
+                        return null;
+                    }
+                    String sessionId = sessionIds.computeIfAbsent((String) value, this::mapSession);
+                    touchedSessions.add(sessionId);
+                    return sessionId;
+                case SESSION_REF:
+                    return value != null ? sessionIds.getOrDefault((String) value, (String) value) : null;
+                default:
+                    return value;
+            }
+        }
+
+        /**
+         * 会话ID的映射：重映射时生成新ID；保留原ID时，会话已属于其他用户则同样改为新ID
+         */
+        private String mapSession(String sessionId) {
+            if (remapIds) {
+                return UUID.randomUUID().toString();
+            }
+            List<String> owners = jdbcTemplate.queryForList(
+                "SELECT user_id FROM memory_sessions WHERE session_id = ?", String.class, sessionId);
+            if (owners.isEmpty() || owners.contains(userId)) {
+                return sessionId;
+            }
+            log.warn("导入的会话属于其他用户，改用新会话ID: userId={}, sessionId={}", userId, sessionId);
+            return UUID.randomUUID().toString();
+        }
+
+        private Object toValue(TransferTable.ColumnType type, JsonNode node) {
+            if (node == null || node.isNull()) {
+                return null;
+            }
+            try {
+                switch (type) {
+                    case LONG:
+                        return node.asLong();
+                    case INTEGER:
+                        return node.asInt();
+                    case DOUBLE:
+                        return node.asDouble();
+                    case DATETIME:
+                        return Timestamp.valueOf(LocalDateTime.parse(node.asText()));
+                    case BINARY:
+                        return node.binaryValue();
+                    default:
+                        return node.asText();
+                }
+            } catch (Exception e) {
+                throw new IllegalArgumentException("无法解析导入字段: " + node, e);
+            }
+        }
+
+        private void flushAll() {
+            pending.forEach((table, rows) -> {
+                if (!rows.isEmpty()) {
+                    flush(table, rows);
+                    rows.clear();
+                }
+            });
+        }
+
+        private void flush(TransferTable table, List<Object[]> rows) {
+            if (table == TransferTable.MESSAGE) {
+                // 先写入待提交的会话，分配序号时才能锁定并推进其 head_seq
+                List<Object[]> sessions = pending.get(TransferTable.SESSION);
+                if (sessions != null && !sessions.isEmpty()) {
+                    flush(TransferTable.SESSION, sessions);
+                    sessions.clear();
+                }
+            }
+            List<Object[]> inserted = transactionTemplate.execute(status -> write(table, rows));
+            if (table == TransferTable.MEMORY) {
+                index(table, inserted, "content", true);
+            } else if (table == TransferTable.FACT) {
+                index(table, inserted, "fact", false);
+            }
+        }
+
+        /**
+         * 写入一批数据，返回新插入的行。
+         * 声明了覆盖语句的表先按唯一键批量更新，未命中的行再插入；
+         * 其余表在保留原ID时先查出已存在的主键并跳过，重映射的ID均为新生成，直接插入
+         */
+        private List<Object[]> write(TransferTable table, List<Object[]> rows) {
+            List<String> names = table.rowColumns();
+            if (table == TransferTable.SESSION) {
+                // 会话的最新序号由导入的消息重新分配，新建会话从0开始，已有会话保持不变
+                int headPosition = names.indexOf("head_seq");
+                rows.forEach(row -> row[headPosition] = 0L);
+            }
+            List<Object[]> inserts = rows;
+            if (table.updatesOnConflict()) {
+                int[] positions = positions(names, table.updateParams(), table.uniqueColumns());
+                List<Object[]> updates = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    Object[] args = new Object[positions.length + 1];
+                    for (int i = 0; i < positions.length; i++) {
+                        args[i] = row[positions[i]];
+                    }
+                    args[positions.length] = userId;
+                    updates.add(args);
+                }
+                int[] updated = jdbcTemplate.batchUpdate(table.updateSql(), updates);
+                inserts = new ArrayList<>();
+                for (int i = 0; i < rows.size(); i++) {
+                    if (updated[i] == 0) {
+                        inserts.add(rows.get(i));
+                    }
+                }
+            } else if (!remapIds) {
+                int keyPosition = names.indexOf(table.uniqueColumns().get(0));
+                Object[] keys = rows.stream().map(row -> row[keyPosition]).toArray();
+                Set<String> existing = new HashSet<>(
+                    jdbcTemplate.queryForList(table.existingKeysSql(keys.length), String.class, keys));
+                inserts = rows.stream()
+                    .filter(row -> !existing.contains(row[keyPosition]))
+                    .collect(Collectors.toList());
+            }
+            if (table == TransferTable.MESSAGE && !inserts.isEmpty()) {
+                assignSequences(names, inserts);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(table.insertSql(), inserts);
+            }
+            return inserts;
+        }
+
+        /**
+         * 为一批待插入的消息分配会话内序号：锁定会话读取最新序号，按原序号顺序依次递增，再推进会话的 head_seq；
+         * 会话索引不存在时从已有消息的最大序号继续
+         */
+        private void assignSequences(List<String> names, List<Object[]> messages) {
+            int sessionPosition = names.indexOf("session_id");
+            int seqPosition = names.indexOf("seq");
+            Map<String, List<Object[]>> bySession = messages.stream().collect(Collectors.groupingBy(
+                row -> (String) row[sessionPosition], LinkedHashMap::new, Collectors.toList()));
+
+            Object[] sessionIds = bySession.keySet().toArray();
+            Map<String, Long> heads = new HashMap<>();
+            String placeholders = String.join(", ", Collections.nCopies(sessionIds.length, "?"));
+            jdbcTemplate.query(String.format(LOCK_SESSIONS_SQL, placeholders),
+                (RowCallbackHandler) rs -> heads.put(rs.getString("session_id"), rs.getLong("head_seq")),
+                sessionIds);
+
+            List<Object[]> updates = new ArrayList<>(bySession.size());
+            bySession.forEach((sessionId, rows) -> {
+                Long head = heads.containsKey(sessionId)
+                    ? heads.get(sessionId)
+                    : jdbcTemplate.queryForObject(MAX_SEQ_SQL, Long.class, sessionId);
+                long seq = head != null ? head : 0L;
+                rows.sort(Comparator.comparing(
+                    row -> (Long) row[seqPosition], Comparator.nullsLast(Comparator.<Long>naturalOrder())));
+                for (Object[] row : rows) {
+                    row[seqPosition] = ++seq;
+                }
+                updates.add(new Object[] {seq, sessionId});
+            });
+            jdbcTemplate.batchUpdate(UPDATE_HEAD_SQL, updates);
+        }
+
+        /**
+         * 批次提交后把记忆/事实写入检索索引
+         */
+        private void index(TransferTable table, List<Object[]> rows, String contentColumn, boolean memory) {
+            List<String> names = table.rowColumns();
+            int idPosition = names.indexOf("id");
+            int contentPosition = names.indexOf(contentColumn);
+            for (Object[] row : rows) {
+                String id = (String) row[idPosition];
+                String content = (String) row[contentPosition];
+                if (memory) {
+                    memoryVectorIndex.index(userId, id, content);
+                    memoryTextIndex.indexMemory(userId, id, content);
+                } else {
+                    memoryTextIndex.indexFact(userId, id, content);
+                }
+            }
+        }
+
+        private void finish() {
+            if (result.getCounts().containsKey(TransferTable.ARCHIVED_MEMORY.kind())) {
+                archiveSummaryIndex.invalidate(userId);
+            }
+            if (!remapIds) {
+                // 按原会话ID写入时，已缓存的会话窗口和工作记忆可能过时
+                touchedSessions.forEach(sessionId -> {
+                    sessionHistoryCache.invalidate(sessionId);
+                    workingMemoryStore.invalidateSession(sessionId);
+                });
+            }
+        }
+    }
+
+    private static int[] positions(List<String> names, List<String> first, List<String> second) {
+        int[] positions = new int[first.size() + second.size()];
+        int i = 0;
+        for (String name : first) {
+            positions[i++] = names.indexOf(name);
+        }
+        for (String name : second) {
+            positions[i++] = names.indexOf(name);
+        }
+        return positions;
+    }
+}
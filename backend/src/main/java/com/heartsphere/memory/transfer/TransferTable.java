@@ -0,0 +1,285 @@
+package com.heartsphere.memory.transfer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 记忆导出/导入涉及的数据表
+ * 每张表对应NDJSON中的一种记录类型（kind），声明导出的列、列类型以及导入时ID的重映射方式。
+ * 枚举顺序即导出顺序：会话在前，保证导入时先建立会话ID映射，再写入引用会话的数据。
+ * user_id 不导出，导入时统一改写为目标用户。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public enum TransferTable {
+
+    SESSION("session", "memory_sessions", "id", "user_id", false, false,
+        keys("session_id"), "head_seq = GREATEST(head_seq, ?)", params("head_seq"),
+        col("session_id", ColumnType.STRING, IdRole.SESSION),
+        col("head_seq", ColumnType.LONG),
+        col("created_at", ColumnType.DATETIME),
+        col("updated_at", ColumnType.DATETIME),
+        col("expires_at", ColumnType.DATETIME)),
+
+    MESSAGE("message", "chat_messages", "id", "user_id", true, false,
+        keys("id"), null, params(),
+        col("id", ColumnType.STRING, IdRole.PRIMARY),
+        col("session_id", ColumnType.STRING, IdRole.SESSION),
+        col("role", ColumnType.STRING),
+        col("content", ColumnType.STRING),
+        col("metadata", ColumnType.STRING),
+        col("timestamp", ColumnType.LONG),
+        col("seq", ColumnType.LONG),
+        col("importance", ColumnType.STRING),
+        col("created_at", ColumnType.DATETIME),
+        col("updated_at", ColumnType.DATETIME),
+        col("expires_at", ColumnType.DATETIME),
+        col("token_count", ColumnType.INTEGER)),
+
+    WORKING_MEMORY("working_memory", "working_memories", "id", "user_id", false, true,
+        keys("session_id", "memory_key"), "memory_value = ?, updated_at = ?, expires_at = ?",
+        params("memory_value", "updated_at", "expires_at"),
+        col("session_id", ColumnType.STRING, IdRole.SESSION),
+        col("memory_key", ColumnType.STRING),
+        col("memory_value", ColumnType.STRING),
+        col("created_at", ColumnType.DATETIME),
+        col("updated_at", ColumnType.DATETIME),
+        col("expires_at", ColumnType.DATETIME)),
+
+    PREFERENCE("preference", "user_preferences", "id", "user_id", true, false,
+        keys("preference_key"), "preference_value = ?, preference_type = ?, updated_at = ?",
+        params("preference_value", "preference_type", "updated_at"),
+        col("id", ColumnType.STRING, IdRole.PRIMARY),
+        col("preference_key", ColumnType.STRING),
+        col("preference_value", ColumnType.STRING),
+        col("preference_type", ColumnType.STRING),
+        col("created_at", ColumnType.DATETIME),
+        col("updated_at", ColumnType.DATETIME)),
+
+    FACT("fact", "user_facts", "id", "user_id", true, false,
+        keys("id"), null, params(),
+        col("id", ColumnType.STRING, IdRole.PRIMARY),
+        col("fact", ColumnType.STRING),
+        col("category", ColumnType.STRING),
+        col("importance", ColumnType.DOUBLE),
+        col("confidence", ColumnType.DOUBLE),
+        col("source_session_id", ColumnType.STRING, IdRole.SESSION),
+        col("created_at", ColumnType.DATETIME),
+        col("last_accessed_at", ColumnType.DATETIME),
+        col("access_count", ColumnType.INTEGER),
+        col("tags", ColumnType.STRING),
+        col("metadata", ColumnType.STRING),
+        col("updated_at", ColumnType.DATETIME),
+        col("token_count", ColumnType.INTEGER)),
+
+    MEMORY("memory", "user_memories", "id", "user_id", true, false,
+        keys("id"), null, params(),
+        col("id", ColumnType.STRING, IdRole.PRIMARY),
+        col("type", ColumnType.STRING),
+        col("importance", ColumnType.STRING),
+        col("content", ColumnType.STRING),
+        col("structured_data", ColumnType.STRING),
+        col("source", ColumnType.STRING),
+        col("source_id", ColumnType.STRING, IdRole.SESSION_REF),
+        col("created_at", ColumnType.DATETIME),
+        col("last_accessed_at", ColumnType.DATETIME),
+        col("access_count", ColumnType.INTEGER),
+        col("confidence", ColumnType.DOUBLE),
+        col("tags", ColumnType.STRING),
+        col("metadata", ColumnType.STRING),
+        col("updated_at", ColumnType.DATETIME),
+        col("token_count", ColumnType.INTEGER)),
+
+    ARCHIVED_MEMORY("archived_memory", "archived_memories", "id", "user_id", true, false,
+        keys("id"), null, params(),
+        col("id", ColumnType.STRING, IdRole.PRIMARY),
+        col("type", ColumnType.STRING),
+        col("importance", ColumnType.STRING),
+        col("source", ColumnType.STRING),
+        col("source_id", ColumnType.STRING, IdRole.SESSION_REF),
+        col("confidence", ColumnType.DOUBLE),
+        col("access_count", ColumnType.INTEGER),
+        col("created_at", ColumnType.DATETIME),
+        col("last_accessed_at", ColumnType.DATETIME),
+        col("archived_at", ColumnType.DATETIME),
+        col("payload", ColumnType.BINARY),
+        col("payload_length", ColumnType.INTEGER),
+        col("dictionary_version", ColumnType.INTEGER),
+        col("summary_tokens", ColumnType.BINARY));
+
+    /**
+     * 列类型，决定JDBC读写方式和NDJSON中的表示
+     */
+    public enum ColumnType {
+        STRING, LONG, INTEGER, DOUBLE,
+        /** ISO-8601本地时间字符串 */
+        DATETIME,
+        /** Base64字符串 */
+        BINARY
+    }
+
+    /**
+     * 导入时ID列的重映射方式
+     */
+    public enum IdRole {
+        NONE,
+        /** 主键：重映射时生成新的UUID */
+        PRIMARY,
+        /** 会话ID：同一导入流内的同一旧ID映射到同一新ID */
+        SESSION,
+        /** 可能引用会话的来源ID：仅在已建立映射时替换 */
+        SESSION_REF
+    }
+
+    public record Column(String name, ColumnType type, IdRole idRole) {
+    }
+
+    private final String kind;
+    private final String table;
+    private final String keyColumn;
+    private final String ownerColumn;
+    private final boolean stringKey;
+    private final boolean ownedBySession;
+    private final List<String> uniqueColumns;
+    private final String updateSet;
+    private final List<String> updateParams;
+    private final List<Column> columns;
+
+    TransferTable(String kind, String table, String keyColumn, String ownerColumn, boolean stringKey,
+                  boolean ownedBySession, String[] uniqueColumns, String updateSet, String[] updateParams,
+                  Column... columns) {
+        this.kind = kind;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.ownerColumn = ownerColumn;
+        this.stringKey = stringKey;
+        this.ownedBySession = ownedBySession;
+        this.uniqueColumns = List.of(uniqueColumns);
+        this.updateSet = updateSet;
+        this.updateParams = List.of(updateParams);
+        this.columns = List.of(columns);
+    }
+
+    private static String[] keys(String... names) {
+        return names;
+    }
+
+    private static String[] params(String... names) {
+        return names;
+    }
+
+    private static Column col(String name, ColumnType type) {
+        return new Column(name, type, IdRole.NONE);
+    }
+
+    private static Column col(String name, ColumnType type, IdRole idRole) {
+        return new Column(name, type, idRole);
+    }
+
+    public String kind() {
+        return kind;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * 游标列是否为字符串主键（否则为自增主键）
+     */
+    public boolean hasStringKey() {
+        return stringKey;
+    }
+
+    public static TransferTable ofKind(String kind) {
+        return Arrays.stream(values())
+            .filter(table -> table.kind.equals(kind))
+            .findFirst()
+            .orElse(null);
+    }
+
+    /**
+     * 按主键游标分批读取某个用户的数据：WHERE 所属用户 AND 主键 > ? ORDER BY 主键 LIMIT ?
+     * 第一列为游标值，其后依次为导出列。
+     * 工作记忆没有 user_id，通过会话表关联归属用户。
+     */
+    public String exportSql() {
+        String alias = ownedBySession ? "t." : "";
+        String from = ownedBySession
+            ? table + " t JOIN memory_sessions s ON s.session_id = t.session_id"
+            : table;
+        String owner = ownedBySession ? "s." + ownerColumn : ownerColumn;
+        String selected = columns.stream()
+            .map(column -> alias + column.name())
+            .collect(Collectors.joining(", "));
+        return "SELECT " + alias + keyColumn + ", " + selected + " FROM " + from
+            + " WHERE " + owner + " = ? AND " + alias + keyColumn + " > ?"
+            + " ORDER BY " + alias + keyColumn + " LIMIT ?";
+    }
+
+    /**
+     * 导入时一行参数对应的列名：有 user_id 的表以目标用户开头，其后为导出列
+     */
+    public List<String> rowColumns() {
+        List<String> names = new ArrayList<>(columns.size() + 1);
+        if (bindsUserId()) {
+            names.add(ownerColumn);
+        }
+        columns.forEach(column -> names.add(column.name()));
+        return names;
+    }
+
+    public String insertSql() {
+        List<String> names = rowColumns();
+        return "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES ("
+            + names.stream().map(name -> "?").collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * 唯一键列（偏好与 user_id 一起构成唯一键）；唯一键已存在时按 {@link #updateSql()} 覆盖，未声明覆盖语句的表跳过该行
+     */
+    public List<String> uniqueColumns() {
+        return uniqueColumns;
+    }
+
+    public boolean updatesOnConflict() {
+        return updateSet != null;
+    }
+
+    /**
+     * 按唯一键覆盖的语句，参数依次为 {@link #updateParams()}、{@link #uniqueColumns()} 和目标用户ID。
+     * 只覆盖目标用户自己的行：有 user_id 的表直接按 user_id 过滤，工作记忆按所属会话的 user_id 过滤
+     */
+    public String updateSql() {
+        String owner = ownedBySession
+            ? "session_id IN (SELECT session_id FROM memory_sessions WHERE " + ownerColumn + " = ?)"
+            : ownerColumn + " = ?";
+        return "UPDATE " + table + " SET " + updateSet + " WHERE "
+            + uniqueColumns.stream().map(name -> name + " = ?").collect(Collectors.joining(" AND "))
+            + " AND " + owner;
+    }
+
+    public List<String> updateParams() {
+        return updateParams;
+    }
+
+    /**
+     * 查询已存在的单列唯一键
+     */
+    public String existingKeysSql(int count) {
+        String key = uniqueColumns.get(0);
+        return "SELECT " + key + " FROM " + table + " WHERE " + key + " IN ("
+            + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    /**
+     * 导入时是否需要绑定目标用户ID
+     */
+    public boolean bindsUserId() {
+        return !ownedBySession;
+    }
+}
@@ -0,0 +1,114 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 延迟解码的JSON字符串数组
+ * 首次读取或修改时才解析原始JSON，之后所有操作委托给解码后的ArrayList。
+ * 原始JSON无法解析时记录错误并按空列表读取；内容未被写入时写回仍保留原始JSON。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+@JsonSerialize(using = LazyJsonSerializer.class)
+public class LazyJsonList extends AbstractList<String> implements LazyJsonValue {
+
+    private final String json;
+    private final MemoryJsonCodec codec;
+    private volatile List<String> decoded;
+    private volatile boolean malformed;
+
+    public LazyJsonList(String json, MemoryJsonCodec codec) {
+        this.json = json;
+        this.codec = codec;
+    }
+
+    @Override
+    public boolean isDecoded() {
+        List<String> result = decoded;
+        return result != null && !(malformed && result.isEmpty());
+    }
+
+    @Override
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    @Override
+    public String rawJson() {
+        return json;
+    }
+
+    @Override
+    public JsonParser rawParser() throws IOException {
+        return codec.parser(json);
+    }
+
+    @Override
+    public Object decodedValue() {
+        return decoded();
+    }
+
+    /**
+     * 复制为共享同一原始JSON的新延迟值
+     */
+    public LazyJsonList copy() {
+        return new LazyJsonList(json, codec);
+    }
+
+    private List<String> decoded() {
+        List<String> result = decoded;
+        if (result == null) {
+            synchronized (this) {
+                result = decoded;
+                if (result == null) {
+                    result = new ArrayList<>();
+                    try {
+                        List<String> parsed = codec.readStringList(json);
+                        if (parsed != null) {
+                            result.addAll(parsed);
+                        }
+                    } catch (Exception e) {
+                        malformed = true;
+                        log.error("解析JSON数组失败，按空值读取并保留原始值: {}", json, e);
+                    }
+                    decoded = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String get(int index) {
+        return decoded().get(index);
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public String set(int index, String element) {
+        return decoded().set(index, element);
+    }
+
+    @Override
+    public void add(int index, String element) {
+        decoded().add(index, element);
+    }
+
+    @Override
+    public String remove(int index) {
+        return decoded().remove(index);
+    }
+}
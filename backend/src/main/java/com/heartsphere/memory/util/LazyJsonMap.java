@@ -0,0 +1,125 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 延迟解码的JSON对象
+ * 首次读取或修改时才解析原始JSON，之后所有操作委托给解码后的LinkedHashMap。
+ * 原始JSON无法解析时记录错误并按空Map读取；内容未被写入时写回仍保留原始JSON。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Slf4j
+@JsonSerialize(using = LazyJsonSerializer.class)
+public class LazyJsonMap extends AbstractMap<String, Object> implements LazyJsonValue {
+
+    private final String json;
+    private final MemoryJsonCodec codec;
+    private volatile Map<String, Object> decoded;
+    private volatile boolean malformed;
+
+    public LazyJsonMap(String json, MemoryJsonCodec codec) {
+        this.json = json;
+        this.codec = codec;
+    }
+
+    @Override
+    public boolean isDecoded() {
+        Map<String, Object> result = decoded;
+        return result != null && !(malformed && result.isEmpty());
+    }
+
+    @Override
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    @Override
+    public String rawJson() {
+        return json;
+    }
+
+    @Override
+    public JsonParser rawParser() throws IOException {
+        return codec.parser(json);
+    }
+
+    @Override
+    public Object decodedValue() {
+        return decoded();
+    }
+
+    /**
+     * 复制为共享同一原始JSON的新延迟值
+     */
+    public LazyJsonMap copy() {
+        return new LazyJsonMap(json, codec);
+    }
+
+    private Map<String, Object> decoded() {
+        Map<String, Object> result = decoded;
+        if (result == null) {
+            synchronized (this) {
+                result = decoded;
+                if (result == null) {
+                    result = new LinkedHashMap<>();
+                    try {
+                        Map<String, Object> parsed = codec.readMap(json);
+                        if (parsed != null) {
+                            result.putAll(parsed);
+                        }
+                    } catch (Exception e) {
+                        malformed = true;
+                        log.error("解析JSON对象失败，按空值读取并保留原始值: {}", json, e);
+                    }
+                    decoded = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return decoded().entrySet();
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return decoded().get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return decoded().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return decoded().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        decoded().clear();
+    }
+}
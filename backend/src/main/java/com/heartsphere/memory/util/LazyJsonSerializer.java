@@ -0,0 +1,30 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * 延迟解码JSON值的序列化器
+ * 未解码时把原始JSON按token流式拷贝到输出，不构建中间的Map/List；已解码或原始JSON无法解析时按解码后的集合输出。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class LazyJsonSerializer extends JsonSerializer<LazyJsonValue> {
+
+    @Override
+    public void serialize(LazyJsonValue value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (value.isDecoded() || value.isMalformed()) {
+            serializers.defaultSerializeValue(value.decodedValue(), gen);
+            return;
+        }
+        try (JsonParser parser = value.rawParser()) {
+            parser.nextToken();
+            gen.copyCurrentStructure(parser);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * 延迟解码的JSON值
+ * 保留数据库中的原始JSON，首次访问内容时才解码；未解码时可直接输出原始JSON。
+ * 原始JSON无法解析时按空集合读取，但只要内容未被写入，写回时仍保留原始JSON，不会覆盖数据库中的数据。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public interface LazyJsonValue {
+
+    /**
+     * 是否需要按解码后的内容输出（已解码后可能被修改；无法解析且仍为空时视为未解码，保留原始JSON）
+     */
+    boolean isDecoded();
+
+    /**
+     * 原始JSON是否无法解析（解码后才能确定）
+     */
+    boolean isMalformed();
+
+    /**
+     * 原始JSON
+     */
+    String rawJson();
+
+    /**
+     * 原始JSON的流式解析器
+     */
+    JsonParser rawParser() throws IOException;
+
+    /**
+     * 解码后的集合（未解码时触发解码）
+     */
+    Object decodedValue();
+}
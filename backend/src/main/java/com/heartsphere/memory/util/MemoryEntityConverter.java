@@ -1,10 +1,11 @@
 package com.heartsphere.memory.util;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.heartsphere.memory.entity.*;
 import com.heartsphere.memory.model.*;
+import com.heartsphere.memory.text.TokenEstimator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -14,18 +15,25 @@ import java.util.*;
 /**
  * 记忆实体转换工具类
  * 用于模型（Model）和实体（Entity）之间的转换
+ * 实体中的JSON字段（metadata、tags、structuredData）转换为模型时不立即解析，
+ * 而是包装为延迟解码的Map/List，只有被访问时才解析；原样写回实体时也不再重新序列化。
  * 
  * @author HeartSphere
  * @date 2025-12-31
  */
+@Component
 @Slf4j
 public class MemoryEntityConverter {
     
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final MemoryJsonCodec jsonCodec;
+    
+    public MemoryEntityConverter(MemoryJsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
     
     // ========== ChatMessage 转换 ==========
     
-    public static ChatMessageEntity toEntity(ChatMessage message) {
+    public ChatMessageEntity toEntity(ChatMessage message) {
         if (message == null) {
             return null;
         }
@@ -39,8 +47,9 @@ public class MemoryEntityConverter {
                 .content(message.getContent())
                 .timestamp(message.getTimestamp())
                 .importance(message.getImportance() != null ? message.getImportance().toString() : null)
-                .metadata(message.getMetadata() != null ? objectMapper.writeValueAsString(message.getMetadata()) : null)
+                .metadata(message.getMetadata() != null ? jsonCodec.write(message.getMetadata()) : null)
                 .expiresAt(calculateExpiresAt(message.getTimestamp()))
+                .tokenCount(TokenEstimator.estimate(message.getContent()))
                 .build();
             
             return entity;
@@ -50,16 +59,13 @@ public class MemoryEntityConverter {
         }
     }
     
-    public static ChatMessage toModel(ChatMessageEntity entity) {
+    public ChatMessage toModel(ChatMessageEntity entity) {
         if (entity == null) {
             return null;
         }
         
         try {
-            Map<String, Object> metadata = null;
-            if (entity.getMetadata() != null && !entity.getMetadata().isEmpty()) {
-                metadata = objectMapper.readValue(entity.getMetadata(), new TypeReference<Map<String, Object>>() {});
-            }
+            Map<String, Object> metadata = jsonCodec.lazyMap(entity.getMetadata());
             
             Double importance = null;
             if (entity.getImportance() != null) {
@@ -79,6 +85,7 @@ public class MemoryEntityConverter {
                 .metadata(metadata)
                 .timestamp(entity.getTimestamp())
                 .importance(importance)
+                .tokenCount(entity.getTokenCount())
                 .build();
         } catch (Exception e) {
             log.error("转换ChatMessageEntity到Model失败", e);
@@ -88,7 +95,7 @@ public class MemoryEntityConverter {
     
     // ========== UserMemory 转换 ==========
     
-    public static UserMemoryEntity toEntity(UserMemory memory) {
+    public UserMemoryEntity toEntity(UserMemory memory) {
         if (memory == null) {
             return null;
         }
@@ -96,18 +103,11 @@ public class MemoryEntityConverter {
         try {
             String structuredData = null;
             if (memory.getStructuredData() != null) {
-                structuredData = objectMapper.writeValueAsString(memory.getStructuredData());
+                structuredData = jsonCodec.write(memory.getStructuredData());
             }
             
-            String tags = null;
-            if (memory.getTags() != null && !memory.getTags().isEmpty()) {
-                tags = objectMapper.writeValueAsString(memory.getTags());
-            }
-            
-            String metadata = null;
-            if (memory.getMetadata() != null && !memory.getMetadata().isEmpty()) {
-                metadata = objectMapper.writeValueAsString(memory.getMetadata());
-            }
+            String tags = toJsonIfNotEmpty(memory.getTags());
+            String metadata = toJsonIfNotEmpty(memory.getMetadata());
             
             UserMemoryEntity entity = UserMemoryEntity.builder()
                 .id(memory.getId())
@@ -124,6 +124,7 @@ public class MemoryEntityConverter {
                 .confidence(memory.getConfidence())
                 .tags(tags)
                 .metadata(metadata)
+                .tokenCount(TokenEstimator.estimate(memory.getContent()))
                 .build();
             
             return entity;
@@ -133,26 +134,15 @@ public class MemoryEntityConverter {
         }
     }
     
-    public static UserMemory toModel(UserMemoryEntity entity) {
+    public UserMemory toModel(UserMemoryEntity entity) {
         if (entity == null) {
             return null;
         }
         
         try {
-            Map<String, Object> structuredData = null;
-            if (entity.getStructuredData() != null && !entity.getStructuredData().isEmpty()) {
-                structuredData = objectMapper.readValue(entity.getStructuredData(), new TypeReference<Map<String, Object>>() {});
-            }
-            
-            List<String> tags = null;
-            if (entity.getTags() != null && !entity.getTags().isEmpty()) {
-                tags = objectMapper.readValue(entity.getTags(), new TypeReference<List<String>>() {});
-            }
-            
-            Map<String, Object> metadata = null;
-            if (entity.getMetadata() != null && !entity.getMetadata().isEmpty()) {
-                metadata = objectMapper.readValue(entity.getMetadata(), new TypeReference<Map<String, Object>>() {});
-            }
+            Map<String, Object> structuredData = jsonCodec.lazyMap(entity.getStructuredData());
+            List<String> tags = jsonCodec.lazyStringList(entity.getTags());
+            Map<String, Object> metadata = jsonCodec.lazyMap(entity.getMetadata());
             
             return UserMemory.builder()
                 .id(entity.getId())
@@ -169,6 +159,7 @@ public class MemoryEntityConverter {
                 .confidence(entity.getConfidence())
                 .tags(tags)
                 .metadata(metadata)
+                .tokenCount(entity.getTokenCount())
                 .build();
         } catch (Exception e) {
             log.error("转换UserMemoryEntity到Model失败", e);
@@ -178,21 +169,14 @@ public class MemoryEntityConverter {
     
     // ========== UserFact 转换 ==========
     
-    public static UserFactEntity toEntity(UserFact fact) {
+    public UserFactEntity toEntity(UserFact fact) {
         if (fact == null) {
             return null;
         }
         
         try {
-            String tags = null;
-            if (fact.getTags() != null && !fact.getTags().isEmpty()) {
-                tags = objectMapper.writeValueAsString(fact.getTags());
-            }
-            
-            String metadata = null;
-            if (fact.getMetadata() != null && !fact.getMetadata().isEmpty()) {
-                metadata = objectMapper.writeValueAsString(fact.getMetadata());
-            }
+            String tags = toJsonIfNotEmpty(fact.getTags());
+            String metadata = toJsonIfNotEmpty(fact.getMetadata());
             
             UserFactEntity entity = UserFactEntity.builder()
                 .id(fact.getId())
@@ -207,6 +191,7 @@ public class MemoryEntityConverter {
                 .accessCount(fact.getAccessCount())
                 .tags(tags)
                 .metadata(metadata)
+                .tokenCount(TokenEstimator.estimate(fact.getFact()))
                 .build();
             
             return entity;
@@ -216,21 +201,14 @@ public class MemoryEntityConverter {
         }
     }
     
-    public static UserFact toModel(UserFactEntity entity) {
+    public UserFact toModel(UserFactEntity entity) {
         if (entity == null) {
             return null;
         }
         
         try {
-            List<String> tags = null;
-            if (entity.getTags() != null && !entity.getTags().isEmpty()) {
-                tags = objectMapper.readValue(entity.getTags(), new TypeReference<List<String>>() {});
-            }
-            
-            Map<String, Object> metadata = null;
-            if (entity.getMetadata() != null && !entity.getMetadata().isEmpty()) {
-                metadata = objectMapper.readValue(entity.getMetadata(), new TypeReference<Map<String, Object>>() {});
-            }
+            List<String> tags = jsonCodec.lazyStringList(entity.getTags());
+            Map<String, Object> metadata = jsonCodec.lazyMap(entity.getMetadata());
             
             UserFact fact = UserFact.builder()
                 .id(entity.getId())
@@ -245,6 +223,7 @@ public class MemoryEntityConverter {
                 .accessCount(entity.getAccessCount())
                 .tags(tags)
                 .metadata(metadata)
+                .tokenCount(entity.getTokenCount())
                 .build();
             
             return fact;
@@ -256,7 +235,7 @@ public class MemoryEntityConverter {
     
     // ========== UserPreference 转换 ==========
     
-    public static UserPreferenceEntity toEntity(UserPreference preference) {
+    public UserPreferenceEntity toEntity(UserPreference preference) {
         if (preference == null) {
             return null;
         }
@@ -267,7 +246,7 @@ public class MemoryEntityConverter {
                 if (preference.getValue() instanceof String) {
                     value = (String) preference.getValue();
                 } else {
-                    value = objectMapper.writeValueAsString(preference.getValue());
+                    value = jsonCodec.write(preference.getValue());
                 }
             }
             
@@ -286,7 +265,7 @@ public class MemoryEntityConverter {
         }
     }
     
-    public static UserPreference toModel(UserPreferenceEntity entity) {
+    public UserPreference toModel(UserPreferenceEntity entity) {
         if (entity == null) {
             return null;
         }
@@ -296,7 +275,7 @@ public class MemoryEntityConverter {
             if (entity.getValue() != null && !entity.getValue().isEmpty()) {
                 // 尝试解析为JSON，如果失败则作为字符串
                 try {
-                    value = objectMapper.readValue(entity.getValue(), Object.class);
+                    value = jsonCodec.readValue(entity.getValue());
                 } catch (Exception e) {
                     value = entity.getValue();
                 }
@@ -320,6 +299,23 @@ public class MemoryEntityConverter {
     
     // ========== 工具方法 ==========
     
+    /**
+     * 集合为null或为空时返回null；尚未解码的延迟值直接使用原始JSON
+     */
+    private String toJsonIfNotEmpty(Object value) throws JsonProcessingException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LazyJsonValue lazy && !lazy.isDecoded()) {
+            return lazy.rawJson();
+        }
+        if ((value instanceof Collection<?> collection && collection.isEmpty())
+                || (value instanceof Map<?, ?> map && map.isEmpty())) {
+            return null;
+        }
+        return jsonCodec.write(value);
+    }
+    
     private static LocalDateTime toLocalDateTime(Instant instant) {
         if (instant == null) {
             return null;
@@ -0,0 +1,114 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 记忆模型JSON字段的编解码
+ * 基于Spring中配置好的ObjectMapper，为已知结构（Map&lt;String, Object&gt;、List&lt;String&gt;）预先构建ObjectReader，
+ * 避免每行重复查找反序列化器。延迟解码的值持有创建它的编解码器，解码时使用同一个ObjectMapper。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+public class MemoryJsonCodec {
+
+    private final ObjectReader mapReader;
+    private final ObjectReader stringListReader;
+    private final ObjectReader objectReader;
+    private final ObjectWriter writer;
+
+    public MemoryJsonCodec(ObjectMapper objectMapper) {
+        this.mapReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
+        this.stringListReader = objectMapper.readerFor(new TypeReference<List<String>>() {});
+        this.objectReader = objectMapper.readerFor(Object.class);
+        this.writer = objectMapper.writer();
+    }
+
+    // ========== 解码 ==========
+
+    public Map<String, Object> readMap(String json) throws IOException {
+        return mapReader.readValue(json);
+    }
+
+    public List<String> readStringList(String json) throws IOException {
+        return stringListReader.readValue(json);
+    }
+
+    public Object readValue(String json) throws IOException {
+        return objectReader.readValue(json);
+    }
+
+    /**
+     * 创建流式解析器，用于不构建中间对象的逐token处理
+     */
+    public JsonParser parser(String json) throws IOException {
+        return objectReader.createParser(json);
+    }
+
+    // ========== 编码 ==========
+
+    /**
+     * 编码为JSON；尚未解码（或无法解析且未被修改）的延迟值直接返回原始JSON
+     */
+    public String write(Object value) throws JsonProcessingException {
+        if (value instanceof LazyJsonValue lazy && !lazy.isDecoded()) {
+            return lazy.rawJson();
+        }
+        return writer.writeValueAsString(value);
+    }
+
+    // ========== 延迟解码 ==========
+
+    /**
+     * 包装为延迟解码的Map；空字符串视为null
+     */
+    public Map<String, Object> lazyMap(String json) {
+        return json == null || json.isEmpty() ? null : new LazyJsonMap(json, this);
+    }
+
+    /**
+     * 包装为延迟解码的字符串列表；空字符串视为null
+     */
+    public List<String> lazyStringList(String json) {
+        return json == null || json.isEmpty() ? null : new LazyJsonList(json, this);
+    }
+
+    /**
+     * 复制Map；尚未解码的延迟Map只复制原始JSON
+     */
+    public static Map<String, Object> copyMap(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        if (map instanceof LazyJsonMap lazy && !lazy.isDecoded()) {
+            return lazy.copy();
+        }
+        return new HashMap<>(map);
+    }
+
+    /**
+     * 复制列表；尚未解码的延迟列表只复制原始JSON
+     */
+    public static List<String> copyStringList(List<String> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list instanceof LazyJsonList lazy && !lazy.isDecoded()) {
+            return lazy.copy();
+        }
+        return new ArrayList<>(list);
+    }
+}
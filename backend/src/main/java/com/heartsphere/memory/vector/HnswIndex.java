@@ -0,0 +1,632 @@
+package com.heartsphere.memory.vector;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW近似最近邻索引（单用户）
+ * 向量和邻接表全部保存在基本类型数组中，不引用任何实体对象；
+ * 向量需预先做L2归一化，距离使用 1 - 内积（即余弦距离）。
+ * 删除采用标记删除，删除比例过高时整体重建。
+ * 读写锁保护，查询可并发执行。
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int COMPACT_MIN_SIZE = 64;
+
+    private final String modelId;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private String[] ids;
+    /** links[node][level] = {邻居数, 邻居1, 邻居2, ...} */
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(String modelId, int dimension, int m, int efConstruction) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0) {
+            throw new IllegalArgumentException("无效的HNSW参数: dimension=" + dimension + ", m=" + m
+                + ", efConstruction=" + efConstruction);
+        }
+        this.modelId = modelId;
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new SplittableRandom(42);
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.ids = new String[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    // ========== 写操作 ==========
+
+    /**
+     * 添加或替换向量
+     *
+     * @param id 记忆ID
+     * @param vector 已归一化的向量
+     */
+    public void add(String id, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: expected=" + dimension + ", actual=" + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeById.remove(id);
+            if (existing != null) {
+                markDeleted(existing);
+            }
+            insert(id, vector);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除向量
+     *
+     * @param id 记忆ID
+     * @return 是否存在并已删除
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 查询最相似的向量
+     *
+     * @param query 已归一化的查询向量
+     * @param k 返回数量
+     * @param ef 查询候选集大小
+     * @param minSimilarity 最低相似度
+     * @return 按相似度降序排列的结果
+     */
+    public List<Hit> search(float[] query, int k, int ef, double minSimilarity) {
+        if (query.length != dimension || k <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || nodeById.isEmpty()) {
+                return Collections.emptyList();
+            }
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = greedyClosest(query, ep, level);
+            }
+            // 已删除节点仍参与遍历，多取一些候选以免结果不足
+            int candidates = Math.max(ef, k) + Math.min(deletedCount, k);
+            NodeQueue results = searchLayer(query, ep, candidates, 0, new BitSet(size));
+
+            int count = results.size();
+            int[] nodes = new int[count];
+            float[] distances = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                nodes[i] = results.peekNode();
+                distances[i] = results.peekDistance();
+                results.pop();
+            }
+
+            List<Hit> hits = new ArrayList<>(Math.min(k, count));
+            for (int i = 0; i < count && hits.size() < k; i++) {
+                float similarity = 1f - distances[i];
+                if (deleted.get(nodes[i]) || similarity < minSimilarity) {
+                    continue;
+                }
+                hits.add(new Hit(ids[nodes[i]], similarity));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return nodeById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效向量的ID快照
+     */
+    public List<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodeById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效向量数量（不含已删除）
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    // ========== 持久化 ==========
+
+    /**
+     * 写出紧凑二进制格式（原始向量与邻接表）
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(modelId);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                boolean isDeleted = deleted.get(node);
+                out.writeBoolean(isDeleted);
+                out.writeUTF(isDeleted ? "" : ids[node]);
+                int base = node * dimension;
+                for (int i = 0; i < dimension; i++) {
+                    out.writeFloat(vectors[base + i]);
+                }
+                int[][] nodeLinks = links[node];
+                out.writeByte(nodeLinks.length);
+                for (int[] levelLinks : nodeLinks) {
+                    int count = levelLinks[0];
+                    out.writeShort(count);
+                    for (int i = 1; i <= count; i++) {
+                        out.writeInt(levelLinks[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从二进制格式读取索引
+     */
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是有效的HNSW索引文件");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的HNSW索引版本: " + version);
+        }
+        String modelId = in.readUTF();
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        HnswIndex index = new HnswIndex(modelId, dimension, m, efConstruction);
+
+        int size = in.readInt();
+        index.ensureCapacity(size);
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int node = 0; node < size; node++) {
+            boolean isDeleted = in.readBoolean();
+            String id = in.readUTF();
+            int base = node * dimension;
+            for (int i = 0; i < dimension; i++) {
+                index.vectors[base + i] = in.readFloat();
+            }
+            int levelCount = in.readByte();
+            int[][] nodeLinks = new int[levelCount][];
+            for (int level = 0; level < levelCount; level++) {
+                int count = in.readShort();
+                int[] levelLinks = new int[index.maxConnections(level) + 1];
+                levelLinks[0] = count;
+                for (int i = 1; i <= count; i++) {
+                    levelLinks[i] = in.readInt();
+                }
+                nodeLinks[level] = levelLinks;
+            }
+            index.links[node] = nodeLinks;
+            if (isDeleted) {
+                index.deleted.set(node);
+                index.deletedCount++;
+            } else {
+                index.ids[node] = id;
+                index.nodeById.put(id, node);
+            }
+        }
+        index.size = size;
+        return index;
+    }
+
+    // ========== 内部实现 ==========
+
+    private void insert(String id, float[] vector) {
+        int node = size;
+        ensureCapacity(node + 1);
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        ids[node] = id;
+        size++;
+
+        int level = randomLevel();
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[maxConnections(l) + 1];
+        }
+        links[node] = nodeLinks;
+        nodeById.put(id, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vector, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeQueue candidates = searchLayer(vector, ep, efConstruction, l, new BitSet(size));
+            int[] neighbors = selectNeighbors(candidates, maxConnections(l));
+            int[] own = nodeLinks[l];
+            own[0] = neighbors.length;
+            System.arraycopy(neighbors, 0, own, 1, neighbors.length);
+            for (int neighbor : neighbors) {
+                connect(neighbor, node, l);
+            }
+            ep = neighbors.length > 0 ? neighbors[0] : ep;
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] fromLinks = links[from][level];
+        int count = fromLinks[0];
+        int maxConn = fromLinks.length - 1;
+        if (count < maxConn) {
+            fromLinks[count + 1] = to;
+            fromLinks[0] = count + 1;
+            return;
+        }
+        // 邻居已满：在原邻居和新节点中重新挑选
+        int base = from * dimension;
+        NodeQueue candidates = new NodeQueue(true, count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.push(fromLinks[i], distanceBetween(base, fromLinks[i] * dimension));
+        }
+        candidates.push(to, distanceBetween(base, to * dimension));
+        int[] selected = selectNeighbors(candidates, maxConn);
+        fromLinks[0] = selected.length;
+        System.arraycopy(selected, 0, fromLinks, 1, selected.length);
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此不太相近的候选，保证图的连通性
+     * 会消耗传入的候选队列
+     */
+    private int[] selectNeighbors(NodeQueue candidates, int maxConn) {
+        int count = candidates.size();
+        int[] sorted = new int[count];
+        float[] sortedDistances = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sorted[i] = candidates.peekNode();
+            sortedDistances[i] = candidates.peekDistance();
+            candidates.pop();
+        }
+        if (count <= maxConn) {
+            return sorted;
+        }
+
+        int[] selected = new int[maxConn];
+        int selectedCount = 0;
+        boolean[] used = new boolean[count];
+        for (int i = 0; i < count && selectedCount < maxConn; i++) {
+            int candidate = sorted[i];
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (distanceBetween(candidate * dimension, selected[j] * dimension) < sortedDistances[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidate;
+                used[i] = true;
+            }
+        }
+        // 启发式挑选不足时，用剩余最近的候选补齐
+        for (int i = 0; i < count && selectedCount < maxConn; i++) {
+            if (!used[i]) {
+                selected[selectedCount++] = sorted[i];
+            }
+        }
+        return selected;
+    }
+
+    private int greedyClosest(float[] query, int ep, int level) {
+        float best = distanceTo(query, ep);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = links[ep][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int candidate = nodeLinks[i];
+                float distance = distanceTo(query, candidate);
+                if (distance < best) {
+                    best = distance;
+                    ep = candidate;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * 在指定层做束搜索，返回以距离为序的大顶堆（堆顶为当前最远结果）
+     */
+    private NodeQueue searchLayer(float[] query, int ep, int ef, int level, BitSet visited) {
+        NodeQueue candidates = new NodeQueue(false, ef * 2);
+        NodeQueue results = new NodeQueue(true, ef + 1);
+        float epDistance = distanceTo(query, ep);
+        candidates.push(ep, epDistance);
+        results.push(ep, epDistance);
+        visited.set(ep);
+
+        while (candidates.size() > 0) {
+            int current = candidates.peekNode();
+            float currentDistance = candidates.peekDistance();
+            candidates.pop();
+            if (results.size() >= ef && currentDistance > results.peekDistance()) {
+                break;
+            }
+            int[] nodeLinks = links[current][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float distance = distanceTo(query, neighbor);
+                if (results.size() < ef || distance < results.peekDistance()) {
+                    candidates.push(neighbor, distance);
+                    results.push(neighbor, distance);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+        ids[node] = null;
+    }
+
+    /**
+     * 已删除节点超过一半时重建，回收空间并恢复查询质量
+     */
+    private void compactIfNeeded() {
+        if (size < COMPACT_MIN_SIZE || deletedCount * 2 < size) {
+            return;
+        }
+        float[] oldVectors = vectors;
+        String[] oldIds = ids;
+        int oldSize = size;
+        BitSet oldDeleted = (BitSet) deleted.clone();
+
+        int live = oldSize - deletedCount;
+        vectors = new float[Math.max(INITIAL_CAPACITY, live) * dimension];
+        ids = new String[Math.max(INITIAL_CAPACITY, live)];
+        links = new int[Math.max(INITIAL_CAPACITY, live)][][];
+        deleted.clear();
+        nodeById.clear();
+        size = 0;
+        deletedCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+
+        float[] buffer = new float[dimension];
+        for (int node = 0; node < oldSize; node++) {
+            if (oldDeleted.get(node)) {
+                continue;
+            }
+            System.arraycopy(oldVectors, node * dimension, buffer, 0, dimension);
+            insert(oldIds[node], buffer);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        ids = Arrays.copyOf(ids, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return Math.min(16, (int) (-Math.log(1.0 - r) * levelMultiplier));
+    }
+
+    private float distanceTo(float[] query, int node) {
+        int base = node * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors[base + i];
+        }
+        return 1f - dot;
+    }
+
+    private float distanceBetween(int baseA, int baseB) {
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += vectors[baseA + i] * vectors[baseB + i];
+        }
+        return 1f - dot;
+    }
+
+    /**
+     * 查询结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Hit {
+        private final String id;
+        private final float score;
+    }
+
+    /**
+     * 基于基本类型数组的二叉堆，避免为每个候选节点分配对象
+     */
+    private static final class NodeQueue {
+        private final boolean maxHeap;
+        private int[] nodes;
+        private float[] distances;
+        private int size;
+
+        NodeQueue(boolean maxHeap, int capacity) {
+            this.maxHeap = maxHeap;
+            this.nodes = new int[Math.max(4, capacity)];
+            this.distances = new float[Math.max(4, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int peekNode() {
+            return nodes[0];
+        }
+
+        float peekDistance() {
+            return distances[0];
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(distance, distances[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        void pop() {
+            int last = --size;
+            if (last == 0) {
+                return;
+            }
+            int node = nodes[last];
+            float distance = distances[last];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= last) {
+                    break;
+                }
+                if (child + 1 < last && before(distances[child + 1], distances[child])) {
+                    child++;
+                }
+                if (!before(distances[child], distance)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        private boolean before(float a, float b) {
+            return maxHeap ? a > b : a < b;
+        }
+    }
+}
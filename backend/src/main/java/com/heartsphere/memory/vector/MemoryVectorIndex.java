@@ -0,0 +1,312 @@
+package com.heartsphere.memory.vector;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.heartsphere.memory.dto.VectorSearchRequest;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.service.EmbeddingService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户记忆向量索引
+ * 每个用户一份HNSW索引，随记忆的保存/删除增量维护，并定期落盘为二进制文件，
+ * 按需加载；内存中最多保留 maxLoadedUsers 个用户的索引，淘汰时有变更的先落盘。
+ * 文件不存在或向量模型变化时从MySQL分批重建
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@Component
+@Slf4j
+public class MemoryVectorIndex {
+
+    private static final String FILE_SUFFIX = ".hnsw";
+
+    private final EmbeddingService embeddingService;
+    private final UserMemoryRepository userMemoryRepository;
+    private final MemoryProperties.VectorIndex config;
+
+    private final Cache<String, HnswIndex> indexes;
+    private final Map<String, String> memoryOwners = new ConcurrentHashMap<>();
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    public MemoryVectorIndex(
+            EmbeddingService embeddingService,
+            UserMemoryRepository userMemoryRepository,
+            MemoryProperties memoryProperties) {
+        this.embeddingService = embeddingService;
+        this.userMemoryRepository = userMemoryRepository;
+        this.config = memoryProperties.getVectorIndex();
+        this.indexes = Caffeine.newBuilder()
+            .maximumSize(Math.max(1, config.getMaxLoadedUsers()))
+            .evictionListener(this::onEvicted)
+            .executor(Runnable::run)
+            .build();
+    }
+
+    // ========== 索引维护 ==========
+
+    /**
+     * 添加或更新记忆向量
+     *
+     * @param userId 用户ID
+     * @param memoryId 记忆ID
+     * @param content 记忆内容
+     */
+    public void index(String userId, String memoryId, String content) {
+        if (!config.isEnabled() || userId == null || memoryId == null || content == null || content.isBlank()) {
+            return;
+        }
+        try {
+            HnswIndex index = getOrLoad(userId);
+            index.add(memoryId, embeddingService.embed(content));
+            memoryOwners.put(memoryId, userId);
+            dirtyUsers.add(userId);
+        } catch (Exception e) {
+            log.warn("更新记忆向量索引失败: userId={}, memoryId={}", userId, memoryId, e);
+        }
+    }
+
+    /**
+     * 删除记忆向量
+     *
+     * @param memoryId 记忆ID
+     */
+    public void remove(String memoryId) {
+        if (!config.isEnabled() || memoryId == null) {
+            return;
+        }
+        String userId = memoryOwners.remove(memoryId);
+        if (userId == null) {
+            return;
+        }
+        HnswIndex index = indexes.getIfPresent(userId);
+        if (index != null && index.remove(memoryId)) {
+            dirtyUsers.add(userId);
+        }
+    }
+
+    /**
+     * 移除已不在数据库中的记忆（例如索引未加载期间被删除的记忆）
+     *
+     * @param userId 用户ID
+     * @param memoryIds 失效的记忆ID
+     */
+    public void removeStale(String userId, Collection<String> memoryIds) {
+        HnswIndex index = indexes.getIfPresent(userId);
+        if (index == null) {
+            return;
+        }
+        boolean changed = false;
+        for (String memoryId : memoryIds) {
+            memoryOwners.remove(memoryId);
+            changed |= index.remove(memoryId);
+        }
+        if (changed) {
+            dirtyUsers.add(userId);
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 语义检索，使用配置的最低相似度
+     *
+     * @param userId 用户ID
+     * @param query 查询文本
+     * @param limit 返回数量
+     * @return 按相似度降序的记忆ID
+     */
+    public List<HnswIndex.Hit> search(String userId, String query, int limit) {
+        return search(VectorSearchRequest.builder()
+            .userId(userId)
+            .query(query)
+            .limit(limit)
+            .threshold(config.getMinSimilarity())
+            .build());
+    }
+
+    /**
+     * 语义检索
+     *
+     * @param request 向量检索请求
+     * @return 按相似度降序的记忆ID
+     */
+    public List<HnswIndex.Hit> search(VectorSearchRequest request) {
+        if (!config.isEnabled() || request.getUserId() == null
+                || request.getQuery() == null || request.getQuery().isBlank()) {
+            return Collections.emptyList();
+        }
+        try {
+            HnswIndex index = getOrLoad(request.getUserId());
+            if (index.size() == 0) {
+                return Collections.emptyList();
+            }
+            int limit = request.getLimit() != null ? request.getLimit() : 10;
+            double threshold = request.getThreshold() != null ? request.getThreshold() : config.getMinSimilarity();
+            float[] query = embeddingService.embed(request.getQuery());
+            return index.search(query, limit, Math.max(config.getEfSearch(), limit), threshold);
+        } catch (Exception e) {
+            log.warn("记忆向量检索失败: userId={}", request.getUserId(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    // ========== 持久化 ==========
+
+    /**
+     * 定期把有变更的索引写入磁盘
+     */
+    @Scheduled(fixedDelayString = "${heartsphere.memory.vector-index.flush-interval-ms:30000}")
+    public void flushDirty() {
+        if (dirtyUsers.isEmpty()) {
+            return;
+        }
+        for (String userId : dirtyUsers) {
+            dirtyUsers.remove(userId);
+            HnswIndex index = indexes.getIfPresent(userId);
+            if (index == null) {
+                continue;
+            }
+            try {
+                write(userId, index);
+            } catch (IOException e) {
+                dirtyUsers.add(userId);
+                log.warn("记忆向量索引落盘失败: userId={}", userId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushDirty();
+    }
+
+    private HnswIndex getOrLoad(String userId) {
+        return indexes.get(userId, this::load);
+    }
+
+    /**
+     * 淘汰用户索引：有未落盘的变更时先写入磁盘，并释放记忆归属
+     * 在缓存的原子淘汰中执行，同一用户的重新加载会等待写入完成
+     */
+    private void onEvicted(String userId, HnswIndex index, RemovalCause cause) {
+        if (userId == null || index == null) {
+            return;
+        }
+        if (dirtyUsers.remove(userId)) {
+            try {
+                write(userId, index);
+            } catch (IOException e) {
+                // 下次加载时文件缺失或过期，由MySQL重建
+                log.warn("淘汰记忆向量索引时落盘失败: userId={}", userId, e);
+                deleteQuietly(indexFile(userId));
+            }
+        }
+        for (String memoryId : index.ids()) {
+            memoryOwners.remove(memoryId, userId);
+        }
+        log.debug("淘汰记忆向量索引: userId={}, size={}", userId, index.size());
+    }
+
+    private HnswIndex load(String userId) {
+        Path file = indexFile(userId);
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                HnswIndex index = HnswIndex.readFrom(in);
+                if (embeddingService.getModelId().equals(index.getModelId())
+                        && embeddingService.getDimension() == index.getDimension()) {
+                    log.debug("加载记忆向量索引: userId={}, size={}", userId, index.size());
+                    for (String memoryId : index.ids()) {
+                        memoryOwners.put(memoryId, userId);
+                    }
+                    return index;
+                }
+                log.info("向量模型已变化，重建记忆向量索引: userId={}", userId);
+            } catch (IOException e) {
+                log.warn("读取记忆向量索引失败，将重建: userId={}", userId, e);
+            }
+        }
+        return rebuild(userId);
+    }
+
+    private HnswIndex rebuild(String userId) {
+        HnswIndex index = newIndex();
+        int batchSize = Math.max(1, config.getRebuildBatchSize());
+        String afterId = "";
+        while (true) {
+            List<Object[]> rows = userMemoryRepository.findTextBatchByUserAfter(userId, afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                String memoryId = (String) row[0];
+                String content = (String) row[1];
+                if (content != null && !content.isBlank()) {
+                    index.add(memoryId, embeddingService.embed(content));
+                    memoryOwners.put(memoryId, userId);
+                }
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+            afterId = (String) rows.get(rows.size() - 1)[0];
+        }
+        if (index.size() > 0) {
+            dirtyUsers.add(userId);
+        }
+        log.debug("重建记忆向量索引: userId={}, size={}", userId, index.size());
+        return index;
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(embeddingService.getModelId(), embeddingService.getDimension(),
+            config.getM(), config.getEfConstruction());
+    }
+
+    private void write(String userId, HnswIndex index) throws IOException {
+        Path file = indexFile(userId);
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            index.writeTo(out);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除记忆向量索引文件失败: {}", file, e);
+        }
+    }
+
+    private Path indexFile(String userId) {
+        String name = userId.matches("[A-Za-z0-9_-]{1,64}")
+            ? userId
+            : UUID.nameUUIDFromBytes(userId.getBytes(StandardCharsets.UTF_8)).toString();
+        return Paths.get(config.getPath(), name + FILE_SUFFIX);
+    }
+}
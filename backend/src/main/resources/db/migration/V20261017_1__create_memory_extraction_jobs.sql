@@ -0,0 +1,25 @@
+-- 记忆提取任务队列
+-- 提取请求先持久化再由调度器按提供商并发上限执行，突发流量下延后执行而不是丢弃，重启后继续
+-- pending_key：等待调度时为会话ID，其他状态为NULL；唯一索引保证每个会话最多一个等待任务
+-- 完成的任务直接删除，表中只保留未完成的任务
+
+CREATE TABLE IF NOT EXISTS memory_extraction_jobs (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id VARCHAR(64) NOT NULL COMMENT '用户ID',
+    session_id VARCHAR(64) NOT NULL COMMENT '会话ID',
+    pending_key VARCHAR(64) NULL COMMENT '合并键（等待中为会话ID）',
+    lane VARCHAR(20) NOT NULL COMMENT '优先级通道：INTERACTIVE/BACKFILL',
+    status VARCHAR(20) NOT NULL COMMENT '状态：PENDING/RUNNING/FAILED',
+    trigger_count INT NOT NULL DEFAULT 1 COMMENT '合并的触发次数',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    available_at DATETIME(6) NOT NULL COMMENT '最早可调度时间',
+    first_triggered_at DATETIME(6) NOT NULL COMMENT '首次触发时间',
+    started_at DATETIME(6) NULL COMMENT '开始执行时间',
+    last_error VARCHAR(500) NULL COMMENT '最近一次失败原因',
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY idx_extraction_job_pending_key (pending_key),
+    KEY idx_extraction_job_ready (status, lane, available_at),
+    KEY idx_extraction_job_started_at (status, started_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='记忆提取任务队列';
@@ -0,0 +1,57 @@
+-- 为长期记忆和用户事实增加内容指纹，用于后台近似重复合并
+-- content_fingerprint：内容的64位SimHash，为空表示尚未参与合并（新写入或内容已修改）
+-- 表由应用早期版本创建，这里按列/索引是否存在决定是否执行
+
+-- 1. user_memories
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories' AND COLUMN_NAME = 'content_fingerprint'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE user_memories ADD COLUMN content_fingerprint BIGINT NULL COMMENT ''内容SimHash指纹''',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @index_exists = (
+    SELECT COUNT(*) FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories' AND INDEX_NAME = 'idx_memory_fingerprint'
+);
+SET @sql = IF(@table_exists > 0 AND @index_exists = 0,
+    'CREATE INDEX idx_memory_fingerprint ON user_memories (content_fingerprint)',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. user_facts
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_facts'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_facts' AND COLUMN_NAME = 'content_fingerprint'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE user_facts ADD COLUMN content_fingerprint BIGINT NULL COMMENT ''内容SimHash指纹''',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @index_exists = (
+    SELECT COUNT(*) FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_facts' AND INDEX_NAME = 'idx_fact_fingerprint'
+);
+SET @sql = IF(@table_exists > 0 AND @index_exists = 0,
+    'CREATE INDEX idx_fact_fingerprint ON user_facts (content_fingerprint)',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
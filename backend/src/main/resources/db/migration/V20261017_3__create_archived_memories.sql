@@ -0,0 +1,24 @@
+-- 冷记忆归档表
+-- 热度低的记忆从 user_memories 移入此表，ID保持不变；user_memories 及其索引只保留活跃数据
+-- payload：正文、结构化数据、标签、元数据合并的JSON，raw deflate + 共享字典压缩
+-- summary_tokens：按词频取前N个词项哈希的升序int数组，检索时不解压正文
+
+CREATE TABLE IF NOT EXISTS archived_memories (
+    id VARCHAR(64) NOT NULL,
+    user_id VARCHAR(64) NOT NULL COMMENT '用户ID',
+    type VARCHAR(50) NOT NULL COMMENT '记忆类型',
+    importance VARCHAR(20) NOT NULL COMMENT '重要性',
+    source VARCHAR(30) NOT NULL COMMENT '记忆来源',
+    source_id VARCHAR(64) NULL COMMENT '来源ID',
+    confidence DOUBLE NULL COMMENT '提取置信度',
+    access_count INT NOT NULL DEFAULT 0 COMMENT '访问次数',
+    created_at DATETIME(6) NOT NULL COMMENT '原始创建时间',
+    last_accessed_at DATETIME(6) NULL COMMENT '最后访问时间',
+    archived_at DATETIME(6) NOT NULL COMMENT '归档时间',
+    payload LONGBLOB NOT NULL COMMENT '压缩内容',
+    payload_length INT NOT NULL COMMENT '压缩前字节数',
+    dictionary_version INT NOT NULL COMMENT '压缩字典版本',
+    summary_tokens VARBINARY(1024) NULL COMMENT '词项摘要',
+    PRIMARY KEY (id),
+    KEY idx_archived_user (user_id, archived_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='冷记忆归档';
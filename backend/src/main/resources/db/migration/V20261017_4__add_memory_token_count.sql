@@ -0,0 +1,51 @@
+-- 为对话消息、长期记忆和用户事实增加估算token数，写入时计算一次，组装提示词上下文时直接使用
+-- token_count：为空表示早期写入的数据，读取时按内容现场估算
+-- 表由应用早期版本创建，这里按列是否存在决定是否执行
+
+-- 1. chat_messages
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'token_count'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE chat_messages ADD COLUMN token_count INT NULL COMMENT ''估算token数''',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. user_memories
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories' AND COLUMN_NAME = 'token_count'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE user_memories ADD COLUMN token_count INT NULL COMMENT ''估算token数''',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. user_facts
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_facts'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_facts' AND COLUMN_NAME = 'token_count'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE user_facts ADD COLUMN token_count INT NULL COMMENT ''估算token数''',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,17 @@
+-- 记忆列表按 (created_at DESC, id DESC) 键集分页，过滤和排序都在索引内完成
+-- 表由应用早期版本创建，这里按索引是否存在决定是否执行
+
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories'
+);
+SET @index_exists = (
+    SELECT COUNT(*) FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_memories' AND INDEX_NAME = 'idx_memory_user_created'
+);
+SET @sql = IF(@table_exists > 0 AND @index_exists = 0,
+    'CREATE INDEX idx_memory_user_created ON user_memories (user_id, created_at, id)',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
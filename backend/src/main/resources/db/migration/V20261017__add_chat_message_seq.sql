@@ -0,0 +1,85 @@
+-- 为对话消息增加会话内序号，超量裁剪改为按序号范围删除
+-- chat_messages.seq：会话内按写入顺序单调递增的序号
+-- memory_sessions.head_seq：会话内最新消息序号
+-- 裁剪条件：seq <= head_seq - 每会话最大消息数，使用 (session_id, seq) 索引
+-- 表由应用早期版本创建，这里按列/索引是否存在决定是否执行
+
+-- 1. chat_messages 增加 seq 列
+SET @table_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'seq'
+);
+SET @sql = IF(@table_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE chat_messages ADD COLUMN seq BIGINT NULL COMMENT ''会话内序号'' AFTER timestamp',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. 按时间戳回填已有消息的序号
+SET @sql = IF(@table_exists > 0,
+    'UPDATE chat_messages m
+     JOIN (
+         SELECT id, ROW_NUMBER() OVER (PARTITION BY session_id ORDER BY timestamp, id) AS rn
+         FROM chat_messages
+     ) r ON m.id = r.id
+     SET m.seq = r.rn
+     WHERE m.seq IS NULL',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. 裁剪与过期清理使用的索引
+SET @index_exists = (
+    SELECT COUNT(*) FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND INDEX_NAME = 'idx_session_seq'
+);
+SET @sql = IF(@table_exists > 0 AND @index_exists = 0,
+    'CREATE INDEX idx_session_seq ON chat_messages (session_id, seq)',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @index_exists = (
+    SELECT COUNT(*) FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND INDEX_NAME = 'idx_expires_at'
+);
+SET @sql = IF(@table_exists > 0 AND @index_exists = 0,
+    'CREATE INDEX idx_expires_at ON chat_messages (expires_at)',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 4. memory_sessions 增加 head_seq 列并回填
+SET @sessions_exists = (
+    SELECT COUNT(*) FROM information_schema.TABLES
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'memory_sessions'
+);
+SET @column_exists = (
+    SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'memory_sessions' AND COLUMN_NAME = 'head_seq'
+);
+SET @sql = IF(@sessions_exists > 0 AND @column_exists = 0,
+    'ALTER TABLE memory_sessions ADD COLUMN head_seq BIGINT NOT NULL DEFAULT 0 COMMENT ''会话内最新消息序号'' AFTER user_id',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(@sessions_exists > 0 AND @table_exists > 0,
+    'UPDATE memory_sessions s
+     JOIN (
+         SELECT session_id, MAX(seq) AS max_seq FROM chat_messages GROUP BY session_id
+     ) h ON s.session_id = h.session_id
+     SET s.head_seq = h.max_seq',
+    'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -14,7 +14,19 @@ import org.springframework.web.client.RestTemplate;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.test.util.ReflectionTestUtils;
-
+import com.heartsphere.aiagent.util.TextStreams;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -97,4 +109,40 @@ class DashScopeAdapterTest {
         assertEquals("dashscope", response.getProvider());
         verify(multimodalService, times(1)).generateImage(anyString(), any());
     }
+
+    @Test
+    void testStreamTextDecodesEventsSplitAcrossBuffers() {
+        // Given：SSE事件（含多字节字符）被拆分在不同的网络包中，用量在choices为空的事件中单独下发
+        byte[] body = ("data: {\"choices\":[{\"delta\":{\"content\":\"你好\"},\"finish_reason\":null}]}\n\n"
+            + "data: {\"choices\":[{\"delta\":{\"content\":\"世界\"},\"finish_reason\":\"stop\"}]}\n\n"
+            + "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":5,\"completion_tokens\":4,\"total_tokens\":9}}\n\n"
+            + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8);
+        Flux<DataBuffer> buffers = Flux.range(0, (body.length + 6) / 7)
+            .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                Arrays.copyOfRange(body, i * 7, Math.min(body.length, i * 7 + 7))));
+        WebClient streamingClient = WebClient.builder()
+            .exchangeFunction(clientRequest -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                .body(buffers)
+                .build()))
+            .build();
+        DashScopeAdapter streamingAdapter = new DashScopeAdapter(restTemplate, new ObjectMapper(), streamingClient, multimodalService);
+        ReflectionTestUtils.setField(streamingAdapter, "baseUrl", "https://dashscope.aliyuncs.com/compatible-mode/v1");
+        ReflectionTestUtils.setField(streamingAdapter, "defaultApiKey", "test-api-key");
+        TextGenerationRequest request = new TextGenerationRequest();
+        request.setPrompt("你好");
+        request.setModel("qwen-max");
+
+        // When
+        List<TextGenerationResponse> chunks = streamingAdapter.streamText(request).collectList().block(Duration.ofSeconds(5));
+
+        // Then
+        assertNotNull(chunks);
+        assertEquals(List.of("你好", "世界"), chunks.stream().filter(chunk -> !TextStreams.isEnd(chunk))
+            .map(TextGenerationResponse::getContent).toList());
+        TextGenerationResponse summary = new TextGenerationResponse();
+        chunks.forEach(chunk -> TextStreams.merge(summary, chunk));
+        assertEquals("stop", summary.getFinishReason());
+        assertEquals(9, summary.getUsage().getTotalTokens());
+    }
 }
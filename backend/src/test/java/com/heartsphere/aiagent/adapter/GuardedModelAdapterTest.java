@@ -0,0 +1,86 @@
+package com.heartsphere.aiagent.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.admin.service.AIModelConfigService;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.resilience.ProviderGuardStats;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * GuardedModelAdapter单元测试：哪些错误计入提供商熔断
+ */
+class GuardedModelAdapterTest {
+
+    private final ModelAdapter delegate = mock(ModelAdapter.class);
+
+    private ProviderGuardRegistry guardRegistry;
+
+    private GuardedModelAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        AIProperties properties = new AIProperties();
+        guardRegistry = new ProviderGuardRegistry(properties, mock(AIModelConfigService.class), new ObjectMapper());
+        when(delegate.getProviderType()).thenReturn("dashscope");
+        adapter = new GuardedModelAdapter(delegate, guardRegistry, new ModelLatencyTracker(properties));
+    }
+
+    private ProviderGuardStats stats() {
+        return guardRegistry.guard("dashscope", "text").stats();
+    }
+
+    private static TextGenerationRequest request() {
+        TextGenerationRequest request = new TextGenerationRequest();
+        request.setModel("qwen-max");
+        request.setPrompt("你好");
+        return request;
+    }
+
+    @Test
+    void testClientErrorsDoNotCountAsProviderFailures() {
+        when(delegate.generateText(any())).thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        assertThrows(HttpClientErrorException.class, () -> adapter.generateText(request()));
+
+        assertEquals(0, stats().getFailures());
+        assertEquals(0, stats().getInFlight());
+    }
+
+    @Test
+    void testServerErrorsAndRateLimitsCountAsProviderFailures() {
+        when(delegate.generateText(any()))
+            .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))
+            .thenThrow(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+
+        assertThrows(HttpServerErrorException.class, () -> adapter.generateText(request()));
+        assertThrows(HttpClientErrorException.class, () -> adapter.generateText(request()));
+
+        assertEquals(2, stats().getFailures());
+        assertEquals(0, stats().getInFlight());
+    }
+
+    @Test
+    void testStreamClientErrorOnlyReleasesPermit() {
+        when(delegate.streamText(any())).thenReturn(Flux.<TextGenerationResponse>error(
+            WebClientResponseException.create(401, "Unauthorized", null, null, null)));
+
+        assertThrows(WebClientResponseException.class, () -> adapter.streamText(request()).collectList().block());
+
+        assertEquals(0, stats().getFailures());
+        assertEquals(0, stats().getInFlight());
+    }
+}
@@ -0,0 +1,193 @@
+package com.heartsphere.aiagent.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.admin.service.AIModelConfigService;
+import com.heartsphere.aiagent.adapter.ModelAdapter;
+import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.service.AIConfigService;
+import com.heartsphere.aiagent.service.AIServiceImpl;
+import com.heartsphere.aiagent.service.ModelFailover;
+import com.heartsphere.aiagent.service.UnifiedModelRoutingService;
+import com.heartsphere.memory.context.ContextAssembler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * AIResponseCache单元测试
+ */
+class AIResponseCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testKeyIgnoresCredentialsButNotParameters() {
+        TextGenerationRequest request = request("分析这段日记的情绪", 0.3);
+        String key = AIResponseCache.keyOf(request);
+
+        request.setApiKey("sk-other");
+        request.setBaseUrl("https://example.com/v1");
+        assertEquals(key, AIResponseCache.keyOf(request));
+
+        request.setTemperature(0.4);
+        assertNotEquals(key, AIResponseCache.keyOf(request));
+
+        TextGenerationRequest shifted = request("分析这段日记的情绪", 0.3);
+        shifted.setSystemInstruction("你是情绪分析专家分析这段日记的情绪");
+        shifted.setPrompt("");
+        TextGenerationRequest original = request("分析这段日记的情绪", 0.3);
+        original.setSystemInstruction("你是情绪分析专家");
+        // 字段边界移动不应产生相同的键
+        assertNotEquals(AIResponseCache.keyOf(original), AIResponseCache.keyOf(shifted));
+    }
+
+    @Test
+    void testCacheableByCallSiteOrZeroTemperature() {
+        AIResponseCache cache = new AIResponseCache(new AIProperties(), new ObjectMapper());
+
+        assertFalse(cache.isCacheable(request("你好", 0.7)));
+        assertTrue(cache.isCacheable(request("你好", 0.0)));
+
+        TextGenerationRequest optedIn = request("你好", 0.7);
+        optedIn.setCacheable(true);
+        assertTrue(cache.isCacheable(optedIn));
+
+        TextGenerationRequest optedOut = request("你好", 0.0);
+        optedOut.setCacheable(false);
+        assertFalse(cache.isCacheable(optedOut));
+    }
+
+    @Test
+    void testHitReturnsCopyAndRecordsSavings() {
+        AIResponseCache cache = new AIResponseCache(new AIProperties(), new ObjectMapper());
+        String key = AIResponseCache.keyOf(request("你好", 0.0));
+
+        assertNull(cache.get(key, "qwen-max"));
+        cache.put(key, response("你好！", 20, 30), 1500);
+
+        TextGenerationResponse hit = cache.get(key, "qwen-max");
+        assertNotNull(hit);
+        assertEquals("你好！", hit.getContent());
+        assertEquals(Boolean.TRUE, hit.getCached());
+        assertEquals(50, hit.getUsage().getTotalTokens());
+        hit.setContent("被调用方修改");
+        assertEquals("你好！", cache.get(key, "qwen-max").getContent());
+
+        cache.recordSavedCost("qwen-max", new BigDecimal("0.02"));
+        List<ResponseCacheStats> stats = cache.stats();
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.get(0).getHits());
+        assertEquals(1, stats.get(0).getMisses());
+        assertEquals(40, stats.get(0).getSavedInputTokens());
+        assertEquals(60, stats.get(0).getSavedOutputTokens());
+        assertEquals(3000, stats.get(0).getSavedLatencyMs());
+        assertEquals(0, new BigDecimal("0.02").compareTo(stats.get(0).getSavedCost()));
+    }
+
+    @Test
+    void testOversizedAndEmptyResponsesNotCached() {
+        AIProperties properties = new AIProperties();
+        properties.getResponseCache().setMaxEntryBytes(1024);
+        AIResponseCache cache = new AIResponseCache(properties, new ObjectMapper());
+
+        cache.put("big", response("长".repeat(1024), 10, 10), 100);
+        cache.put("empty", response("", 10, 10), 100);
+
+        assertNull(cache.get("big", "qwen-max"));
+        assertNull(cache.get("empty", "qwen-max"));
+    }
+
+    @Test
+    void testDiskTierSurvivesRestartAndCleansUp() throws Exception {
+        AIProperties properties = new AIProperties();
+        properties.getResponseCache().getDisk().setEnabled(true);
+        properties.getResponseCache().getDisk().setDirectory(tempDir.toString());
+        String key = AIResponseCache.keyOf(request("写一封信", 0.8));
+
+        new AIResponseCache(properties, new ObjectMapper()).put(key, response("亲爱的你", 100, 200), 2000);
+
+        // 新实例内存为空，从磁盘命中
+        AIResponseCache restarted = new AIResponseCache(properties, new ObjectMapper());
+        TextGenerationResponse hit = restarted.get(key, "qwen-max");
+        assertNotNull(hit);
+        assertEquals("亲爱的你", hit.getContent());
+        assertEquals(1, restarted.stats().get(0).getDiskHits());
+
+        // 超过存活时间的文件被清理
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 7_200_000L));
+            }
+        }
+        restarted.cleanUpDisk();
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testServiceSkipsAdapterOnHit() {
+        ModelAdapterManager adapterManager = mock(ModelAdapterManager.class);
+        ModelAdapter adapter = mock(ModelAdapter.class);
+        when(adapterManager.getAdapter("dashscope")).thenReturn(adapter);
+        when(adapter.generateText(any(TextGenerationRequest.class))).thenReturn(response("平静", 10, 5));
+        UnifiedModelRoutingService routingService = mock(UnifiedModelRoutingService.class);
+        AIServiceImpl service = new AIServiceImpl(adapterManager, mock(AIConfigService.class),
+            routingService, mock(AIModelConfigService.class),
+            new AIResponseCache(new AIProperties(), new ObjectMapper()),
+            new InFlightRequestCoalescer(new AIProperties()),
+            new ModelFailover(routingService, new AIProperties(), mock(ProviderGuardRegistry.class), Runnable::run),
+            mock(ContextAssembler.class));
+
+        TextGenerationRequest first = request("今天心情不错", 0.3);
+        first.setCacheable(true);
+        TextGenerationResponse generated = service.generateText(1L, first);
+        TextGenerationRequest second = request("今天心情不错", 0.3);
+        second.setCacheable(true);
+        TextGenerationResponse cached = service.generateText(2L, second);
+
+        assertNull(generated.getCached());
+        assertEquals(Boolean.TRUE, cached.getCached());
+        assertEquals("平静", cached.getContent());
+        verify(adapter, times(1)).generateText(any(TextGenerationRequest.class));
+    }
+
+    private static TextGenerationRequest request(String prompt, double temperature) {
+        TextGenerationRequest request = new TextGenerationRequest();
+        request.setProvider("dashscope");
+        request.setModel("qwen-max");
+        request.setPrompt(prompt);
+        request.setTemperature(temperature);
+        request.setMaxTokens(500);
+        return request;
+    }
+
+    private static TextGenerationResponse response(String content, int inputTokens, int outputTokens) {
+        TextGenerationResponse response = new TextGenerationResponse();
+        response.setContent(content);
+        response.setProvider("dashscope");
+        response.setModel("qwen-max");
+        response.setFinishReason("stop");
+        TextGenerationResponse.TokenUsage usage = new TextGenerationResponse.TokenUsage();
+        usage.setInputTokens(inputTokens);
+        usage.setOutputTokens(outputTokens);
+        usage.setTotalTokens(inputTokens + outputTokens);
+        response.setUsage(usage);
+        return response;
+    }
+}
@@ -0,0 +1,191 @@
+package com.heartsphere.aiagent.cache;
+
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InFlightRequestCoalescer单元测试
+ */
+class InFlightRequestCoalescerTest {
+
+    private final InFlightRequestCoalescer coalescer = new InFlightRequestCoalescer(new AIProperties());
+
+    @Test
+    void testConcurrentIdenticalCallsShareOneUpstreamCall() throws Exception {
+        int callers = 8;
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<TextGenerationResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> coalescer.generateText("same", () -> {
+                    upstreamCalls.incrementAndGet();
+                    await(release);
+                    return response("你好", true);
+                })));
+            }
+            // 等所有调用方都进入（领头方阻塞在上游调用，其余在等待）
+            Thread.sleep(200);
+            release.countDown();
+
+            List<TextGenerationResponse> results = new ArrayList<>();
+            for (Future<TextGenerationResponse> future : futures) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, upstreamCalls.get());
+            results.forEach(result -> assertEquals("你好", result.getContent()));
+            results.forEach(result -> assertEquals(30, result.getUsage().getTotalTokens()));
+            // 每个调用方拿到独立的对象
+            assertEquals(callers, results.stream().map(System::identityHashCode).distinct().count());
+            assertEquals(0, coalescer.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFollowersReceiveLeaderFailure() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TextGenerationResponse> leader = executor.submit(() -> coalescer.generateText("fail", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("上游失败");
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<TextGenerationResponse> follower = executor.submit(
+                () -> coalescer.generateText("fail", () -> response("不应调用", false)));
+            Thread.sleep(100);
+            release.countDown();
+
+            Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertEquals("上游失败", leaderError.getCause().getMessage());
+            assertEquals("上游失败", followerError.getCause().getMessage());
+
+            // 失败后不残留，下一次请求重新调用
+            assertEquals("恢复", coalescer.generateText("fail", () -> response("恢复", false)).getContent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStreamFollowerReplaysChunksAndGetsFinalUsage() {
+        Sinks.Many<TextGenerationResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Supplier<Flux<TextGenerationResponse>> call = () -> {
+            upstreamCalls.incrementAndGet();
+            return upstream.asFlux();
+        };
+        List<TextGenerationResponse> leaderChunks = Collections.synchronizedList(new ArrayList<>());
+        List<TextGenerationResponse> followerChunks = Collections.synchronizedList(new ArrayList<>());
+
+        coalescer.streamText("stream", call).subscribe(leaderChunks::add);
+        upstream.tryEmitNext(response("你", false));
+        upstream.tryEmitNext(response("好", false));
+
+        coalescer.streamText("stream", call).subscribe(followerChunks::add);
+        upstream.tryEmitNext(response("呀", false));
+        upstream.tryEmitNext(response(null, true));
+        upstream.tryEmitComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(Arrays.asList("你", "好", "呀", null), leaderChunks.stream().map(TextGenerationResponse::getContent).toList());
+        assertEquals(Arrays.asList("你", "好", "呀", null), followerChunks.stream().map(TextGenerationResponse::getContent).toList());
+        assertEquals(30, followerChunks.get(3).getUsage().getTotalTokens());
+        assertNotSame(leaderChunks.get(0), followerChunks.get(0));
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testStreamFailureReachesFollowers() {
+        Sinks.Many<TextGenerationResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        AtomicReference<Throwable> followerError = new AtomicReference<>();
+
+        coalescer.streamText("broken", upstream::asFlux).subscribe(chunk -> { }, leaderError::set);
+        coalescer.streamText("broken", () -> Flux.error(new AssertionError("不应调用")))
+            .subscribe(chunk -> { }, followerError::set);
+        upstream.tryEmitError(new IllegalStateException("上游失败"));
+
+        assertEquals("上游失败", leaderError.get().getMessage());
+        assertEquals("上游失败", followerError.get().getMessage());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testStreamUpstreamCancelledOnlyWhenAllSubscribersLeave() {
+        AtomicInteger cancelled = new AtomicInteger();
+        Supplier<Flux<TextGenerationResponse>> call = () -> Flux.<TextGenerationResponse>never()
+            .doOnCancel(cancelled::incrementAndGet);
+
+        Disposable leader = coalescer.streamText("cancel", call).subscribe();
+        Disposable follower = coalescer.streamText("cancel", call).subscribe();
+
+        // 领头方断开，跟随方仍在接收，上游继续
+        leader.dispose();
+        assertEquals(0, cancelled.get());
+        follower.dispose();
+        assertEquals(1, cancelled.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testDisabledCoalescingCallsThrough() {
+        AIProperties properties = new AIProperties();
+        properties.getCoalescing().setEnabled(false);
+        InFlightRequestCoalescer disabled = new InFlightRequestCoalescer(properties);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        disabled.generateText("k", () -> response(String.valueOf(upstreamCalls.incrementAndGet()), false));
+        disabled.generateText("k", () -> response(String.valueOf(upstreamCalls.incrementAndGet()), false));
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static TextGenerationResponse response(String content, boolean withUsage) {
+        TextGenerationResponse response = new TextGenerationResponse();
+        response.setContent(content);
+        response.setProvider("dashscope");
+        response.setModel("qwen-max");
+        if (withUsage) {
+            TextGenerationResponse.TokenUsage usage = new TextGenerationResponse.TokenUsage();
+            usage.setInputTokens(10);
+            usage.setOutputTokens(20);
+            usage.setTotalTokens(30);
+            response.setUsage(usage);
+        }
+        return response;
+    }
+}
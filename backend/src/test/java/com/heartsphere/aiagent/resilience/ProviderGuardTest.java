@@ -0,0 +1,209 @@
+package com.heartsphere.aiagent.resilience;
+
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.exception.ProviderUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ProviderGuard单元测试
+ */
+class ProviderGuardTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private ProviderGuard guard(AIProperties.Guard settings) {
+        return new ProviderGuard("dashscope", "text", settings, now::get);
+    }
+
+    private static AIProperties.Guard settings(int max, int initial) {
+        AIProperties.Guard settings = new AIProperties.Guard(max, initial);
+        settings.setSlidingWindowSize(10);
+        settings.setMinimumCalls(4);
+        settings.setOpenDurationMs(30000);
+        settings.setHalfOpenProbes(2);
+        return settings;
+    }
+
+    @Test
+    void testRejectsWhenConcurrencyLimitReached() {
+        ProviderGuard guard = guard(settings(2, 2));
+        ProviderGuard.Permit first = guard.tryAcquire();
+        guard.tryAcquire();
+
+        assertThrows(ProviderUnavailableException.class, guard::tryAcquire);
+        assertFalse(guard.isCallPermitted());
+
+        first.release();
+        assertTrue(guard.isCallPermitted());
+        assertNotNull(guard.tryAcquire());
+        assertEquals(1, guard.stats().getRejected());
+    }
+
+    @Test
+    void testOpensOnFailureRateThenProbesAndCloses() {
+        ProviderGuard guard = guard(settings(10, 10));
+        for (int i = 0; i < 4; i++) {
+            guard.tryAcquire().failure();
+        }
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+        ProviderUnavailableException rejected = assertThrows(ProviderUnavailableException.class, guard::tryAcquire);
+        assertEquals(30000, rejected.getRetryAfterMs());
+
+        now.addAndGet(30000);
+        ProviderGuard.Permit probe1 = guard.tryAcquire();
+        ProviderGuard.Permit probe2 = guard.tryAcquire();
+        assertEquals(ProviderGuard.State.HALF_OPEN, guard.getState());
+        // 探测名额已满
+        assertThrows(ProviderUnavailableException.class, guard::tryAcquire);
+
+        probe1.success(100);
+        assertEquals(ProviderGuard.State.HALF_OPEN, guard.getState());
+        probe2.success(100);
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+        assertEquals(2, guard.stats().getShortCircuited());
+    }
+
+    @Test
+    void testTimeoutsReportedAfterCancelOpenCircuit() {
+        ProviderGuard guard = guard(settings(10, 10));
+        for (int i = 0; i < 4; i++) {
+            // 上层超时取消：许可只归还，再由上层补记超时
+            guard.tryAcquire().release();
+            guard.recordTimeout();
+        }
+
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+        assertEquals(4, guard.stats().getFailures());
+        assertEquals(0, guard.stats().getInFlight());
+    }
+
+    @Test
+    void testTimedOutPermitCountsOnce() {
+        ProviderGuard guard = guard(settings(10, 10));
+        ProviderGuard.Permit permit = guard.tryAcquire();
+
+        permit.timeout();
+        assertEquals(1, guard.stats().getFailures());
+        // 被放弃的调用仍占用并发
+        assertEquals(1, guard.stats().getInFlight());
+
+        // 被放弃的调用之后返回：只归还许可
+        permit.success(100);
+        ProviderGuardStats stats = guard.stats();
+        assertEquals(1, stats.getCalls());
+        assertEquals(1, stats.getFailures());
+        assertEquals(1, stats.getWindowCalls());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void testAbandonedCallBeforePermitCountsOnce() {
+        ProviderGuard guard = guard(settings(10, 10));
+        AbandonableCall call = new AbandonableCall();
+
+        // 放弃时调用仍在排队，直接补记到隔离舱；之后申请到的许可只归还
+        call.timeout(guard);
+        call.run(() -> {
+            ProviderGuard.Permit permit = guard.tryAcquire();
+            AbandonableCall.bind(permit);
+            permit.failure();
+            return null;
+        });
+
+        assertEquals(1, guard.stats().getCalls());
+        assertEquals(1, guard.stats().getFailures());
+        assertEquals(0, guard.stats().getInFlight());
+    }
+
+    @Test
+    void testFailedProbeReopens() {
+        ProviderGuard guard = guard(settings(10, 10));
+        for (int i = 0; i < 4; i++) {
+            guard.tryAcquire().failure();
+        }
+        now.addAndGet(30000);
+        guard.tryAcquire().failure();
+
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+        assertFalse(guard.isCallPermitted());
+    }
+
+    @Test
+    void testFailuresBelowMinimumCallsDoNotOpen() {
+        ProviderGuard guard = guard(settings(10, 10));
+        for (int i = 0; i < 3; i++) {
+            guard.tryAcquire().failure();
+        }
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+
+        guard.tryAcquire().success(100);
+        // 3/4 失败仍超过阈值
+        assertEquals(ProviderGuard.State.OPEN, guard.getState());
+    }
+
+    @Test
+    void testLimitShrinksOnSlowCallsAndGrowsUnderLoad() {
+        ProviderGuard guard = guard(settings(20, 10));
+        guard.tryAcquire().success(100);
+        assertEquals(10, guard.getLimit());
+
+        // 耗时超过基线两倍视为拥塞
+        guard.tryAcquire().success(1000);
+        assertEquals(9, guard.getLimit());
+
+        // 并发接近限制时成功调用使限制缓慢增长
+        ProviderGuard.Permit[] permits = new ProviderGuard.Permit[9];
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < permits.length; i++) {
+                permits[i] = guard.tryAcquire();
+            }
+            for (ProviderGuard.Permit permit : permits) {
+                permit.success(100);
+            }
+        }
+        assertTrue(guard.getLimit() > 9);
+        assertTrue(guard.getLimit() <= 20);
+    }
+
+    @Test
+    void testLimitNeverDropsBelowMinimum() {
+        AIProperties.Guard settings = settings(10, 3);
+        settings.setMinConcurrency(2);
+        settings.setMinimumCalls(100);
+        ProviderGuard guard = guard(settings);
+        for (int i = 0; i < 50; i++) {
+            guard.tryAcquire().failure();
+        }
+        assertEquals(2, guard.getLimit());
+    }
+
+    @Test
+    void testCancelledCallIsNotCounted() {
+        ProviderGuard guard = guard(settings(10, 10));
+        ProviderGuard.Permit permit = guard.tryAcquire();
+        permit.release();
+        permit.failure();
+
+        ProviderGuardStats stats = guard.stats();
+        assertEquals(0, stats.getCalls());
+        assertEquals(0, stats.getFailures());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void testDisabledGuardNeverRejects() {
+        AIProperties.Guard settings = settings(1, 1);
+        settings.setEnabled(false);
+        ProviderGuard guard = guard(settings);
+        for (int i = 0; i < 10; i++) {
+            guard.tryAcquire().failure();
+        }
+        assertNotNull(guard.tryAcquire());
+        assertNotNull(guard.tryAcquire());
+        assertEquals(ProviderGuard.State.CLOSED, guard.getState());
+    }
+}
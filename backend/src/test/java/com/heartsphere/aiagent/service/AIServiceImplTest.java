@@ -2,17 +2,22 @@ package com.heartsphere.aiagent.service;
 
 import com.heartsphere.aiagent.adapter.ModelAdapter;
 import com.heartsphere.aiagent.adapter.ModelAdapterManager;
+import com.heartsphere.aiagent.cache.AIResponseCache;
+import com.heartsphere.aiagent.cache.InFlightRequestCoalescer;
+import com.heartsphere.aiagent.config.AIProperties;
 import com.heartsphere.aiagent.dto.request.ImageGenerationRequest;
 import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
 import com.heartsphere.aiagent.dto.response.ImageGenerationResponse;
 import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
 import com.heartsphere.aiagent.entity.UserAIConfig;
 import com.heartsphere.aiagent.exception.AIServiceException;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +39,17 @@ class AIServiceImplTest {
     @Mock
     private ModelAdapter modelAdapter;
 
+    @Mock
+    private AIResponseCache responseCache;
+
+    @Spy
+    private InFlightRequestCoalescer requestCoalescer = new InFlightRequestCoalescer(new AIProperties());
+
+    @Spy
+    private ModelFailover modelFailover =
+        new ModelFailover(mock(UnifiedModelRoutingService.class), new AIProperties(),
+            mock(ProviderGuardRegistry.class), Runnable::run);
+
     @InjectMocks
     private AIServiceImpl aiService;
 
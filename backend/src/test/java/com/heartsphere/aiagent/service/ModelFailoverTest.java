@@ -0,0 +1,343 @@
+package com.heartsphere.aiagent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.admin.dto.AIRoutingStrategyDTO;
+import com.heartsphere.admin.service.AIModelConfigService;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.exception.AIServiceException;
+import com.heartsphere.aiagent.exception.ProviderUnavailableException;
+import com.heartsphere.aiagent.resilience.AbandonableCall;
+import com.heartsphere.aiagent.resilience.ProviderGuard;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.resilience.ProviderGuardStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * ModelFailover单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ModelFailoverTest {
+
+    @Mock
+    private UnifiedModelRoutingService routingService;
+
+    private final AIProperties properties = new AIProperties();
+
+    private final ProviderGuardRegistry guardRegistry =
+        new ProviderGuardRegistry(properties, mock(AIModelConfigService.class), new ObjectMapper());
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ModelFailover failover;
+
+    @BeforeEach
+    void setUp() {
+        properties.getFailover().getText().setDeadlineMs(2000);
+        properties.getFailover().getText().setAttemptTimeoutMs(300);
+        properties.getFailover().setStreamFirstChunkTimeoutMs(300);
+        properties.getFailover().setMinAttemptMs(100);
+        failover = new ModelFailover(routingService, properties, guardRegistry, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static TextGenerationRequest request() {
+        TextGenerationRequest request = new TextGenerationRequest();
+        request.setPrompt("你好");
+        request.setProvider("dashscope");
+        request.setModel("qwen-max");
+        return request;
+    }
+
+    private static TextGenerationResponse response(String provider, String model, String content) {
+        TextGenerationResponse response = new TextGenerationResponse();
+        response.setProvider(provider);
+        response.setModel(model);
+        response.setContent(content);
+        return response;
+    }
+
+    private static AIRoutingStrategyDTO.FallbackConfig fallback(String provider, String model) {
+        AIRoutingStrategyDTO.FallbackConfig config = new AIRoutingStrategyDTO.FallbackConfig();
+        config.setProvider(provider);
+        config.setModel(model);
+        return config;
+    }
+
+    private static AIModelConfigDTO model(String provider, String modelName) {
+        AIModelConfigDTO dto = new AIModelConfigDTO();
+        dto.setProvider(provider);
+        dto.setModelName(modelName);
+        dto.setCapability("text");
+        dto.setApiKey("key-" + modelName);
+        return dto;
+    }
+
+    private void givenFallbackChain() {
+        AIRoutingStrategyDTO.FallbackConfig doubao = fallback("doubao", "doubao-pro");
+        AIRoutingStrategyDTO.FallbackConfig glm = fallback("bigmodel", "glm-4");
+        when(routingService.getFailoverCandidates("text", "dashscope", "qwen-max")).thenReturn(List.of(doubao, glm));
+        lenient().when(routingService.resolveFallbackModel("text", doubao)).thenReturn(model("doubao", "doubao-pro"));
+        lenient().when(routingService.resolveFallbackModel("text", glm)).thenReturn(model("bigmodel", "glm-4"));
+    }
+
+    @Test
+    void testCallsDirectlyWithoutFallbackChain() {
+        when(routingService.getFailoverCandidates("text", "dashscope", "qwen-max")).thenReturn(List.of());
+
+        HttpServerErrorException error = new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        assertSame(error, assertThrows(HttpServerErrorException.class,
+            () -> failover.generateText(request(), attempt -> { throw error; })));
+        verify(routingService, never()).resolveFallbackModel(any(), any());
+    }
+
+    @Test
+    void testFailsOverOnServerErrorAndStampsServedModel() {
+        givenFallbackChain();
+        List<String> attempts = new ArrayList<>();
+
+        TextGenerationResponse result = failover.generateText(request(), attempt -> {
+            attempts.add(attempt.getModel());
+            if ("qwen-max".equals(attempt.getModel())) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            assertEquals("key-doubao-pro", attempt.getApiKey());
+            assertEquals("你好", attempt.getPrompt());
+            return response(attempt.getProvider(), "doubao-pro-32k", "ok");
+        });
+
+        assertEquals(List.of("qwen-max", "doubao-pro"), attempts);
+        assertEquals("doubao", result.getProvider());
+        assertEquals("doubao-pro", result.getModel(), "应标上实际完成请求的模型配置");
+        assertEquals("ok", result.getContent());
+    }
+
+    @Test
+    void testFailsOverOnAttemptTimeout() {
+        givenFallbackChain();
+
+        TextGenerationResponse result = failover.generateText(request(), attempt -> {
+            if ("qwen-max".equals(attempt.getModel())) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response(attempt.getProvider(), attempt.getModel(), "ok");
+        });
+
+        assertEquals("doubao-pro", result.getModel());
+        assertEquals(1, guardRegistry.guard("dashscope", "text").stats().getFailures());
+    }
+
+    @Test
+    void testAbandonedCallIsCountedOnceWhenItReturnsLate() throws Exception {
+        givenFallbackChain();
+        ProviderGuard guard = guardRegistry.guard("dashscope", "text");
+        CountDownLatch returned = new CountDownLatch(1);
+
+        TextGenerationResponse result = failover.generateText(request(), attempt -> {
+            if ("qwen-max".equals(attempt.getModel())) {
+                // 与 GuardedModelAdapter 一样在调用线程上申请并登记许可
+                ProviderGuard.Permit permit = guard.tryAcquire();
+                AbandonableCall.bind(permit);
+                try {
+                    Thread.sleep(600);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                permit.success();
+                permit.release();
+                returned.countDown();
+            }
+            return response(attempt.getProvider(), attempt.getModel(), "ok");
+        });
+
+        assertEquals("doubao-pro", result.getModel());
+        assertTrue(returned.await(5, TimeUnit.SECONDS));
+        ProviderGuardStats stats = guard.stats();
+        assertEquals(1, stats.getCalls());
+        assertEquals(1, stats.getFailures());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void testDoesNotFailOverOnClientError() {
+        givenFallbackChain();
+
+        assertThrows(HttpClientErrorException.class, () -> failover.generateText(request(), attempt -> {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }));
+        verify(routingService, never()).resolveFallbackModel(any(), any());
+    }
+
+    @Test
+    void testSkipsUnresolvableFallbackAndRethrowsWhenChainExhausted() {
+        givenFallbackChain();
+        when(routingService.resolveFallbackModel(eq("text"), argThat(c -> c != null && "doubao".equals(c.getProvider()))))
+            .thenThrow(new RuntimeException("模型配置不存在"));
+        List<String> attempts = new ArrayList<>();
+
+        ProviderUnavailableException error = assertThrows(ProviderUnavailableException.class,
+            () -> failover.generateText(request(), attempt -> {
+                attempts.add(attempt.getModel());
+                throw new ProviderUnavailableException("熔断", "dashscope", "text", 1000L);
+            }));
+
+        assertEquals(List.of("qwen-max", "glm-4"), attempts);
+        assertNotNull(error);
+    }
+
+    @Test
+    void testStopsWhenDeadlineIsNearlyReached() {
+        givenFallbackChain();
+        properties.getFailover().getText().setDeadlineMs(350);
+        properties.getFailover().setMinAttemptMs(200);
+        List<String> attempts = new ArrayList<>();
+
+        AIServiceException error = assertThrows(AIServiceException.class,
+            () -> failover.generateText(request(), attempt -> {
+                attempts.add(attempt.getModel());
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return response(attempt.getProvider(), attempt.getModel(), "late");
+            }));
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertEquals(List.of("qwen-max"), attempts, "剩余时间不足时不再尝试后续模型");
+    }
+
+    @Test
+    void testFailsFastWhenExecutorIsSaturated() {
+        givenFallbackChain();
+        failover = new ModelFailover(routingService, properties, guardRegistry, command -> {
+            throw new RejectedExecutionException("线程池已满");
+        });
+        List<String> attempts = new ArrayList<>();
+
+        assertThrows(ProviderUnavailableException.class, () -> failover.generateText(request(), attempt -> {
+            attempts.add(attempt.getModel());
+            return response(attempt.getProvider(), attempt.getModel(), "ok");
+        }));
+        assertTrue(attempts.isEmpty(), "线程池已满时不应在调用线程上执行");
+    }
+
+    @Test
+    void testSkipsProviderWithTooManyAbandonedCalls() {
+        givenFallbackChain();
+        properties.getFailover().setMaxAbandonedPerProvider(1);
+        List<String> attempts = new ArrayList<>();
+        Function<TextGenerationRequest, TextGenerationResponse> call = attempt -> {
+            attempts.add(attempt.getModel());
+            if ("qwen-max".equals(attempt.getModel())) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response(attempt.getProvider(), attempt.getModel(), "ok");
+        };
+
+        assertEquals("doubao-pro", failover.generateText(request(), call).getModel());
+        assertEquals("doubao-pro", failover.generateText(request(), call).getModel());
+
+        assertEquals(List.of("qwen-max", "doubao-pro", "doubao-pro"), attempts,
+            "超时未返回的调用达到上限后不再向该提供商发起调用");
+    }
+
+    @Test
+    void testStreamFailsOverBeforeFirstChunk() {
+        givenFallbackChain();
+
+        List<TextGenerationResponse> chunks = failover.streamText(request(), attempt -> {
+            if ("qwen-max".equals(attempt.getModel())) {
+                return Flux.error(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+            }
+            if ("doubao-pro".equals(attempt.getModel())) {
+                return Flux.never();
+            }
+            return Flux.just(response(attempt.getProvider(), attempt.getModel(), "你"),
+                response(attempt.getProvider(), attempt.getModel(), "好"));
+        }).collectList().block();
+
+        assertNotNull(chunks);
+        assertEquals(2, chunks.size());
+        assertEquals("glm-4", chunks.get(0).getModel(), "首字超时后应改用链中的下一个模型");
+        assertEquals("bigmodel", chunks.get(1).getProvider());
+        assertEquals(1, guardRegistry.guard("doubao", "text").stats().getFailures(),
+            "首字超时取消的调用应计为提供商的一次失败");
+    }
+
+    @Test
+    void testStreamDoesNotFailOverAfterContentEmitted() {
+        givenFallbackChain();
+        List<String> received = new ArrayList<>();
+
+        assertThrows(HttpServerErrorException.class, () -> failover.streamText(request(), attempt ->
+            Flux.just(response(attempt.getProvider(), attempt.getModel(), "你"))
+                .concatWith(Flux.error(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))))
+            .doOnNext(chunk -> received.add(chunk.getModel()))
+            .blockLast());
+
+        assertEquals(List.of("qwen-max"), received);
+        verify(routingService, never()).resolveFallbackModel(any(), any());
+    }
+
+    @Test
+    void testStreamIdleTimeoutWithoutFallbackChain() {
+        when(routingService.getFailoverCandidates("text", "dashscope", "qwen-max")).thenReturn(List.of());
+        properties.getStreaming().setIdleTimeoutMs(200);
+
+        assertThrows(RuntimeException.class, () -> failover.streamText(request(), attempt ->
+            Flux.just(response(attempt.getProvider(), attempt.getModel(), "你")).concatWith(Flux.never()))
+            .blockLast());
+
+        assertEquals(1, guardRegistry.guard("dashscope", "text").stats().getFailures(),
+            "片段间空闲超时应计为提供商的一次失败");
+    }
+
+    @Test
+    void testRetryableClassification() {
+        assertTrue(ModelFailover.isRetryable(new AIServiceException("失败",
+            new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))));
+        assertTrue(ModelFailover.isRetryable(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertTrue(ModelFailover.isRetryable(new AIServiceException("超时", new TimeoutException())));
+        assertFalse(ModelFailover.isRetryable(new HttpClientErrorException(HttpStatus.UNAUTHORIZED)));
+        assertFalse(ModelFailover.isRetryable(new IllegalArgumentException("prompt为空")));
+    }
+}
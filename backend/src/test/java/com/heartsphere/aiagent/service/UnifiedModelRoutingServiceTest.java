@@ -0,0 +1,206 @@
+package com.heartsphere.aiagent.service;
+
+import com.heartsphere.admin.dto.AIModelConfigDTO;
+import com.heartsphere.admin.dto.AIRoutingStrategyDTO;
+import com.heartsphere.admin.service.AIModelConfigService;
+import com.heartsphere.admin.service.AIRoutingStrategyService;
+import com.heartsphere.aiagent.config.AIProperties;
+import com.heartsphere.aiagent.resilience.ProviderGuardRegistry;
+import com.heartsphere.aiagent.routing.ModelLatencyStats;
+import com.heartsphere.aiagent.routing.ModelLatencyTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * UnifiedModelRoutingService单元测试（最快响应模式）
+ */
+@ExtendWith(MockitoExtension.class)
+class UnifiedModelRoutingServiceTest {
+
+    @Mock
+    private AIModelConfigService modelConfigService;
+
+    @Mock
+    private AIRoutingStrategyService routingStrategyService;
+
+    @Mock
+    private ProviderGuardRegistry guardRegistry;
+
+    private final ModelLatencyTracker latencyTracker = new ModelLatencyTracker(new AIProperties());
+
+    private UnifiedModelRoutingService routingService;
+
+    private final AIRoutingStrategyDTO.LatencyConfig latencyConfig = new AIRoutingStrategyDTO.LatencyConfig();
+
+    @BeforeEach
+    void setUp() {
+        routingService = new UnifiedModelRoutingService(
+            modelConfigService, routingStrategyService, latencyTracker, guardRegistry);
+
+        AIRoutingStrategyDTO strategy = new AIRoutingStrategyDTO();
+        strategy.setCapability("text");
+        strategy.setStrategyType("latency");
+        strategy.setIsActive(true);
+        strategy.setLatencyConfig(latencyConfig);
+        latencyConfig.setExplorationRate(0.0);
+        lenient().when(routingStrategyService.getStrategyByCapability("text")).thenReturn(strategy);
+        lenient().when(modelConfigService.getModelConfigsByCapability("text")).thenReturn(List.of(
+            model("dashscope", "qwen-max", 0.002),
+            model("doubao", "doubao-pro", 0.001),
+            model("bigmodel", "glm-4", 0.0005)));
+        lenient().when(guardRegistry.isAvailable(anyString(), anyString())).thenReturn(true);
+    }
+
+    private static AIModelConfigDTO model(String provider, String modelName, double costPerToken) {
+        AIModelConfigDTO dto = new AIModelConfigDTO();
+        dto.setProvider(provider);
+        dto.setModelName(modelName);
+        dto.setCapability("text");
+        dto.setCostPerToken(costPerToken);
+        dto.setIsActive(true);
+        dto.setIsDefault(false);
+        return dto;
+    }
+
+    private void recordSamples(String provider, String model, long ttftMs, int count) {
+        for (int i = 0; i < count; i++) {
+            latencyTracker.record(provider, model, ttftMs, ttftMs + 1000, 100);
+        }
+    }
+
+    @Test
+    void testSelectsFastestMeasuredModel() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 600, 10);
+
+        assertEquals("doubao-pro", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testSkipsModelsOverCostCeiling() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 600, 10);
+        latencyConfig.setMaxCostPerToken(0.0008);
+
+        assertEquals("glm-4", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testSkipsUnhealthyModels() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 600, 10);
+        when(guardRegistry.isAvailable("doubao", "text")).thenReturn(false);
+
+        assertEquals("glm-4", routingService.selectModel("text").getModelName());
+
+        latencyConfig.setMaxP95TtftMs(1000L);
+        recordSamples("bigmodel", "glm-4", 2000, 10);
+        assertEquals("qwen-max", routingService.selectModel("text").getModelName(),
+            "p95超标的模型视为不健康");
+    }
+
+    @Test
+    void testUsesPriorityOrderUntilModelsHaveEnoughSamples() {
+        recordSamples("doubao", "doubao-pro", 300, 2);
+
+        assertEquals("qwen-max", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testExplorationPrefersLeastSampledModel() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 600, 3);
+        latencyConfig.setExplorationRate(1.0);
+
+        assertEquals("glm-4", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testExplorationRetriesModelOverP95Limit() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 2000, 5);
+        latencyConfig.setMaxP95TtftMs(1000L);
+        latencyConfig.setExplorationRate(1.0);
+
+        assertEquals("glm-4", routingService.selectModel("text").getModelName(),
+            "p95超标的模型仍参与探索，才有机会恢复");
+    }
+
+    @Test
+    void testExplorationSkipsOpenCircuit() {
+        recordSamples("dashscope", "qwen-max", 900, 10);
+        recordSamples("doubao", "doubao-pro", 300, 10);
+        recordSamples("bigmodel", "glm-4", 600, 3);
+        when(guardRegistry.isAvailable("bigmodel", "text")).thenReturn(false);
+        latencyConfig.setExplorationRate(1.0);
+
+        assertEquals("qwen-max", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testSyncCallsDoNotAffectTtft() {
+        recordSamples("dashscope", "qwen-max", 500, 10);
+        for (int i = 0; i < 10; i++) {
+            latencyTracker.recordCall("dashscope", "qwen-max", 8000);
+        }
+        ModelLatencyStats stats = latencyTracker.get("dashscope", "qwen-max");
+
+        assertEquals(10, stats.getSamples());
+        assertEquals(500, stats.getEwmaTtftMs());
+        assertEquals(500, stats.getP95TtftMs());
+        assertEquals(100.0, stats.getTokensPerSecond(), 0.001);
+        assertEquals(10, stats.getCallSamples());
+        assertEquals(8000, stats.getEwmaCallMs());
+    }
+
+    @Test
+    void testSyncOnlyModelsRankedByCallLatency() {
+        for (int i = 0; i < 10; i++) {
+            latencyTracker.recordCall("dashscope", "qwen-max", 3000);
+            latencyTracker.recordCall("doubao", "doubao-pro", 1500);
+            latencyTracker.recordCall("bigmodel", "glm-4", 2000);
+        }
+
+        assertEquals("doubao-pro", routingService.selectModel("text").getModelName());
+    }
+
+    @Test
+    void testExpiredSamplesLeaveP95() throws InterruptedException {
+        AIProperties properties = new AIProperties();
+        properties.getLatencyRouting().setSampleTtlMs(20);
+        ModelLatencyTracker tracker = new ModelLatencyTracker(properties);
+        tracker.record("dashscope", "qwen-max", 5000, 6000, 100);
+
+        assertEquals(5000, tracker.get("dashscope", "qwen-max").getP95TtftMs());
+        Thread.sleep(50);
+        tracker.record("dashscope", "qwen-max", 400, 1400, 100);
+        assertEquals(400, tracker.get("dashscope", "qwen-max").getP95TtftMs());
+    }
+
+    @Test
+    void testTrackerComputesEwmaP95AndThroughput() {
+        for (int i = 1; i <= 20; i++) {
+            latencyTracker.record("qwen", "qwen-max", i * 100L, i * 100L + 2000, 100);
+        }
+        ModelLatencyStats stats = latencyTracker.get("dashscope", "qwen-max");
+
+        assertEquals(20, stats.getSamples());
+        assertEquals(1900, stats.getP95TtftMs());
+        assertTrue(stats.getEwmaTtftMs() > 1000 && stats.getEwmaTtftMs() < 2000);
+        assertEquals(50.0, stats.getTokensPerSecond(), 0.001);
+    }
+}
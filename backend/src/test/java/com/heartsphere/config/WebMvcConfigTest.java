@@ -0,0 +1,37 @@
+package com.heartsphere.config;
+
+import com.heartsphere.aiagent.config.AIProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebMvcConfig测试：SSE流式响应的异步超时
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class WebMvcConfigTest {
+
+    @Autowired
+    private RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired
+    private AIProperties aiProperties;
+
+    @Test
+    void testAsyncTimeoutCoversStreamingIdleTimeout() {
+        Long timeout = (Long) ReflectionTestUtils.getField(handlerAdapter, "asyncRequestTimeout");
+
+        assertNotNull(timeout, "未设置时会退回Tomcat默认的30秒");
+        assertEquals(300000L, timeout);
+        assertTrue(timeout > aiProperties.getStreaming().getIdleTimeoutMs());
+    }
+}
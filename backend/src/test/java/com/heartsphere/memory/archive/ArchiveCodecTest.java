@@ -0,0 +1,55 @@
+package com.heartsphere.memory.archive;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ArchiveCodec与ArchiveSummaryIndex单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class ArchiveCodecTest {
+
+    @Test
+    void testRoundTripAndDictionaryHelpsShortText() {
+        String text = "{\"content\":\"用户喜欢周末和朋友去看电影，最近工作压力很大\",\"tags\":\"[\\\"电影\\\"]\"}";
+        byte[] compressed = ArchiveCodec.compress(text);
+        int length = text.getBytes(StandardCharsets.UTF_8).length;
+
+        assertEquals(text, ArchiveCodec.decompress(compressed, length, ArchiveCodec.DICTIONARY_VERSION));
+        assertTrue(compressed.length < length * 0.7, "compressed=" + compressed.length + ", original=" + length);
+        assertEquals("", ArchiveCodec.decompress(ArchiveCodec.compress(""), 0, ArchiveCodec.DICTIONARY_VERSION));
+    }
+
+    @Test
+    void testCorruptedPayloadIsRejected() {
+        byte[] compressed = ArchiveCodec.compress("用户住在杭州");
+        assertThrows(IllegalStateException.class,
+            () -> ArchiveCodec.decompress(compressed, 100, ArchiveCodec.DICTIONARY_VERSION));
+        assertThrows(IllegalArgumentException.class, () -> ArchiveCodec.decompress(compressed, 18, 99));
+    }
+
+    @Test
+    void testSummaryIndexRanksByMatchedTokens() {
+        ArchiveSummaryIndex index = new ArchiveSummaryIndex(new MemoryProperties());
+        List<ArchiveSummaryIndex.Summary> summaries = List.of(
+            new ArchiveSummaryIndex.Summary("a", index.summarize("用户喜欢猫")),
+            new ArchiveSummaryIndex.Summary("b", index.summarize("用户喜欢猫和狗，经常去公园遛狗")),
+            new ArchiveSummaryIndex.Summary("c", index.summarize("用户在上海工作")));
+        Function<String, List<ArchiveSummaryIndex.Summary>> loader = userId -> summaries;
+
+        assertEquals(List.of("b", "a"), index.search("u1", "喜欢遛狗的猫", 10, loader));
+        assertEquals(List.of("b"), index.search("u1", "喜欢遛狗的猫", 1, loader));
+        assertTrue(index.search("u1", "北京", 10, loader).isEmpty());
+
+        int[] tokens = index.summarize("用户喜欢猫和狗");
+        assertArrayEquals(tokens, ArchiveSummaryIndex.decode(ArchiveSummaryIndex.encode(tokens)));
+    }
+}
@@ -0,0 +1,142 @@
+package com.heartsphere.memory.archive;
+
+import com.heartsphere.memory.entity.ArchivedMemoryEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.repository.jpa.ArchivedMemoryRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MemoryArchiver测试（H2）
+ * 测试配置中关闭了定时归档，由测试直接触发
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MemoryArchiverTest {
+
+    @Autowired
+    private MemoryArchiver archiver;
+
+    @Autowired
+    private MySQLLongMemoryService longMemoryService;
+
+    @Autowired
+    private UserMemoryRepository userMemoryRepository;
+
+    @Autowired
+    private ArchivedMemoryRepository archivedMemoryRepository;
+
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = "archive-user-" + System.nanoTime();
+    }
+
+    @Test
+    void testColdMemoriesMoveToArchiveAndStaySearchable() {
+        LocalDateTime now = LocalDateTime.now();
+        String cold = saveMemory("用户小时候在苏州外婆家养过一只白猫", MemoryImportance.NORMAL, 0, now.minusDays(200));
+        String core = saveMemory("用户对花生过敏", MemoryImportance.CORE, 0, now.minusDays(400));
+        String recent = saveMemory("用户最近在学习游泳", MemoryImportance.NORMAL, 0, now.minusDays(1));
+        // 空闲已久但访问频繁，热度仍高于阈值
+        String popular = saveMemory("用户每天早上喝咖啡", MemoryImportance.IMPORTANT, 500, now.minusDays(60));
+
+        assertTrue(archiver.archive(now) >= 1);
+
+        assertTrue(userMemoryRepository.findById(cold).isEmpty());
+        assertTrue(userMemoryRepository.findById(core).isPresent());
+        assertTrue(userMemoryRepository.findById(recent).isPresent());
+        assertTrue(userMemoryRepository.findById(popular).isPresent());
+
+        ArchivedMemoryEntity archived = archivedMemoryRepository.findById(cold).orElseThrow();
+        assertEquals(userId, archived.getUserId());
+
+        // 热数据命中不足时从归档补充
+        List<String> contents = longMemoryService.retrieveRelevantMemories(userId, "外婆家的白猫", 5).stream()
+            .map(UserMemory::getContent)
+            .collect(Collectors.toList());
+        assertTrue(contents.contains("用户小时候在苏州外婆家养过一只白猫"), contents.toString());
+        assertEquals("用户小时候在苏州外婆家养过一只白猫", longMemoryService.getMemoryById(cold).getContent());
+
+        longMemoryService.deleteMemory(cold);
+        assertTrue(archivedMemoryRepository.findById(cold).isEmpty());
+        assertNull(longMemoryService.getMemoryById(cold));
+    }
+
+    @Test
+    void testAccessedArchivedMemoryMovesBackToHotTable() {
+        LocalDateTime now = LocalDateTime.now();
+        String read = saveMemory("用户大学时参加过合唱团", MemoryImportance.NORMAL, 3, now.minusDays(200));
+        String edited = saveMemory("用户以前住在成都", MemoryImportance.NORMAL, 0, now.minusDays(200));
+        LocalDateTime createdAt = userMemoryRepository.findById(read).orElseThrow().getCreatedAt();
+        assertTrue(archiver.archive(now) >= 2);
+        assertTrue(archivedMemoryRepository.findById(read).isPresent());
+
+        UserMemory memory = longMemoryService.getMemoryById(read);
+        assertEquals("用户大学时参加过合唱团", memory.getContent());
+        assertTrue(archivedMemoryRepository.findById(read).isEmpty());
+        UserMemoryEntity restored = userMemoryRepository.findById(read).orElseThrow();
+        assertEquals(createdAt.withNano(0), restored.getCreatedAt().withNano(0));
+        assertEquals(3, restored.getAccessCount());
+
+        // 已归档的记忆可以直接更新
+        longMemoryService.updateMemory(UserMemory.builder()
+            .id(edited)
+            .userId(userId)
+            .content("用户以前住在成都，现在搬到了重庆")
+            .build());
+        assertTrue(archivedMemoryRepository.findById(edited).isEmpty());
+        assertEquals("用户以前住在成都，现在搬到了重庆", userMemoryRepository.findById(edited).orElseThrow().getContent());
+    }
+
+    @Test
+    void testHeatDecaysWithIdleTime() {
+        LocalDateTime now = LocalDateTime.now();
+        UserMemoryEntity memory = UserMemoryEntity.builder()
+            .importance(MemoryImportance.NORMAL)
+            .accessCount(0)
+            .lastAccessedAt(now.minusDays(30))
+            .build();
+
+        assertEquals(0.3, archiver.heat(memory, now), 0.001);
+        memory.setLastAccessedAt(now.minusDays(90));
+        assertEquals(0.075, archiver.heat(memory, now), 0.001);
+        memory.setImportance(MemoryImportance.CORE);
+        assertEquals(Double.POSITIVE_INFINITY, archiver.heat(memory, now));
+    }
+
+    private String saveMemory(String content, MemoryImportance importance, int accessCount, LocalDateTime lastAccessedAt) {
+        String id = UUID.randomUUID().toString();
+        userMemoryRepository.save(UserMemoryEntity.builder()
+            .id(id)
+            .userId(userId)
+            .type(MemoryType.PERSONAL_INFO)
+            .importance(importance)
+            .source(MemorySource.CONVERSATION)
+            .content(content)
+            .accessCount(accessCount)
+            .lastAccessedAt(lastAccessedAt)
+            .build());
+        return id;
+    }
+}
@@ -0,0 +1,226 @@
+package com.heartsphere.memory.buffer;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ChatMessageEntity;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
+import com.heartsphere.memory.repository.jpa.SessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChatMessageWriteBuffer单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ChatMessageWriteBufferTest {
+
+    private static final String INSERT_PREFIX = "INSERT INTO chat_messages";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    private MemoryProperties properties;
+    private ChatMessageWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        // 测试中手动刷盘，避免定时任务干扰
+        properties.getShortMemory().setFlushIntervalMs(60_000);
+        buffer = newBuffer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    void testAppendIsVisibleBeforeFlush() {
+        assertTrue(buffer.append(message("s1", "m1", 1000)));
+        assertTrue(buffer.append(message("s1", "m2", 2000)));
+
+        List<ChatMessageEntity> pending = buffer.pendingMessages("s1");
+        assertEquals(List.of("m2", "m1"), pending.stream().map(ChatMessageEntity::getId).toList());
+        assertEquals(2, buffer.pendingCount("s1"));
+        assertEquals(0, buffer.pendingCount("s2"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushWritesOneBatchForAllSessions() {
+        existingSession("s1", 10L);
+
+        buffer.append(message("s1", "m1", 1000));
+        buffer.append(message("s1", "m2", 2000));
+        buffer.append(message("s2", "m3", 3000));
+        buffer.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith(INSERT_PREFIX), rows.capture());
+        assertEquals(3, rows.getValue().size());
+        // 已有会话从head_seq继续编号，新会话从已有消息的最大序号继续
+        assertEquals(List.of(11L, 12L, 1L), rows.getValue().stream().map(row -> row[7]).toList());
+        verify(jdbcTemplate, times(1)).queryForObject(startsWith("SELECT MAX(seq)"), eq(Long.class), eq("s2"));
+        // 未超出容量，不裁剪
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("DELETE FROM chat_messages"), anyList());
+        // 已存在的会话更新，新会话插入
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE memory_sessions"),
+            argThat((List<Object[]> list) -> list.size() == 1 && Long.valueOf(12L).equals(list.get(0)[2])));
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO memory_sessions"), argThat((List<Object[]> list) -> list.size() == 1));
+        verify(transactionManager, times(1)).commit(any());
+
+        assertTrue(buffer.pendingMessages("s1").isEmpty());
+        assertEquals(0, buffer.pendingCount("s2"));
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTrimDeletesBySeqRange() {
+        existingSession("s1", 100L);
+
+        buffer.append(message("s1", "m1", 2000));
+        buffer.append(message("s1", "m2", 3000));
+        buffer.flush();
+
+        ArgumentCaptor<List<Object[]>> trims = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("DELETE FROM chat_messages"), trims.capture());
+        assertEquals(1, trims.getValue().size());
+        assertArrayEquals(new Object[] {"s1", 2L}, trims.getValue().get(0));
+        verify(jdbcTemplate, never()).queryForObject(startsWith("SELECT MAX(seq)"), eq(Long.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchFailureFallsBackToSingleWrites() {
+        when(jdbcTemplate.batchUpdate(startsWith(INSERT_PREFIX), any(List.class)))
+            .thenThrow(new RuntimeException("duplicate key"));
+        when(sessionRepository.findBySessionId("s1")).thenReturn(Optional.empty());
+
+        buffer.append(message("s1", "m1", 1000));
+        buffer.append(message("s1", "m2", 2000));
+        buffer.flush();
+
+        verify(transactionManager).rollback(any());
+        verify(chatMessageRepository, times(2)).save(any(ChatMessageEntity.class));
+        verify(sessionRepository).save(argThat(session -> "s1".equals(session.getSessionId())));
+        assertEquals(0, buffer.pendingCount("s1"));
+    }
+
+    @Test
+    void testFallbackStillTrimsWhenSessionUpdateFails() {
+        properties.getShortMemory().setMaxMessagesPerSession(2);
+        // 锁定会话时即失败，消息尚未分配序号
+        doThrow(new RuntimeException("lock wait timeout"))
+            .when(jdbcTemplate).query(startsWith("SELECT session_id"), any(RowCallbackHandler.class), any(Object[].class));
+        when(jdbcTemplate.queryForObject(startsWith("SELECT MAX(seq)"), eq(Long.class), any())).thenReturn(5L);
+        when(sessionRepository.findBySessionId("s1")).thenThrow(new RuntimeException("connection reset"));
+
+        buffer.append(message("s1", "m1", 1000));
+        buffer.append(message("s1", "m2", 2000));
+        buffer.flush();
+
+        ArgumentCaptor<ChatMessageEntity> saved = ArgumentCaptor.forClass(ChatMessageEntity.class);
+        verify(chatMessageRepository, times(2)).save(saved.capture());
+        assertEquals(List.of(6L, 7L), saved.getAllValues().stream().map(ChatMessageEntity::getSeq).toList());
+        verify(jdbcTemplate).update(startsWith("DELETE FROM chat_messages"), eq("s1"), eq(5L));
+    }
+
+    @Test
+    void testFullBufferFlushesOnCallerThread() {
+        properties.getShortMemory().setMaxPendingMessages(2);
+
+        buffer.append(message("s1", "m1", 1000));
+        verify(jdbcTemplate, never()).batchUpdate(startsWith(INSERT_PREFIX), anyList());
+
+        buffer.append(message("s1", "m2", 2000));
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith(INSERT_PREFIX), anyList());
+        assertEquals(0, buffer.pendingCount("s1"));
+    }
+
+    @Test
+    void testShutdownDrainsAndStopsBuffering() {
+        buffer.append(message("s1", "m1", 1000));
+
+        buffer.shutdown();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith(INSERT_PREFIX), anyList());
+        assertFalse(buffer.append(message("s1", "m2", 2000)));
+    }
+
+    @Test
+    void testDisabled() {
+        properties.getShortMemory().setWriteBehindEnabled(false);
+        ChatMessageWriteBuffer disabled = newBuffer();
+
+        assertFalse(disabled.append(message("s1", "m1", 1000)));
+
+        disabled.writeNow(message("s1", "m1", 1000));
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith(INSERT_PREFIX), anyList());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    /**
+     * 模拟memory_sessions中已存在的会话及其最新序号
+     */
+    private void existingSession(String sessionId, long headSeq) {
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("session_id")).thenReturn(sessionId);
+            when(rs.getLong("head_seq")).thenReturn(headSeq);
+            ((RowCallbackHandler) invocation.getArgument(1)).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT session_id"), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private ChatMessageWriteBuffer newBuffer() {
+        ChatMessageWriteBuffer created = new ChatMessageWriteBuffer(
+            jdbcTemplate, transactionManager, chatMessageRepository, sessionRepository, properties);
+        created.start();
+        return created;
+    }
+
+    private ChatMessageEntity message(String sessionId, String id, long timestamp) {
+        return ChatMessageEntity.builder()
+            .id(id)
+            .sessionId(sessionId)
+            .userId("u1")
+            .role(MessageRole.USER)
+            .content("消息" + id)
+            .timestamp(timestamp)
+            .build();
+    }
+}
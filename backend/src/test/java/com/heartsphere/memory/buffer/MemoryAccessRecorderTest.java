@@ -0,0 +1,194 @@
+package com.heartsphere.memory.buffer;
+
+import com.heartsphere.memory.archive.MemoryArchive;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.UserFactEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.repository.jpa.ArchivedMemoryRepository;
+import com.heartsphere.memory.repository.jpa.UserFactRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MemoryAccessRecorder测试（H2）
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MemoryAccessRecorderTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserMemoryRepository userMemoryRepository;
+
+    @Autowired
+    private UserFactRepository userFactRepository;
+
+    @Autowired
+    private ArchivedMemoryRepository archivedMemoryRepository;
+
+    @Autowired
+    private MemoryArchive memoryArchive;
+
+    private MemoryProperties properties;
+    private MemoryAccessRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        // 独立实例，由测试手动写回
+        recorder = new MemoryAccessRecorder(jdbcTemplate, transactionManager, properties);
+    }
+
+    @Test
+    void testConcurrentAccessesFlushAsOneIncrement() throws Exception {
+        String memoryId = saveMemory(3);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        recorder.recordMemoryAccess(memoryId);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // 写回前数据库不变
+        assertEquals(3, userMemoryRepository.findById(memoryId).orElseThrow().getAccessCount());
+        assertEquals(1, recorder.pendingCount());
+
+        recorder.flush();
+
+        UserMemoryEntity entity = userMemoryRepository.findById(memoryId).orElseThrow();
+        assertEquals(2003, entity.getAccessCount());
+        assertTrue(entity.getLastAccessedAt().isAfter(LocalDateTime.now().minusMinutes(1)));
+        assertEquals(0, recorder.pendingCount());
+    }
+
+    @Test
+    void testFactAccessesAndBatchOfMemories() {
+        String first = saveMemory(0);
+        String second = saveMemory(0);
+        String factId = saveFact();
+
+        recorder.recordMemoryAccess(List.of(first, second));
+        recorder.recordMemoryAccess(first);
+        recorder.recordFactAccess(factId);
+        recorder.recordFactAccess(factId);
+        recorder.flush();
+
+        assertEquals(2, userMemoryRepository.findById(first).orElseThrow().getAccessCount());
+        assertEquals(1, userMemoryRepository.findById(second).orElseThrow().getAccessCount());
+        assertEquals(2, userFactRepository.findById(factId).orElseThrow().getAccessCount());
+    }
+
+    @Test
+    void testPendingIdsAreBounded() {
+        properties.getLongMemory().setAccessStatsMaxPendingIds(2);
+        String first = saveMemory(0);
+        String second = saveMemory(0);
+        String third = saveMemory(0);
+
+        recorder.recordMemoryAccess(first);
+        recorder.recordMemoryAccess(second);
+        recorder.recordMemoryAccess(third);
+        // 已在累计中的ID不受上限影响
+        recorder.recordMemoryAccess(first);
+
+        assertEquals(2, recorder.pendingCount());
+        recorder.flush();
+        assertEquals(2, userMemoryRepository.findById(first).orElseThrow().getAccessCount());
+        assertEquals(0, userMemoryRepository.findById(third).orElseThrow().getAccessCount());
+    }
+
+    @Test
+    void testAccessesOfArchivedMemoryAreKept() {
+        String memoryId = saveMemory(2);
+        recorder.recordMemoryAccess(memoryId);
+        recorder.recordMemoryAccess(memoryId);
+
+        // 写回前被归档
+        UserMemoryEntity hot = userMemoryRepository.findById(memoryId).orElseThrow();
+        archivedMemoryRepository.save(memoryArchive.toArchived(hot, LocalDateTime.now()));
+        userMemoryRepository.deleteById(memoryId);
+        recorder.flush();
+
+        assertEquals(4, archivedMemoryRepository.findById(memoryId).orElseThrow().getAccessCount());
+        archivedMemoryRepository.deleteById(memoryId);
+    }
+
+    @Test
+    void testDisabledBufferWritesImmediately() {
+        properties.getLongMemory().setAccessStatsBufferEnabled(false);
+        String memoryId = saveMemory(1);
+
+        recorder.recordMemoryAccess(memoryId);
+
+        assertEquals(0, recorder.pendingCount());
+        assertEquals(2, userMemoryRepository.findById(memoryId).orElseThrow().getAccessCount());
+    }
+
+    private String saveMemory(int accessCount) {
+        String id = UUID.randomUUID().toString();
+        userMemoryRepository.save(UserMemoryEntity.builder()
+            .id(id)
+            .userId("access-user")
+            .type(MemoryType.PREFERENCE)
+            .importance(MemoryImportance.NORMAL)
+            .source(MemorySource.CONVERSATION)
+            .content("用户喜欢爬山")
+            .accessCount(accessCount)
+            .createdAt(LocalDateTime.now())
+            .build());
+        return id;
+    }
+
+    private String saveFact() {
+        String id = UUID.randomUUID().toString();
+        userFactRepository.save(UserFactEntity.builder()
+            .id(id)
+            .userId("access-user")
+            .fact("用户住在杭州")
+            .category(FactCategory.LOCATION)
+            .importance(0.5)
+            .confidence(0.8)
+            .accessCount(0)
+            .createdAt(LocalDateTime.now())
+            .build());
+        return id;
+    }
+}
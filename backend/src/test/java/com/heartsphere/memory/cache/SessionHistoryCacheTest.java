@@ -0,0 +1,161 @@
+package com.heartsphere.memory.cache;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SessionHistoryCache单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class SessionHistoryCacheTest {
+
+    private MemoryProperties properties;
+    private SessionHistoryCache cache;
+    private AtomicInteger loads;
+    private List<ChatMessage> stored;
+    private BiFunction<String, Integer, List<ChatMessage>> loader;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        properties.getShortMemory().setMaxMessagesPerSession(5);
+        cache = new SessionHistoryCache(properties);
+        loads = new AtomicInteger();
+        stored = new ArrayList<>();
+        loader = (sessionId, count) -> {
+            loads.incrementAndGet();
+            return stored.stream()
+                .sorted((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()))
+                .limit(count)
+                .collect(Collectors.toList());
+        };
+    }
+
+    @Test
+    void testSecondReadIsServedFromCache() {
+        stored.add(message("m1", 1000));
+        stored.add(message("m2", 2000));
+
+        assertEquals(List.of("m2", "m1"), ids(cache.getRecent("s1", 10, loader)));
+        assertEquals(List.of("m2"), ids(cache.getRecent("s1", 1, loader)));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().missCount());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testAppendUpdatesInPlaceAndKeepsWindow() {
+        cache.getRecent("s1", 10, loader);
+        for (int i = 1; i <= 7; i++) {
+            cache.append("s1", message("m" + i, i * 1000L));
+        }
+        // 时间戳更早的消息按顺序插入，同ID覆盖
+        cache.append("s1", message("m6", 6000));
+
+        assertEquals(List.of("m7", "m6", "m5", "m4", "m3"), ids(cache.getRecent("s1", 10, loader)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testAppendToUncachedSessionIsIgnored() {
+        cache.append("s1", message("m1", 1000));
+        assertEquals(0, cache.estimatedSize());
+
+        stored.add(message("m1", 1000));
+        assertEquals(List.of("m1"), ids(cache.getRecent("s1", 10, loader)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testRemoveAndInvalidate() {
+        stored.add(message("m1", 1000));
+        stored.add(message("m2", 2000));
+        cache.getRecent("s1", 10, loader);
+
+        cache.remove("s1", "m2");
+        assertEquals(List.of("m1"), ids(cache.getRecent("s1", 10, loader)));
+
+        cache.invalidate("s1");
+        cache.getRecent("s1", 10, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testReturnedMessagesAreCopies() {
+        ChatMessage original = message("m1", 1000);
+        original.setMetadata(new java.util.HashMap<>(Map.of("mood", "happy")));
+        stored.add(original);
+
+        ChatMessage first = cache.getRecent("s1", 1, loader).get(0);
+        first.setContent("changed");
+        first.getMetadata().put("mood", "sad");
+
+        ChatMessage second = cache.getRecent("s1", 1, loader).get(0);
+        assertEquals("消息m1", second.getContent());
+        assertEquals("happy", second.getMetadata().get("mood"));
+    }
+
+    @Test
+    void testRange() {
+        assertNull(cache.getRange("s1", 0, Long.MAX_VALUE));
+
+        stored.add(message("m1", 1000));
+        stored.add(message("m2", 2000));
+        stored.add(message("m3", 3000));
+        cache.getRecent("s1", 10, loader);
+
+        assertEquals(List.of("m2", "m3"), ids(cache.getRange("s1", 1500, 3000)));
+
+        // 窗口已满时，早于窗口的范围需要查库
+        for (int i = 4; i <= 6; i++) {
+            cache.append("s1", message("m" + i, i * 1000L));
+        }
+        assertNull(cache.getRange("s1", 0, 3000));
+        assertEquals(List.of("m5", "m6"), ids(cache.getRange("s1", 4500, 6000)));
+    }
+
+    @Test
+    void testSizeWeightedEviction() {
+        properties.getShortMemory().setHistoryCacheMaxBytes(4096);
+        SessionHistoryCache small = new SessionHistoryCache(properties);
+        stored.add(ChatMessage.builder().id("big").role(MessageRole.USER)
+            .content("长".repeat(1500)).timestamp(1000L).build());
+
+        for (int i = 0; i < 10; i++) {
+            small.getRecent("s" + i, 10, loader);
+        }
+        small.cleanUp();
+
+        assertTrue(small.estimatedSize() < 10);
+        assertTrue(small.stats().evictionCount() > 0);
+    }
+
+    private ChatMessage message(String id, long timestamp) {
+        return ChatMessage.builder()
+            .id(id)
+            .sessionId("s1")
+            .role(MessageRole.USER)
+            .content("消息" + id)
+            .timestamp(timestamp)
+            .build();
+    }
+
+    private List<String> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).collect(Collectors.toList());
+    }
+}
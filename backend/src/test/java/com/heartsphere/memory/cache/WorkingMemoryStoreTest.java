@@ -0,0 +1,147 @@
+package com.heartsphere.memory.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.WorkingMemoryEntity;
+import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * WorkingMemoryStore单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class WorkingMemoryStoreTest {
+
+    @Mock
+    private WorkingMemoryRepository workingMemoryRepository;
+
+    private MemoryProperties properties;
+    private WorkingMemoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        store = new WorkingMemoryStore(workingMemoryRepository, new ObjectMapper(), properties);
+    }
+
+    @Test
+    void testPutWritesThroughAndReadsFromMemory() throws Exception {
+        when(workingMemoryRepository.updateValue(eq("s1"), eq("goal"), eq("\"找工作\""), any(), any())).thenReturn(1);
+
+        store.put("s1", "goal", "找工作");
+
+        assertEquals("找工作", store.get("s1", "goal", String.class));
+        assertEquals("找工作", store.get("s1", "goal", String.class));
+        verify(workingMemoryRepository, never()).save(any());
+        verify(workingMemoryRepository, never()).findBySessionIdAndMemoryKey(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCachedValueIsNotSharedWithCaller() throws Exception {
+        when(workingMemoryRepository.updateValue(any(), any(), any(), any(), any())).thenReturn(1);
+        Map<String, Object> plan = new HashMap<>(Map.of("step", 1));
+
+        store.put("s1", "plan", plan);
+        plan.put("step", 99);
+        Map<?, ?> first = store.get("s1", "plan", Map.class);
+        ((Map<String, Object>) first).put("step", 100);
+
+        assertEquals(1, store.get("s1", "plan", Map.class).get("step"));
+        verify(workingMemoryRepository, never()).findBySessionIdAndMemoryKey(any(), any());
+    }
+
+    @Test
+    void testRolledBackPutDoesNotReachCache() throws Exception {
+        when(workingMemoryRepository.updateValue(any(), any(), any(), any(), any())).thenReturn(1);
+        when(workingMemoryRepository.findBySessionIdAndMemoryKey("s1", "goal")).thenReturn(Optional.of(
+            entity("\"旧目标\"", LocalDateTime.now().plusHours(1))));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.put("s1", "goal", "新目标");
+            // 提交前读取的是数据库中已提交的值
+            assertEquals("旧目标", store.get("s1", "goal", String.class));
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals("旧目标", store.get("s1", "goal", String.class));
+        verify(workingMemoryRepository, times(2)).findBySessionIdAndMemoryKey("s1", "goal");
+    }
+
+    @Test
+    void testPutInsertsWhenMissing() throws Exception {
+        when(workingMemoryRepository.updateValue(any(), any(), any(), any(), any())).thenReturn(0);
+
+        store.put("s1", "goal", Map.of("step", 2));
+
+        verify(workingMemoryRepository).save(argThat(entity ->
+            "s1".equals(entity.getSessionId()) && "{\"step\":2}".equals(entity.getMemoryValue())));
+    }
+
+    @Test
+    void testMissLoadsOnceAndDecodesToRequestedType() throws Exception {
+        when(workingMemoryRepository.findBySessionIdAndMemoryKey("s1", "tags")).thenReturn(Optional.of(
+            entity("[\"猫\",\"咖啡\"]", LocalDateTime.now().plusHours(1))));
+
+        assertEquals(List.of("猫", "咖啡"), store.get("s1", "tags", List.class));
+        assertEquals(List.of("猫", "咖啡"), store.get("s1", "tags", List.class));
+        verify(workingMemoryRepository, times(1)).findBySessionIdAndMemoryKey("s1", "tags");
+    }
+
+    @Test
+    void testExpiredRowIsNotReturned() throws Exception {
+        when(workingMemoryRepository.findBySessionIdAndMemoryKey("s1", "old")).thenReturn(Optional.of(
+            entity("\"旧值\"", LocalDateTime.now().minusMinutes(1))));
+
+        assertNull(store.get("s1", "old", String.class));
+        // 过期行由后台任务清理，读取时不删除
+        verify(workingMemoryRepository, never()).delete(any(WorkingMemoryEntity.class));
+    }
+
+    @Test
+    void testRemoveAndClearSession() throws Exception {
+        when(workingMemoryRepository.updateValue(any(), any(), any(), any(), any())).thenReturn(1);
+        store.put("s1", "a", "1");
+        store.put("s1", "b", "2");
+        store.put("s2", "a", "3");
+
+        store.remove("s1", "a");
+        verify(workingMemoryRepository).deleteBySessionIdAndMemoryKey("s1", "a");
+
+        store.clearSession("s1");
+        verify(workingMemoryRepository).deleteBySessionId("s1");
+        assertNull(store.get("s1", "b", String.class));
+        assertEquals("3", store.get("s2", "a", String.class));
+    }
+
+    private WorkingMemoryEntity entity(String json, LocalDateTime expiresAt) {
+        return WorkingMemoryEntity.builder()
+            .sessionId("s1")
+            .memoryValue(json)
+            .expiresAt(expiresAt)
+            .build();
+    }
+}
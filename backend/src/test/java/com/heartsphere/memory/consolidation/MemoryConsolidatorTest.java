@@ -0,0 +1,204 @@
+package com.heartsphere.memory.consolidation;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.UserFactEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.repository.jpa.UserFactRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemoryConsolidator测试（H2）
+ * 测试配置中关闭了定时合并，由测试直接触发
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MemoryConsolidatorTest {
+
+    @Autowired
+    private MemoryConsolidator consolidator;
+
+    @Autowired
+    private MySQLLongMemoryService longMemoryService;
+
+    @Autowired
+    private UserMemoryRepository userMemoryRepository;
+
+    @Autowired
+    private UserFactRepository userFactRepository;
+
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = "consolidate-user-" + System.nanoTime();
+    }
+
+    @Test
+    void testNearDuplicateMemoriesMergeIntoHighestConfidence() {
+        saveMemory("用户喜欢猫", MemoryType.PREFERENCE, 0.6, 2, Instant.now().minusSeconds(60));
+        String best = saveMemory("用户喜欢猫。", MemoryType.PREFERENCE, 0.9, 3, Instant.now().minusSeconds(30));
+        saveMemory("用户喜欢猫！！", MemoryType.PREFERENCE, 0.7, 5, Instant.now());
+        // 类型不同不合并
+        saveMemory("用户喜欢猫", MemoryType.HABIT, 0.5, 1, Instant.now());
+        saveMemory("用户在上海做软件工程师", MemoryType.PREFERENCE, 0.8, 0, Instant.now());
+
+        consolidator.consolidateMemories();
+
+        List<UserMemoryEntity> remaining = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        assertEquals(3, remaining.size());
+        UserMemoryEntity survivor = remaining.stream()
+            .filter(m -> m.getType() == MemoryType.PREFERENCE && m.getContent().contains("猫"))
+            .findFirst().orElseThrow();
+        assertEquals(best, survivor.getId());
+        assertEquals(0.9, survivor.getConfidence());
+        assertEquals(10, survivor.getAccessCount());
+        assertTrue(remaining.stream().allMatch(m -> m.getContentFingerprint() != null));
+    }
+
+    @Test
+    void testLaterRowsMergeIntoAlreadyFingerprintedRow() {
+        saveMemory("用户喜欢猫", MemoryType.PREFERENCE, 0.8, 4, Instant.now().minusSeconds(60));
+        consolidator.consolidateMemories();
+
+        String latest = saveMemory("用户喜欢猫！", MemoryType.PREFERENCE, 0.8, 1, Instant.now());
+        consolidator.consolidateMemories();
+
+        List<UserMemoryEntity> remaining = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        assertEquals(1, remaining.size());
+        // 置信度相同时保留最新的条目
+        assertEquals(latest, remaining.get(0).getId());
+        assertEquals(5, remaining.get(0).getAccessCount());
+    }
+
+    @Test
+    void testNearDuplicateFactsMerge() {
+        saveFact("用户的职业是教师", 0.7, 0.5, 1);
+        String best = saveFact("用户的职业是教师。", 0.95, 0.4, 2);
+
+        consolidator.consolidateFacts();
+
+        List<UserFactEntity> remaining = userFactRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        assertEquals(1, remaining.size());
+        assertEquals(best, remaining.get(0).getId());
+        assertEquals(3, remaining.get(0).getAccessCount());
+        assertEquals(0.5, remaining.get(0).getImportance());
+    }
+
+    @Test
+    void testNumericOnlyDifferencesAreNotMerged() {
+        saveMemory("生日是3月5日", MemoryType.PERSONAL_INFO, 0.9, 1, Instant.now().minusSeconds(60));
+        saveMemory("生日是5月3日", MemoryType.PERSONAL_INFO, 0.8, 1, Instant.now());
+        saveFact("用户的手机号是13800001234", 0.9, 0.5, 1);
+        saveFact("用户的手机号是13900005678", 0.9, 0.5, 1);
+
+        consolidator.consolidateMemories();
+        consolidator.consolidateFacts();
+
+        assertEquals(2, userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId).size(), "日期不同的记忆不应合并");
+        assertEquals(2, userFactRepository.findByUserIdOrderByCreatedAtDesc(userId).size(), "号码不同的事实不应合并");
+    }
+
+    @Test
+    void testContentWithoutTokensIsNotMerged() {
+        saveMemory("！！！", MemoryType.PREFERENCE, 0.6, 1, Instant.now().minusSeconds(60));
+        saveMemory("？？？", MemoryType.PREFERENCE, 0.7, 1, Instant.now());
+
+        consolidator.consolidateMemories();
+
+        List<UserMemoryEntity> remaining = userMemoryRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        assertEquals(2, remaining.size(), "无词元的内容指纹都为0，不应互相合并");
+        assertTrue(remaining.stream().allMatch(m -> Long.valueOf(0L).equals(m.getContentFingerprint())));
+    }
+
+    @Test
+    void testFailedUserDoesNotBlockOtherUsers() {
+        UserMemoryRepository memories = mock(UserMemoryRepository.class);
+        MemoryProperties properties = new MemoryProperties();
+        properties.getConsolidation().setBatchSize(2);
+        MemoryConsolidator isolated = new MemoryConsolidator(memories, mock(UserFactRepository.class),
+            mock(MemoryVectorIndex.class), mock(MemoryTextIndex.class), mock(PlatformTransactionManager.class),
+            properties);
+        UserMemoryEntity second = memory("b", "用户喜欢猫");
+        UserMemoryEntity third = memory("c", "用户在上海工作");
+        when(memories.findUnfingerprinted(eq(""), any())).thenReturn(List.of(
+            new Object[]{"a", "bad-user"}, new Object[]{"b", "good-user"}));
+        when(memories.findUnfingerprinted(eq("b"), any())).thenReturn(List.<Object[]>of(
+            new Object[]{"c", "good-user"}));
+        when(memories.findFingerprintsByUserId("bad-user")).thenThrow(new IllegalStateException("锁等待超时"));
+        when(memories.findFingerprintsByUserId("good-user")).thenReturn(List.of());
+        when(memories.findAllByIdForUpdate(List.of("b"))).thenReturn(List.of(second));
+        when(memories.findAllByIdForUpdate(List.of("c"))).thenReturn(List.of(third));
+
+        isolated.consolidateMemories();
+
+        // 失败用户之后的条目和下一批都照常处理
+        assertNotNull(second.getContentFingerprint());
+        assertNotNull(third.getContentFingerprint());
+    }
+
+    private static UserMemoryEntity memory(String id, String content) {
+        UserMemoryEntity entity = new UserMemoryEntity();
+        entity.setId(id);
+        entity.setUserId("good-user");
+        entity.setType(MemoryType.PREFERENCE);
+        entity.setContent(content);
+        return entity;
+    }
+
+    private String saveMemory(String content, MemoryType type, double confidence, int accessCount, Instant createdAt) {
+        String id = UUID.randomUUID().toString();
+        longMemoryService.saveMemory(UserMemory.builder()
+            .id(id)
+            .userId(userId)
+            .type(type)
+            .importance(MemoryImportance.NORMAL)
+            .source(MemorySource.CONVERSATION)
+            .content(content)
+            .confidence(confidence)
+            .accessCount(accessCount)
+            .createdAt(createdAt)
+            .build());
+        return id;
+    }
+
+    private String saveFact(String fact, double confidence, double importance, int accessCount) {
+        String id = UUID.randomUUID().toString();
+        longMemoryService.saveFact(UserFact.builder()
+            .id(id)
+            .userId(userId)
+            .fact(fact)
+            .category(FactCategory.WORK)
+            .confidence(confidence)
+            .importance(importance)
+            .accessCount(accessCount)
+            .build());
+        return id;
+    }
+}
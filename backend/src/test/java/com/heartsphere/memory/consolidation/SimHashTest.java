@@ -0,0 +1,73 @@
+package com.heartsphere.memory.consolidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SimHash与FingerprintIndex单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class SimHashTest {
+
+    @Test
+    void testPunctuationAndSpacingDoNotChangeFingerprint() {
+        long fingerprint = SimHash.fingerprint("用户喜欢猫，也喜欢狗");
+
+        assertEquals(fingerprint, SimHash.fingerprint("用户喜欢猫 也喜欢狗。"));
+        assertEquals(0, SimHash.fingerprint("，。！"));
+        assertEquals(0, SimHash.fingerprint(null));
+    }
+
+    @Test
+    void testDifferentTextIsFarApart() {
+        long cats = SimHash.fingerprint("用户喜欢猫，每天下班后都会陪猫玩一会儿");
+        long job = SimHash.fingerprint("用户在上海做软件工程师，经常加班到深夜");
+
+        assertTrue(SimHash.distance(cats, job) > 3);
+        assertEquals(0, SimHash.distance(cats, cats));
+    }
+
+    @Test
+    void testNumericOnlyDifferencesAreDetected() {
+        // 只有数字不同的文本指纹几乎相同，必须靠数字串区分
+        assertTrue(SimHash.distance(SimHash.fingerprint("生日是3月5日"), SimHash.fingerprint("生日是5月3日")) <= 3);
+        assertFalse(SimHash.sameNumbers("生日是3月5日", "生日是5月3日"));
+        assertFalse(SimHash.sameNumbers("手机号是13800001234", "手机号是13900005678"));
+        assertFalse(SimHash.sameNumbers("住在3楼", "住在楼上"));
+
+        assertTrue(SimHash.sameNumbers("手机号是１３８００００１２３４。", "手机号 13800001234"));
+        assertTrue(SimHash.sameNumbers("用户喜欢猫", "用户喜欢猫！"));
+        assertEquals(List.of("2024", "3", "5"), SimHash.numbers("2024年3月5日"));
+    }
+
+    @Test
+    void testIndexFindsNearFingerprintsWithinGroup() {
+        FingerprintIndex index = new FingerprintIndex(3);
+        long base = 0x0123_4567_89AB_CDEFL;
+        // 相差3位，分布在不同分段
+        long near = base ^ (1L | 1L << 20 | 1L << 50);
+        long far = base ^ 0xFFFFL;
+
+        index.add("PREFERENCE", "a", base);
+        index.add("PREFERENCE", "b", far);
+        index.add("HABIT", "c", base);
+
+        assertEquals(Set.of("a"), ids(index.findNear("PREFERENCE", near)));
+        assertEquals(Set.of("c"), ids(index.findNear("HABIT", near)));
+
+        index.remove("PREFERENCE", "a", base);
+        assertTrue(index.findNear("PREFERENCE", near).isEmpty());
+        assertEquals(Set.of("b"), ids(index.findNear("PREFERENCE", far)));
+    }
+
+    private Set<String> ids(List<FingerprintIndex.Entry> entries) {
+        return entries.stream().map(FingerprintIndex.Entry::id).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,174 @@
+package com.heartsphere.memory.context;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.context.ContextTelemetry.ItemKind;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.service.LongMemoryService;
+import com.heartsphere.memory.service.ShortMemoryService;
+import com.heartsphere.memory.text.TokenEstimator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ContextAssembler单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class ContextAssemblerTest {
+
+    @Mock
+    private ShortMemoryService shortMemoryService;
+
+    @Mock
+    private LongMemoryService longMemoryService;
+
+    private MemoryProperties properties;
+    private ContextAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        properties.getContext().setDefaultTokenBudget(100);
+        properties.getContext().getModelTokenBudgets().put("big-model", 10000);
+        assembler = new ContextAssembler(shortMemoryService, longMemoryService, properties);
+        lenient().when(longMemoryService.getImportantFacts(anyString(), anyDouble())).thenReturn(Collections.emptyList());
+        lenient().when(longMemoryService.getAllPreferences(anyString())).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    void testEstimateTokens() {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(5, TokenEstimator.estimate("我喜欢猫！"));
+        assertEquals(4, TokenEstimator.estimate("hello world"));
+    }
+
+    @Test
+    void testEverythingFitsInLargeBudget() {
+        when(shortMemoryService.getMessages("s1", 50)).thenReturn(history(5, 10));
+        when(longMemoryService.getImportantFacts(eq("u1"), anyDouble())).thenReturn(List.of(fact("f1", 0.9, 5)));
+
+        AssembledContext context = assembler.assemble(request("big-model"));
+
+        List<ChatMessage> messages = context.getMessages();
+        assertEquals(MessageRole.SYSTEM, messages.get(0).getRole());
+        assertTrue(messages.get(0).getContent().startsWith("你是一位旅行家"));
+        assertTrue(messages.get(0).getContent().contains("【关于用户的事实】\n- 事实f1"));
+        // 历史消息按时间正序
+        assertEquals(List.of("m4", "m3", "m2", "m1", "m0"),
+            messages.subList(1, messages.size()).stream().map(ChatMessage::getId).collect(Collectors.toList()));
+        assertEquals(10000, context.getTelemetry().getTokenBudget());
+        assertTrue(context.getTelemetry().getDropped().isEmpty());
+    }
+
+    @Test
+    void testBudgetDropsLowScoringItemsAndKeepsPinnedMessages() {
+        // 每条消息 20+4 token，预算100：系统提示词与两条置顶消息之外只能再装入高分事实
+        List<ChatMessage> history = history(6, 20);
+        when(shortMemoryService.getMessages("s1", 50)).thenReturn(history);
+        when(longMemoryService.getImportantFacts(eq("u1"), anyDouble()))
+            .thenReturn(List.of(fact("f1", 1.0, 10), fact("f2", 0.3, 30)));
+
+        AssembledContext context = assembler.assemble(request(null));
+        ContextTelemetry telemetry = context.getTelemetry();
+
+        assertTrue(telemetry.getUsedTokens() <= telemetry.getTokenBudget());
+        List<String> ids = context.getMessages().stream().map(ChatMessage::getId).collect(Collectors.toList());
+        assertTrue(ids.containsAll(List.of("m1", "m0")));
+        assertTrue(context.getMessages().get(0).getContent().contains("事实f1"));
+        assertFalse(context.getMessages().get(0).getContent().contains("事实f2"));
+
+        List<String> dropped = telemetry.getDropped().stream()
+            .map(ContextTelemetry.DroppedItem::getId).collect(Collectors.toList());
+        assertTrue(dropped.contains("f2"));
+        assertTrue(dropped.contains("m5"));
+        assertEquals(telemetry.getCandidateCount(),
+            telemetry.getIncludedCounts().values().stream().mapToInt(Integer::intValue).sum() + dropped.size());
+        assertEquals(ids.size() - 1, telemetry.getIncludedCounts().get(ItemKind.MESSAGE));
+    }
+
+    @Test
+    void testCachedTokenCountIsUsedInsteadOfReestimating() {
+        ChatMessage oversized = message("m2", 0, 1000);
+        List<ChatMessage> history = new ArrayList<>(history(2, 1));
+        history.add(oversized);
+        when(shortMemoryService.getMessages("s1", 50)).thenReturn(history);
+
+        AssembledContext context = assembler.assemble(request(null));
+
+        // 内容很短，但写入时记录的token数超出预算，因此被丢弃
+        assertEquals("m2", context.getTelemetry().getDropped().get(0).getId());
+        assertEquals(1004, context.getTelemetry().getDroppedTokens());
+        verify(longMemoryService, never()).retrieveRelevantMemories(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void testOtherUsersMessagesAreSkipped() {
+        List<ChatMessage> history = history(3, 5);
+        history.get(1).setUserId("u2");
+        when(shortMemoryService.getMessages("s1", 50)).thenReturn(history);
+
+        AssembledContext context = assembler.assemble(request("big-model"));
+
+        List<String> ids = context.getMessages().stream().map(ChatMessage::getId).collect(Collectors.toList());
+        assertEquals(List.of("m2", "m0"), ids.subList(1, ids.size()));
+    }
+
+    private ContextRequest request(String model) {
+        return ContextRequest.builder()
+            .userId("u1")
+            .sessionId("s1")
+            .model(model)
+            .systemPrompt("你是一位旅行家")
+            .build();
+    }
+
+    /**
+     * 按时间倒序的历史消息，m0最新
+     */
+    private List<ChatMessage> history(int count, int tokens) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message("m" + i, i, tokens));
+        }
+        return messages;
+    }
+
+    private ChatMessage message(String id, int age, int tokens) {
+        return ChatMessage.builder()
+            .id(id)
+            .sessionId("s1")
+            .role(age % 2 == 0 ? MessageRole.ASSISTANT : MessageRole.USER)
+            .content("消息" + id)
+            .timestamp(1_000_000L - age * 1000L)
+            .tokenCount(tokens)
+            .build();
+    }
+
+    private UserFact fact(String id, double importance, int tokens) {
+        return UserFact.builder()
+            .id(id)
+            .userId("u1")
+            .fact("事实" + id)
+            .importance(importance)
+            .createdAt(Instant.now())
+            .tokenCount(tokens)
+            .build();
+    }
+}
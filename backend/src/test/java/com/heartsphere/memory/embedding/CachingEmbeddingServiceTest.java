@@ -0,0 +1,113 @@
+package com.heartsphere.memory.embedding;
+
+import com.heartsphere.memory.service.EmbeddingService;
+import com.heartsphere.memory.service.impl.HashingEmbeddingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CachingEmbeddingService与MappedVectorStore单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class CachingEmbeddingServiceTest {
+
+    private static final int DIMENSION = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameTextIsEmbeddedOnce() throws Exception {
+        CountingEmbedder embedder = new CountingEmbedder();
+        try (CachingEmbeddingService service = new CachingEmbeddingService(embedder, null, 100)) {
+            float[] first = service.embed("用户喜欢猫");
+            first[0] = 42f;
+            float[] second = service.embed("用户喜欢猫");
+
+            assertEquals(1, embedder.calls.get());
+            // 返回副本，调用方修改不影响缓存
+            assertNotEquals(42f, second[0]);
+            assertArrayEquals(embedder.delegate.embed("用户喜欢猫"), second);
+
+            service.embed("用户喜欢狗");
+            assertEquals(2, embedder.calls.get());
+        }
+    }
+
+    @Test
+    void testVectorsSurviveRestartThroughMappedFile() throws Exception {
+        Path file = tempDir.resolve("vectors.vec");
+        CountingEmbedder embedder = new CountingEmbedder();
+        float[] expected = embedder.delegate.embed("用户住在杭州");
+
+        try (CachingEmbeddingService service = new CachingEmbeddingService(embedder, open(file, "m1", 10), 100)) {
+            service.embed("用户住在杭州");
+        }
+        assertEquals(1, embedder.calls.get());
+
+        try (CachingEmbeddingService service = new CachingEmbeddingService(embedder, open(file, "m1", 10), 100)) {
+            FloatBuffer view = service.view("用户住在杭州");
+            assertTrue(view.isReadOnly());
+            float[] viewed = new float[view.remaining()];
+            view.get(viewed);
+            assertArrayEquals(expected, viewed);
+            assertArrayEquals(expected, service.embed("用户住在杭州"));
+            assertEquals(1, embedder.calls.get());
+            assertEquals(2, service.storeHits());
+        }
+
+        // 模型变化时文件作废
+        try (MappedVectorStore store = open(file, "m2", 10)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void testStoreStopsAppendingWhenFull() throws Exception {
+        try (MappedVectorStore store = open(tempDir.resolve("small.vec"), "m1", 2)) {
+            assertTrue(store.put(EmbeddingKey.of("a"), new float[DIMENSION]));
+            assertFalse(store.put(EmbeddingKey.of("a"), new float[DIMENSION]));
+            assertTrue(store.put(EmbeddingKey.of("b"), new float[DIMENSION]));
+            assertFalse(store.put(EmbeddingKey.of("c"), new float[DIMENSION]));
+            assertNull(store.view(EmbeddingKey.of("c")));
+            assertEquals(DIMENSION, store.view(EmbeddingKey.of("b")).remaining());
+        }
+        // 写满的文件在下次打开时清空
+        try (MappedVectorStore store = open(tempDir.resolve("small.vec"), "m1", 2)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    private MappedVectorStore open(Path file, String modelId, int capacity) throws Exception {
+        return MappedVectorStore.open(file, modelId, DIMENSION, capacity);
+    }
+
+    private static class CountingEmbedder implements EmbeddingService {
+        private final HashingEmbeddingService delegate = new HashingEmbeddingService(DIMENSION);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public float[] embed(String text) {
+            calls.incrementAndGet();
+            return delegate.embed(text);
+        }
+
+        @Override
+        public int getDimension() {
+            return DIMENSION;
+        }
+
+        @Override
+        public String getModelId() {
+            return delegate.getModelId();
+        }
+    }
+}
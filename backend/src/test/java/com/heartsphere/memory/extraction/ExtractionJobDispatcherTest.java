@@ -0,0 +1,173 @@
+package com.heartsphere.memory.extraction;
+
+import com.heartsphere.aiagent.service.UnifiedModelRoutingService;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.entity.ExtractionJobEntity;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.ExtractionLane;
+import com.heartsphere.memory.model.ExtractionResult;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.service.MemoryExtractor;
+import com.heartsphere.memory.service.ShortMemoryService;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ExtractionJobDispatcher单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class ExtractionJobDispatcherTest {
+
+    @Mock
+    private ExtractionJobQueue queue;
+
+    @Mock
+    private MemoryExtractor memoryExtractor;
+
+    @Mock
+    private ShortMemoryService shortMemoryService;
+
+    @Mock
+    private MySQLLongMemoryService longMemoryService;
+
+    @Mock
+    private UnifiedModelRoutingService routingService;
+
+    private MemoryProperties properties;
+    private List<Runnable> submitted;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        properties.getExtractionQueue().setDefaultProviderConcurrency(3);
+        properties.getExtractionQueue().setInteractiveReservedSlots(1);
+        submitted = new ArrayList<>();
+        lenient().when(routingService.selectModel("text")).thenThrow(new RuntimeException("未配置"));
+    }
+
+    @Test
+    void testInteractiveLaneFirstAndProviderLimitHeld() {
+        when(queue.findReady(ExtractionLane.INTERACTIVE, 3)).thenReturn(List.of(1L));
+        when(queue.findReady(ExtractionLane.BACKFILL, 1)).thenReturn(List.of(2L));
+        when(queue.claim(anyLong())).thenAnswer(invocation -> Optional.of(job(invocation.getArgument(0))));
+        ExtractionJobDispatcher dispatcher = dispatcher(submitted::add);
+
+        dispatcher.dispatch();
+        assertEquals(2, submitted.size());
+        assertEquals(2, dispatcher.inFlight().get("default"));
+
+        // 许可未释放时只剩一个空闲许可，且为交互通道保留
+        dispatcher.dispatch();
+        verify(queue).findReady(ExtractionLane.INTERACTIVE, 1);
+        verify(queue, times(1)).findReady(eq(ExtractionLane.BACKFILL), anyInt());
+    }
+
+    @Test
+    void testRejectedTaskIsRequeuedNotDropped() {
+        when(queue.findReady(ExtractionLane.INTERACTIVE, 3)).thenReturn(List.of(1L));
+        when(queue.claim(1L)).thenReturn(Optional.of(job(1L)));
+        ExtractionJobDispatcher dispatcher = dispatcher(task -> {
+            throw new TaskRejectedException("满");
+        });
+
+        dispatcher.dispatch();
+
+        verify(queue).requeue(eq(1L), any(), anyString());
+        assertEquals(0, dispatcher.inFlight().get("default"));
+    }
+
+    @Test
+    void testRunSavesResultAndCompletes() {
+        ExtractionJobEntity job = job(1L);
+        List<ChatMessage> messages = new ArrayList<>(List.of(
+            ChatMessage.builder().id("m2").role(MessageRole.ASSISTANT).content("好的").build(),
+            ChatMessage.builder().id("m1").role(MessageRole.USER).content("我喜欢爬山").build()));
+        when(shortMemoryService.getMessages("s1", 100)).thenReturn(messages);
+        UserMemory memory = UserMemory.builder().content("喜欢爬山").build();
+        when(memoryExtractor.extractAll(eq("1"), anyList()))
+            .thenReturn(ExtractionResult.builder().memories(new ArrayList<>(List.of(memory))).build());
+        when(queue.renew(job)).thenReturn(true);
+
+        dispatcher(Runnable::run).run(job);
+
+        // 按对话顺序提取
+        verify(memoryExtractor).extractAll(eq("1"), argThat(list -> "m1".equals(list.get(0).getId())));
+        verify(longMemoryService).saveMemories(List.of(memory));
+        assertEquals("s1", memory.getSourceId());
+        verify(queue).complete(job);
+    }
+
+    @Test
+    void testExpiredLeaseDiscardsResult() {
+        ExtractionJobEntity job = job(1L);
+        when(shortMemoryService.getMessages("s1", 100)).thenReturn(List.of(
+            ChatMessage.builder().id("m1").role(MessageRole.USER).content("我喜欢爬山").build()));
+        when(memoryExtractor.extractAll(eq("1"), anyList()))
+            .thenReturn(ExtractionResult.builder().memories(new ArrayList<>(List.of(
+                UserMemory.builder().content("喜欢爬山").build()))).build());
+        when(queue.renew(job)).thenReturn(false);
+
+        dispatcher(Runnable::run).run(job);
+
+        // 任务已被其他实例重新领取，不保存也不删除
+        verify(longMemoryService, never()).saveMemories(anyList());
+        verify(queue, never()).complete(any());
+        verify(queue, never()).fail(any(), any());
+    }
+
+    @Test
+    void testRunningJobsRenewLease() {
+        ExtractionJobEntity job = job(1L);
+        ExtractionJobDispatcher dispatcher = dispatcher(Runnable::run);
+        when(shortMemoryService.getMessages("s1", 100)).thenAnswer(invocation -> {
+            dispatcher.renewLeases();
+            return List.of();
+        });
+
+        dispatcher.run(job);
+        dispatcher.renewLeases();
+
+        // 只在执行期间续期
+        verify(queue, times(1)).renew(job);
+        verify(queue).complete(job);
+    }
+
+    @Test
+    void testRunFailureIsReported() {
+        ExtractionJobEntity job = job(1L);
+        RuntimeException error = new RuntimeException("数据库不可用");
+        when(shortMemoryService.getMessages("s1", 100)).thenThrow(error);
+
+        dispatcher(Runnable::run).run(job);
+
+        verify(queue).fail(job, error);
+        verify(queue, never()).complete(any());
+    }
+
+    private ExtractionJobDispatcher dispatcher(Executor executor) {
+        return new ExtractionJobDispatcher(queue, memoryExtractor, shortMemoryService,
+            new ExtractionResultWriter(longMemoryService), routingService, executor, properties);
+    }
+
+    private ExtractionJobEntity job(Long id) {
+        return ExtractionJobEntity.builder().id(id).userId("1").sessionId("s" + id).attempts(1).build();
+    }
+}
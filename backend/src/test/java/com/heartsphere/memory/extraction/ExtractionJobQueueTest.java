@@ -0,0 +1,119 @@
+package com.heartsphere.memory.extraction;
+
+import com.heartsphere.memory.entity.ExtractionJobEntity;
+import com.heartsphere.memory.model.ExtractionJobStatus;
+import com.heartsphere.memory.model.ExtractionLane;
+import com.heartsphere.memory.repository.jpa.ExtractionJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExtractionJobQueue测试（H2）
+ * 关闭调度器，避免后台领取测试中的任务
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest(properties = {
+    "heartsphere.memory.extraction-queue.enabled=false",
+    "heartsphere.memory.extraction-queue.coalesce-delay-ms=0"
+})
+@ActiveProfiles("test")
+class ExtractionJobQueueTest {
+
+    @Autowired
+    private ExtractionJobQueue queue;
+
+    @Autowired
+    private ExtractionJobRepository repository;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        sessionId = "extract-session-" + System.nanoTime();
+    }
+
+    @Test
+    void testRepeatedTriggersCoalesceIntoOneJob() {
+        queue.enqueue("1", sessionId, ExtractionLane.BACKFILL);
+        queue.enqueue("1", sessionId, ExtractionLane.BACKFILL);
+        queue.enqueue("1", sessionId, ExtractionLane.INTERACTIVE);
+
+        List<ExtractionJobEntity> jobs = repository.findAll();
+        assertEquals(1, jobs.size());
+        assertEquals(3, jobs.get(0).getTriggerCount());
+        // 交互触发把回填任务提升到交互通道
+        assertEquals(ExtractionLane.INTERACTIVE, jobs.get(0).getLane());
+
+        ExtractionQueueStats stats = queue.stats();
+        assertEquals(1, stats.getInteractivePending());
+        assertEquals(0, stats.getBackfillPending());
+    }
+
+    @Test
+    void testTriggerWhileRunningCreatesNewPendingJob() {
+        queue.enqueue("1", sessionId, ExtractionLane.INTERACTIVE);
+        Long jobId = queue.findReady(ExtractionLane.INTERACTIVE, 10).get(0);
+        ExtractionJobEntity running = queue.claim(jobId).orElseThrow();
+        assertEquals(ExtractionJobStatus.RUNNING, running.getStatus());
+        assertEquals(1, running.getAttempts());
+        // 已领取的任务不能被再次领取
+        assertTrue(queue.claim(jobId).isEmpty());
+
+        queue.enqueue("1", sessionId, ExtractionLane.INTERACTIVE);
+        assertEquals(2, repository.count());
+
+        // 失败重试时会话已有新的等待任务，合并到新任务
+        queue.fail(running, new RuntimeException("LLM超时"));
+        assertEquals(1, repository.count());
+        assertEquals(ExtractionJobStatus.PENDING, repository.findAll().get(0).getStatus());
+    }
+
+    @Test
+    void testFailureBacksOff() {
+        queue.enqueue("1", sessionId, ExtractionLane.BACKFILL);
+        Long jobId = queue.findReady(ExtractionLane.BACKFILL, 10).get(0);
+        ExtractionJobEntity running = queue.claim(jobId).orElseThrow();
+
+        queue.fail(running, new RuntimeException("LLM超时"));
+
+        ExtractionJobEntity retried = repository.findById(jobId).orElseThrow();
+        assertEquals(ExtractionJobStatus.PENDING, retried.getStatus());
+        assertEquals("LLM超时", retried.getLastError());
+        assertTrue(retried.getAvailableAt().isAfter(LocalDateTime.now()));
+        assertTrue(queue.findReady(ExtractionLane.BACKFILL, 10).isEmpty());
+    }
+
+    @Test
+    void testExpiredLeaseCannotCompleteReclaimedJob() {
+        queue.enqueue("1", sessionId, ExtractionLane.BACKFILL);
+        Long jobId = queue.findReady(ExtractionLane.BACKFILL, 10).get(0);
+        ExtractionJobEntity stale = queue.claim(jobId).orElseThrow();
+        assertTrue(queue.renew(stale));
+
+        // 租约过期被回收，另一个实例重新领取
+        queue.requeue(jobId, LocalDateTime.now(), "执行租约过期");
+        ExtractionJobEntity current = queue.claim(jobId).orElseThrow();
+        assertEquals(2, current.getAttempts());
+
+        assertFalse(queue.renew(stale));
+        queue.complete(stale);
+        queue.fail(stale, new RuntimeException("LLM超时"));
+        ExtractionJobEntity job = repository.findById(jobId).orElseThrow();
+        assertEquals(ExtractionJobStatus.RUNNING, job.getStatus());
+        assertEquals("执行租约过期", job.getLastError(), "旧执行者的失败不应覆盖任务状态");
+
+        queue.complete(current);
+        assertEquals(0, repository.count());
+    }
+}
@@ -0,0 +1,81 @@
+package com.heartsphere.memory.maintenance;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
+import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ExpiredMemoryPurger单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class ExpiredMemoryPurgerTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private WorkingMemoryRepository workingMemoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExpiredMemoryPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        MemoryProperties properties = new MemoryProperties();
+        properties.getShortMemory().setExpiredPurgeBatchSize(2);
+        purger = new ExpiredMemoryPurger(chatMessageRepository, workingMemoryRepository, transactionManager, properties);
+    }
+
+    @Test
+    void testPurgeMessagesInBatchesUntilExhausted() {
+        LocalDateTime now = LocalDateTime.now();
+        when(chatMessageRepository.findExpiredIds(eq(now), any(Pageable.class)))
+            .thenReturn(List.of("m1", "m2"), List.of("m3"));
+        when(chatMessageRepository.deleteByIdIn(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        assertEquals(3, purger.purgeMessages(now));
+
+        verify(chatMessageRepository).deleteByIdIn(List.of("m1", "m2"));
+        verify(chatMessageRepository).deleteByIdIn(List.of("m3"));
+        // 每批一个独立事务
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testPurgeWithNothingExpired() {
+        when(chatMessageRepository.findExpiredIds(any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        assertEquals(0, purger.purgeMessages(LocalDateTime.now()));
+
+        verify(chatMessageRepository, never()).deleteByIdIn(anyList());
+    }
+
+    @Test
+    void testPurgeWorkingMemories() {
+        LocalDateTime now = LocalDateTime.now();
+        when(workingMemoryRepository.findExpiredIds(eq(now), any(Pageable.class))).thenReturn(List.of(1L));
+        when(workingMemoryRepository.deleteByIdIn(List.of(1L))).thenReturn(1);
+
+        assertEquals(1, purger.purgeWorkingMemories(now));
+    }
+}
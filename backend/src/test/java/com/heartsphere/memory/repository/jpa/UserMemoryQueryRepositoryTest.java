@@ -0,0 +1,147 @@
+package com.heartsphere.memory.repository.jpa;
+
+import com.heartsphere.memory.dto.MemoryQueryRequest;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemoryPage;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 记忆组合条件查询与键集分页测试（H2）
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserMemoryQueryRepositoryTest {
+
+    @Autowired
+    private MySQLLongMemoryService longMemoryService;
+
+    @Autowired
+    private UserMemoryRepository userMemoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        userId = "query-user-" + System.nanoTime();
+        base = LocalDateTime.now().withNano(0);
+    }
+
+    @Test
+    void testKeysetPagesCoverEveryMemoryOnce() {
+        List<String> expected = new ArrayList<>();
+        expected.add(saveMemory(MemoryType.HABIT, MemorySource.CONVERSATION, base.minusDays(1)));
+        // 创建时间相同的记录按ID倒序
+        String tieA = saveMemory(MemoryType.HABIT, MemorySource.CONVERSATION, base.minusDays(2));
+        String tieB = saveMemory(MemoryType.PREFERENCE, MemorySource.JOURNAL, base.minusDays(2));
+        expected.add(tieA.compareTo(tieB) > 0 ? tieA : tieB);
+        expected.add(tieA.compareTo(tieB) > 0 ? tieB : tieA);
+        expected.add(saveMemory(MemoryType.PREFERENCE, MemorySource.CONVERSATION, base.minusDays(3)));
+        expected.add(saveMemory(MemoryType.HABIT, MemorySource.JOURNAL, base.minusDays(4)));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MemoryPage page = longMemoryService.queryMemories(MemoryQueryRequest.builder()
+                .userId(userId).cursor(cursor).limit(2).build());
+            page.getItems().forEach(memory -> seen.add(memory.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testFiltersArePushedDown() {
+        saveMemory(MemoryType.HABIT, MemorySource.CONVERSATION, base.minusDays(1));
+        String match = saveMemory(MemoryType.PREFERENCE, MemorySource.JOURNAL, base.minusDays(5));
+        saveMemory(MemoryType.PREFERENCE, MemorySource.JOURNAL, base.minusDays(20));
+        saveMemory(MemoryType.PREFERENCE, MemorySource.CONVERSATION, base.minusDays(6));
+
+        MemoryPage page = longMemoryService.queryMemories(MemoryQueryRequest.builder()
+            .userId(userId)
+            .type(MemoryType.PREFERENCE)
+            .source(MemorySource.JOURNAL)
+            .startTime(base.minusDays(10).atZone(ZoneId.systemDefault()).toInstant())
+            .endTime(base.atZone(ZoneId.systemDefault()).toInstant())
+            .build());
+
+        assertEquals(List.of(match), page.getItems().stream().map(UserMemory::getId).collect(Collectors.toList()));
+        assertNull(page.getNextCursor());
+
+        // 上下文检索复用同一查询，无效的过滤值被忽略
+        List<UserMemory> byContext = longMemoryService.retrieveMemoriesByContext(
+            userId, Map.of("type", "PREFERENCE", "importance", "UNKNOWN"), 10);
+        assertEquals(3, byContext.size());
+    }
+
+    @Test
+    void testProjectionSkipsJsonColumns() {
+        String id = saveMemory(MemoryType.HABIT, MemorySource.CONVERSATION, base.minusDays(1));
+
+        List<UserMemoryEntity> scalar = userMemoryRepository.findPage(
+            UserMemorySpecifications.ofUser(userId), 10, false);
+        assertEquals(1, scalar.size());
+        assertEquals(id, scalar.get(0).getId());
+        assertEquals("记忆" + id, scalar.get(0).getContent());
+        assertNull(scalar.get(0).getStructuredData());
+        assertNull(scalar.get(0).getMetadata());
+
+        assertNotNull(userMemoryRepository.findPage(UserMemorySpecifications.ofUser(userId), 10, true)
+            .get(0).getStructuredData());
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        MemoryCursor cursor = new MemoryCursor(base, "memory-1");
+        assertEquals(cursor, MemoryCursor.decode(cursor.encode()));
+        assertThrows(IllegalArgumentException.class, () -> MemoryCursor.decode("not-a-cursor"));
+    }
+
+    private String saveMemory(MemoryType type, MemorySource source, LocalDateTime createdAt) {
+        String id = UUID.randomUUID().toString();
+        userMemoryRepository.save(UserMemoryEntity.builder()
+            .id(id)
+            .userId(userId)
+            .type(type)
+            .importance(MemoryImportance.NORMAL)
+            .source(source)
+            .content("记忆" + id)
+            .structuredData("{\"k\":1}")
+            .accessCount(0)
+            .build());
+        // 创建时间由@CreationTimestamp生成，这里改为指定值
+        jdbcTemplate.update("UPDATE user_memories SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), id);
+        return id;
+    }
+}
@@ -0,0 +1,187 @@
+package com.heartsphere.memory.retrieval;
+
+import com.heartsphere.memory.config.MemoryAsyncConfig;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.text.InvertedIndex;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.vector.HnswIndex;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * HybridMemoryRetriever单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HybridMemoryRetrieverTest {
+
+    @Mock
+    private UserMemoryRepository userMemoryRepository;
+
+    @Mock
+    private MemoryVectorIndex memoryVectorIndex;
+
+    @Mock
+    private MemoryTextIndex memoryTextIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExecutorService executor;
+    private MemoryProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+        properties = new MemoryProperties();
+        when(memoryTextIndex.isReady()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFusesAllChannels() {
+        when(memoryTextIndex.searchMemories(eq("u1"), eq("上海"), anyInt()))
+            .thenReturn(List.of(new InvertedIndex.Hit("m1", 2.0), new InvertedIndex.Hit("m2", 1.0)));
+        when(memoryVectorIndex.search(eq("u1"), eq("上海"), anyInt()))
+            .thenReturn(List.of(new HnswIndex.Hit("m2", 0.9f), new HnswIndex.Hit("m3", 0.8f)));
+        when(userMemoryRepository.findIdsByUserIdAndSourceId(eq("u1"), eq("s1"), any(Pageable.class)))
+            .thenReturn(List.of("m2"));
+
+        List<RankFusion.Scored> result = newRetriever().retrieve(request(Map.of("sessionId", "s1")));
+
+        assertEquals("m2", result.get(0).getId());
+        assertEquals(List.of("m2", "m1", "m3"), ids(result));
+        // 数据库召回在带超时的只读事务中执行
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly() && definition.getTimeout() == 1));
+    }
+
+    @Test
+    void testTimedOutChannelIsCancelled() throws Exception {
+        properties.getRetrieval().setTimeoutMs(50);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(memoryVectorIndex.search(anyString(), anyString(), anyInt())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of(new HnswIndex.Hit("late", 1.0f));
+        });
+        when(memoryTextIndex.searchMemories(anyString(), anyString(), anyInt()))
+            .thenReturn(List.of(new InvertedIndex.Hit("m1", 1.0)));
+
+        long start = System.nanoTime();
+        List<RankFusion.Scored> result = newRetriever().retrieve(request(null));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        assertEquals(List.of("m1"), ids(result));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "超时的召回任务应被中断");
+    }
+
+    @Test
+    void testFailedChannelCountsAsEmpty() {
+        when(memoryTextIndex.searchMemories(anyString(), anyString(), anyInt()))
+            .thenThrow(new IllegalStateException("index closed"));
+        when(memoryVectorIndex.search(anyString(), anyString(), anyInt()))
+            .thenReturn(List.of(new HnswIndex.Hit("m3", 0.8f)));
+
+        assertEquals(List.of("m3"), ids(newRetriever().retrieve(request(null))));
+    }
+
+    @Test
+    void testZeroWeightSkipsChannel() {
+        IntelligentSearchRequest request = request(null);
+        request.setSemanticWeight(0.0);
+
+        newRetriever().retrieve(request);
+
+        verify(memoryVectorIndex, never()).search(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void testSaturatedPoolDoesNotRunChannelsOnCaller() throws Exception {
+        ThreadPoolTaskExecutor retrievalExecutor = (ThreadPoolTaskExecutor) new MemoryAsyncConfig().memoryRetrievalExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // 占满全部线程和队列
+            int capacity = retrievalExecutor.getMaxPoolSize() + retrievalExecutor.getQueueCapacity();
+            for (int i = 0; i < capacity; i++) {
+                retrievalExecutor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            when(memoryVectorIndex.search(anyString(), anyString(), anyInt())).thenAnswer(invocation -> {
+                Thread.sleep(10_000);
+                return List.of(new HnswIndex.Hit("late", 1.0f));
+            });
+            HybridMemoryRetriever retriever = new HybridMemoryRetriever(
+                userMemoryRepository, memoryVectorIndex, memoryTextIndex, retrievalExecutor, transactionManager, properties);
+
+            long start = System.nanoTime();
+            List<RankFusion.Scored> result = retriever.retrieve(request(null));
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < properties.getRetrieval().getTimeoutMs() + 1_000);
+            assertTrue(result.isEmpty());
+            verify(memoryVectorIndex, never()).search(anyString(), anyString(), anyInt());
+        } finally {
+            release.countDown();
+            retrievalExecutor.shutdown();
+        }
+    }
+
+    private HybridMemoryRetriever newRetriever() {
+        return new HybridMemoryRetriever(
+            userMemoryRepository, memoryVectorIndex, memoryTextIndex, executor, transactionManager, properties);
+    }
+
+    private IntelligentSearchRequest request(Map<String, Object> context) {
+        return IntelligentSearchRequest.builder()
+            .userId("u1")
+            .query("上海")
+            .context(context)
+            .limit(3)
+            .keywordWeight(0.4)
+            .semanticWeight(0.4)
+            .associationWeight(0.2)
+            .build();
+    }
+
+    private static List<String> ids(List<RankFusion.Scored> result) {
+        return result.stream().map(RankFusion.Scored::getId).collect(Collectors.toList());
+    }
+}
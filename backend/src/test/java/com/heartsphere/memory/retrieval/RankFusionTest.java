@@ -0,0 +1,61 @@
+package com.heartsphere.memory.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RankFusion单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class RankFusionTest {
+
+    @Test
+    void testItemsInSeveralChannelsRankFirst() {
+        List<RankFusion.Scored> result = RankFusion.fuse(
+            List.of(
+                List.of("a", "b", "c"),
+                List.of("c", "d"),
+                List.of("c", "a")),
+            new double[] {0.4, 0.5, 0.2},
+            60,
+            3);
+
+        assertEquals(List.of("c", "a", "d"), ids(result));
+        assertTrue(result.get(0).getScore() > result.get(1).getScore());
+    }
+
+    @Test
+    void testWeightsChangeOrdering() {
+        List<List<String>> rankings = List.of(List.of("keyword-hit"), List.of("semantic-hit"), List.of());
+
+        assertEquals("keyword-hit", RankFusion.fuse(rankings, new double[] {0.8, 0.2, 0}, 60, 1).get(0).getId());
+        assertEquals("semantic-hit", RankFusion.fuse(rankings, new double[] {0.2, 0.8, 0}, 60, 1).get(0).getId());
+    }
+
+    @Test
+    void testTopKBoundsResult() {
+        List<String> many = java.util.stream.IntStream.range(0, 500)
+            .mapToObj(i -> "m-" + i)
+            .collect(Collectors.toList());
+
+        List<RankFusion.Scored> result = RankFusion.fuse(List.of(many), new double[] {1.0}, 60, 5);
+
+        assertEquals(List.of("m-0", "m-1", "m-2", "m-3", "m-4"), ids(result));
+    }
+
+    @Test
+    void testEmptyAndZeroWeightChannels() {
+        assertTrue(RankFusion.fuse(List.of(List.of(), List.of("x")), new double[] {1.0, 0}, 60, 10).isEmpty());
+        assertTrue(RankFusion.fuse(List.of(List.of("x")), new double[] {1.0}, 60, 0).isEmpty());
+    }
+
+    private List<String> ids(List<RankFusion.Scored> scored) {
+        return scored.stream().map(RankFusion.Scored::getId).collect(Collectors.toList());
+    }
+}
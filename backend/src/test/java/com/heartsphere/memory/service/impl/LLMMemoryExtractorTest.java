@@ -0,0 +1,98 @@
+package com.heartsphere.memory.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.aiagent.dto.request.TextGenerationRequest;
+import com.heartsphere.aiagent.dto.response.TextGenerationResponse;
+import com.heartsphere.aiagent.service.AIService;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.ExtractionResult;
+import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MessageRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LLMMemoryExtractor合并提取单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class LLMMemoryExtractorTest {
+
+    @Mock
+    private AIService aiService;
+
+    private LLMMemoryExtractor extractor;
+    private List<ChatMessage> messages;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new LLMMemoryExtractor(aiService, new ObjectMapper());
+        ReflectionTestUtils.setField(extractor, "enableLlmExtraction", true);
+        ReflectionTestUtils.setField(extractor, "combinedExtraction", true);
+        ReflectionTestUtils.setField(extractor, "confidenceThreshold", 0.6);
+        messages = List.of(
+            ChatMessage.builder().sessionId("s1").role(MessageRole.USER).content("我叫张三，喜欢吃川菜").build(),
+            ChatMessage.builder().sessionId("s1").role(MessageRole.ASSISTANT).content("你好张三").build());
+    }
+
+    @Test
+    void testExtractAllWithSingleCall() {
+        respondWith("```json\n{"
+            + "\"facts\": [{\"fact\": \"用户叫张三\", \"category\": \"PERSONAL\", \"importance\": 0.9, \"confidence\": 0.9}],"
+            + "\"preferences\": [{\"key\": \"favorite_food\", \"value\": \"川菜\", \"type\": \"STRING\", \"confidence\": 0.8},"
+            + "                  {\"key\": \"low\", \"value\": \"x\", \"confidence\": 0.1}],"
+            + "\"memories\": [{\"type\": \"IMPORTANT_MOMENT\", \"importance\": \"IMPORTANT\", \"content\": \"第一次自我介绍\", \"confidence\": 0.8}]"
+            + "}\n```");
+
+        ExtractionResult result = extractor.extractAll("1", messages);
+
+        assertEquals(1, result.getFacts().size());
+        assertEquals(FactCategory.PERSONAL, result.getFacts().get(0).getCategory());
+        assertEquals("s1", result.getFacts().get(0).getSourceSessionId());
+        // 低置信度的偏好被验证清理过滤
+        assertEquals(1, result.getPreferences().size());
+        assertEquals("favorite_food", result.getPreferences().get(0).getKey());
+        assertEquals(1, result.getMemories().size());
+        verify(aiService, times(1)).generateText(eq(1L), any(TextGenerationRequest.class));
+    }
+
+    @Test
+    void testTruncatedResponseKeepsParsedItems() {
+        respondWith("{\"facts\": [{\"fact\": \"用户叫张三\", \"confidence\": 0.9}],"
+            + "\"preferences\": [{\"key\": \"favorite_food\", \"value\": \"川菜\", \"confidence\": 0.8}, {\"key\": \"fav");
+
+        ExtractionResult result = extractor.extractAll("1", messages);
+
+        assertEquals(1, result.getFacts().size());
+        assertEquals(1, result.getPreferences().size());
+        assertTrue(result.getMemories().isEmpty());
+    }
+
+    @Test
+    void testCombinedExtractionDisabledFallsBackToSeparateCalls() {
+        ReflectionTestUtils.setField(extractor, "combinedExtraction", false);
+        respondWith("[]");
+
+        assertTrue(extractor.extractAll("1", messages).isEmpty());
+
+        verify(aiService, times(3)).generateText(eq(1L), any(TextGenerationRequest.class));
+    }
+
+    private void respondWith(String content) {
+        TextGenerationResponse response = new TextGenerationResponse();
+        response.setContent(content);
+        when(aiService.generateText(anyLong(), any(TextGenerationRequest.class))).thenReturn(response);
+    }
+}
@@ -1,5 +1,11 @@
 package com.heartsphere.memory.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.archive.MemoryArchive;
+import com.heartsphere.memory.archive.MemoryArchiver;
+import com.heartsphere.memory.buffer.MemoryAccessRecorder;
+import com.heartsphere.memory.dto.IntelligentSearchRequest;
+import com.heartsphere.memory.dto.MemoryQueryRequest;
 import com.heartsphere.memory.entity.UserFactEntity;
 import com.heartsphere.memory.entity.UserMemoryEntity;
 import com.heartsphere.memory.entity.UserPreferenceEntity;
@@ -7,11 +13,18 @@ import com.heartsphere.memory.model.*;
 import com.heartsphere.memory.repository.jpa.UserFactRepository;
 import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
 import com.heartsphere.memory.repository.jpa.UserPreferenceRepository;
+import com.heartsphere.memory.retrieval.HybridMemoryRetriever;
+import com.heartsphere.memory.retrieval.RankFusion;
+import com.heartsphere.memory.text.MemoryTextIndex;
+import com.heartsphere.memory.util.MemoryEntityConverter;
+import com.heartsphere.memory.util.MemoryJsonCodec;
+import com.heartsphere.memory.vector.MemoryVectorIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -41,6 +54,27 @@ class MySQLLongMemoryServiceTest {
     @Mock
     private UserMemoryRepository userMemoryRepository;
     
+    @Mock
+    private MemoryVectorIndex memoryVectorIndex;
+    
+    @Mock
+    private HybridMemoryRetriever hybridMemoryRetriever;
+    
+    @Mock
+    private MemoryTextIndex memoryTextIndex;
+    
+    @Mock
+    private MemoryAccessRecorder memoryAccessRecorder;
+    
+    @Mock
+    private MemoryArchive memoryArchive;
+    
+    @Mock
+    private MemoryArchiver memoryArchiver;
+    
+    @Spy
+    private MemoryEntityConverter memoryEntityConverter = new MemoryEntityConverter(new MemoryJsonCodec(new ObjectMapper()));
+    
     @InjectMocks
     private MySQLLongMemoryService mySQLLongMemoryService;
     
@@ -94,7 +128,6 @@ class MySQLLongMemoryServiceTest {
             .build();
         
         when(userFactRepository.findById(factId)).thenReturn(Optional.of(entity));
-        when(userFactRepository.save(any(UserFactEntity.class))).thenReturn(entity);
         
         // When
         UserFact result = mySQLLongMemoryService.getFact(factId);
@@ -103,7 +136,11 @@ class MySQLLongMemoryServiceTest {
         assertNotNull(result);
         assertEquals(factId, result.getId());
         assertEquals(testUserId, result.getUserId());
+        assertEquals(1, result.getAccessCount());
         verify(userFactRepository, times(1)).findById(factId);
+        // 读取不再整行回写，访问统计交给累加器
+        verify(userFactRepository, never()).save(any(UserFactEntity.class));
+        verify(memoryAccessRecorder).recordFactAccess(factId);
     }
     
     @Test
@@ -124,7 +161,7 @@ class MySQLLongMemoryServiceTest {
                 .build()
         );
         
-        when(userFactRepository.findByUserIdOrderByCreatedAtDesc(testUserId)).thenReturn(entities);
+        when(userFactRepository.findByUserIdOrderByCreatedAtDesc(eq(testUserId), any(Pageable.class))).thenReturn(entities);
         
         // When
         List<UserFact> result = mySQLLongMemoryService.getAllFacts(testUserId);
@@ -132,7 +169,7 @@ class MySQLLongMemoryServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(userFactRepository, times(1)).findByUserIdOrderByCreatedAtDesc(testUserId);
+        verify(userFactRepository, times(1)).findByUserIdOrderByCreatedAtDesc(eq(testUserId), any(Pageable.class));
     }
     
     @Test
@@ -243,6 +280,40 @@ class MySQLLongMemoryServiceTest {
         verify(userMemoryRepository, times(1)).searchByContent(eq(testUserId), eq(query), any(Pageable.class));
     }
     
+    @Test
+    void testHybridSearch() {
+        // Given
+        IntelligentSearchRequest request = IntelligentSearchRequest.builder()
+            .userId(testUserId)
+            .query("电影")
+            .limit(3)
+            .build();
+        when(hybridMemoryRetriever.retrieve(request)).thenReturn(List.of(
+            new RankFusion.Scored("memory-2", 0.02),
+            new RankFusion.Scored("memory-1", 0.01),
+            new RankFusion.Scored("memory-stale", 0.005)));
+        when(userMemoryRepository.findAllById(anyList())).thenReturn(List.of(
+            memoryEntity("memory-1", "用户喜欢看电影"),
+            memoryEntity("memory-2", "用户每周去一次电影院")));
+        
+        // When
+        List<UserMemory> result = mySQLLongMemoryService.hybridSearch(request);
+        
+        // Then
+        assertEquals(List.of("memory-2", "memory-1"), result.stream().map(UserMemory::getId).toList());
+        verify(memoryVectorIndex).removeStale(testUserId, List.of("memory-stale"));
+        verify(memoryAccessRecorder).recordMemoryAccess(List.of("memory-2", "memory-1"));
+    }
+    
+    @Test
+    void testHybridSearch_NoCandidates() {
+        IntelligentSearchRequest request = IntelligentSearchRequest.builder().userId(testUserId).query("电影").build();
+        when(hybridMemoryRetriever.retrieve(request)).thenReturn(Collections.emptyList());
+        
+        assertTrue(mySQLLongMemoryService.hybridSearch(request).isEmpty());
+        verify(userMemoryRepository, never()).findAllById(anyList());
+    }
+    
     @Test
     void testRetrieveMemoriesByContext_WithType() {
         // Given
@@ -262,17 +333,27 @@ class MySQLLongMemoryServiceTest {
                 .build()
         );
         
-        when(userMemoryRepository.findByUserIdAndTypeOrderByCreatedAtDesc(
-            eq(testUserId), eq(MemoryType.PREFERENCE), any(Pageable.class)))
-            .thenReturn(entities);
+        when(userMemoryRepository.findPage(any(), eq(limit + 1), eq(true))).thenReturn(entities);
         
         // When
         List<UserMemory> result = mySQLLongMemoryService.retrieveMemoriesByContext(testUserId, context, limit);
         
         // Then
         assertNotNull(result);
-        verify(userMemoryRepository, times(1)).findByUserIdAndTypeOrderByCreatedAtDesc(
-            eq(testUserId), eq(MemoryType.PREFERENCE), any(Pageable.class));
+        assertEquals(1, result.size());
+        verify(userMemoryRepository, never()).findByUserIdOrderByCreatedAtDesc(testUserId);
+    }
+    
+    @Test
+    void testQueryMemories_InvalidCursor() {
+        MemoryQueryRequest request = MemoryQueryRequest.builder()
+            .userId(testUserId)
+            .cursor("not-a-cursor")
+            .build();
+        
+        // 无效游标应当作参数错误抛出，而不是返回空页
+        assertThrows(IllegalArgumentException.class, () -> mySQLLongMemoryService.queryMemories(request));
+        verify(userMemoryRepository, never()).findPage(any(), anyInt(), anyBoolean());
     }
     
     // ========== 扩展方法测试 ==========
@@ -348,7 +429,6 @@ class MySQLLongMemoryServiceTest {
             .build();
         
         when(userMemoryRepository.findById(memoryId)).thenReturn(Optional.of(entity));
-        doNothing().when(userMemoryRepository).updateAccessInfo(anyString(), any());
         
         // When
         UserMemory result = mySQLLongMemoryService.getMemoryById(memoryId);
@@ -357,6 +437,8 @@ class MySQLLongMemoryServiceTest {
         assertNotNull(result);
         assertEquals(memoryId, result.getId());
         verify(userMemoryRepository, times(1)).findById(memoryId);
+        verify(userMemoryRepository, never()).updateAccessInfo(anyString(), any());
+        verify(memoryAccessRecorder).recordMemoryAccess(memoryId);
     }
     
     @Test
@@ -371,6 +453,16 @@ class MySQLLongMemoryServiceTest {
         // Then
         verify(userMemoryRepository, times(1)).deleteById(memoryId);
     }
+    
+    private UserMemoryEntity memoryEntity(String id, String content) {
+        return UserMemoryEntity.builder()
+            .id(id)
+            .userId(testUserId)
+            .type(MemoryType.PREFERENCE)
+            .importance(MemoryImportance.NORMAL)
+            .content(content)
+            .source(MemorySource.CONVERSATION)
+            .accessCount(0)
+            .build();
+    }
 }
-
-
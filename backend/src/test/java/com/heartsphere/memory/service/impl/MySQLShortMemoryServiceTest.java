@@ -1,19 +1,24 @@
 package com.heartsphere.memory.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.buffer.ChatMessageWriteBuffer;
+import com.heartsphere.memory.cache.SessionHistoryCache;
+import com.heartsphere.memory.cache.WorkingMemoryStore;
 import com.heartsphere.memory.entity.ChatMessageEntity;
 import com.heartsphere.memory.entity.SessionEntity;
-import com.heartsphere.memory.entity.WorkingMemoryEntity;
 import com.heartsphere.memory.model.ChatMessage;
 import com.heartsphere.memory.model.MessageRole;
 // Session 和 WorkingMemory 模型类不存在，已移除
 import com.heartsphere.memory.repository.jpa.ChatMessageRepository;
 import com.heartsphere.memory.repository.jpa.SessionRepository;
-import com.heartsphere.memory.repository.jpa.WorkingMemoryRepository;
+import com.heartsphere.memory.util.MemoryEntityConverter;
+import com.heartsphere.memory.util.MemoryJsonCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.*;
@@ -38,7 +43,16 @@ class MySQLShortMemoryServiceTest {
     private SessionRepository sessionRepository;
     
     @Mock
-    private WorkingMemoryRepository workingMemoryRepository;
+    private WorkingMemoryStore workingMemoryStore;
+    
+    @Mock
+    private ChatMessageWriteBuffer chatMessageWriteBuffer;
+    
+    @Mock
+    private SessionHistoryCache sessionHistoryCache;
+    
+    @Spy
+    private MemoryEntityConverter memoryEntityConverter = new MemoryEntityConverter(new MemoryJsonCodec(new ObjectMapper()));
     
     @InjectMocks
     private MySQLShortMemoryService mySQLShortMemoryService;
@@ -66,19 +80,76 @@ class MySQLShortMemoryServiceTest {
             .timestamp(System.currentTimeMillis())
             .build();
         
-        ChatMessageEntity entity = new ChatMessageEntity();
-        entity.setId("msg-1");
-        entity.setSessionId(testSessionId);
-        entity.setUserId(testUserId);
-        entity.setContent("测试消息");
+        when(chatMessageWriteBuffer.append(any(ChatMessageEntity.class))).thenReturn(true);
         
-        when(chatMessageRepository.save(any(ChatMessageEntity.class))).thenReturn(entity);
+        // When
+        mySQLShortMemoryService.saveMessage(testSessionId, message);
+        
+        // Then
+        verify(chatMessageWriteBuffer, times(1)).append(argThat(entity ->
+            "msg-1".equals(entity.getId()) && testSessionId.equals(entity.getSessionId())));
+        verify(chatMessageWriteBuffer, never()).writeNow(any());
+        verify(sessionHistoryCache, times(1)).append(testSessionId, message);
+        verifyNoInteractions(chatMessageRepository, sessionRepository);
+    }
+    
+    @Test
+    void testSaveMessageWithoutWriteBehind() {
+        // Given
+        ChatMessage message = ChatMessage.builder()
+            .userId(testUserId)
+            .role(MessageRole.USER)
+            .content("测试消息")
+            .build();
+        
+        when(chatMessageWriteBuffer.append(any(ChatMessageEntity.class))).thenReturn(false);
         
         // When
         mySQLShortMemoryService.saveMessage(testSessionId, message);
         
         // Then
-        verify(chatMessageRepository, times(1)).save(any(ChatMessageEntity.class));
+        assertNotNull(message.getId());
+        assertNotNull(message.getTimestamp());
+        verify(chatMessageWriteBuffer, times(1)).writeNow(any(ChatMessageEntity.class));
+    }
+    
+    @Test
+    void testGetMessagesFromHistoryCache() {
+        // Given
+        List<ChatMessage> cached = List.of(ChatMessage.builder().id("msg-1").sessionId(testSessionId).build());
+        when(sessionHistoryCache.isEnabled()).thenReturn(true);
+        when(sessionHistoryCache.getRecent(eq(testSessionId), eq(10), any())).thenReturn(cached);
+        
+        // When
+        List<ChatMessage> result = mySQLShortMemoryService.getMessages(testSessionId, 10);
+        
+        // Then
+        assertSame(cached, result);
+        verifyNoInteractions(chatMessageRepository);
+    }
+    
+    @Test
+    void testGetMessagesIncludesBufferedMessages() {
+        // Given
+        long now = System.currentTimeMillis();
+        ChatMessageEntity buffered = ChatMessageEntity.builder()
+            .id("msg-3").sessionId(testSessionId).userId(testUserId)
+            .role(MessageRole.USER).content("消息3").timestamp(now).build();
+        ChatMessageEntity stored = ChatMessageEntity.builder()
+            .id("msg-2").sessionId(testSessionId).userId(testUserId)
+            .role(MessageRole.ASSISTANT).content("消息2").timestamp(now - 1000).build();
+        
+        when(chatMessageWriteBuffer.pendingMessages(testSessionId)).thenReturn(List.of(buffered));
+        when(chatMessageRepository.findBySessionIdOrderByTimestampDesc(eq(testSessionId), any()))
+            .thenReturn(List.of(buffered, stored));
+        
+        // When
+        List<ChatMessage> result = mySQLShortMemoryService.getMessages(testSessionId, 10);
+        
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("msg-3", result.get(0).getId());
+        assertEquals("msg-2", result.get(1).getId());
     }
     
     @Test
@@ -151,67 +222,41 @@ class MySQLShortMemoryServiceTest {
     // ========== 工作记忆测试 ==========
     
     @Test
-    void testSaveWorkingMemory() {
+    void testSaveWorkingMemory() throws Exception {
         // Given
         String key = "context";
         String value = "工作记忆内容";
-        WorkingMemoryEntity entity = new WorkingMemoryEntity();
-        entity.setSessionId(testSessionId);
-        entity.setMemoryKey(key);
-        
-        when(workingMemoryRepository.findBySessionIdAndMemoryKey(testSessionId, key))
-            .thenReturn(Optional.empty());
-        when(workingMemoryRepository.save(any(WorkingMemoryEntity.class)))
-            .thenReturn(entity);
         
         // When
         mySQLShortMemoryService.saveWorkingMemory(testSessionId, key, value);
         
         // Then
-        verify(workingMemoryRepository, times(1))
-            .save(any(WorkingMemoryEntity.class));
+        verify(workingMemoryStore, times(1)).put(testSessionId, key, value);
     }
     
     @Test
-    void testGetWorkingMemory() {
+    void testGetWorkingMemory() throws Exception {
         // Given
         String key = "context";
-        WorkingMemoryEntity entity = WorkingMemoryEntity.builder()
-            .sessionId(testSessionId)
-            .memoryKey(key)
-            .memoryValue("\"工作记忆内容\"")
-            .build();
-        
-        when(workingMemoryRepository.findBySessionIdAndMemoryKey(testSessionId, key))
-            .thenReturn(Optional.of(entity));
+        when(workingMemoryStore.get(testSessionId, key, String.class)).thenReturn("工作记忆内容");
         
         // When
         String result = mySQLShortMemoryService.getWorkingMemory(testSessionId, key, String.class);
         
         // Then
-        assertNotNull(result);
-        verify(workingMemoryRepository, times(1))
-            .findBySessionIdAndMemoryKey(testSessionId, key);
+        assertEquals("工作记忆内容", result);
+        verify(workingMemoryStore, times(1)).get(testSessionId, key, String.class);
     }
     
     @Test
     void testDeleteWorkingMemory() {
         // Given
         String key = "context";
-        WorkingMemoryEntity entity = WorkingMemoryEntity.builder()
-            .sessionId(testSessionId)
-            .memoryKey(key)
-            .build();
-        
-        when(workingMemoryRepository.findBySessionIdAndMemoryKey(testSessionId, key))
-            .thenReturn(Optional.of(entity));
         
         // When
         mySQLShortMemoryService.deleteWorkingMemory(testSessionId, key);
         
         // Then
-        verify(workingMemoryRepository, times(1))
-            .findBySessionIdAndMemoryKey(testSessionId, key);
-        verify(workingMemoryRepository, times(1)).delete(entity);
+        verify(workingMemoryStore, times(1)).remove(testSessionId, key);
     }
 }
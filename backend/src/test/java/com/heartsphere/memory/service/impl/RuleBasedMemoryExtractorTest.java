@@ -0,0 +1,202 @@
+package com.heartsphere.memory.service.impl;
+
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.model.UserPreference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RuleBasedMemoryExtractor单元测试
+ * 与逐个正则全文扫描的参考实现对比，确认触发词自动机加速后提取结果不变
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class RuleBasedMemoryExtractorTest {
+
+    // 参考实现：与提取器中的正则一致，每次全文扫描
+    private static final Pattern NAME = Pattern.compile("(?:我|我的)?(?:名字|姓名|叫)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z]{2,10})");
+    private static final Pattern AGE = Pattern.compile("(?:我|今年)?(?:已经|已经)?(\\d{1,3})(?:岁|岁了)");
+    private static final Pattern BIRTHDAY = Pattern.compile("(?:我|我的)?(?:生日|出生日期)(?:是|为)?[：:：]?(\\d{1,4})[年\\-/.](\\d{1,2})[月\\-/.](\\d{1,2})[日]?");
+    private static final Pattern LOCATION = Pattern.compile("(?:我|我)(?:在|住在|来自)([\\u4e00-\\u9fa5]{2,20})(?:市|省|区|县)?");
+    private static final Pattern JOB = Pattern.compile("(?:我|我的)?(?:工作|职业|是)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z]{2,20})(?:师|员|家|者)?");
+    private static final Pattern LIKE = Pattern.compile("(?:我|我)(?:喜欢|爱好|爱|偏好)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z\\s]{2,30})");
+    private static final Pattern DISLIKE = Pattern.compile("(?:我|我)(?:不喜欢|讨厌|厌恶)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z\\s]{2,30})");
+    private static final Pattern HABIT = Pattern.compile("(?:我|我的)?(?:习惯|经常|总是)(?:是|为)?[：:：]?([\\u4e00-\\u9fa5a-zA-Z\\s]{2,30})");
+
+    private static final String[] FRAGMENTS = {
+        "我叫", "张三", "我的名字是", "李四", "姓名：", "今年", "已经", "25", "7", "岁", "岁了", "我的生日是",
+        "1990年5月3日", "2001-12-1", "出生日期为", "我住在", "北京", "市", "我来自", "上海", "我在", "我的工作是",
+        "工程师", "我是", "老师", "职业", "我喜欢", "爬山", "我爱", "音乐", "爱好", "我偏好", "我不喜欢", "下雨",
+        "我讨厌", "加班", "我厌恶", "我经常", "跑步", "我总是", "熬夜", "习惯", "早起", "。", "！", "？", " ", "，",
+        "纪念日", "重要", "很重要的事", "生日快乐", "生日", "abc", "Tom", "123", "的", "在", "是", "我", "我的"
+    };
+
+    private RuleBasedMemoryExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new RuleBasedMemoryExtractor();
+        ReflectionTestUtils.setField(extractor, "enableRuleExtraction", true);
+        ReflectionTestUtils.setField(extractor, "confidenceThreshold", 0.6);
+    }
+
+    @Test
+    void testExtractFactsAndPreferences() {
+        List<ChatMessage> messages = messages("我叫张三，今年25岁。我住在北京市，我的工作是工程师。我喜欢爬山，我不喜欢下雨。我经常跑步");
+
+        List<String> facts = factTexts(extractor.extractFacts("u1", messages));
+        assertTrue(facts.contains("用户姓名是张三"));
+        assertTrue(facts.contains("用户年龄是25岁"));
+        assertTrue(facts.contains("用户位置是北京市"));
+        assertTrue(facts.contains("用户习惯是跑步"));
+
+        Map<String, String> preferences = preferenceValues(extractor.extractPreferences("u1", messages));
+        assertEquals("爬山", preferences.get("like_0"));
+        assertEquals("下雨", preferences.get("dislike_0"));
+    }
+
+    @Test
+    void testImportantMomentSentence() {
+        List<UserMemory> memories = extractor.extractMemories("u1", messages("今天天气很好。下周是我的生日，想去海边！"));
+
+        assertEquals(1, memories.size());
+        assertEquals("用户提到了重要时刻：下周是我的生日", memories.get(0).getContent());
+        assertTrue(extractor.extractMemories("u1", messages("今天天气很好")).isEmpty());
+    }
+
+    @Test
+    void testResultsMatchFullScanReference() {
+        Random random = new Random(20261017L);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int count = 1 + random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertMatchesReference(text.toString());
+        }
+    }
+
+    @Test
+    void testLongTranscriptMatchesReference() {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(7);
+        while (text.length() < 200_000) {
+            text.append("这是一段很长的粘贴记录，没有任何触发词，只是普通的叙述内容，");
+            if (random.nextInt(50) == 0) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]).append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        assertMatchesReference(text.toString());
+    }
+
+    private void assertMatchesReference(String text) {
+        List<ChatMessage> messages = messages(text);
+        assertEquals(distinct(referenceFacts(text)), distinct(factTexts(extractor.extractFacts("u1", messages))), text);
+        assertEquals(referencePreferences(text), preferenceValues(extractor.extractPreferences("u1", messages)), text);
+        assertEquals(referenceMemories(text), extractor.extractMemories("u1", messages).stream()
+            .map(UserMemory::getContent).collect(Collectors.toList()), text);
+    }
+
+    // ========== 参考实现 ==========
+
+    private static List<String> referenceFacts(String text) {
+        List<String> facts = new ArrayList<>();
+        Matcher matcher = NAME.matcher(text);
+        if (matcher.find()) {
+            facts.add("用户姓名是" + matcher.group(1));
+        }
+        matcher = AGE.matcher(text);
+        if (matcher.find()) {
+            int age = Integer.parseInt(matcher.group(1));
+            if (age > 0 && age < 150) {
+                facts.add("用户年龄是" + age + "岁");
+            }
+        }
+        matcher = BIRTHDAY.matcher(text);
+        if (matcher.find()) {
+            facts.add("用户生日是" + matcher.group(1) + "-" + matcher.group(2) + "-" + matcher.group(3));
+        }
+        matcher = LOCATION.matcher(text);
+        if (matcher.find()) {
+            facts.add("用户位置是" + matcher.group(1));
+        }
+        matcher = JOB.matcher(text);
+        if (matcher.find()) {
+            facts.add("用户职业是" + matcher.group(1));
+        }
+        matcher = HABIT.matcher(text);
+        while (matcher.find()) {
+            facts.add("用户习惯是" + matcher.group(1));
+        }
+        return facts;
+    }
+
+    private static Map<String, String> referencePreferences(String text) {
+        Map<String, String> preferences = new HashMap<>();
+        Matcher matcher = LIKE.matcher(text);
+        for (int index = 0; matcher.find(); index++) {
+            preferences.put("like_" + index, matcher.group(1).trim());
+        }
+        matcher = DISLIKE.matcher(text);
+        for (int index = 0; matcher.find(); index++) {
+            preferences.put("dislike_" + index, matcher.group(1).trim());
+        }
+        return preferences;
+    }
+
+    private static List<String> referenceMemories(String text) {
+        if (!text.contains("生日") && !text.contains("纪念日") && !text.contains("重要")) {
+            return List.of();
+        }
+        return List.of("用户提到了重要时刻：" + referenceSentence(text));
+    }
+
+    private static String referenceSentence(String text) {
+        Matcher matcher = Pattern.compile("([^。！？]*生日|纪念日|重要[^。！？]*[。！？])").matcher(text);
+        if (matcher.find()) {
+            return matcher.group(1).trim();
+        }
+        int index = text.indexOf("生日");
+        if (index != -1) {
+            return text.substring(Math.max(0, index - 20), Math.min(text.length(), index + 30)).trim();
+        }
+        return text.substring(0, Math.min(50, text.length()));
+    }
+
+    // ========== 辅助方法 ==========
+
+    private static List<ChatMessage> messages(String userText) {
+        return List.of(
+            ChatMessage.builder().sessionId("s1").role(MessageRole.USER).content(userText).build(),
+            ChatMessage.builder().sessionId("s1").role(MessageRole.ASSISTANT).content("我叫小助手，今年3岁").build());
+    }
+
+    private static List<String> factTexts(List<UserFact> facts) {
+        return facts.stream().map(UserFact::getFact).collect(Collectors.toList());
+    }
+
+    private static Map<String, String> preferenceValues(List<UserPreference> preferences) {
+        return preferences.stream().collect(Collectors.toMap(UserPreference::getKey, p -> (String) p.getValue()));
+    }
+
+    private static List<String> distinct(List<String> values) {
+        return values.stream().distinct().collect(Collectors.toList());
+    }
+}
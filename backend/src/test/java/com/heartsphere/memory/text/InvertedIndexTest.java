@@ -0,0 +1,126 @@
+package com.heartsphere.memory.text;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InvertedIndex与CjkTokenizer单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+    }
+
+    @Test
+    void testTokenizer() {
+        assertEquals(List.of("喜", "欢", "猫", "喜欢", "欢猫", "java"), CjkTokenizer.tokenizeForIndex("喜欢猫，Java"));
+        assertEquals(List.of("喜欢", "欢猫", "java"), CjkTokenizer.tokenizeForQuery("喜欢猫 JAVA"));
+        assertEquals(List.of("猫"), CjkTokenizer.tokenizeForQuery("猫"));
+        assertTrue(CjkTokenizer.tokenizeForQuery("，。！").isEmpty());
+    }
+
+    @Test
+    void testBm25Ranking() {
+        index.add("cat", "用户喜欢养猫，家里有两只英短猫");
+        index.add("job", "用户在上海做软件工程师");
+        index.add("food", "用户不吃辣，喜欢清淡的粤菜");
+
+        List<String> ids = ids(index.search("养猫", 10));
+        assertEquals(List.of("cat"), ids);
+
+        // 单字查询也能命中
+        assertEquals("cat", index.search("猫", 10).get(0).getId());
+
+        // 出现在所有文档中的词区分度低，只有同时命中"喜欢"的文档排在前面
+        List<String> liked = ids(index.search("用户喜欢", 10));
+        assertEquals(3, liked.size());
+        assertNotEquals("job", liked.get(0));
+        assertEquals("job", liked.get(2));
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        index.add("m1", "周末去爬山");
+        index.add("m2", "周末在家看电影");
+        assertEquals(List.of("m1"), ids(index.search("爬山", 10)));
+
+        index.add("m1", "周末去游泳");
+        assertTrue(index.search("爬山", 10).isEmpty());
+        assertEquals(List.of("m1"), ids(index.search("游泳", 10)));
+
+        assertTrue(index.remove("m1"));
+        assertFalse(index.remove("m1"));
+        assertFalse(index.contains("m1"));
+        assertEquals(List.of("m2"), ids(index.search("周末", 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testCompactionKeepsLiveEntries() {
+        for (int i = 0; i < 200; i++) {
+            index.add("m-" + i, "记忆编号 n" + i + (i % 2 == 0 ? " 偶数条目" : " 奇数条目"));
+        }
+        for (int i = 0; i < 150; i++) {
+            index.remove("m-" + i);
+        }
+
+        assertEquals(50, index.size());
+        List<InvertedIndex.Hit> hits = index.search("记忆", 100);
+        assertEquals(50, hits.size());
+        hits.forEach(hit -> assertTrue(Integer.parseInt(hit.getId().substring(2)) >= 150));
+        assertEquals(List.of("m-151"), ids(index.search("n151", 10)));
+        assertEquals(25, index.search("奇数", 100).size());
+    }
+
+    @Test
+    void testRepeatedReplacementCompacts() {
+        for (int i = 0; i < 500; i++) {
+            index.add("m1", "第" + i + "次修改 v" + i);
+        }
+
+        assertEquals(1, index.size());
+        assertEquals(List.of("m1"), ids(index.search("v499", 10)));
+        assertTrue(index.search("v0", 10).isEmpty());
+        // 反复替换留下的旧文档被压缩掉，文档号不会无限增长
+        assertTrue((int) ReflectionTestUtils.getField(index, "docCount") < 100);
+    }
+
+    @Test
+    void testHashCollisionStillUpdates() {
+        // "Aa" 与 "BB" 的 String.hashCode 相同、词元数相同
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        index.add("m1", "Aa");
+        index.add("m1", "BB");
+
+        assertEquals(List.of("m1"), ids(index.search("bb", 10)));
+        assertTrue(index.search("aa", 10).isEmpty());
+    }
+
+    @Test
+    void testLimitAndEmptyQuery() {
+        for (int i = 0; i < 20; i++) {
+            index.add("m-" + i, "今天心情不错");
+        }
+        assertEquals(5, index.search("心情", 5).size());
+        assertTrue(index.search("", 5).isEmpty());
+        assertTrue(index.search("心情", 0).isEmpty());
+        assertTrue(index.search("下雨", 5).isEmpty());
+    }
+
+    private List<String> ids(List<InvertedIndex.Hit> hits) {
+        return hits.stream().map(InvertedIndex.Hit::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.heartsphere.memory.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeywordAutomaton单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class KeywordAutomatonTest {
+
+    @Test
+    void testOverlappingKeywordsAcrossGroups() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+            .add(0, "我爱", "我爱好")
+            .add(1, "爱好", "好")
+            .add(2, "。")
+            .build();
+
+        int[][] starts = automaton.scan("我爱好跑步。我爱你。");
+
+        // 同一起点的两个关键词只报告一次
+        assertArrayEquals(new int[]{0, 6}, starts[0]);
+        assertArrayEquals(new int[]{1, 2}, starts[1]);
+        assertArrayEquals(new int[]{5, 9}, starts[2]);
+    }
+
+    @Test
+    void testNoMatchAndEmptyText() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder().add(0, "生日").build();
+
+        assertEquals(1, automaton.groupCount());
+        assertEquals(0, automaton.scan("今天天气不错")[0].length);
+        assertEquals(0, automaton.scan("")[0].length);
+    }
+
+    @Test
+    void testMatchesNaiveSearchOnRandomText() {
+        String[] keywords = {"生日", "生日快乐", "日快", "快乐", "乐", "纪念日", "念日"};
+        KeywordAutomaton.Builder builder = KeywordAutomaton.builder();
+        for (int i = 0; i < keywords.length; i++) {
+            builder.add(i, keywords[i]);
+        }
+        KeywordAutomaton automaton = builder.build();
+
+        Random random = new Random(42);
+        String alphabet = "生日快乐纪念的我";
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 60; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            int[][] starts = automaton.scan(text);
+            for (int i = 0; i < keywords.length; i++) {
+                TreeSet<Integer> expected = new TreeSet<>();
+                for (int from = text.indexOf(keywords[i]); from >= 0; from = text.indexOf(keywords[i], from + 1)) {
+                    expected.add(from);
+                }
+                assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), starts[i], text + " / " + keywords[i]);
+            }
+        }
+    }
+}
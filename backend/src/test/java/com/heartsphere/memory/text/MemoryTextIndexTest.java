@@ -0,0 +1,153 @@
+package com.heartsphere.memory.text;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.repository.jpa.UserFactRepository;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemoryTextIndex单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@ExtendWith(MockitoExtension.class)
+class MemoryTextIndexTest {
+
+    @Mock
+    private UserMemoryRepository userMemoryRepository;
+
+    @Mock
+    private UserFactRepository userFactRepository;
+
+    private MemoryTextIndex memoryTextIndex;
+
+    @BeforeEach
+    void setUp() {
+        MemoryProperties properties = new MemoryProperties();
+        properties.getTextIndex().setRebuildBatchSize(2);
+        memoryTextIndex = new MemoryTextIndex(userMemoryRepository, userFactRepository, properties);
+    }
+
+    @Test
+    void testRebuildReadsInKeysetBatches() {
+        when(userMemoryRepository.findTextBatchAfter(eq(""), any(Pageable.class))).thenReturn(List.of(
+            row("m1", "u1", "喜欢养猫"),
+            row("m2", "u1", "在上海工作")));
+        when(userMemoryRepository.findTextBatchAfter(eq("m2"), any(Pageable.class))).thenReturn(List.<Object[]>of(
+            row("m3", "u2", "也喜欢养猫")));
+        when(userFactRepository.findTextBatchAfter(eq(""), any(Pageable.class))).thenReturn(List.<Object[]>of(
+            row("f1", "u1", "职业是工程师")));
+
+        assertFalse(memoryTextIndex.isReady());
+        assertTrue(memoryTextIndex.searchMemories("u1", "养猫", 10).isEmpty());
+
+        memoryTextIndex.rebuild();
+
+        assertTrue(memoryTextIndex.isReady());
+        assertEquals("m1", memoryTextIndex.searchMemories("u1", "养猫", 10).get(0).getId());
+        assertEquals(1, memoryTextIndex.searchMemories("u2", "养猫", 10).size());
+        assertEquals("f1", memoryTextIndex.searchFacts("u1", "工程师", 10).get(0).getId());
+        verify(userMemoryRepository, times(2)).findTextBatchAfter(any(), any(Pageable.class));
+    }
+
+    @Test
+    void testIncrementalMaintenance() {
+        when(userMemoryRepository.findTextBatchAfter(any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(userFactRepository.findTextBatchAfter(any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+        memoryTextIndex.rebuild();
+
+        memoryTextIndex.indexMemory("u1", "m1", "周末去爬山");
+        assertEquals(1, memoryTextIndex.searchMemories("u1", "爬山", 10).size());
+
+        memoryTextIndex.indexMemory("u1", "m1", "周末去游泳");
+        assertTrue(memoryTextIndex.searchMemories("u1", "爬山", 10).isEmpty());
+
+        memoryTextIndex.removeMemory("m1");
+        assertTrue(memoryTextIndex.searchMemories("u1", "游泳", 10).isEmpty());
+    }
+
+    @Test
+    void testWritesDuringRebuildWin() {
+        when(userMemoryRepository.findTextBatchAfter(eq(""), any(Pageable.class))).thenAnswer(invocation -> {
+            // 模拟重建读到旧数据期间发生的更新和删除
+            memoryTextIndex.indexMemory("u1", "m1", "新的内容：游泳");
+            memoryTextIndex.removeMemory("m2");
+            return List.of(row("m1", "u1", "旧的内容：爬山"), row("m2", "u1", "已删除：爬山"));
+        });
+        when(userMemoryRepository.findTextBatchAfter(eq("m2"), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(userFactRepository.findTextBatchAfter(any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        memoryTextIndex.rebuild();
+
+        assertTrue(memoryTextIndex.searchMemories("u1", "爬山", 10).isEmpty());
+        assertEquals("m1", memoryTextIndex.searchMemories("u1", "游泳", 10).get(0).getId());
+    }
+
+    @Test
+    void testReadyWithoutStartupRebuild() {
+        MemoryProperties properties = new MemoryProperties();
+        properties.getTextIndex().setRebuildOnStartup(false);
+        MemoryTextIndex incremental = new MemoryTextIndex(userMemoryRepository, userFactRepository, properties);
+
+        incremental.rebuildOnStartup();
+        incremental.indexMemory("u1", "m1", "周末去爬山");
+
+        assertTrue(incremental.isReady());
+        assertEquals(1, incremental.searchMemories("u1", "爬山", 10).size());
+        verifyNoInteractions(userMemoryRepository, userFactRepository);
+    }
+
+    @Test
+    void testFailedRebuildIsRetried() {
+        when(userMemoryRepository.findTextBatchAfter(eq(""), any(Pageable.class)))
+            .thenThrow(new RuntimeException("数据库不可用"))
+            .thenReturn(List.<Object[]>of(row("m1", "u1", "喜欢养猫")));
+        when(userFactRepository.findTextBatchAfter(any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        // 没有失败过时不重试
+        memoryTextIndex.retryFailedRebuild();
+        verifyNoInteractions(userMemoryRepository);
+
+        memoryTextIndex.rebuild();
+        assertFalse(memoryTextIndex.isReady());
+
+        memoryTextIndex.retryFailedRebuild();
+        assertTrue(memoryTextIndex.isReady());
+        assertEquals(1, memoryTextIndex.searchMemories("u1", "养猫", 10).size());
+
+        memoryTextIndex.retryFailedRebuild();
+        verify(userMemoryRepository, times(2)).findTextBatchAfter(any(), any(Pageable.class));
+    }
+
+    @Test
+    void testDisabled() {
+        MemoryProperties properties = new MemoryProperties();
+        properties.getTextIndex().setEnabled(false);
+        MemoryTextIndex disabled = new MemoryTextIndex(userMemoryRepository, userFactRepository, properties);
+
+        disabled.rebuild();
+        disabled.indexMemory("u1", "m1", "周末去爬山");
+
+        assertFalse(disabled.isReady());
+        assertTrue(disabled.searchMemories("u1", "爬山", 10).isEmpty());
+        verifyNoInteractions(userMemoryRepository, userFactRepository);
+    }
+
+    private static Object[] row(String id, String userId, String text) {
+        return new Object[] {id, userId, text};
+    }
+}
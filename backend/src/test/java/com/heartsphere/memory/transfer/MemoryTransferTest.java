@@ -0,0 +1,276 @@
+package com.heartsphere.memory.transfer;
+
+import com.heartsphere.memory.buffer.ChatMessageWriteBuffer;
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.FactCategory;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemorySource;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.PreferenceType;
+import com.heartsphere.memory.model.UserFact;
+import com.heartsphere.memory.model.UserMemory;
+import com.heartsphere.memory.model.UserPreference;
+import com.heartsphere.memory.service.ShortMemoryService;
+import com.heartsphere.memory.service.impl.MySQLLongMemoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 记忆流式导出/导入测试（H2）
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MemoryTransferTest {
+
+    @Autowired
+    private MemoryExporter memoryExporter;
+
+    @Autowired
+    private MemoryImporter memoryImporter;
+
+    @Autowired
+    private ShortMemoryService shortMemoryService;
+
+    @Autowired
+    private MySQLLongMemoryService longMemoryService;
+
+    @Autowired
+    private ChatMessageWriteBuffer chatMessageWriteBuffer;
+
+    @Autowired
+    private MemoryProperties memoryProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String sourceUserId;
+    private String targetUserId;
+    private String sessionId;
+    private int exportBatchSize;
+    private int importBatchSize;
+
+    @BeforeEach
+    void setUp() {
+        long suffix = System.nanoTime();
+        sourceUserId = "export-user-" + suffix;
+        targetUserId = "import-user-" + suffix;
+        sessionId = "export-session-" + suffix;
+        exportBatchSize = memoryProperties.getTransfer().getExportBatchSize();
+        importBatchSize = memoryProperties.getTransfer().getImportBatchSize();
+        // 小批次，覆盖多批游标和多次批量提交
+        memoryProperties.getTransfer().setExportBatchSize(2);
+        memoryProperties.getTransfer().setImportBatchSize(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        memoryProperties.getTransfer().setExportBatchSize(exportBatchSize);
+        memoryProperties.getTransfer().setImportBatchSize(importBatchSize);
+    }
+
+    @Test
+    void testExportThenImportIntoAnotherUser() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            shortMemoryService.saveMessage(sessionId, ChatMessage.builder()
+                .userId(sourceUserId)
+                .role(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT)
+                .content("消息" + i)
+                .timestamp(1000L + i)
+                .build());
+        }
+        shortMemoryService.saveWorkingMemory(sessionId, "topic", "旅行");
+        for (int i = 0; i < 3; i++) {
+            longMemoryService.saveFact(UserFact.builder()
+                .userId(sourceUserId)
+                .fact("事实" + i)
+                .category(FactCategory.PERSONAL)
+                .importance(0.8)
+                .confidence(0.9)
+                .sourceSessionId(sessionId)
+                .build());
+        }
+        longMemoryService.savePreference(UserPreference.builder()
+            .userId(sourceUserId)
+            .key("favorite_color")
+            .value("蓝色")
+            .type(PreferenceType.STRING)
+            .build());
+        longMemoryService.saveMemory(UserMemory.builder()
+            .userId(sourceUserId)
+            .type(MemoryType.HABIT)
+            .importance(MemoryImportance.NORMAL)
+            .source(MemorySource.CONVERSATION)
+            .sourceId(sessionId)
+            .content("每天早上跑步")
+            .build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = memoryExporter.export(sourceUserId, out);
+        // 1个会话 + 5条消息 + 1条工作记忆 + 3个事实 + 1个偏好 + 1条记忆
+        assertEquals(12, exported);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertEquals(13, ndjson.lines().count());
+
+        MemoryImportResult result = memoryImporter.importFrom(
+            targetUserId, new ByteArrayInputStream(out.toByteArray()), true);
+        assertEquals(12, result.getTotal());
+        assertEquals(5L, result.getCounts().get("message"));
+        assertEquals(0, result.getSkipped());
+
+        // 会话重新生成ID，消息、工作记忆和来源引用跟随新会话
+        List<String> sessions = shortMemoryService.getAllSessionIds(targetUserId);
+        assertEquals(1, sessions.size());
+        String newSessionId = sessions.get(0);
+        assertNotEquals(sessionId, newSessionId);
+        List<ChatMessage> messages = shortMemoryService.getMessages(newSessionId, 10);
+        assertEquals(5, messages.size());
+        assertEquals("消息4", messages.get(0).getContent());
+        assertEquals(targetUserId, messages.get(0).getUserId());
+        assertEquals("旅行", shortMemoryService.getWorkingMemory(newSessionId, "topic", String.class));
+
+        List<UserFact> facts = longMemoryService.getAllFacts(targetUserId);
+        assertEquals(3, facts.size());
+        assertTrue(facts.stream().allMatch(fact -> newSessionId.equals(fact.getSourceSessionId())));
+        assertEquals(1, count("user_preferences", targetUserId));
+        assertEquals(newSessionId, jdbcTemplate.queryForObject(
+            "SELECT source_id FROM user_memories WHERE user_id = ?", String.class, targetUserId));
+
+        // 原用户的数据不受影响，主键全部重新生成
+        assertEquals(3, count("user_facts", sourceUserId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM user_facts a JOIN user_facts b ON a.id = b.id "
+                + "WHERE a.user_id = ? AND b.user_id = ?", Integer.class, sourceUserId, targetUserId));
+    }
+
+    @Test
+    void testImportSkipsUnknownKindsAndRejectsNewerFormat() throws Exception {
+        String ndjson = "{\"kind\":\"export\",\"formatVersion\":1}\n"
+            + "{\"kind\":\"unknown\",\"id\":\"x\"}\n"
+            + "{\"kind\":\"preference\",\"id\":\"p1\",\"preference_key\":\"k\",\"preference_value\":\"v\","
+            + "\"preference_type\":\"STRING\",\"created_at\":\"2026-01-01T00:00:00\",\"updated_at\":null}\n";
+
+        MemoryImportResult result = memoryImporter.importFrom(
+            targetUserId, new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), true);
+
+        assertEquals(1, result.getTotal());
+        assertEquals(1, result.getSkipped());
+        assertEquals(1, count("user_preferences", targetUserId));
+
+        // 保留原ID再次导入：偏好按唯一键覆盖，不产生重复行
+        String again = ndjson.replace("\"v\"", "\"v2\"");
+        memoryImporter.importFrom(targetUserId, new ByteArrayInputStream(again.getBytes(StandardCharsets.UTF_8)), false);
+        assertEquals(1, count("user_preferences", targetUserId));
+        assertEquals("v2", jdbcTemplate.queryForObject(
+            "SELECT preference_value FROM user_preferences WHERE user_id = ?", String.class, targetUserId));
+
+        String newer = "{\"kind\":\"export\",\"formatVersion\":99}\n";
+        assertThrows(IllegalArgumentException.class, () -> memoryImporter.importFrom(
+            targetUserId, new ByteArrayInputStream(newer.getBytes(StandardCharsets.UTF_8)), true));
+    }
+
+    @Test
+    void testImportWithoutRemapCannotWriteIntoAnotherUsersSession() throws Exception {
+        shortMemoryService.saveMessage(sessionId, ChatMessage.builder()
+            .userId(sourceUserId)
+            .role(MessageRole.USER)
+            .content("原用户的消息")
+            .timestamp(1000L)
+            .build());
+        shortMemoryService.saveWorkingMemory(sessionId, "topic", "旅行");
+        Long headSeq = jdbcTemplate.queryForObject(
+            "SELECT head_seq FROM memory_sessions WHERE session_id = ?", Long.class, sessionId);
+
+        // 另一个用户伪造指向原用户会话的导入文件
+        String ndjson = "{\"kind\":\"session\",\"session_id\":\"" + sessionId + "\",\"head_seq\":999999,"
+            + "\"created_at\":\"2026-01-01T00:00:00\",\"updated_at\":null,\"expires_at\":null}\n"
+            + "{\"kind\":\"message\",\"id\":\"forged-" + sessionId + "\",\"session_id\":\"" + sessionId + "\","
+            + "\"role\":\"USER\",\"content\":\"注入的消息\",\"timestamp\":2000,\"seq\":999999,"
+            + "\"created_at\":\"2026-01-01T00:00:00\"}\n"
+            + "{\"kind\":\"working_memory\",\"session_id\":\"" + sessionId + "\",\"memory_key\":\"topic\","
+            + "\"memory_value\":\"\\\"被覆盖\\\"\",\"created_at\":\"2026-01-01T00:00:00\","
+            + "\"updated_at\":\"2026-01-01T00:00:00\",\"expires_at\":null}\n";
+
+        memoryImporter.importFrom(targetUserId, new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), false);
+
+        // 原用户的会话、消息和工作记忆不受影响
+        assertEquals(headSeq, jdbcTemplate.queryForObject(
+            "SELECT head_seq FROM memory_sessions WHERE session_id = ?", Long.class, sessionId));
+        assertEquals(sourceUserId, jdbcTemplate.queryForObject(
+            "SELECT user_id FROM memory_sessions WHERE session_id = ?", String.class, sessionId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM chat_messages WHERE session_id = ? AND user_id = ?",
+            Integer.class, sessionId, targetUserId));
+        assertEquals("旅行", shortMemoryService.getWorkingMemory(sessionId, "topic", String.class));
+
+        // 导入的数据落到导入用户自己的新会话
+        List<String> sessions = shortMemoryService.getAllSessionIds(targetUserId);
+        assertEquals(1, sessions.size());
+        assertNotEquals(sessionId, sessions.get(0));
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM chat_messages WHERE session_id = ?", Integer.class, sessions.get(0)));
+        assertEquals("被覆盖", shortMemoryService.getWorkingMemory(sessions.get(0), "topic", String.class));
+    }
+
+    @Test
+    void testImportIntoExistingSessionContinuesSequence() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            shortMemoryService.saveMessage(sessionId, ChatMessage.builder()
+                .userId(sourceUserId)
+                .role(MessageRole.USER)
+                .content("已有消息" + i)
+                .timestamp(1000L + i)
+                .build());
+        }
+        chatMessageWriteBuffer.flush();
+        assertEquals(3L, jdbcTemplate.queryForObject(
+            "SELECT head_seq FROM memory_sessions WHERE session_id = ?", Long.class, sessionId));
+
+        // 文件中的序号与已有消息重复，且乱序
+        String ndjson = "{\"kind\":\"session\",\"session_id\":\"" + sessionId + "\",\"head_seq\":2,"
+            + "\"created_at\":\"2026-01-01T00:00:00\",\"updated_at\":null,\"expires_at\":null}\n"
+            + message("imported-b-" + sessionId, "导入消息b", 2)
+            + message("imported-a-" + sessionId, "导入消息a", 1);
+
+        memoryImporter.importFrom(sourceUserId, new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), false);
+
+        assertEquals(5L, jdbcTemplate.queryForObject(
+            "SELECT head_seq FROM memory_sessions WHERE session_id = ?", Long.class, sessionId));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), jdbcTemplate.queryForList(
+            "SELECT seq FROM chat_messages WHERE session_id = ? ORDER BY seq", Long.class, sessionId));
+        assertEquals(List.of("导入消息a", "导入消息b"), jdbcTemplate.queryForList(
+            "SELECT content FROM chat_messages WHERE session_id = ? AND seq > 3 ORDER BY seq", String.class, sessionId));
+
+        // 重复导入时已存在的消息被跳过，序号不再推进
+        memoryImporter.importFrom(sourceUserId, new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), false);
+        assertEquals(5L, jdbcTemplate.queryForObject(
+            "SELECT head_seq FROM memory_sessions WHERE session_id = ?", Long.class, sessionId));
+    }
+
+    private String message(String id, String content, long seq) {
+        return "{\"kind\":\"message\",\"id\":\"" + id + "\",\"session_id\":\"" + sessionId + "\","
+            + "\"role\":\"USER\",\"content\":\"" + content + "\",\"timestamp\":" + (2000 + seq) + ",\"seq\":" + seq + ","
+            + "\"created_at\":\"2026-01-01T00:00:00\"}\n";
+    }
+
+    private int count(String table, String userId) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table + " WHERE user_id = ?", Integer.class, userId);
+    }
+}
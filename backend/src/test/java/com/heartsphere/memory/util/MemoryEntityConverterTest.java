@@ -0,0 +1,136 @@
+package com.heartsphere.memory.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.heartsphere.memory.entity.ChatMessageEntity;
+import com.heartsphere.memory.entity.UserMemoryEntity;
+import com.heartsphere.memory.model.ChatMessage;
+import com.heartsphere.memory.model.MemoryImportance;
+import com.heartsphere.memory.model.MemoryType;
+import com.heartsphere.memory.model.MessageRole;
+import com.heartsphere.memory.model.UserMemory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MemoryEntityConverter单元测试（JSON字段延迟解码）
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class MemoryEntityConverterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MemoryEntityConverter converter = new MemoryEntityConverter(new MemoryJsonCodec(objectMapper));
+
+    @Test
+    void testJsonFieldsAreDecodedOnFirstAccess() {
+        UserMemory memory = converter.toModel(memoryEntity(
+            "{\"city\":\"上海\",\"years\":3}", "[\"工作\",\"城市\"]", "{\"source\":\"chat\"}"));
+
+        assertFalse(((LazyJsonValue) memory.getStructuredData()).isDecoded());
+        assertFalse(((LazyJsonValue) memory.getTags()).isDecoded());
+        assertFalse(((LazyJsonValue) memory.getMetadata()).isDecoded());
+
+        assertEquals("上海", memory.getStructuredData().get("city"));
+        assertEquals(List.of("工作", "城市"), memory.getTags());
+        assertTrue(((LazyJsonValue) memory.getStructuredData()).isDecoded());
+        assertFalse(((LazyJsonValue) memory.getMetadata()).isDecoded());
+    }
+
+    @Test
+    void testEmptyColumnsStayNull() {
+        UserMemory memory = converter.toModel(memoryEntity(null, "", null));
+
+        assertNull(memory.getStructuredData());
+        assertNull(memory.getTags());
+        assertNull(memory.getMetadata());
+    }
+
+    @Test
+    void testSerializationStreamsRawJsonWithoutDecoding() throws Exception {
+        UserMemory memory = converter.toModel(memoryEntity(
+            "{\"city\":\"上海\",\"nested\":{\"a\":[1,2]}}", "[\"工作\"]", null));
+
+        String json = objectMapper.writeValueAsString(memory);
+
+        assertFalse(((LazyJsonValue) memory.getStructuredData()).isDecoded());
+        Map<?, ?> parsed = objectMapper.readValue(json, Map.class);
+        assertEquals(Map.of("city", "上海", "nested", Map.of("a", List.of(1, 2))), parsed.get("structuredData"));
+        assertEquals(List.of("工作"), parsed.get("tags"));
+    }
+
+    @Test
+    void testModifiedValuesAreSerializedAndWrittenBack() throws Exception {
+        ChatMessage message = converter.toModel(ChatMessageEntity.builder()
+            .id("m1").sessionId("s1").userId("u1").role(MessageRole.USER).content("你好")
+            .metadata("{\"mood\":\"happy\"}").timestamp(1000L).build());
+
+        message.getMetadata().put("mood", "sad");
+
+        assertTrue(objectMapper.writeValueAsString(message).contains("\"mood\":\"sad\""));
+        assertEquals("{\"mood\":\"sad\"}", converter.toEntity(message).getMetadata());
+    }
+
+    @Test
+    void testUntouchedValuesAreWrittenBackAsRawJson() {
+        String structured = "{ \"city\" : \"上海\" }";
+        UserMemory memory = converter.toModel(memoryEntity(structured, "[\"工作\"]", null));
+
+        UserMemoryEntity entity = converter.toEntity(memory);
+
+        assertSame(structured, entity.getStructuredData());
+        assertEquals("[\"工作\"]", entity.getTags());
+        assertFalse(((LazyJsonValue) memory.getStructuredData()).isDecoded());
+    }
+
+    @Test
+    void testInvalidJsonDecodesAsEmpty() {
+        UserMemory memory = converter.toModel(memoryEntity("{broken", "[\"a\"", null));
+
+        assertNotNull(memory);
+        assertTrue(memory.getStructuredData().isEmpty());
+        assertTrue(memory.getTags().isEmpty());
+        assertTrue(((LazyJsonValue) memory.getStructuredData()).isMalformed());
+    }
+
+    @Test
+    void testInvalidJsonIsWrittenBackAsRawJson() throws Exception {
+        UserMemory memory = converter.toModel(memoryEntity("{broken", "[\"a\"", null));
+        assertTrue(memory.getStructuredData().isEmpty());
+        assertTrue(memory.getTags().isEmpty());
+
+        UserMemoryEntity entity = converter.toEntity(memory);
+
+        assertEquals("{broken", entity.getStructuredData());
+        assertEquals("[\"a\"", entity.getTags());
+        // 对外输出按空值处理
+        Map<?, ?> parsed = objectMapper.readValue(objectMapper.writeValueAsString(memory), Map.class);
+        assertEquals(Map.of(), parsed.get("structuredData"));
+    }
+
+    @Test
+    void testInvalidJsonIsReplacedOnceWritten() {
+        UserMemory memory = converter.toModel(memoryEntity("{broken", null, null));
+
+        memory.getStructuredData().put("city", "上海");
+
+        assertEquals("{\"city\":\"上海\"}", converter.toEntity(memory).getStructuredData());
+    }
+
+    private UserMemoryEntity memoryEntity(String structuredData, String tags, String metadata) {
+        return UserMemoryEntity.builder()
+            .id("mem-1")
+            .userId("u1")
+            .type(MemoryType.PERSONAL_INFO)
+            .importance(MemoryImportance.NORMAL)
+            .content("在上海工作三年")
+            .structuredData(structuredData)
+            .tags(tags)
+            .metadata(metadata)
+            .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.heartsphere.memory.vector;
+
+import com.heartsphere.memory.service.impl.HashingEmbeddingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HnswIndex单元测试
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    private HnswIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new HnswIndex("test-model", DIMENSION, 8, 64);
+    }
+
+    @Test
+    void testSearchMatchesBruteForce() {
+        Random random = new Random(7);
+        float[][] vectors = new float[500][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomUnitVector(random);
+            index.add("m-" + i, vectors[i]);
+        }
+
+        int hitsAtOne = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomUnitVector(random);
+            int expected = bruteForceNearest(vectors, query);
+            List<HnswIndex.Hit> hits = index.search(query, 1, 64, -1);
+            assertEquals(1, hits.size());
+            if (hits.get(0).getId().equals("m-" + expected)) {
+                hitsAtOne++;
+            }
+        }
+        assertTrue(hitsAtOne >= 45, "recall@1 过低: " + hitsAtOne);
+    }
+
+    @Test
+    void testRemoveAndReplace() {
+        Random random = new Random(11);
+        float[] target = randomUnitVector(random);
+        index.add("target", target);
+        for (int i = 0; i < 100; i++) {
+            index.add("m-" + i, randomUnitVector(random));
+        }
+
+        assertEquals("target", index.search(target, 1, 32, -1).get(0).getId());
+
+        assertTrue(index.remove("target"));
+        assertFalse(index.contains("target"));
+        assertNotEquals("target", index.search(target, 1, 32, -1).get(0).getId());
+
+        // 同一ID重新写入时替换旧向量
+        index.add("m-0", target);
+        assertEquals("m-0", index.search(target, 1, 32, -1).get(0).getId());
+        assertEquals(100, index.size());
+    }
+
+    @Test
+    void testCompactionKeepsLiveEntries() {
+        Random random = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            index.add("m-" + i, randomUnitVector(random));
+        }
+        for (int i = 0; i < 150; i++) {
+            index.remove("m-" + i);
+        }
+
+        assertEquals(50, index.size());
+        List<HnswIndex.Hit> hits = index.search(randomUnitVector(random), 50, 100, -1);
+        assertEquals(50, hits.size());
+        hits.forEach(hit -> assertTrue(Integer.parseInt(hit.getId().substring(2)) >= 150));
+    }
+
+    @Test
+    void testPersistenceRoundTrip() throws Exception {
+        Random random = new Random(17);
+        for (int i = 0; i < 120; i++) {
+            index.add("m-" + i, randomUnitVector(random));
+        }
+        index.remove("m-3");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("test-model", restored.getModelId());
+        assertEquals(index.size(), restored.size());
+        assertFalse(restored.contains("m-3"));
+
+        float[] query = randomUnitVector(random);
+        assertEquals(
+            index.search(query, 5, 64, -1).stream().map(HnswIndex.Hit::getId).toList(),
+            restored.search(query, 5, 64, -1).stream().map(HnswIndex.Hit::getId).toList());
+    }
+
+    @Test
+    void testSemanticRecallWithHashingEmbedding() {
+        HashingEmbeddingService embedding = new HashingEmbeddingService(256);
+        HnswIndex textIndex = new HnswIndex(embedding.getModelId(), 256, 16, 100);
+        textIndex.add("cat", embedding.embed("用户喜欢养猫，家里有两只英短"));
+        textIndex.add("job", embedding.embed("用户在上海做软件工程师"));
+        textIndex.add("food", embedding.embed("用户不吃辣，喜欢清淡的粤菜"));
+
+        List<HnswIndex.Hit> hits = textIndex.search(embedding.embed("我家的猫"), 1, 16, 0.0);
+        assertEquals("cat", hits.get(0).getId());
+    }
+
+    private float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double sum = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            sum += vector[i] * vector[i];
+        }
+        float inv = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= inv;
+        }
+        return vector;
+    }
+
+    private int bruteForceNearest(float[][] vectors, float[] query) {
+        int best = -1;
+        float bestDot = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.length; i++) {
+            float dot = 0;
+            for (int j = 0; j < DIMENSION; j++) {
+                dot += vectors[i][j] * query[j];
+            }
+            if (dot > bestDot) {
+                bestDot = dot;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,80 @@
+package com.heartsphere.memory.vector;
+
+import com.heartsphere.memory.config.MemoryProperties;
+import com.heartsphere.memory.repository.jpa.UserMemoryRepository;
+import com.heartsphere.memory.service.impl.HashingEmbeddingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemoryVectorIndex单元测试：分批重建与内存淘汰
+ *
+ * @author HeartSphere
+ * @date 2026-10-17
+ */
+class MemoryVectorIndexTest {
+
+    @TempDir
+    Path indexDir;
+
+    private final UserMemoryRepository userMemoryRepository = mock(UserMemoryRepository.class);
+
+    private MemoryProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MemoryProperties();
+        properties.getVectorIndex().setPath(indexDir.toString());
+        properties.getVectorIndex().setRebuildBatchSize(2);
+        properties.getVectorIndex().setMinSimilarity(0.0);
+        when(userMemoryRepository.findTextBatchByUserAfter(anyString(), anyString(), any(Pageable.class)))
+            .thenReturn(List.of());
+    }
+
+    private MemoryVectorIndex vectorIndex() {
+        return new MemoryVectorIndex(new HashingEmbeddingService(64), userMemoryRepository, properties);
+    }
+
+    @Test
+    void testRebuildReadsUserMemoriesInBatches() {
+        when(userMemoryRepository.findTextBatchByUserAfter(eq("u1"), eq(""), any(Pageable.class))).thenReturn(List.of(
+            new Object[] {"m1", "喜欢养猫"}, new Object[] {"m2", "在上海工作"}));
+        when(userMemoryRepository.findTextBatchByUserAfter(eq("u1"), eq("m2"), any(Pageable.class))).thenReturn(List.<Object[]>of(
+            new Object[] {"m3", "周末去爬山"}));
+
+        List<HnswIndex.Hit> hits = vectorIndex().search("u1", "养猫", 10);
+
+        assertEquals(3, hits.size());
+        assertEquals("m1", hits.get(0).getId());
+        verify(userMemoryRepository, times(2)).findTextBatchByUserAfter(eq("u1"), anyString(), any(Pageable.class));
+    }
+
+    @Test
+    void testEvictedDirtyIndexIsFlushedAndReloaded() {
+        properties.getVectorIndex().setMaxLoadedUsers(1);
+        MemoryVectorIndex vectorIndex = vectorIndex();
+
+        vectorIndex.index("u1", "m1", "喜欢养猫");
+        // 只能保留一个用户，加载u2时淘汰u1，未落盘的变更先写入磁盘
+        vectorIndex.index("u2", "m2", "在上海工作");
+        vectorIndex.search("u2", "上海", 10);
+
+        assertTrue(Files.exists(indexDir.resolve("u1.hnsw")));
+        List<HnswIndex.Hit> hits = vectorIndex.search("u1", "养猫", 10);
+        assertEquals("m1", hits.get(0).getId());
+        // u1从文件重新加载，不再查库重建
+        verify(userMemoryRepository, times(1)).findTextBatchByUserAfter(eq("u1"), anyString(), any(Pageable.class));
+    }
+}
@@ -19,6 +19,16 @@ const STRATEGY_TYPES = [
   { value: 'single', label: '单一模型', description: '始终使用指定的默认模型' },
   { value: 'fallback', label: '容错模式', description: '主模型失败时自动切换到备用模型' },
   { value: 'economy', label: '经济模式', description: '根据成本选择最经济的模型' },
+  { value: 'latency', label: '延迟优先', description: '根据实测首字延迟和吞吐选择最快的模型' },
+] as const;
+
+// 延迟优先模式的配置项，留空时使用后端默认值
+const LATENCY_FIELDS = [
+  { key: 'maxCostPerToken', label: '最大成本（每Token）', step: '0.0001', placeholder: '不限制', integer: false },
+  { key: 'explorationRate', label: '探索比例（0-1）', step: '0.01', placeholder: '0.05', integer: false },
+  { key: 'expectedOutputTokens', label: '预期输出Token数', step: '1', placeholder: '200', integer: true },
+  { key: 'maxP95TtftMs', label: 'P95首字延迟上限（毫秒）', step: '1', placeholder: '不限制', integer: true },
+  { key: 'minSamples', label: '最少样本数', step: '1', placeholder: '5', integer: true },
 ] as const;
 
 const PROVIDERS = [
@@ -342,6 +352,40 @@ export const RoutingStrategies: React.FC<RoutingStrategiesProps> = ({
                       </div>
                     )}
 
+                    {/* 延迟优先模式配置 */}
+                    {strategyFormData.strategyType === 'latency' && (
+                      <div className="space-y-4">
+                        <p className="text-sm text-slate-400">
+                          在所有启用的模型中按实测延迟选择；样本不足的模型会被优先探索
+                        </p>
+                        {LATENCY_FIELDS.map(field => (
+                          <div key={field.key}>
+                            <label className="block text-sm font-medium mb-2 text-slate-300">
+                              {field.label}
+                            </label>
+                            <input
+                              type="number"
+                              step={field.step}
+                              min="0"
+                              value={strategyFormData.latencyConfig?.[field.key] ?? ''}
+                              onChange={(e) => {
+                                const value = field.integer ? parseInt(e.target.value, 10) : parseFloat(e.target.value);
+                                setStrategyFormData({
+                                  ...strategyFormData,
+                                  latencyConfig: {
+                                    ...strategyFormData.latencyConfig,
+                                    [field.key]: isNaN(value) ? undefined : value,
+                                  },
+                                });
+                              }}
+                              className="w-full px-3 py-2 bg-slate-700 border border-slate-600 rounded text-white text-sm focus:border-indigo-500 outline-none placeholder-slate-400"
+                              placeholder={field.placeholder}
+                            />
+                          </div>
+                        ))}
+                      </div>
+                    )}
+
                     <div className="flex items-center gap-2">
                       <input
                         type="checkbox"
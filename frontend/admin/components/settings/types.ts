@@ -18,7 +18,7 @@ export interface AIModelConfig {
 export interface RoutingStrategy {
     id?: number;
     capability: 'text' | 'image' | 'audio' | 'video';
-    strategyType: 'single' | 'fallback' | 'economy';
+    strategyType: 'single' | 'fallback' | 'economy' | 'latency';
     isActive: boolean;
     description?: string;
     defaultProvider?: string;
@@ -33,6 +33,13 @@ export interface RoutingStrategy {
         preferredProvider?: string;
         maxCostPerToken?: number;
     };
+    latencyConfig?: {
+        maxCostPerToken?: number;
+        explorationRate?: number;
+        expectedOutputTokens?: number;
+        maxP95TtftMs?: number;
+        minSamples?: number;
+    };
 }
 
 export interface ProviderOption {
@@ -6,6 +6,7 @@ import type {
   RoutingStrategyType,
   FallbackChainItem,
   EconomyConfig,
+  LatencyConfig,
 } from './types';
 
 /**
@@ -199,6 +200,7 @@ export const adminAIRoutingStrategiesApi = {
       defaultModel?: string;
       fallbackChain?: FallbackChainItem[];
       economyConfig?: EconomyConfig;
+      latencyConfig?: LatencyConfig;
     },
     token: string
   ): Promise<{
@@ -238,6 +240,7 @@ export const adminAIRoutingStrategiesApi = {
       defaultModel?: string;
       fallbackChain?: FallbackChainItem[];
       economyConfig?: EconomyConfig;
+      latencyConfig?: LatencyConfig;
     },
     token: string
   ): Promise<{
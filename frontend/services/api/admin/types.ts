@@ -180,7 +180,7 @@ export interface AIModelConfig {
 /**
  * AI路由策略
  */
-export type RoutingStrategyType = 'single' | 'fallback' | 'economy';
+export type RoutingStrategyType = 'single' | 'fallback' | 'economy' | 'latency';
 
 export interface FallbackChainItem {
   provider: string;
@@ -194,6 +194,14 @@ export interface EconomyConfig {
   maxCostPerToken?: number;
 }
 
+export interface LatencyConfig {
+  maxCostPerToken?: number;
+  explorationRate?: number;
+  expectedOutputTokens?: number;
+  maxP95TtftMs?: number;
+  minSamples?: number;
+}
+
 export interface RoutingStrategy {
   id: number;
   capability: string;
@@ -205,6 +213,7 @@ export interface RoutingStrategy {
   defaultModel?: string;
   fallbackChain?: FallbackChainItem[];
   economyConfig?: EconomyConfig;
+  latencyConfig?: LatencyConfig;
 }
 
 /**